@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import peersim.config.Configuration;
+
+/**
+ * Benchmarks the lookups of {@link Configuration}, which go through
+ * {@link peersim.config.ConfigContainer}: reading an integer, a string and
+ * a protocol identifier, testing a missing parameter and listing the
+ * protocols. The time is per lookup.
+ */
+public class ConfigBench
+{
+
+/** The number of lookups of each kind in an iteration */
+private static final int OPS = 100000;
+
+// --------------------------------------------------------------------------
+
+/** Runs the benchmarks. */
+public static void run(Harness h)
+{
+	h.measure("config.getInt", "", new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < OPS; ++i)
+				sum += Configuration.getInt("protocol.gossip.cacheSize");
+			Harness.consume(sum);
+			return OPS;
+		}
+	});
+	h.measure("config.getString", "", new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < OPS; ++i)
+				sum += Configuration.getString("protocol.gossip").length();
+			Harness.consume(sum);
+			return OPS;
+		}
+	});
+	h.measure("config.getPid", "", new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < OPS; ++i)
+				sum += Configuration.getPid("protocol.gossip.transport");
+			Harness.consume(sum);
+			return OPS;
+		}
+	});
+	h.measure("config.contains", "missing", new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < OPS; ++i)
+				if (Configuration.contains("protocol.gossip.missing")) sum++;
+			Harness.consume(sum);
+			return OPS;
+		}
+	});
+	h.measure("config.getNames", "protocol", new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < OPS / 10; ++i)
+				sum += Configuration.getNames("protocol").length;
+			Harness.consume(sum);
+			return OPS / 10;
+		}
+	});
+}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import peersim.edsim.Heap;
+
+/**
+ * A {@link Heap} that counts the events removed from it, that is, the
+ * events executed by the simulation.
+ */
+public class CountingHeap extends Heap
+{
+
+/** The number of events removed so far */
+static long count = 0;
+
+// --------------------------------------------------------------------------
+
+/** Calls the constructor of the superclass. */
+public CountingHeap(String prefix)
+{
+	super(prefix);
+}
+
+// --------------------------------------------------------------------------
+
+public Event removeFirst()
+{
+	Event ev = super.removeFirst();
+	if (ev != null) count++;
+	return ev;
+}
+
+}
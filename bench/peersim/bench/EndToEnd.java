@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.io.*;
+import java.util.*;
+
+import peersim.Simulator;
+
+/**
+ * Runs a whole simulation of <code>scripts/ShuffleExample.txt</code> and
+ * measures the number of events and of cycles executed per second of wall
+ * clock time. The observers of the script are disabled, so that the
+ * measure covers the engine, the transport and the protocol.
+ * <p>
+ * Each run is executed in a new JVM by {@link #fork}, since the
+ * configuration can be loaded only once; the JVM executes {@link #main},
+ * which prints a single line with the number of events and the elapsed
+ * nanoseconds.
+ */
+public class EndToEnd
+{
+
+/** The cycle length of the script */
+private static final long CYCLE = 1000;
+
+// --------------------------------------------------------------------------
+
+/**
+ * Runs the simulation. The arguments are the script, the network size and
+ * the number of cycles.
+ */
+public static void main(String[] args) throws Exception
+{
+	long cycles = Long.parseLong(args[2]);
+	String end = "CYCLE*" + cycles;
+	String after = "CYCLE*" + (cycles + 1);
+	String[] pars = {
+		args[0],
+		"network.size " + args[1],
+		"simulation.endtime " + end,
+		"simulation.logtime " + end,
+		"simulation.eventqueue " + CountingHeap.class.getName(),
+		"control.degree.from " + after,
+		"control.graphPL.from " + after,
+	};
+	PrintStream out = System.out;
+	System.setOut(new PrintStream(new OutputStream() {
+		public void write(int b) {}
+		public void write(byte[] b, int off, int len) {}
+	}));
+	long t = System.nanoTime();
+	Simulator.run(pars);
+	t = System.nanoTime() - t;
+	System.setOut(out);
+	System.out.println(CountingHeap.count + " " + t);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Runs the simulation in <code>forks</code> new JVMs for each network
+ * size and reports the events and cycles per second.
+ */
+public static void fork(Harness h, String script, int[] sizes, long cycles,
+		int forks) throws IOException, InterruptedException
+{
+	if (!h.selected("e2e")) return;
+	String java = System.getProperty("java.home") + File.separator +
+		"bin" + File.separator + "java";
+	for (int size : sizes) {
+		double[] events = new double[forks];
+		double[] rounds = new double[forks];
+		for (int f = 0; f < forks; ++f) {
+			ProcessBuilder pb = new ProcessBuilder(java, "-cp",
+				System.getProperty("java.class.path"),
+				EndToEnd.class.getName(), script, "" + size, "" + cycles);
+			pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+			Process p = pb.start();
+			BufferedReader in = new BufferedReader(
+				new InputStreamReader(p.getInputStream()));
+			String line = in.readLine();
+			if (p.waitFor() != 0 || line == null)
+				throw new RuntimeException("Run of " + script +
+				" with " + size + " nodes failed");
+			String[] res = line.trim().split(" ");
+			double seconds = Long.parseLong(res[1]) / 1e9;
+			events[f] = Long.parseLong(res[0]) / seconds;
+			rounds[f] = cycles / seconds;
+		}
+		String params = "script=" + new File(script).getName() +
+			",size=" + size + ",cycles=" + cycles;
+		h.report("e2e.events", params, "events/s", events);
+		h.report("e2e.cycles", params, "cycles/s", rounds);
+	}
+}
+
+}
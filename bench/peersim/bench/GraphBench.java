@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.graph.*;
+import peersim.util.ExtendedRandom;
+
+/**
+ * Benchmarks {@link GraphAlgorithms#dist} (a breadth first search, time
+ * per search) and {@link GraphAlgorithms#clustering} (time per node) on an
+ * undirected random graph with 100000 nodes and out-degree 20, and
+ * {@link OverlayGraph#getNeighbours} (time per node) on the network of
+ * {@link Main}.
+ */
+public class GraphBench
+{
+
+/** Number of nodes of the random graph */
+private static final int SIZE = 100000;
+
+/** Number of searches in an iteration */
+private static final int SEARCHES = 20;
+
+// --------------------------------------------------------------------------
+
+/** Runs the benchmarks. */
+public static void run(Harness h)
+{
+	if (h.selected("graph.dist") || h.selected("graph.clustering"))
+		algorithms(h);
+	overlay(h);
+}
+
+// --------------------------------------------------------------------------
+
+private static void algorithms(Harness h)
+{
+	final ExtendedRandom r = new ExtendedRandom(CommonState.r.nextLong());
+	final Graph g = new ConstUndirGraph(GraphFactory.wireKOut(
+		new NeighbourListGraph(SIZE, true), 20, r));
+	final GraphAlgorithms ga = new GraphAlgorithms();
+	String params = "size=" + SIZE + ",k=20";
+	h.measure("graph.dist", params, new Harness.Op() {
+		public long run() {
+			for (int i = 0; i < SEARCHES; ++i) {
+				ga.dist(g, r.nextInt(SIZE));
+				Harness.consume(ga.d[r.nextInt(SIZE)]);
+			}
+			return SEARCHES;
+		}
+	});
+	h.measure("graph.clustering", params, new Harness.Op() {
+		public long run() {
+			double sum = 0;
+			for (int i = 0; i < SIZE; ++i)
+				sum += GraphAlgorithms.clustering(g, i);
+			Harness.consume(sum);
+			return SIZE;
+		}
+	});
+}
+
+// --------------------------------------------------------------------------
+
+private static void overlay(Harness h)
+{
+	final OverlayGraph og = new OverlayGraph(
+		Configuration.lookupPid("gossip"));
+	final int n = og.size();
+	h.measure("overlay.getNeighbours", "size=" + n, new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < n; ++i) sum += og.getNeighbours(i).size();
+			Harness.consume(sum);
+			return n;
+		}
+	});
+}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * A minimal benchmark harness. Each benchmark is run a number of times for
+ * warmup and then a number of times for measurement, and the result is
+ * printed as a single line of JSON, for example:
+ * <pre>
+{"benchmark":"heap.hold","params":"dist=uniform,size=10000","unit":"ns/op","score":52.1,"error":1.3,"samples":5}
+ * </pre>
+ * where the score is the mean of the samples and the error is their
+ * standard deviation. The lines can be collected from several runs and
+ * compared to track regressions.
+ */
+public class Harness
+{
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** Only the benchmarks whose name starts with one of these are run */
+private final String[] filters;
+
+/** Number of warmup iterations */
+final int warmup;
+
+/** Number of measured iterations */
+final int iterations;
+
+/** Where results are printed */
+private final PrintStream out;
+
+/** Consumes the results of the benchmarks so that they are not optimized
+away */
+private static volatile long sink;
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+/**
+ * @param filters only the benchmarks whose name starts with one of these
+ * strings are run; all of them if empty
+ * @param warmup the number of warmup iterations
+ * @param iterations the number of measured iterations
+ * @param out where results are printed
+ */
+public Harness(String[] filters, int warmup, int iterations,
+		PrintStream out)
+{
+	this.filters = filters;
+	this.warmup = warmup;
+	this.iterations = iterations;
+	this.out = out;
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/**
+ * A piece of code to be measured.
+ */
+public interface Op
+{
+	/**
+	 * Runs the code once and returns the number of operations performed,
+	 * by which the time is divided.
+	 */
+	public long run();
+}
+
+// --------------------------------------------------------------------------
+
+/** Returns true if the benchmark with the given name is selected. */
+public boolean selected(String name)
+{
+	if (filters.length == 0) return true;
+	for (String f : filters) if (name.startsWith(f)) return true;
+	return false;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Measures the given code in nanoseconds per operation and prints the
+ * result, if the benchmark is selected.
+ */
+public void measure(String name, String params, Op op)
+{
+	if (!selected(name)) return;
+	for (int i = 0; i < warmup; ++i) op.run();
+	double[] samples = new double[iterations];
+	for (int i = 0; i < iterations; ++i) {
+		long t = System.nanoTime();
+		long ops = op.run();
+		samples[i] = (System.nanoTime() - t) / (double) ops;
+	}
+	report(name, params, "ns/op", samples);
+}
+
+// --------------------------------------------------------------------------
+
+/** Prints the result computed from the given samples. */
+public void report(String name, String params, String unit,
+		double[] samples)
+{
+	double sum = 0, sqrsum = 0;
+	for (double s : samples) {
+		sum += s;
+		sqrsum += s * s;
+	}
+	int n = samples.length;
+	double mean = sum / n;
+	double var = (n > 1 ? (sqrsum - n * mean * mean) / (n - 1) : 0);
+	out.println(String.format(Locale.ROOT, "{\"benchmark\":\"%s\"," +
+		"\"params\":\"%s\",\"unit\":\"%s\",\"score\":%.3f," +
+		"\"error\":%.3f,\"samples\":%d}", name, params, unit, mean,
+		Math.sqrt(Math.max(var, 0)), n));
+	out.flush();
+}
+
+// --------------------------------------------------------------------------
+
+/** Consumes a value so that the code computing it is not optimized away. */
+public static void consume(long v) { sink += v; }
+
+// --------------------------------------------------------------------------
+
+/** Consumes a value so that the code computing it is not optimized away. */
+public static void consume(double v) { sink += Double.doubleToLongBits(v); }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import peersim.core.CommonState;
+import peersim.edsim.Heap;
+import peersim.edsim.PriorityQ;
+import peersim.util.ExtendedRandom;
+
+/**
+ * Benchmarks {@link Heap}, the default {@link PriorityQ}, with the hold
+ * model: the queue contains a fixed number of events, and each operation
+ * removes the first event and adds a new one after a random delay. The
+ * delay distributions are:
+ * <ul>
+ * <li>uniform: uniform in [100,600], like the transport of
+ * <code>scripts/ShuffleExample.txt</code></li>
+ * <li>exponential: exponential with mean 350</li>
+ * <li>cycle: a constant 1000, like the events of a
+ * {@link peersim.edsim.CDScheduler}, so many events have the same time</li>
+ * </ul>
+ */
+public class HeapBench
+{
+
+/** The number of operations in an iteration */
+private static final int OPS = 1000000;
+
+// --------------------------------------------------------------------------
+
+/** Runs the benchmarks. */
+public static void run(Harness h)
+{
+	for (String dist : new String[] {"uniform", "exponential", "cycle"})
+		for (int size : new int[] {10000, 100000, 1000000})
+			hold(h, dist, size);
+}
+
+// --------------------------------------------------------------------------
+
+private static void hold(Harness h, final String dist, int size)
+{
+	if (!h.selected("heap.hold")) return;
+	final PriorityQ q = new Heap();
+	final ExtendedRandom r = new ExtendedRandom(CommonState.r.nextLong());
+	final Object event = new Object();
+	for (int i = 0; i < size; ++i) q.add(delay(dist, r), event, null, (byte) 0);
+	h.measure("heap.hold", "dist=" + dist + ",size=" + size, new Harness.Op() {
+		public long run() {
+			for (int i = 0; i < OPS; ++i) {
+				PriorityQ.Event ev = q.removeFirst();
+				q.add(ev.time + delay(dist, r), ev.event, null, (byte) 0);
+			}
+			return OPS;
+		}
+	});
+}
+
+// --------------------------------------------------------------------------
+
+private static long delay(String dist, ExtendedRandom r)
+{
+	switch (dist) {
+	case "uniform": return 100 + r.nextLong(501);
+	case "exponential": return 1 + (long) (-350 * Math.log(1 - r.nextDouble()));
+	default: return 1000;
+	}
+}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.io.*;
+import java.util.*;
+
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.graph.GraphFactory;
+
+/**
+ * Runs the benchmarks of the simulator's hot paths and prints the results
+ * as lines of JSON (see {@link Harness}). Usage:
+ * <pre>
+java -cp &lt;classes&gt; peersim.bench.Main [options] [prefix ...]
+ * </pre>
+ * Only the benchmarks whose name starts with one of the prefixes are run,
+ * all of them if none is given. The options are:
+ * <ul>
+ * <li><code>-w n</code>: warmup iterations, 3 by default</li>
+ * <li><code>-i n</code>: measured iterations, 5 by default</li>
+ * <li><code>-o file</code>: the file where results are written instead of
+ * the standard output</li>
+ * <li><code>-script file</code>: the script run by the end to end
+ * benchmarks, <code>scripts/ShuffleExample.txt</code> by default</li>
+ * <li><code>-sizes n,n,...</code>: the network sizes of the end to end
+ * benchmarks, 1000,10000,100000 by default</li>
+ * <li><code>-cycles n</code>: the cycles of the end to end benchmarks, 50
+ * by default</li>
+ * <li><code>-forks n</code>: the runs of the end to end benchmarks for
+ * each size, 1 by default</li>
+ * </ul>
+ * The benchmarks are: <code>heap</code> ({@link HeapBench}),
+ * <code>shuffle</code> ({@link ShuffleBench}), <code>graph</code> and
+ * <code>overlay</code> ({@link GraphBench}), <code>config</code>
+ * ({@link ConfigBench}), <code>vector</code> ({@link VectorBench}),
+ * <code>newscast</code> ({@link NewscastBench}), <code>rng</code> and
+ * <code>alias</code> ({@link RandomBench}) and <code>e2e</code>
+ * ({@link EndToEnd}).
+ * <p>
+ * All but the end to end benchmarks share a network of 10000 nodes, each
+ * running {@link gossip.BasicShuffle} over a {@link QueueTransport} and a
+ * {@link peersim.vector.SingleValueHolder}, and the newscast protocols of
+ * {@link NewscastBench}, which are wired only if their benchmark runs.
+ */
+public class Main
+{
+
+/** The size of the network shared by the benchmarks */
+private static final int SIZE = 10000;
+
+// --------------------------------------------------------------------------
+
+public static void main(String[] args) throws Exception
+{
+	int warmup = 3, iterations = 5, forks = 1;
+	long cycles = 50;
+	String script = "scripts/ShuffleExample.txt";
+	int[] sizes = {1000, 10000, 100000};
+	PrintStream out = System.out;
+	List<String> filters = new ArrayList<String>();
+	for (int i = 0; i < args.length; ++i) {
+		String a = args[i];
+		if (a.equals("-w")) warmup = Integer.parseInt(args[++i]);
+		else if (a.equals("-i")) iterations = Integer.parseInt(args[++i]);
+		else if (a.equals("-o")) out = new PrintStream(
+			new FileOutputStream(args[++i]), true);
+		else if (a.equals("-script")) script = args[++i];
+		else if (a.equals("-cycles")) cycles = Long.parseLong(args[++i]);
+		else if (a.equals("-forks")) forks = Integer.parseInt(args[++i]);
+		else if (a.equals("-sizes")) {
+			String[] s = args[++i].split(",");
+			sizes = new int[s.length];
+			for (int j = 0; j < s.length; ++j)
+				sizes[j] = Integer.parseInt(s[j].trim());
+		}
+		else if (a.startsWith("-"))
+			throw new IllegalArgumentException("Unknown option " + a);
+		else filters.add(a);
+	}
+	Harness h = new Harness(filters.toArray(new String[0]), warmup,
+		iterations, out);
+
+	Configuration.setConfig(configuration());
+	Network.reset();
+	int pid = Configuration.lookupPid("gossip");
+	GraphFactory.wireKOut(new OverlayGraph(pid), 20, CommonState.r);
+
+	HeapBench.run(h);
+	ShuffleBench.run(h);
+	GraphBench.run(h);
+	ConfigBench.run(h);
+	VectorBench.run(h);
+	NewscastBench.run(h);
+	RandomBench.run(h);
+	EndToEnd.fork(h, script, sizes, cycles, forks);
+	if (out != System.out) out.close();
+}
+
+// --------------------------------------------------------------------------
+
+/** Returns the configuration of the network shared by the benchmarks. */
+private static Properties configuration()
+{
+	Properties p = new Properties();
+	p.setProperty("random.seed", "1234567890");
+	p.setProperty("network.size", "" + SIZE);
+	p.setProperty("protocol.tr", QueueTransport.class.getName());
+	p.setProperty("protocol.gossip", "gossip.BasicShuffle");
+	p.setProperty("protocol.gossip.cacheSize", "30");
+	p.setProperty("protocol.gossip.shuffleLength", "8");
+	p.setProperty("protocol.gossip.transport", "tr");
+	p.setProperty("protocol.value", "peersim.vector.SingleValueHolder");
+	p.setProperty("bench.vector.protocol", "value");
+	for (int c : NewscastBench.CACHES) {
+		p.setProperty("protocol.simple" + c,
+			"example.newscast.SimpleNewscast");
+		p.setProperty("protocol.simple" + c + ".cache", "" + c);
+		p.setProperty("protocol.hashed" + c,
+			"example.newscast.HashedNewscast");
+		p.setProperty("protocol.hashed" + c + ".cache", "" + c);
+	}
+	return p;
+}
+
+}
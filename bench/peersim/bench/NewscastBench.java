@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import peersim.cdsim.CDProtocol;
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.graph.GraphFactory;
+
+/**
+ * Benchmarks a cycle of {@link example.newscast.SimpleNewscast} and of
+ * {@link example.newscast.HashedNewscast}, that is, a call to
+ * <code>nextCycle</code> on every node of the network of {@link Main}, with
+ * the cache sizes in {@link #CACHES}. The time is per node. The merge of
+ * the first takes time quadratic in the cache size, that of the second
+ * linear.
+ */
+public class NewscastBench
+{
+
+/** The cache sizes, each with its own protocols in {@link Main} */
+static final int[] CACHES = {20, 50, 100, 200};
+
+// --------------------------------------------------------------------------
+
+/** Runs the benchmarks. */
+public static void run(Harness h)
+{
+	for (int c : CACHES) {
+		cycle(h, "newscast.simple", "simple" + c, c);
+		cycle(h, "newscast.hashed", "hashed" + c, c);
+	}
+}
+
+// --------------------------------------------------------------------------
+
+private static void cycle(Harness h, String name, String prot, int c)
+{
+	if (!h.selected(name)) return;
+	final int pid = Configuration.lookupPid(prot);
+	final int n = Network.size();
+	if (((Linkable) Network.get(0).getProtocol(pid)).degree() == 0)
+		GraphFactory.wireKOut(new OverlayGraph(pid), c, CommonState.r);
+	h.measure(name, "size=" + n + ",cache=" + c, new Harness.Op() {
+		public long run() {
+			for (int i = 0; i < n; ++i) {
+				Node node = Network.get(i);
+				((CDProtocol) node.getProtocol(pid)).nextCycle(node, pid);
+			}
+			return n;
+		}
+	});
+}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.util.ArrayDeque;
+
+import peersim.core.*;
+import peersim.transport.Transport;
+
+/**
+ * A transport that stores the messages in a queue instead of scheduling
+ * them, so that protocols can be benchmarked without the event driven
+ * engine. The messages are delivered by {@link #deliver}.
+ */
+public class QueueTransport implements Transport
+{
+
+/** The queue of messages, shared by all the instances */
+private static final ArrayDeque<Object> queue = new ArrayDeque<Object>();
+
+// --------------------------------------------------------------------------
+
+/** Does nothing. */
+public QueueTransport(String prefix) {}
+
+// --------------------------------------------------------------------------
+
+/** Returns <code>this</code>, there is a single instance. */
+public Object clone() { return this; }
+
+// --------------------------------------------------------------------------
+
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	queue.add(dest);
+	queue.add(msg);
+	queue.add(pid);
+}
+
+// --------------------------------------------------------------------------
+
+/** Returns 0. */
+public long getLatency(Node src, Node dest) { return 0; }
+
+// --------------------------------------------------------------------------
+
+/**
+ * Delivers the queued messages, including those sent while delivering,
+ * until the queue is empty, and returns the number of messages
+ * delivered.
+ */
+public static long deliver()
+{
+	long count = 0;
+	while (!queue.isEmpty()) {
+		Node dest = (Node) queue.poll();
+		Object msg = queue.poll();
+		int pid = (Integer) queue.poll();
+		((peersim.edsim.EDProtocol) dest.getProtocol(pid)).processEvent(
+			dest, pid, msg);
+		count++;
+	}
+	return count;
+}
+
+}
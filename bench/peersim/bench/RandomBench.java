@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+
+package peersim.bench;
+
+import java.util.*;
+
+import peersim.util.*;
+
+/**
+ * Benchmarks the random generators and the sampling of weighted values.
+ * The <code>rng</code> benchmarks compare {@link XoroshiroRandom} and
+ * {@link CounterRandom} to {@link ExtendedRandom}, the default generator;
+ * the time is per value drawn, or per sample of 100 out of 10^6 values for
+ * <code>rng.sample</code>. The <code>alias</code> benchmarks compare
+ * drawing from an {@link AliasTable} to scanning the cumulative weights,
+ * as done by {@link WeightedRandPerm}, and to a binary search on them;
+ * the time is per value drawn, or per weight for <code>alias.build</code>.
+ */
+public class RandomBench
+{
+
+/** The values drawn by each run of a benchmark */
+private static final int OPS = 1000000;
+
+/** The numbers of weights of the alias benchmarks */
+private static final int[] WEIGHTS = {10, 1000, 100000};
+
+// --------------------------------------------------------------------------
+
+/** Runs the benchmarks. */
+public static void run(Harness h)
+{
+	ExtendedRandom[] rs = {
+		new ExtendedRandom(1234567890), new XoroshiroRandom(1234567890),
+		new CounterRandom(1234567890)};
+	for (final ExtendedRandom r : rs) {
+		String params = "gen=" + r.getClass().getSimpleName();
+		h.measure("rng.nextInt", params + ",bound=1000", new Harness.Op() {
+			public long run() {
+				long sum = 0;
+				for (int i = 0; i < OPS; ++i) sum += r.nextInt(1000);
+				Harness.consume(sum);
+				return OPS;
+			}
+		});
+		h.measure("rng.nextDouble", params, new Harness.Op() {
+			public long run() {
+				double sum = 0;
+				for (int i = 0; i < OPS; ++i) sum += r.nextDouble();
+				Harness.consume(sum);
+				return OPS;
+			}
+		});
+		h.measure("rng.nextLong", params, new Harness.Op() {
+			public long run() {
+				long sum = 0;
+				for (int i = 0; i < OPS; ++i) sum += r.nextLong();
+				Harness.consume(sum);
+				return OPS;
+			}
+		});
+		final int[] out = new int[100];
+		h.measure("rng.sample", params + ",n=1000000,k=100",
+				new Harness.Op() {
+			public long run() {
+				long sum = 0;
+				for (int i = 0; i < OPS / 100; ++i) {
+					r.sample(1000000, 100, out);
+					sum += out[0];
+				}
+				Harness.consume(sum);
+				return OPS / 100;
+			}
+		});
+	}
+
+	for (final int n : WEIGHTS) alias(h, n);
+}
+
+// --------------------------------------------------------------------------
+
+/** Runs the alias benchmarks with n random weights. */
+private static void alias(Harness h, final int n)
+{
+	final Random r = new XoroshiroRandom(1234567890);
+	final double[] w = new double[n];
+	for (int i = 0; i < n; ++i) w[i] = r.nextDouble();
+	final double[] wsum = w.clone();
+	for (int i = 1; i < n; ++i) wsum[i] += wsum[i - 1];
+	final String params = "n=" + n;
+
+	h.measure("alias.build", params, new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			int tables = Math.max(1, OPS / n);
+			for (int i = 0; i < tables; ++i)
+				sum += new AliasTable(w).next(r);
+			Harness.consume(sum);
+			return (long) tables * n;
+		}
+	});
+	final AliasTable at = new AliasTable(w);
+	h.measure("alias.next", params, new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < OPS; ++i) sum += at.next(r);
+			Harness.consume(sum);
+			return OPS;
+		}
+	});
+	// the linear scan takes time proportional to n
+	final int scans = Math.max(1, Math.min(OPS, 100 * OPS / n));
+	h.measure("alias.scan", params, new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < scans; ++i) {
+				double d = wsum[n - 1] * r.nextDouble();
+				int j = 0;
+				while (wsum[j] < d && j < n - 1) j++;
+				sum += j;
+			}
+			Harness.consume(sum);
+			return scans;
+		}
+	});
+	h.measure("alias.bsearch", params, new Harness.Op() {
+		public long run() {
+			long sum = 0;
+			for (int i = 0; i < OPS; ++i) {
+				int j = Arrays.binarySearch(wsum, wsum[n - 1] * r.nextDouble());
+				sum += (j < 0 ? -j - 1 : j);
+			}
+			Harness.consume(sum);
+			return OPS;
+		}
+	});
+}
+
+}
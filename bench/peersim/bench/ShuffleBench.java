@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import peersim.cdsim.CDProtocol;
+import peersim.config.Configuration;
+import peersim.core.*;
+
+/**
+ * Benchmarks the two halves of a shuffle of {@link gossip.BasicShuffle}
+ * on the network of {@link Main}: the start of the shuffles, that is, a
+ * call to <code>nextCycle</code> on every node, and the processing of the
+ * requests and replies that follow, delivered by {@link QueueTransport}.
+ * The time of the first is per node, the time of the second per message.
+ */
+public class ShuffleBench
+{
+
+/** Runs the benchmarks. */
+public static void run(Harness h)
+{
+	if (!h.selected("shuffle")) return;
+	final int pid = Configuration.lookupPid("gossip");
+	final int n = Network.size();
+	int rounds = h.warmup + h.iterations;
+	double[] cycle = new double[h.iterations];
+	double[] process = new double[h.iterations];
+	for (int k = 0; k < rounds; ++k) {
+		long t0 = System.nanoTime();
+		for (int i = 0; i < n; ++i) {
+			Node node = Network.get(i);
+			((CDProtocol) node.getProtocol(pid)).nextCycle(node, pid);
+		}
+		long t1 = System.nanoTime();
+		long msgs = QueueTransport.deliver();
+		long t2 = System.nanoTime();
+		if (k < h.warmup) continue;
+		cycle[k - h.warmup] = (t1 - t0) / (double) n;
+		process[k - h.warmup] = (t2 - t1) / (double) msgs;
+	}
+	String params = "size=" + n;
+	if (h.selected("shuffle.nextCycle"))
+		h.report("shuffle.nextCycle", params, "ns/op", cycle);
+	if (h.selected("shuffle.processEvent"))
+		h.report("shuffle.processEvent", params, "ns/op", process);
+}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.bench;
+
+import java.lang.reflect.Method;
+
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.vector.*;
+
+/**
+ * Benchmarks reading and writing a protocol vector on the network of
+ * {@link Main} through {@link Getter} and {@link Setter}, compared to
+ * calling the same methods through {@link Method#invoke}, and through a
+ * {@link VectorSnapshot}. The time is per node.
+ */
+public class VectorBench
+{
+
+/** Runs the benchmarks. */
+public static void run(Harness h)
+{
+	final int n = Network.size();
+	final String params = "size=" + n;
+	final Getter getter = new Getter("bench.vector", "protocol", "getter");
+	final Setter setter = new Setter("bench.vector", "protocol", "setter");
+	h.measure("vector.getter", params, new Harness.Op() {
+		public long run() {
+			double sum = 0;
+			for (int i = 0; i < n; ++i) sum += getter.getDouble(i);
+			Harness.consume(sum);
+			return n;
+		}
+	});
+	h.measure("vector.setter", params, new Harness.Op() {
+		public long run() {
+			for (int i = 0; i < n; ++i) setter.set(i, (double) i);
+			return n;
+		}
+	});
+	final VectorSnapshot snapshot = new VectorSnapshot();
+	h.measure("vector.snapshot", params, new Harness.Op() {
+		public long run() {
+			snapshot.read(getter);
+			Harness.consume(snapshot.sum());
+			return n;
+		}
+	});
+	final int pid = Configuration.getPid("bench.vector.protocol");
+	final Method get, set;
+	try {
+		Class<?> c = Network.prototype.getProtocol(pid).getClass();
+		get = c.getMethod("getValue");
+		set = c.getMethod("setValue", double.class);
+	} catch (NoSuchMethodException e) {
+		throw new RuntimeException(e);
+	}
+	h.measure("vector.reflect.get", params, new Harness.Op() {
+		public long run() {
+			double sum = 0;
+			try {
+				for (int i = 0; i < n; ++i)
+					sum += (Double) get.invoke(Network.get(i).getProtocol(pid));
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			Harness.consume(sum);
+			return n;
+		}
+	});
+	h.measure("vector.reflect.set", params, new Harness.Op() {
+		public long run() {
+			try {
+				for (int i = 0; i < n; ++i)
+					set.invoke(Network.get(i).getProtocol(pid), (double) i);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			return n;
+		}
+	});
+}
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package example.aggregation;
+
+import java.util.Arrays;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.util.ExtendedRandom;
+import peersim.vector.SingleValue;
+
+/**
+ * Runs rounds of push-pull averaging on all the nodes at once, as a
+ * control, instead of one exchange at a time as {@link AverageFunction}
+ * does. It is meant for convergence studies on large networks, where the
+ * cost of the individual exchanges dominates the simulation.
+ * <p>
+ * At each execution the values are read from the protocol
+ * {@value #PAR_PROT}, which must implement {@link SingleValue} (for example
+ * {@link peersim.vector.SingleValueHolder} or
+ * {@link peersim.vector.SingleValueColumn}), into an array, and the
+ * overlay {@value #PAR_LINKABLE} is copied into arrays of node indexes.
+ * Then, for each of the {@value #PAR_ROUNDS} rounds, every node that is up
+ * draws a random neighbor, as {@link AverageFunction} does, and the pairs
+ * are sorted into levels such that no node appears twice in a level, and
+ * two pairs sharing a node are in the same order as they were drawn. The
+ * exchanges of a level are independent, so each level is a single pass
+ * over arrays, that is run in parallel if {@value Bootstrap#PAR_THREADS} is
+ * defined. At the end the values are written back to the protocol, so the
+ * observers, like {@link AverageObserver} and
+ * {@link peersim.vector.VectorObserver}, see them as usual.
+ * <p>
+ * Since the levels preserve the order of the exchanges of each node, the
+ * result of a round is exactly that of a cycle of {@link AverageFunction}
+ * with the nodes iterated in order (the default of
+ * {@link peersim.cdsim.FullNextCycle}), provided that the same random
+ * numbers are drawn. This is the case if the protocol is not executed
+ * otherwise and the other components do not draw random numbers in the
+ * same cycle. If {@value Bootstrap#PAR_THREADS} is defined, the neighbors
+ * are drawn in parallel with the random streams of {@link Bootstrap}, so
+ * the results do not depend on the number of threads, but they are
+ * different from the sequential ones. The overlay must not change during
+ * an execution, and the values of the nodes that are down are not changed.
+ */
+public class BatchAverage implements Control {
+
+    // /////////////////////////////////////////////////////////////////////
+    // Constants
+    // /////////////////////////////////////////////////////////////////////
+
+    /**
+     * The protocol holding the values, which must implement
+     * {@link SingleValue}.
+     * 
+     * @config
+     */
+    private static final String PAR_PROT = "protocol";
+
+    /**
+     * The {@link Linkable} protocol defining the overlay.
+     * 
+     * @config
+     */
+    private static final String PAR_LINKABLE = "linkable";
+
+    /**
+     * The number of rounds run at each execution. Defaults to 1.
+     * 
+     * @config
+     */
+    private static final String PAR_ROUNDS = "rounds";
+
+    /** Levels with fewer exchanges than this are not split among threads. */
+    private static final int MIN_PARALLEL = 2 * Bootstrap.CHUNK;
+
+    // /////////////////////////////////////////////////////////////////////
+    // Fields
+    // /////////////////////////////////////////////////////////////////////
+
+    /** Protocol identifier; obtained from config property {@link #PAR_PROT}. */
+    private final int pid;
+
+    /** Linkable identifier; obtained from {@link #PAR_LINKABLE}. */
+    private final int lid;
+
+    /** Obtained from config property {@link #PAR_ROUNDS}. */
+    private final int rounds;
+
+    /** The values, by node index */
+    private double[] values = new double[0];
+
+    /** Whether the nodes are up, by node index */
+    private boolean[] up = new boolean[0];
+
+    /**
+     * The overlay: the neighbors of node i are the node indexes in
+     * targets[offsets[i]] to targets[offsets[i+1]-1]. Neighbors that are
+     * down are -1.
+     */
+    private int[] offsets = new int[1];
+
+    private int[] targets = new int[0];
+
+    /** The neighbor drawn by each node in the current round, or -1 */
+    private int[] peers = new int[0];
+
+    /** The level of each pair, and the next free level of each node */
+    private int[] level = new int[0];
+
+    private int[] next = new int[0];
+
+    /** The pairs sorted by level, and the start of each level */
+    private int[] first = new int[0];
+
+    private int[] second = new int[0];
+
+    private int[] start = new int[2];
+
+    /** The number of levels in the current round */
+    private int levels;
+
+    // /////////////////////////////////////////////////////////////////////
+    // Constructor
+    // /////////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a new control reading configuration parameters.
+     */
+    public BatchAverage(String name) {
+        pid = Configuration.getPid(name + "." + PAR_PROT);
+        lid = Configuration.getPid(name + "." + PAR_LINKABLE);
+        rounds = Configuration.getInt(name + "." + PAR_ROUNDS, 1);
+        if (rounds < 1)
+            throw new IllegalParameterException(name + "." + PAR_ROUNDS,
+                    "Must be positive");
+    }
+
+    // /////////////////////////////////////////////////////////////////////
+    // Methods
+    // /////////////////////////////////////////////////////////////////////
+
+    /**
+     * Runs {@value #PAR_ROUNDS} rounds of averaging on all the nodes.
+     * 
+     * @return always false
+     */
+    public boolean execute() {
+        final int n = Network.size();
+        if (values.length < n) {
+            int c = Math.max(n, 3 * values.length / 2);
+            values = new double[c];
+            up = new boolean[c];
+            offsets = new int[c + 1];
+            peers = new int[c];
+            level = new int[c];
+            next = new int[c];
+            first = new int[c];
+            second = new int[c];
+        }
+        read(n);
+        for (int r = 0; r < rounds; ++r) {
+            draw(n);
+            sort(n);
+            exchange();
+        }
+        write(n);
+        return false;
+    }
+
+    // ---------------------------------------------------------------------
+
+    /** Reads the values, the state of the nodes and the overlay. */
+    private void read(final int n) {
+        Bootstrap.Task task = new Bootstrap.Task() {
+            public void run(int from, int to, ExtendedRandom r) {
+                for (int i = from; i < to; ++i) {
+                    Node node = Network.get(i);
+                    up[i] = node.isUp();
+                    values[i] = ((SingleValue) node.getProtocol(pid))
+                            .getValue();
+                    offsets[i + 1] = ((Linkable) node.getProtocol(lid))
+                            .degree();
+                }
+            }
+        };
+        if (Bootstrap.isParallel()) Bootstrap.run(n, task);
+        else task.run(0, n, null);
+
+        offsets[0] = 0;
+        for (int i = 0; i < n; ++i) offsets[i + 1] += offsets[i];
+        if (targets.length < offsets[n])
+            targets = new int[Math.max(offsets[n], 3 * targets.length / 2)];
+
+        task = new Bootstrap.Task() {
+            public void run(int from, int to, ExtendedRandom r) {
+                for (int i = from; i < to; ++i) {
+                    Linkable l = (Linkable) Network.get(i).getProtocol(lid);
+                    int k = offsets[i];
+                    for (int j = 0; j < l.degree(); ++j) {
+                        Node peer = l.getNeighbor(j);
+                        targets[k++] = peer.isUp() ? peer.getIndex() : -1;
+                    }
+                }
+            }
+        };
+        if (Bootstrap.isParallel()) Bootstrap.run(n, task);
+        else task.run(0, n, null);
+    }
+
+    // ---------------------------------------------------------------------
+
+    /** Writes the values of the nodes that are up. */
+    private void write(final int n) {
+        Bootstrap.Task task = new Bootstrap.Task() {
+            public void run(int from, int to, ExtendedRandom r) {
+                for (int i = from; i < to; ++i)
+                    if (up[i])
+                        ((SingleValue) Network.get(i).getProtocol(pid))
+                                .setValue(values[i]);
+            }
+        };
+        if (Bootstrap.isParallel()) Bootstrap.run(n, task);
+        else task.run(0, n, null);
+    }
+
+    // ---------------------------------------------------------------------
+
+    /** Draws the neighbor of each node, as {@link AverageFunction} does. */
+    private void draw(final int n) {
+        Bootstrap.Task task = new Bootstrap.Task() {
+            public void run(int from, int to, ExtendedRandom r) {
+                if (r == null) r = CommonState.r;
+                for (int i = from; i < to; ++i) {
+                    peers[i] = -1;
+                    if (!up[i]) continue;
+                    int d = offsets[i + 1] - offsets[i];
+                    if (d > 0) peers[i] = targets[offsets[i] + r.nextInt(d)];
+                }
+            }
+        };
+        if (Bootstrap.isParallel()) Bootstrap.runRandom(n, task);
+        else task.run(0, n, null);
+    }
+
+    // ---------------------------------------------------------------------
+
+    /**
+     * Sorts the pairs drawn into levels. The level of a pair is the first
+     * one after those of the previous pairs of its two nodes.
+     */
+    private void sort(int n) {
+        Arrays.fill(next, 0, n, 0);
+        int pairs = 0, levels = 0;
+        for (int i = 0; i < n; ++i) {
+            final int j = peers[i];
+            if (j < 0) continue;
+            final int m = Math.max(next[i], next[j]);
+            level[pairs++] = m;
+            next[i] = next[j] = m + 1;
+            if (m >= levels) {
+                levels = m + 1;
+                if (start.length < levels + 1)
+                    start = Arrays.copyOf(start, 2 * (levels + 1));
+            }
+        }
+        // counting sort of the pairs by level
+        Arrays.fill(start, 0, levels + 1, 0);
+        for (int k = 0; k < pairs; ++k) start[level[k] + 1]++;
+        for (int l = 0; l < levels; ++l) start[l + 1] += start[l];
+        for (int i = 0, k = 0; i < n; ++i) {
+            if (peers[i] < 0) continue;
+            final int pos = start[level[k]]++;
+            first[pos] = i;
+            second[pos] = peers[i];
+            k++;
+        }
+        // start[l] is now the end of level l
+        System.arraycopy(start, 0, start, 1, levels);
+        start[0] = 0;
+        this.levels = levels;
+    }
+
+    // ---------------------------------------------------------------------
+
+    /** Runs the exchanges, level by level. */
+    private void exchange() {
+        for (int l = 0; l < levels; ++l) {
+            final int from = start[l], size = start[l + 1] - from;
+            if (size >= MIN_PARALLEL && Bootstrap.isParallel()) {
+                Bootstrap.run(size, new Bootstrap.Task() {
+                    public void run(int a, int b, ExtendedRandom r) {
+                        average(from + a, from + b);
+                    }
+                });
+            } else {
+                average(from, from + size);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+
+    /** Runs the exchanges of the sorted pairs in the given range. */
+    private void average(int from, int to) {
+        final double[] v = values;
+        for (int k = from; k < to; ++k) {
+            final int a = first[k], b = second[k];
+            final double mean = (v[a] + v[b]) / 2;
+            v[a] = mean;
+            v[b] = mean;
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package example.loadbalance;
+
+import peersim.config.Configuration;
+import peersim.config.FastConfig;
+import peersim.core.*;
+
+/**
+ * <p>
+ * This class implements the advanced load balancing scheme of
+ * {@link AvgBalance} without global knowledge: instead of computing the
+ * average load with a scan of the whole network, each node estimates it
+ * with an embedded push-pull averaging of the loads (the protocol of
+ * {@link example.aggregation.AverageFunction}), run on the same overlay.
+ * </p>
+ * <p>
+ * During the first {@link #PAR_WARMUP} cycles the nodes only exchange their
+ * estimates. Since the load is not moved in the meantime, the estimates
+ * converge to the average load. Afterwards each node keeps averaging the
+ * estimates, and it exchanges load with the neighbor farthest from its own
+ * load among those that are on the other side of its estimate. As in
+ * {@link AvgBalance}, a node whose load is within 1 of its estimate exits
+ * from the overlay.
+ * </p>
+ * <p>
+ * The neighbors are examined with a single scan per cycle, since their
+ * loads change with the transfers they perform with their other neighbors,
+ * so a node cannot rely on what it saw in previous cycles.
+ * </p>
+ */
+public class GossipBalance extends BasicBalance {
+
+    // ------------------------------------------------------------------------
+    // Parameters
+    // ------------------------------------------------------------------------
+
+    /**
+     * Number of cycles in which only the average is estimated. Defaults to 20,
+     * which is enough for the estimates of a random overlay to get within 1
+     * of the average for a peak distribution of 10000.
+     * 
+     * @config
+     */
+    protected static final String PAR_WARMUP = "warmup";
+
+    // ------------------------------------------------------------------------
+    // Fields
+    // ------------------------------------------------------------------------
+
+    /** Obtained from config property {@link #PAR_WARMUP}. */
+    private final long warmup;
+
+    /** The local estimate of the average load. */
+    protected double estimate;
+
+    /** Whether the estimate has been initialized with the load. */
+    private boolean started = false;
+
+    // ------------------------------------------------------------------------
+    // Initialization
+    // ------------------------------------------------------------------------
+
+    /**
+     * Standard constructor that reads the configuration parameters. Invoked by
+     * the simulation engine.
+     * 
+     * @param prefix
+     *            the configuration prefix for this class.
+     */
+    public GossipBalance(String prefix) {
+        super(prefix);
+        warmup = Configuration.getLong(prefix + "." + PAR_WARMUP, 20);
+    }
+
+    // The clone() method is inherited.
+
+    // ------------------------------------------------------------------------
+    // Methods
+    // ------------------------------------------------------------------------
+
+    /** Returns the local estimate of the average load. */
+    public double getEstimate() {
+        start();
+        return estimate;
+    }
+
+    // --------------------------------------------------------------------
+
+    /**
+     * Initializes the estimate with the load the first time the node takes
+     * part in the protocol.
+     */
+    private void start() {
+        if (!started) {
+            estimate = value;
+            started = true;
+        }
+    }
+
+    // --------------------------------------------------------------------
+
+    /**
+     * Averages the estimate with a random neighbor, then, after the warm-up
+     * period, performs a load transfer as {@link AvgBalance} does.
+     * 
+     * @param node
+     *            the node on which this component is run.
+     * @param protocolID
+     *            the id of this protocol in the protocol array.
+     */
+    public void nextCycle(Node node, int protocolID) {
+        int linkableID = FastConfig.getLinkable(protocolID);
+        Linkable linkable = (Linkable) node.getProtocol(linkableID);
+        start();
+
+        // the embedded aggregation
+        if (linkable.degree() > 0) {
+            Node peer = linkable.getNeighbor(CommonState.r.nextInt(linkable
+                    .degree()));
+            if (peer.isUp()) {
+                GossipBalance n = (GossipBalance) peer.getProtocol(protocolID);
+                n.start();
+                double mean = (estimate + n.estimate) / 2;
+                estimate = mean;
+                n.estimate = mean;
+            }
+        }
+
+        if (CommonState.getTime() < warmup)
+            return;
+
+        if (Math.abs(value - estimate) < 1) {
+            AvgBalance.suspend(node);
+            return;
+        }
+
+        if (quota == 0)
+            return; // skip this node if it has no quota
+
+        GossipBalance neighbor = null;
+        Node neighborNode = null;
+        double maxdiff = 0.0;
+        for (int i = 0; i < linkable.degree(); ++i) {
+            Node peer = linkable.getNeighbor(i);
+            if (!peer.isUp()) // only if the neighbor is active
+                continue;
+            GossipBalance n = (GossipBalance) peer.getProtocol(protocolID);
+            if (n.quota == 0)
+                continue;
+            if (value >= estimate ? n.value >= estimate : n.value <= estimate)
+                continue;
+            double d = Math.abs(value - n.value);
+            if (d > maxdiff) {
+                neighbor = n;
+                neighborNode = peer;
+                maxdiff = d;
+            }
+        }
+        if (neighbor == null)
+            return;
+
+        doTransfer(neighbor);
+        if (Math.abs(value - estimate) < 1)
+            AvgBalance.suspend(node);
+        if (Math.abs(neighbor.value - neighbor.estimate) < 1)
+            AvgBalance.suspend(neighborNode);
+    }
+
+}
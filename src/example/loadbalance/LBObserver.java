@@ -103,7 +103,7 @@ public class LBObserver implements Control {
         int count_zero = 0;
 
         if (show_values) {
-            buf.append(name+": ");
+            buf.append(name).append(": ");
         }
 
         /* Compute max, min, average */
@@ -118,7 +118,7 @@ public class LBObserver implements Control {
             }
             // shows the values of load at each node:
             if (show_values) {
-                buf.append(value+":");
+                buf.append(value).append(':');
             }
             
         }
@@ -59,6 +59,9 @@ public class QuotaObserver implements Control {
     /** Protocol identifier, obtained from config property {@link #PAR_PROT}. */
     private final int pid;
 
+    /** The statistics of the quotas, reused at each execution. */
+    private final IncrementalStats stats = new IncrementalStats();
+
     // ///////////////////////////////////////////////////////////////////////
     // Constructor
     // ///////////////////////////////////////////////////////////////////////
@@ -81,10 +84,11 @@ public class QuotaObserver implements Control {
 
     // Comment inherited from interface
     public boolean execute() {
-        IncrementalStats stats = new IncrementalStats();
+        stats.reset();
         long time = peersim.core.CommonState.getTime();
 
-        for (int i = 0; i < Network.size(); i++) {
+        final int len = Network.size();
+        for (int i = 0; i < len; i++) {
             BasicBalance protocol = (BasicBalance) Network.get(i).getProtocol(
                     pid);
             stats.add(protocol.quota);
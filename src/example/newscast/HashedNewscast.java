@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package example.newscast;
+
+import java.util.Arrays;
+
+import peersim.cdsim.*;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.util.CounterRandom;
+
+/**
+ * A variant of {@link SimpleNewscast} whose merge takes time linear in the
+ * cache size. It behaves exactly like {@link SimpleNewscast}: given the
+ * same random numbers, the caches are the same after each cycle.
+ * <p>
+ * {@link SimpleNewscast} checks for duplicates with a linear scan of the
+ * merged entries, so a merge takes time quadratic in the cache size. Here,
+ * for caches larger than {@value #SCAN_MAX}, the merged entries are also
+ * put in a small open addressing hash set, which is cleared in constant
+ * time by incrementing a generation counter, so nothing is allocated by a
+ * merge. For smaller caches the scan is faster than hashing. The merge buffers are kept per
+ * thread instead of in static fields, so different threads can run
+ * merges at the same time, and the number of entries of each cache is
+ * stored instead of being found by scanning for the first null entry.
+ * The entries still refer to the nodes themselves and not to their
+ * indexes, which change when nodes are removed from the network.
+ */
+public class HashedNewscast implements CDProtocol, Linkable
+{
+
+// =============== static fields =======================================
+// =====================================================================
+
+/**
+ * Cache size.
+ * @config
+ */
+private static final String PAR_CACHE = "cache";
+
+/**
+ * Up to this cache size, duplicates are found by scanning the merged
+ * entries, which is faster than hashing for short caches.
+ */
+private static final int SCAN_MAX = 64;
+
+/** The merge buffers of the current thread */
+private static final ThreadLocal<Buffers> buffers =
+	new ThreadLocal<Buffers>() {
+		protected Buffers initialValue()
+		{
+			return new Buffers();
+		}
+	};
+
+// =================== fields ==========================================
+// =====================================================================
+
+/** Neighbors currently in the cache */
+private Node[] cache;
+
+/** Time stamps currently in the cache */
+private int[] tstamps;
+
+/** The number of entries in the cache */
+private int size = 0;
+
+// ====================== initialization ===============================
+// =====================================================================
+
+public HashedNewscast(String n)
+{
+	final int cachesize = Configuration.getInt(n + "." + PAR_CACHE);
+	cache = new Node[cachesize];
+	tstamps = new int[cachesize];
+}
+
+// ---------------------------------------------------------------------
+
+public Object clone()
+{
+	HashedNewscast sn = null;
+	try { sn = (HashedNewscast) super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	sn.cache = cache.clone();
+	sn.tstamps = tstamps.clone();
+	return sn;
+}
+
+// ====================== helper methods ==============================
+// ====================================================================
+
+/**
+ * Returns a peer node which is accessible (has ok fail state), as
+ * {@link SimpleNewscast} does.
+ * @return null if no accessible peers are found, the peer otherwise.
+ */
+private Node getPeer()
+{
+	final int d = size;
+	if (d == 0)
+		return null;
+	int index = CommonState.r.nextInt(d);
+	Node result = cache[index];
+
+	if (result.isUp())
+		return result;
+
+	// proceed towards older entries
+	for (int i = index + 1; i < d; ++i)
+		if (cache[i].isUp())
+			return cache[i];
+
+	// proceed towards younger entries
+	for (int i = index - 1; i >= 0; --i)
+		if (cache[i].isUp())
+			return cache[i];
+
+	// no accessible peer
+	return null;
+}
+
+// --------------------------------------------------------------------
+
+/**
+ * Merges the content of two nodes into the given buffers, as
+ * {@link SimpleNewscast} does. The first element of the buffers is
+ * reserved for the freshest entry, and they contain neither peerNode nor
+ * thisNode.
+ * @return the number of entries in the buffers, including the first one
+ */
+private int merge(Node thisNode, HashedNewscast peer, Node peerNode,
+		Buffers b)
+{
+	int i1 = 0; /* Index first cache */
+	int i2 = 0; /* Index second cache */
+	boolean first;
+	boolean lastTieWinner = CommonState.r.nextBoolean();
+	int i = 1; // Index new cache. first element set in the end
+	final int d1 = size;
+	final int d2 = peer.size;
+	final int c = cache.length;
+	b.clear(c);
+	final Node[] tn = b.tn;
+	final int[] ts = b.ts;
+
+	// merging two arrays
+	while (i < c && i1 < d1 && i2 < d2) {
+		if (tstamps[i1] == peer.tstamps[i2]) {
+			lastTieWinner = first = !lastTieWinner;
+		} else {
+			first = tstamps[i1] > peer.tstamps[i2];
+		}
+
+		if (first) {
+			if (cache[i1] != peerNode && b.add(cache[i1], i)) {
+				tn[i] = cache[i1];
+				ts[i] = tstamps[i1];
+				i++;
+			}
+			i1++;
+		} else {
+			if (peer.cache[i2] != thisNode && b.add(peer.cache[i2], i)) {
+				tn[i] = peer.cache[i2];
+				ts[i] = peer.tstamps[i2];
+				i++;
+			}
+			i2++;
+		}
+	}
+
+	// if one of the original arrays got fully copied and there is still
+	// place, fill the rest with the other array
+	for (; i1 < d1 && i < c; ++i1) {
+		if (cache[i1] != peerNode && b.add(cache[i1], i)) {
+			tn[i] = cache[i1];
+			ts[i] = tstamps[i1];
+			i++;
+		}
+	}
+	for (; i2 < d2 && i < c; ++i2) {
+		if (peer.cache[i2] != thisNode && b.add(peer.cache[i2], i)) {
+			tn[i] = peer.cache[i2];
+			ts[i] = peer.tstamps[i2];
+			i++;
+		}
+	}
+	return i;
+}
+
+// ====================== Linkable implementation =====================
+// ====================================================================
+
+/**
+ * Does not check if the index is out of bound (larger than
+ * {@link #degree()})
+ */
+public Node getNeighbor(int i)
+{
+	return cache[i];
+}
+
+// --------------------------------------------------------------------
+
+/** Might be less than cache size. */
+public int degree()
+{
+	return size;
+}
+
+// --------------------------------------------------------------------
+
+public boolean addNeighbor(Node node)
+{
+	if (contains(node))
+		return false;
+	if (size == cache.length)
+		throw new IndexOutOfBoundsException();
+
+	int i = size;
+	if (i > 0 && tstamps[i - 1] < CommonState.getIntTime()) {
+		// we need to insert to the first position
+		System.arraycopy(cache, 0, cache, 1, size);
+		System.arraycopy(tstamps, 0, tstamps, 1, size);
+		i = 0;
+	}
+	cache[i] = node;
+	tstamps[i] = CommonState.getIntTime();
+	size++;
+	return true;
+}
+
+// --------------------------------------------------------------------
+
+public void pack()
+{
+}
+
+// --------------------------------------------------------------------
+
+public boolean contains(Node n)
+{
+	for (int i = 0; i < size; i++) {
+		if (cache[i] == n)
+			return true;
+	}
+	return false;
+}
+
+// --------------------------------------------------------------------
+
+public void onKill()
+{
+	cache = null;
+	tstamps = null;
+	size = 0;
+}
+
+// ===================== CDProtocol implementations ===================
+// ====================================================================
+
+public void nextCycle(Node n, int protocolID)
+{
+	Node peerNode = getPeer();
+	if (peerNode == null) {
+		System.err.println("Newscast: no accessible peer");
+		return;
+	}
+
+	HashedNewscast peer = (HashedNewscast) (peerNode.getProtocol(protocolID));
+	final Buffers b = buffers.get();
+	final int len = merge(n, peer, peerNode, b);
+
+	// set new cache in this and peer
+	System.arraycopy(b.tn, 1, cache, 1, len - 1);
+	System.arraycopy(b.ts, 1, tstamps, 1, len - 1);
+	System.arraycopy(b.tn, 1, peer.cache, 1, len - 1);
+	System.arraycopy(b.ts, 1, peer.tstamps, 1, len - 1);
+	for (int i = len; i < size; ++i) cache[i] = null;
+	for (int i = len; i < peer.size; ++i) peer.cache[i] = null;
+	size = peer.size = len;
+
+	// set first element
+	tstamps[0] = peer.tstamps[0] = CommonState.getIntTime();
+	cache[0] = peerNode;
+	peer.cache[0] = n;
+}
+
+// ===================== other public methods =========================
+// ====================================================================
+
+public String toString()
+{
+	if( cache == null ) return "DEAD!";
+	
+	StringBuilder sb = new StringBuilder();
+
+	for (int i = 0; i < size; ++i) {
+		sb.append(" (" + cache[i].getIndex() + "," + tstamps[i] + ")");
+	}
+	return sb.toString();
+}
+
+// ===================== inner classes ================================
+// ====================================================================
+
+/**
+ * The buffers of a merge, and a hash set of the nodes in them.
+ */
+private static class Buffers
+{
+	Node[] tn = new Node[0];
+	int[] ts = new int[0];
+	/** The hash set, with the generation in which each slot was used */
+	Node[] keys = new Node[0];
+	int[] used = new int[0];
+	int generation = 0;
+	int mask = 0;
+
+	/** True if duplicates are found by scanning */
+	boolean scan;
+
+	/** Empties the set and makes room for c entries */
+	void clear(int c)
+	{
+		if (tn.length < c) {
+			tn = new Node[c];
+			ts = new int[c];
+		}
+		scan = c <= SCAN_MAX;
+		if (scan) return;
+		if (keys.length < 2 * c) {
+			// load factor at most 1/2
+			int cap = Integer.highestOneBit(c) * 4;
+			keys = new Node[cap];
+			used = new int[cap];
+			mask = cap - 1;
+			generation = 0;
+		}
+		if (++generation == 0) {
+			// wrapped around: forget all the generations
+			Arrays.fill(used, 0);
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Adds the node to the set, returns false if it was already there.
+	 * The first size entries of tn are the ones added so far.
+	 */
+	boolean add(Node n, int size)
+	{
+		if (scan) {
+			for (int i = 1; i < size; i++)
+				if (tn[i] == n) return false;
+			return true;
+		}
+		int h = (int) CounterRandom.mix(n.getID()) & mask;
+		while (used[h] == generation) {
+			if (keys[h] == n) return false;
+			h = (h + 1) & mask;
+		}
+		used[h] = generation;
+		keys[h] = n;
+		return true;
+	}
+}
+
+}
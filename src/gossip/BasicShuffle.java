@@ -7,9 +7,14 @@ import peersim.cdsim.CDProtocol;
 import peersim.config.Configuration;
 import peersim.core.CommonState;
 import peersim.core.Linkable;
+import peersim.core.Metrics;
 import peersim.core.Node;
+import peersim.core.RandomStreams;
 import peersim.edsim.EDProtocol;
+import peersim.edsim.EDSimulator;
+import peersim.edsim.Timer;
 import peersim.transport.Transport;
+import peersim.util.ExtendedRandom;
 
 
 /**
@@ -40,6 +45,8 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 	private static final String PAR_CACHE = "cacheSize";
 	private static final String PAR_L = "shuffleLength";
 	private static final String PAR_TRANSPORT = "transport";
+	private static final String PAR_CONCURRENT = "concurrent";
+	private static final String PAR_TIMEOUT = "timeout";
 
 	private final int tid;
 
@@ -58,6 +65,39 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 	// To check intermediate waiting state between SHUFFLE_REQUEST and SHUFFLE_REPLY / SHUFFLE_REJECTED
 	private boolean removedFromCache;
 
+	// The time at which the pending shuffle request was sent
+	private long requestTime;
+
+	// If true, a node serves incoming requests while its own request is
+	// pending, instead of rejecting them. The entries sent in the pending
+	// exchange are then tracked by the exchange itself, not by Entry.sentTo.
+	private final boolean concurrent;
+
+	// An exchange not answered within this time is abandoned, and the peer
+	// is evicted from the cache; -1 if exchanges never time out, the default
+	// unless in concurrent mode, where it is two periods
+	private final long timeout;
+
+	// Expires when the pending exchange times out
+	private Timer timer;
+
+	// The source of the random draws: a stream of this node if
+	// random.streams is defined, CommonState.r otherwise (see RandomStreams)
+	private final boolean streams;
+	private ExtendedRandom random;
+
+	// The exchange initiated by this node: its identifier, carried by the
+	// messages, the node contacted and, in concurrent mode, the entries sent
+	private long exchangeId;
+	private Node exchangePeer;
+	private List<Entry> exchangeSent;
+
+	// Messages sent and received by type, and the time between a request and
+	// its answer, published only if Metrics.enabled
+	private static Metrics.Counter[] sentMetrics, receivedMetrics;
+	private static Metrics.Histogram roundTripMetric;
+	private static Metrics.Counter timeoutMetric;
+
 
 	/**
 	 * Constructor that initializes the relevant simulation parameters and
@@ -72,8 +112,31 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 		this.maxSize = Configuration.getInt(n + "." + PAR_CACHE);
 		this.l = Configuration.getInt(n + "." + PAR_L);
 		this.tid = Configuration.getPid(n + "." + PAR_TRANSPORT);
+		this.concurrent = Configuration.contains(n + "." + PAR_CONCURRENT);
+		this.timeout = Configuration.getLong(n + "." + PAR_TIMEOUT,
+				concurrent ? 2 * Configuration.getLong(n + ".step", 1) : -1);
+		this.timer = new Timer();
+		this.streams = RandomStreams.isEnabled();
 
 		cache = new ArrayList<Entry>(maxSize);
+		if (Metrics.enabled) publishMetrics();
+	}
+
+	private static void publishMetrics() {
+		MessageType[] types = MessageType.values();
+		sentMetrics = new Metrics.Counter[types.length];
+		receivedMetrics = new Metrics.Counter[types.length];
+		for (MessageType t : types) {
+			sentMetrics[t.ordinal()] = Metrics.counter("gossip_messages_sent_total",
+					"Shuffle messages sent", "type", t.name());
+			receivedMetrics[t.ordinal()] = Metrics.counter("gossip_messages_received_total",
+					"Shuffle messages received", "type", t.name());
+		}
+		roundTripMetric = Metrics.histogram("gossip_shuffle_round_trip",
+				"Simulated time between a shuffle request and its answer",
+				new double[] { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 });
+		timeoutMetric = Metrics.counter("gossip_exchanges_timed_out_total",
+				"Shuffle exchanges abandoned without an answer");
 	}
 
 	/* START YOUR IMPLEMENTATION FROM HERE
@@ -93,14 +156,20 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 		
 		// 1. If P is waiting for a response from a shuffling operation initiated in a previous cycle, return;
 		// 2. If P's cache is empty, return;
+		//    (a pending exchange that times out is abandoned in processEvent;
+		//    if the timer expired while P was down, it was not delivered, and
+		//    the exchange is abandoned here)
+		if(awaitingReply && timeout >= 0 && !timer.isArmed()) abandonExchange();
 		if(awaitingReply || cache.isEmpty()) return;
 
 
 		// 3. Select a random neighbor (named Q) from P's cache to initiate the shuffling;
 		//	  - You should use the simulator's common random source to produce a random number: CommonState.r.nextInt(cache.size())
+		//	    (or the stream of the node, see random())
 		List<Entry> tempCache = new ArrayList<Entry>(cache);
+		ExtendedRandom r = random(thisNode, protocolID);
 
-		int randomIndex = CommonState.r.nextInt(cache.size());
+		int randomIndex = r.nextInt(cache.size());
 		Entry q = tempCache.remove(randomIndex);
 
 
@@ -115,12 +184,15 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 		//	  - l is the length of the shuffle exchange
 		//    - Do not add Q to this subset
 		List<Entry> subset = new ArrayList<Entry>(l);
+		exchangePeer = q.getNode();
+		if (concurrent) exchangeSent = new ArrayList<Entry>(l);
 
 		for (int i = 0; i < l - 1 && !tempCache.isEmpty(); ++i) {
-			randomIndex = CommonState.r.nextInt(tempCache.size());
+			randomIndex = r.nextInt(tempCache.size());
 
 			Entry nodeToAdd = tempCache.remove(randomIndex);
-			nodeToAdd.setSentTo(q.getNode());
+			if (concurrent) exchangeSent.add(nodeToAdd);
+			else nodeToAdd.setSentTo(q.getNode());
 
 			subset.add(new Entry(nodeToAdd.getNode()));
 		}
@@ -135,12 +207,16 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 		//	  - Example code for sending a message:
         GossipMessage message = new GossipMessage(thisNode, subset);
         message.setType(MessageType.SHUFFLE_REQUEST);
+        message.setExchangeId(++exchangeId);
         Transport tr = (Transport) thisNode.getProtocol(tid);
         tr.send(thisNode, q.getNode(), message, protocolID);
+		if (Metrics.enabled) sentMetrics[MessageType.SHUFFLE_REQUEST.ordinal()].inc();
 
 
 		// 8. From this point on P is waiting for Q's response and will not initiate a new shuffle operation;
 		awaitingReply = true;
+		requestTime = CommonState.getTime();
+		if (timeout >= 0) EDSimulator.setTimer(timeout, timer, thisNode, protocolID);
 		// The response from Q will be handled by the method processEvent.
 	}
 
@@ -153,6 +229,12 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 	 */
 	@Override
     public void processEvent(Node thisNode, int pid, Object event) {
+        // If the exchange initiated by this node has timed out, abandon it
+        if (event instanceof Timer) {
+            abandonExchange();
+            return;
+        }
+
         // Let's name this node as Q;
         // Q receives a message from P;
         //	  - Cast the event object to a message:
@@ -161,30 +243,37 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
         Node thatNode = message.getNode();
         GossipMessage replyMessage;
         Transport tr = (Transport) thisNode.getProtocol(tid);
+		if (Metrics.enabled) receivedMetrics[message.getType().ordinal()].inc();
 
 
         switch (message.getType()) {
             // If the message is a shuffle request:
             case SHUFFLE_REQUEST:
 				//	  1. If Q is waiting for a response from a shuffling initiated in a previous cycle, send back to P a message rejecting the shuffle request;
-				if (awaitingReply) {
+				//	     (not in concurrent mode)
+				if (awaitingReply && !concurrent) {
 					replyMessage = new GossipMessage(thisNode, new ArrayList<>());
 					replyMessage.setType(MessageType.SHUFFLE_REJECTED);
+					replyMessage.setExchangeId(message.getExchangeId());
 					tr.send(thisNode, thatNode, replyMessage, pid);
+					if (Metrics.enabled) sentMetrics[MessageType.SHUFFLE_REJECTED.ordinal()].inc();
 					return;
 				}
 
 				//	  2. Q selects a random subset of size l of its own neighbors;
 				List<Entry> subset = new ArrayList<Entry>(l);
+				List<Entry> sent = concurrent ? new ArrayList<Entry>(l) : null;
 
 				List<Entry> tempCache = new ArrayList<Entry>(cache);
 				tempCache.remove(new Entry(thatNode));
 
+				ExtendedRandom r = random(thisNode, pid);
 				for (int i = 0; i < l && !tempCache.isEmpty(); i++) {
-					int randomNumber = CommonState.r.nextInt(tempCache.size());
+					int randomNumber = r.nextInt(tempCache.size());
 
 					Entry neighbor = tempCache.remove(randomNumber);
-					neighbor.setSentTo(thatNode);
+					if (concurrent) sent.add(neighbor);
+					else neighbor.setSentTo(thatNode);
 					subset.add(new Entry(neighbor.getNode()));
 				}
 
@@ -192,30 +281,42 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 				//	  3. Q reply P's shuffle request by sending back its own subset;
 				replyMessage = new GossipMessage(thisNode, subset);
 				replyMessage.setType(MessageType.SHUFFLE_REPLY);
+				replyMessage.setExchangeId(message.getExchangeId());
 				tr.send(thisNode, thatNode, replyMessage, pid);
+				if (Metrics.enabled) sentMetrics[MessageType.SHUFFLE_REPLY.ordinal()].inc();
 
 
 				//	  4. Q updates its cache to include the neighbors sent by P:
 				//		 - No neighbor appears twice in the cache
 				//		 - Use empty cache slots to add the new entries
 				//		 - If the cache is full, you can replace entries among the ones sent to P with the new ones
-				updateCache(thatNode, shuffleList);
+				updateCache(thatNode, shuffleList, sent);
 				break;
 
             // If the message is a shuffle reply:
             case SHUFFLE_REPLY:
 //				System.out.printf("Event: %s, NodeID: %s, Shuffle/Nbs: %s/%s\n", message.getType(), thisNode.getID(), shuffleList.size(),degree());
                 //	  1. In this case Q initiated a shuffle with P and is receiving a response containing a subset of P's neighbors
+                //	     A reply to an abandoned exchange is ignored.
+				if (!awaitingReply || message.getExchangeId() != exchangeId) break;
+				timer.cancel();
+
                 //	  2. Q updates its cache to include the neighbors sent by P:
-				updateCache(thatNode, shuffleList);
+				updateCache(thatNode, shuffleList, concurrent ? exchangeSent : null);
 
 
                 //	  3. Q is no longer waiting for a shuffle reply;
                 awaitingReply = false;
+				if (Metrics.enabled) roundTripMetric.observe(CommonState.getTime() - requestTime);
                 removedFromCache = false;
 
-				for (Entry e : cache) {
-					e.setSentTo(null);
+				exchangePeer = null;
+				if (concurrent) {
+					exchangeSent = null;
+				} else {
+					for (Entry e : cache) {
+						e.setSentTo(null);
+					}
 				}
 
                 break;
@@ -223,6 +324,9 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
             // If the message is a shuffle rejection:
             case SHUFFLE_REJECTED:
 //				System.out.printf("Event: %s, NodeID: %s\n", message.getType(), thisNode.getID());
+				if (!awaitingReply || message.getExchangeId() != exchangeId) break;
+				timer.cancel();
+				exchangePeer = null;
 
                 //	  1. If P was originally removed from Q's cache, add it again to the cache.
 				for (Entry e : cache) {
@@ -235,6 +339,7 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 				}
                 //	  2. Q is no longer waiting for a shuffle reply;
                 awaitingReply = false;
+				if (Metrics.enabled) roundTripMetric.observe(CommonState.getTime() - requestTime);
                 break;
 
             default:
@@ -243,7 +348,12 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
     }
 
 
-	private void updateCache(Node sender, List<Entry> shuffleList) {
+	/*
+	 * The entries of the cache that can be replaced are those sent to the
+	 * sender: in concurrent mode they are given in sent, otherwise they are
+	 * marked by Entry.sentTo.
+	 */
+	private void updateCache(Node sender, List<Entry> shuffleList, List<Entry> sent) {
 		ArrayList<Integer> swapIndices = new ArrayList<>();
 		List<Entry> cacheCopy = new ArrayList<>(cache.size());
 
@@ -251,6 +361,16 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 			Entry currentNode = cache.get(i);
 			cacheCopy.add(currentNode);
 
+			if (sent != null) {
+				for (Entry e : sent) {
+					if (e == currentNode) {
+						swapIndices.add(i);
+						break;
+					}
+				}
+				continue;
+			}
+
 			Node sentTo = currentNode.getSentTo();
 			if (sentTo != null && sender.getID() == sentTo.getID()) {
 				swapIndices.add(i);
@@ -278,6 +398,77 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 
 
 
+	/*
+	 * Returns the source of the random draws of this node.
+	 */
+	private ExtendedRandom random(Node thisNode, int pid) {
+		if (!streams) return CommonState.r;
+		if (random == null) random = RandomStreams.forNode(thisNode, pid, 0);
+		return random;
+	}
+
+	/*
+	 * Abandons the pending exchange after its timeout. The peer, which
+	 * failed or lost a message, is evicted from the cache; a reply arriving
+	 * later is ignored.
+	 */
+	private void abandonExchange() {
+		cache.remove(new Entry(exchangePeer));
+		if (!concurrent) {
+			for (Entry e : cache) {
+				e.setSentTo(null);
+			}
+		}
+		removedFromCache = false;
+		awaitingReply = false;
+		exchangePeer = null;
+		exchangeSent = null;
+		if (Metrics.enabled) timeoutMetric.inc();
+	}
+
+	/* State of the protocol, for the checkpoint codec (see ShuffleCodec) */
+
+	List<Entry> getCache() {
+		return cache;
+	}
+
+	boolean isAwaitingReply() {
+		return awaitingReply;
+	}
+
+	boolean isRemovedFromCache() {
+		return removedFromCache;
+	}
+
+	long getRequestTime() {
+		return requestTime;
+	}
+
+	void setWaitingState(boolean awaitingReply, boolean removedFromCache, long requestTime) {
+		this.awaitingReply = awaitingReply;
+		this.removedFromCache = removedFromCache;
+		this.requestTime = requestTime;
+	}
+
+	long getExchangeId() {
+		return exchangeId;
+	}
+
+	Node getExchangePeer() {
+		return exchangePeer;
+	}
+
+	List<Entry> getExchangeSent() {
+		return exchangeSent;
+	}
+
+	void setExchange(long id, Node peer, List<Entry> sent) {
+		exchangeId = id;
+		exchangePeer = peer;
+		exchangeSent = sent;
+	}
+
+
 	/* The following methods are used only by the simulator and don't need to be changed */
 	
 	@Override
@@ -318,6 +509,8 @@ public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
 			
 		} 
 		gossip.cache = new ArrayList<Entry>();
+		gossip.timer = new Timer();
+		gossip.random = null;
 
 		return gossip;
 	}
@@ -0,0 +1,65 @@
+package gossip;
+
+import peersim.core.Node;
+
+/**
+ * The message of {@link CyclonShuffle}. Each node owns a single message,
+ * that carries its shuffle request and is sent back by the peer with the
+ * reply, so no objects are allocated per exchange.
+ */
+public class CyclonMessage {
+
+	// The node that owns this message and initiated the exchange
+	private final Node origin;
+
+	private MessageType type;
+
+	// The entries carried, with their ages
+	private final Node[] nodes;
+	private final int[] ages;
+	private int size;
+
+	public CyclonMessage(Node origin, int length) {
+		this.origin = origin;
+		this.nodes = new Node[length];
+		this.ages = new int[length];
+	}
+
+	public Node getOrigin() {
+		return origin;
+	}
+
+	public MessageType getType() {
+		return type;
+	}
+
+	/**
+	 * Empties the message and sets its type.
+	 */
+	public void reset(MessageType type) {
+		this.type = type;
+		for (int i = 0; i < size; i++) nodes[i] = null;
+		size = 0;
+	}
+
+	/**
+	 * Appends an entry; the message must not be full.
+	 */
+	public void add(Node node, int age) {
+		nodes[size] = node;
+		ages[size] = age;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Node getNode(int i) {
+		return nodes[i];
+	}
+
+	public int getAge(int i) {
+		return ages[i];
+	}
+}
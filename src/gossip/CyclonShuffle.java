@@ -0,0 +1,398 @@
+package gossip;
+
+import peersim.cdsim.CDProtocol;
+import peersim.config.Configuration;
+import peersim.core.CommonState;
+import peersim.core.Linkable;
+import peersim.core.Node;
+import peersim.core.RandomStreams;
+import peersim.edsim.EDProtocol;
+import peersim.transport.Transport;
+import peersim.util.ExtendedRandom;
+
+
+/**
+ * A variant of {@link BasicShuffle} following Cyclon (Voulgaris et al.,
+ * "CYCLON: Inexpensive Membership Management for Unstructured P2P
+ * Overlays"). Each entry of the cache has an age, that grows by one every
+ * cycle, and a node shuffles with its oldest neighbor instead of a random
+ * one. Since the initiator drops the entry of the peer and sends a fresh
+ * entry of itself, the nodes that are contacted most are also those that
+ * are advertised least, so an overlay bootstrapped as a star (see
+ * scripts/ShuffleStar50.txt) spreads quickly.
+ *
+ * The exchange:
+ * 1. P increases the ages of its entries, removes the oldest one, Q, and
+ *    sends to Q an entry of itself with age 0 and up to l-1 random entries.
+ * 2. Q replies with up to l random entries, not pointing to P, and merges
+ *    the entries received. A node never refuses an exchange.
+ * 3. P merges the entries of the reply.
+ * In a merge, the entries pointing to the node itself or already in the
+ * cache are discarded. The others fill the empty slots first, then the
+ * slots of the entries sent to the peer. Finally they replace the oldest
+ * entries of the cache, found with a heap over the ages, if they are
+ * younger.
+ *
+ * The cache is kept in primitive arrays, and each node owns a single
+ * {@link CyclonMessage} that the peer sends back with the reply, so the
+ * protocol allocates no objects per exchange. If the reply has not arrived
+ * one cycle after the request, the message is considered lost and a new
+ * one is allocated; a late reply is then ignored.
+ */
+public class CyclonShuffle implements Linkable, EDProtocol, CDProtocol {
+
+	private static final String PAR_CACHE = "cacheSize";
+	private static final String PAR_L = "shuffleLength";
+	private static final String PAR_TRANSPORT = "transport";
+
+	private final int tid;
+
+	// The maximum size of the cache
+	private final int maxSize;
+
+	// The maximum length of the shuffle exchange
+	private final int l;
+
+	// The cache: neighbors and their ages
+	private Node[] nodes;
+	private int[] ages;
+	private int size;
+
+	// The message of the exchanges initiated by this node
+	private CyclonMessage message;
+
+	// Whether the message is in flight, and whether a cycle has passed since
+	private boolean pending;
+	private boolean late;
+
+	// The slots of the entries sent in the pending request, and their nodes
+	private int[] sentSlots;
+	private Node[] sentNodes;
+	private int sent;
+
+	// The source of the random draws: a stream of this node if
+	// random.streams is defined, CommonState.r otherwise (see RandomStreams)
+	private final boolean streams;
+	private ExtendedRandom random;
+
+	// Scratch arrays for the exchanges; the simulation runs in one thread
+	// per experiment, so they are shared by all the nodes of a thread
+	private static final ThreadLocal<Buffers> buffers =
+		new ThreadLocal<Buffers>() {
+			protected Buffers initialValue() {
+				return new Buffers();
+			}
+		};
+
+
+	/**
+	 * Constructor that initializes the relevant simulation parameters and
+	 * other class variables.
+	 *
+	 * @param n simulation parameters
+	 */
+	public CyclonShuffle(String n)
+	{
+		this.maxSize = Configuration.getInt(n + "." + PAR_CACHE);
+		this.l = Configuration.getInt(n + "." + PAR_L);
+		this.tid = Configuration.getPid(n + "." + PAR_TRANSPORT);
+		this.streams = RandomStreams.isEnabled();
+		init();
+	}
+
+	private void init() {
+		nodes = new Node[maxSize];
+		ages = new int[maxSize];
+		size = 0;
+		sentSlots = new int[l];
+		sentNodes = new Node[l];
+		sent = 0;
+		message = null;
+		pending = false;
+		late = false;
+		random = null;
+	}
+
+	@Override
+	public void nextCycle(Node thisNode, int protocolID) {
+		if (pending) {
+			if (!late) {
+				late = true;
+				return;
+			}
+			// the request or its reply was lost
+			message = null;
+			pending = false;
+		}
+		if (message == null) message = new CyclonMessage(thisNode, l);
+
+		for (int i = 0; i < size; i++) ages[i]++;
+		if (size == 0) return;
+
+		int q = 0;
+		for (int i = 1; i < size; i++) {
+			if (ages[i] > ages[q]) q = i;
+		}
+		Node peer = nodes[q];
+		remove(q);
+
+		message.reset(MessageType.SHUFFLE_REQUEST);
+		message.add(thisNode, 0);
+		sent = select(l - 1, null, sentSlots, random(thisNode, protocolID));
+		for (int k = 0; k < sent; k++) {
+			sentNodes[k] = nodes[sentSlots[k]];
+			message.add(nodes[sentSlots[k]], ages[sentSlots[k]]);
+		}
+
+		Transport tr = (Transport) thisNode.getProtocol(tid);
+		tr.send(thisNode, peer, message, protocolID);
+		pending = true;
+		late = false;
+	}
+
+	@Override
+	public void processEvent(Node thisNode, int pid, Object event) {
+		CyclonMessage msg = (CyclonMessage) event;
+		Node origin = msg.getOrigin();
+		Buffers b = buffers.get();
+		b.ensure(maxSize, l);
+
+		switch (msg.getType()) {
+			case SHUFFLE_REQUEST:
+				int in = msg.size();
+				for (int i = 0; i < in; i++) {
+					b.inNodes[i] = msg.getNode(i);
+					b.inAges[i] = msg.getAge(i);
+				}
+				int out = select(l, origin, b.outSlots, random(thisNode, pid));
+				msg.reset(MessageType.SHUFFLE_REPLY);
+				for (int k = 0; k < out; k++) {
+					b.outNodes[k] = nodes[b.outSlots[k]];
+					msg.add(nodes[b.outSlots[k]], ages[b.outSlots[k]]);
+				}
+				Transport tr = (Transport) thisNode.getProtocol(tid);
+				tr.send(thisNode, origin, msg, pid);
+				merge(thisNode, b.inNodes, b.inAges, in, b.outSlots, b.outNodes, out, b);
+				for (int i = 0; i < in; i++) b.inNodes[i] = null;
+				for (int k = 0; k < out; k++) b.outNodes[k] = null;
+				break;
+
+			case SHUFFLE_REPLY:
+				if (msg != message || !pending) return; // a late reply
+				for (int i = 0; i < msg.size(); i++) {
+					b.inNodes[i] = msg.getNode(i);
+					b.inAges[i] = msg.getAge(i);
+				}
+				merge(thisNode, b.inNodes, b.inAges, msg.size(), sentSlots, sentNodes, sent, b);
+				for (int i = 0; i < msg.size(); i++) b.inNodes[i] = null;
+				for (int k = 0; k < sent; k++) sentNodes[k] = null;
+				msg.reset(MessageType.SHUFFLE_REQUEST);
+				pending = false;
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Selects up to k random slots of the cache, skipping the entry of the
+	 * given node, and stores them in slots. Returns their number.
+	 */
+	private int select(int k, Node skip, int[] slots, ExtendedRandom r) {
+		Buffers b = buffers.get();
+		b.ensure(maxSize, l);
+		int[] perm = b.perm;
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (nodes[i] != skip) perm[n++] = i;
+		}
+		int count = Math.min(k, n);
+		for (int i = 0; i < count; i++) {
+			int j = i + r.nextInt(n - i);
+			int t = perm[i];
+			perm[i] = perm[j];
+			perm[j] = t;
+			slots[i] = perm[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Merges the received entries into the cache. The slots given are those
+	 * of the entries sent to the peer; they are used only if they still
+	 * hold the nodes sent.
+	 */
+	private void merge(Node self, Node[] in, int[] inAges, int count,
+			int[] slots, Node[] slotNodes, int sentCount, Buffers b) {
+		int k = 0;
+		int heapSize = -1;
+		b.stamp++;
+		for (int i = 0; i < count; i++) {
+			Node x = in[i];
+			if (x == self || indexOf(x) >= 0) continue;
+
+			int s;
+			if (size < maxSize) {
+				s = size++;
+			} else {
+				while (k < sentCount && (slots[k] >= size || nodes[slots[k]] != slotNodes[k])) k++;
+				if (k < sentCount) {
+					s = slots[k++];
+				} else {
+					if (heapSize < 0) heapSize = buildHeap(b);
+					if (heapSize == 0 || ages[b.heap[0]] <= inAges[i]) continue;
+					s = b.heap[0];
+					heapSize = pop(b.heap, heapSize);
+				}
+			}
+			nodes[s] = x;
+			ages[s] = inAges[i];
+			b.fresh[s] = b.stamp;
+		}
+	}
+
+	/**
+	 * Builds a max-heap on the ages of the slots not written in the current
+	 * merge, and returns its size.
+	 */
+	private int buildHeap(Buffers b) {
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (b.fresh[i] != b.stamp) b.heap[n++] = i;
+		}
+		for (int i = n / 2 - 1; i >= 0; i--) sift(b.heap, i, n);
+		return n;
+	}
+
+	private int pop(int[] heap, int n) {
+		heap[0] = heap[--n];
+		sift(heap, 0, n);
+		return n;
+	}
+
+	private void sift(int[] heap, int i, int n) {
+		int x = heap[i];
+		while (2 * i + 1 < n) {
+			int c = 2 * i + 1;
+			if (c + 1 < n && ages[heap[c + 1]] > ages[heap[c]]) c++;
+			if (ages[heap[c]] <= ages[x]) break;
+			heap[i] = heap[c];
+			i = c;
+		}
+		heap[i] = x;
+	}
+
+	/**
+	 * Returns the source of the random draws of this node.
+	 */
+	private ExtendedRandom random(Node thisNode, int pid) {
+		if (!streams) return CommonState.r;
+		if (random == null) random = RandomStreams.forNode(thisNode, pid, 0);
+		return random;
+	}
+
+	private int indexOf(Node node) {
+		for (int i = 0; i < size; i++) {
+			if (nodes[i] == node) return i;
+		}
+		return -1;
+	}
+
+	private void remove(int i) {
+		size--;
+		nodes[i] = nodes[size];
+		ages[i] = ages[size];
+		nodes[size] = null;
+	}
+
+	/**
+	 * Returns the age of the i-th neighbor.
+	 */
+	public int getAge(int i) {
+		return ages[i];
+	}
+
+	private static class Buffers {
+		int[] perm = new int[0];
+		int[] heap = new int[0];
+		int[] fresh = new int[0];
+		int stamp = 0;
+		int[] outSlots = new int[0];
+		Node[] outNodes = new Node[0];
+		Node[] inNodes = new Node[0];
+		int[] inAges = new int[0];
+
+		void ensure(int c, int l) {
+			if (perm.length < c) {
+				perm = new int[c];
+				heap = new int[c];
+				fresh = new int[c];
+			}
+			if (inNodes.length < l) {
+				outSlots = new int[l];
+				outNodes = new Node[l];
+				inNodes = new Node[l];
+				inAges = new int[l];
+			}
+		}
+	}
+
+
+	/* The following methods are used only by the simulator */
+
+	@Override
+	public int degree() {
+		return size;
+	}
+
+	@Override
+	public Node getNeighbor(int i) {
+		return nodes[i];
+	}
+
+	@Override
+	public boolean addNeighbor(Node neighbour) {
+		if (contains(neighbour))
+			return false;
+
+		if (size >= maxSize)
+			return false;
+
+		nodes[size] = neighbour;
+		ages[size] = 0;
+		size++;
+
+		return true;
+	}
+
+	@Override
+	public boolean contains(Node neighbor) {
+		return indexOf(neighbor) >= 0;
+	}
+
+	public Object clone()
+	{
+		CyclonShuffle gossip = null;
+		try {
+			gossip = (CyclonShuffle) super.clone();
+		} catch( CloneNotSupportedException e ) {
+
+		}
+		gossip.init();
+
+		return gossip;
+	}
+
+	@Override
+	public void onKill() {
+		for (int i = 0; i < size; i++) nodes[i] = null;
+		size = 0;
+		message = null;
+		pending = false;
+	}
+
+	@Override
+	public void pack() {
+	}
+}
@@ -9,6 +9,8 @@ public class GossipMessage {
 	private Node node;
 	private List<Entry> shuffleList;
 	private MessageType type;
+	// Identifies the exchange of a request with its reply
+	private long exchangeId;
 	
 	public GossipMessage(Node node, List<Entry> shuffleList) {
 		super();
@@ -36,5 +38,13 @@ public class GossipMessage {
 	public void setType(MessageType type) {
 		this.type = type;
 	}
+
+	public long getExchangeId() {
+		return exchangeId;
+	}
+
+	public void setExchangeId(long exchangeId) {
+		this.exchangeId = exchangeId;
+	}
 	
 }
@@ -0,0 +1,56 @@
+package gossip;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import peersim.edsim.CheckpointInput;
+import peersim.edsim.CheckpointOutput;
+import peersim.edsim.StateCodec;
+
+/**
+ * Checkpoint codec for the {@link GossipMessage}s in the event queue.
+ * 
+ * @see peersim.edsim.Checkpoint
+ */
+public class GossipMessageCodec implements StateCodec {
+
+	public GossipMessageCodec(String prefix) {
+	}
+
+	@Override
+	public Class<?> getType() {
+		return GossipMessage.class;
+	}
+
+	@Override
+	public void write(Object o, CheckpointOutput out) throws IOException {
+		GossipMessage m = (GossipMessage) o;
+		out.writeNode(m.getNode());
+		out.writeByte(m.getType() == null ? -1 : m.getType().ordinal());
+		out.writeInt(m.getShuffleList().size());
+		for (Entry e : m.getShuffleList()) {
+			out.writeNode(e.getNode());
+			out.writeNode(e.getSentTo());
+		}
+		out.writeLong(m.getExchangeId());
+	}
+
+	@Override
+	public Object read(Object o, CheckpointInput in) throws IOException {
+		GossipMessage m = new GossipMessage(in.readNode(), null);
+		int type = in.readByte();
+		if (type >= 0)
+			m.setType(MessageType.values()[type]);
+		int size = in.readInt();
+		List<Entry> list = new ArrayList<Entry>(size);
+		for (int i = 0; i < size; i++) {
+			Entry e = new Entry(in.readNode());
+			e.setSentTo(in.readNode());
+			list.add(e);
+		}
+		m.setShuffleList(list);
+		m.setExchangeId(in.readLong());
+		return m;
+	}
+}
@@ -0,0 +1,88 @@
+package gossip;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import peersim.core.Node;
+import peersim.edsim.CheckpointInput;
+import peersim.edsim.CheckpointOutput;
+import peersim.edsim.StateCodec;
+
+/**
+ * Checkpoint codec for {@link BasicShuffle}. It saves the cache, including
+ * the node each entry was last sent to, and the waiting state, including the
+ * time of the pending request and the pending exchange of the concurrent
+ * mode. The timeout of the pending exchange is not saved, as timers cannot
+ * be checkpointed.
+ * 
+ * @see peersim.edsim.Checkpoint
+ */
+public class ShuffleCodec implements StateCodec {
+
+	public ShuffleCodec(String prefix) {
+	}
+
+	@Override
+	public Class<?> getType() {
+		return BasicShuffle.class;
+	}
+
+	@Override
+	public void write(Object o, CheckpointOutput out) throws IOException {
+		BasicShuffle bs = (BasicShuffle) o;
+		List<Entry> cache = bs.getCache();
+		out.writeBoolean(bs.isAwaitingReply());
+		out.writeBoolean(bs.isRemovedFromCache());
+		out.writeLong(bs.getRequestTime());
+		out.writeInt(cache.size());
+		for (Entry e : cache) {
+			out.writeNode(e.getNode());
+			out.writeNode(e.getSentTo());
+		}
+		out.writeLong(bs.getExchangeId());
+		out.writeNode(bs.getExchangePeer());
+		List<Entry> sent = bs.getExchangeSent();
+		out.writeInt(sent == null ? -1 : sent.size());
+		if (sent != null) {
+			// the entries sent are written as their positions in the cache,
+			// or -1 if they have left it
+			for (Entry e : sent) {
+				int index = -1;
+				for (int i = 0; i < cache.size(); i++) {
+					if (cache.get(i) == e) index = i;
+				}
+				out.writeInt(index);
+			}
+		}
+	}
+
+	@Override
+	public Object read(Object o, CheckpointInput in) throws IOException {
+		BasicShuffle bs = (BasicShuffle) o;
+		List<Entry> cache = bs.getCache();
+		boolean awaitingReply = in.readBoolean();
+		boolean removedFromCache = in.readBoolean();
+		bs.setWaitingState(awaitingReply, removedFromCache, in.readLong());
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			Entry e = new Entry(in.readNode());
+			e.setSentTo(in.readNode());
+			cache.add(e);
+		}
+		long id = in.readLong();
+		Node peer = in.readNode();
+		int count = in.readInt();
+		List<Entry> sent = null;
+		if (count >= 0) {
+			sent = new ArrayList<Entry>(count);
+			for (int i = 0; i < count; i++) {
+				int index = in.readInt();
+				// an entry that has left the cache can no longer be replaced
+				if (index >= 0) sent.add(cache.get(index));
+			}
+		}
+		bs.setExchange(id, peer, sent);
+		return bs;
+	}
+}
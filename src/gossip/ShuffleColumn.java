@@ -0,0 +1,514 @@
+package gossip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import peersim.cdsim.CDProtocol;
+import peersim.config.Configuration;
+import peersim.config.IllegalParameterException;
+import peersim.core.ColumnarNode;
+import peersim.core.ColumnarProtocol;
+import peersim.core.CommonState;
+import peersim.core.Linkable;
+import peersim.core.Metrics;
+import peersim.core.Node;
+import peersim.core.Protocol;
+import peersim.core.RandomStreams;
+import peersim.edsim.EDProtocol;
+import peersim.edsim.EDSimulator;
+import peersim.edsim.Timer;
+import peersim.transport.Transport;
+import peersim.util.ExtendedRandom;
+
+
+/**
+ * The columnar version of {@link BasicShuffle}, to be used with
+ * {@link ColumnarNode}. It takes the same parameters and exchanges the same
+ * messages, and given the same configuration it produces the same overlay.
+ * Only the default mode is supported: the <code>concurrent</code> parameter
+ * of BasicShuffle is rejected.
+ *
+ * Instead of a list of {@link Entry} objects per node, the cache of each
+ * node is a pair of arrays, the neighbors and the nodes they were last sent
+ * to, and the rest of the state of the nodes (the pending exchange, its
+ * timer and the random stream) is stored in one column per field. The
+ * arrays of a node are allocated when its first neighbor is added.
+ *
+ * The nodes obtain a {@link Shuffle} handle through
+ * {@link ColumnarNode#getProtocol}, for example:
+ * <pre>
+ * network.node ColumnarNode
+ * protocol.gossip gossip.ShuffleColumn
+ * </pre>
+ */
+public class ShuffleColumn implements ColumnarProtocol {
+
+	private static final String PAR_CACHE = "cacheSize";
+	private static final String PAR_L = "shuffleLength";
+	private static final String PAR_TRANSPORT = "transport";
+	private static final String PAR_CONCURRENT = "concurrent";
+	private static final String PAR_TIMEOUT = "timeout";
+
+	private final int tid;
+
+	// The maximum size of the caches
+	private final int maxSize;
+
+	// The maximum length of the shuffle exchange
+	private final int l;
+
+	// An exchange not answered within this time is abandoned, see BasicShuffle
+	private final long timeout;
+
+	// Whether the random draws come from the streams of the nodes
+	private final boolean streams;
+
+	// The caches: the neighbors, the node each one was last sent to, and
+	// their number, indexed by slot
+	private Node[][] cache = new Node[0][];
+	private Node[][] sentTo = new Node[0][];
+	private int[] size = new int[0];
+
+	// The state of the exchange initiated by each node, see BasicShuffle
+	private boolean[] awaitingReply = new boolean[0];
+	private boolean[] removedFromCache = new boolean[0];
+	private long[] requestTime = new long[0];
+	private long[] exchangeId = new long[0];
+	private Node[] exchangePeer = new Node[0];
+
+	// Created when first needed
+	private Timer[] timer = new Timer[0];
+	private ExtendedRandom[] random = new ExtendedRandom[0];
+
+	// Scratch arrays: the positions still to be drawn from a cache, and a
+	// copy of a cache with the entries already matched
+	private int[] positions = new int[0];
+	private Node[] copy = new Node[0];
+	private boolean[] matched = new boolean[0];
+	private int[] swap = new int[0];
+
+	// Messages sent and received by type, and the time between a request and
+	// its answer, published only if Metrics.enabled; the same metrics as
+	// BasicShuffle
+	private static Metrics.Counter[] sentMetrics, receivedMetrics;
+	private static Metrics.Histogram roundTripMetric;
+	private static Metrics.Counter timeoutMetric;
+
+
+	/**
+	 * Constructor that initializes the relevant simulation parameters.
+	 *
+	 * @param n simulation parameters
+	 */
+	public ShuffleColumn(String n)
+	{
+		if (Configuration.contains(n + "." + PAR_CONCURRENT))
+			throw new IllegalParameterException(n + "." + PAR_CONCURRENT,
+					"Not supported by ShuffleColumn, use BasicShuffle");
+		this.maxSize = Configuration.getInt(n + "." + PAR_CACHE);
+		this.l = Configuration.getInt(n + "." + PAR_L);
+		this.tid = Configuration.getPid(n + "." + PAR_TRANSPORT);
+		this.timeout = Configuration.getLong(n + "." + PAR_TIMEOUT, -1);
+		this.streams = RandomStreams.isEnabled();
+		if (Metrics.enabled) publishMetrics();
+	}
+
+	private static void publishMetrics() {
+		MessageType[] types = MessageType.values();
+		sentMetrics = new Metrics.Counter[types.length];
+		receivedMetrics = new Metrics.Counter[types.length];
+		for (MessageType t : types) {
+			sentMetrics[t.ordinal()] = Metrics.counter("gossip_messages_sent_total",
+					"Shuffle messages sent", "type", t.name());
+			receivedMetrics[t.ordinal()] = Metrics.counter("gossip_messages_received_total",
+					"Shuffle messages received", "type", t.name());
+		}
+		roundTripMetric = Metrics.histogram("gossip_shuffle_round_trip",
+				"Simulated time between a shuffle request and its answer",
+				new double[] { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 });
+		timeoutMetric = Metrics.counter("gossip_exchanges_timed_out_total",
+				"Shuffle exchanges abandoned without an answer");
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		cache = Arrays.copyOf(cache, capacity);
+		sentTo = Arrays.copyOf(sentTo, capacity);
+		size = Arrays.copyOf(size, capacity);
+		awaitingReply = Arrays.copyOf(awaitingReply, capacity);
+		removedFromCache = Arrays.copyOf(removedFromCache, capacity);
+		requestTime = Arrays.copyOf(requestTime, capacity);
+		exchangeId = Arrays.copyOf(exchangeId, capacity);
+		exchangePeer = Arrays.copyOf(exchangePeer, capacity);
+		timer = Arrays.copyOf(timer, capacity);
+		random = Arrays.copyOf(random, capacity);
+	}
+
+	@Override
+	public void copy(int from, int to) {
+		size[to] = size[from];
+		cache[to] = (cache[from] == null ? null : cache[from].clone());
+		sentTo[to] = (sentTo[from] == null ? null : sentTo[from].clone());
+		awaitingReply[to] = awaitingReply[from];
+		removedFromCache[to] = removedFromCache[from];
+		requestTime[to] = requestTime[from];
+		exchangeId[to] = exchangeId[from];
+		exchangePeer[to] = exchangePeer[from];
+		timer[to] = null;
+		random[to] = null;
+	}
+
+	@Override
+	public Protocol get(int slot) {
+		return new Shuffle(this, slot);
+	}
+
+	@Override
+	public void kill(int slot) {
+		cache[slot] = null;
+		sentTo[slot] = null;
+		size[slot] = 0;
+		awaitingReply[slot] = false;
+		exchangePeer[slot] = null;
+		timer[slot] = null;
+		random[slot] = null;
+	}
+
+
+	/* The protocol, as in BasicShuffle; s is the slot of the node */
+
+	private void nextCycle(int s, Node thisNode, int protocolID) {
+		// 1. Return if waiting for a reply, or if the cache is empty
+		if (awaitingReply[s] || size[s] == 0) return;
+
+		// 2. Select a random neighbor Q
+		final int n = size[s];
+		final Node[] c = cache[s], st = sentTo[s];
+		ExtendedRandom r = random(s, thisNode, protocolID);
+		int q = r.nextInt(n);
+		Node peer = c[q];
+
+		// 3. If the cache is full, remove Q from the cache
+		int count;
+		if (n >= maxSize) {
+			remove(s, indexOf(s, peer));
+			removedFromCache[s] = true;
+			count = positions(size[s], -1);
+		} else {
+			count = positions(n, q);
+		}
+
+		// 4. Select l - 1 other random neighbors, and P itself
+		List<Entry> subset = new ArrayList<Entry>(l);
+		exchangePeer[s] = peer;
+		for (int i = 0; i < l - 1 && count > 0; ++i) {
+			int j = draw(r, count--);
+			st[j] = peer;
+			subset.add(new Entry(c[j]));
+		}
+		subset.add(new Entry(thisNode));
+
+		// 5. Send the request to Q, and wait for its answer
+		GossipMessage message = new GossipMessage(thisNode, subset);
+		message.setType(MessageType.SHUFFLE_REQUEST);
+		message.setExchangeId(++exchangeId[s]);
+		Transport tr = (Transport) thisNode.getProtocol(tid);
+		tr.send(thisNode, peer, message, protocolID);
+		if (Metrics.enabled) sentMetrics[MessageType.SHUFFLE_REQUEST.ordinal()].inc();
+
+		awaitingReply[s] = true;
+		requestTime[s] = CommonState.getTime();
+		if (timeout >= 0) {
+			if (timer[s] == null) timer[s] = new Timer();
+			EDSimulator.setTimer(timeout, timer[s], thisNode, protocolID);
+		}
+	}
+
+	private void processEvent(int s, Node thisNode, int pid, Object event) {
+		if (event instanceof Timer) {
+			abandonExchange(s);
+			return;
+		}
+
+		GossipMessage message = (GossipMessage) event;
+		List<Entry> shuffleList = message.getShuffleList();
+		Node thatNode = message.getNode();
+		GossipMessage replyMessage;
+		Transport tr = (Transport) thisNode.getProtocol(tid);
+		if (Metrics.enabled) receivedMetrics[message.getType().ordinal()].inc();
+
+		switch (message.getType()) {
+			case SHUFFLE_REQUEST:
+				// 1. Reject the request if waiting for a reply
+				if (awaitingReply[s]) {
+					replyMessage = new GossipMessage(thisNode, new ArrayList<Entry>());
+					replyMessage.setType(MessageType.SHUFFLE_REJECTED);
+					replyMessage.setExchangeId(message.getExchangeId());
+					tr.send(thisNode, thatNode, replyMessage, pid);
+					if (Metrics.enabled) sentMetrics[MessageType.SHUFFLE_REJECTED.ordinal()].inc();
+					return;
+				}
+
+				// 2. Select l random neighbors, other than P
+				List<Entry> subset = new ArrayList<Entry>(l);
+				int count = positions(size[s], indexOf(s, thatNode));
+				ExtendedRandom r = random(s, thisNode, pid);
+				for (int i = 0; i < l && count > 0; i++) {
+					int j = draw(r, count--);
+					sentTo[s][j] = thatNode;
+					subset.add(new Entry(cache[s][j]));
+				}
+
+				// 3. Reply, and merge the entries received
+				replyMessage = new GossipMessage(thisNode, subset);
+				replyMessage.setType(MessageType.SHUFFLE_REPLY);
+				replyMessage.setExchangeId(message.getExchangeId());
+				tr.send(thisNode, thatNode, replyMessage, pid);
+				if (Metrics.enabled) sentMetrics[MessageType.SHUFFLE_REPLY.ordinal()].inc();
+
+				updateCache(s, thatNode, shuffleList);
+				break;
+
+			case SHUFFLE_REPLY:
+				// A reply to an abandoned exchange is ignored
+				if (!awaitingReply[s] || message.getExchangeId() != exchangeId[s]) break;
+				if (timer[s] != null) timer[s].cancel();
+
+				updateCache(s, thatNode, shuffleList);
+
+				awaitingReply[s] = false;
+				if (Metrics.enabled) roundTripMetric.observe(CommonState.getTime() - requestTime[s]);
+				removedFromCache[s] = false;
+				exchangePeer[s] = null;
+				clearSent(s);
+				break;
+
+			case SHUFFLE_REJECTED:
+				if (!awaitingReply[s] || message.getExchangeId() != exchangeId[s]) break;
+				if (timer[s] != null) timer[s].cancel();
+				exchangePeer[s] = null;
+				clearSent(s);
+
+				// If Q was removed from the cache, add it again
+				if (removedFromCache[s]) {
+					append(s, thatNode);
+					removedFromCache[s] = false;
+				}
+				awaitingReply[s] = false;
+				if (Metrics.enabled) roundTripMetric.observe(CommonState.getTime() - requestTime[s]);
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/*
+	 * Merges the received entries into the cache, replacing the entries
+	 * sent to the sender once the cache is full.
+	 */
+	private void updateCache(int s, Node sender, List<Entry> shuffleList) {
+		final int n = size[s];
+		ensureScratch(n);
+		int swaps = 0;
+		for (int i = 0; i < n; i++) {
+			copy[i] = cache[s][i];
+			matched[i] = false;
+			Node st = sentTo[s][i];
+			if (st != null && sender.getID() == st.getID()) swap[swaps++] = i;
+		}
+
+		int next = 0;
+		for (Entry e : shuffleList) {
+			Node x = e.getNode();
+			boolean alreadyInCache = false;
+			for (int i = 0; i < n; i++) {
+				if (!matched[i] && copy[i].getID() == x.getID()) {
+					matched[i] = true;
+					alreadyInCache = true;
+					break;
+				}
+			}
+
+			if (!alreadyInCache) {
+				if (size[s] < maxSize) {
+					append(s, x);
+				} else if (next < swaps) {
+					int j = swap[next++];
+					cache[s][j] = x;
+					sentTo[s][j] = null;
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) copy[i] = null;
+	}
+
+	/*
+	 * Abandons the pending exchange after its timeout, evicting the peer.
+	 */
+	private void abandonExchange(int s) {
+		int i = indexOf(s, exchangePeer[s]);
+		if (i >= 0) remove(s, i);
+		clearSent(s);
+		removedFromCache[s] = false;
+		awaitingReply[s] = false;
+		exchangePeer[s] = null;
+		if (Metrics.enabled) timeoutMetric.inc();
+	}
+
+	private ExtendedRandom random(int s, Node thisNode, int pid) {
+		if (!streams) return CommonState.r;
+		if (random[s] == null) random[s] = RandomStreams.forNode(thisNode, pid, 0);
+		return random[s];
+	}
+
+
+	/* Operations on the caches, with the semantics of the lists of BasicShuffle */
+
+	/*
+	 * Fills the scratch positions with the positions of a cache of n
+	 * entries, skipping the given one, and returns their number.
+	 */
+	private int positions(int n, int skip) {
+		ensureScratch(n);
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			if (i != skip) positions[count++] = i;
+		}
+		return count;
+	}
+
+	/*
+	 * Draws one of the first count scratch positions and removes it,
+	 * shifting the following ones as a list does.
+	 */
+	private int draw(ExtendedRandom r, int count) {
+		int k = r.nextInt(count);
+		int j = positions[k];
+		System.arraycopy(positions, k + 1, positions, k, count - k - 1);
+		return j;
+	}
+
+	private void ensureScratch(int n) {
+		if (positions.length < n) {
+			positions = new int[n];
+			copy = new Node[n];
+			matched = new boolean[n];
+			swap = new int[n];
+		}
+	}
+
+	/* Returns the position of the first entry with the ID of node, or -1 */
+	private int indexOf(int s, Node node) {
+		final Node[] c = cache[s];
+		for (int i = 0; i < size[s]; i++) {
+			if (c[i].getID() == node.getID()) return i;
+		}
+		return -1;
+	}
+
+	private void append(int s, Node node) {
+		if (cache[s] == null) {
+			cache[s] = new Node[maxSize];
+			sentTo[s] = new Node[maxSize];
+		} else if (size[s] == cache[s].length) {
+			cache[s] = Arrays.copyOf(cache[s], size[s] + 1);
+			sentTo[s] = Arrays.copyOf(sentTo[s], size[s] + 1);
+		}
+		cache[s][size[s]] = node;
+		sentTo[s][size[s]] = null;
+		size[s]++;
+	}
+
+	private void remove(int s, int i) {
+		final int n = --size[s];
+		System.arraycopy(cache[s], i + 1, cache[s], i, n - i);
+		System.arraycopy(sentTo[s], i + 1, sentTo[s], i, n - i);
+		cache[s][n] = null;
+		sentTo[s][n] = null;
+	}
+
+	private void clearSent(int s) {
+		if (sentTo[s] != null) Arrays.fill(sentTo[s], 0, size[s], null);
+	}
+
+
+	/**
+	 * The protocol of a node, that is, the view of a slot of a
+	 * {@link ShuffleColumn}.
+	 */
+	public static class Shuffle implements Linkable, EDProtocol, CDProtocol {
+
+		private final ShuffleColumn table;
+
+		private final int slot;
+
+		Shuffle(ShuffleColumn table, int slot) {
+			this.table = table;
+			this.slot = slot;
+		}
+
+		@Override
+		public void nextCycle(Node node, int protocolID) {
+			table.nextCycle(slot, node, protocolID);
+		}
+
+		@Override
+		public void processEvent(Node node, int pid, Object event) {
+			table.processEvent(slot, node, pid, event);
+		}
+
+		@Override
+		public int degree() {
+			return table.size[slot];
+		}
+
+		@Override
+		public Node getNeighbor(int i) {
+			if (i >= table.size[slot]) throw new IndexOutOfBoundsException("" + i);
+			return table.cache[slot][i];
+		}
+
+		@Override
+		public boolean addNeighbor(Node neighbour) {
+			if (contains(neighbour))
+				return false;
+
+			if (table.size[slot] >= table.maxSize)
+				return false;
+
+			table.append(slot, neighbour);
+			return true;
+		}
+
+		@Override
+		public boolean contains(Node neighbor) {
+			return table.indexOf(slot, neighbor) >= 0;
+		}
+
+		/** Handles cannot be cloned, see {@link ColumnarProtocol}. */
+		public Object clone() {
+			throw new UnsupportedOperationException(
+					"ShuffleColumn can be used only with ColumnarNode");
+		}
+
+		@Override
+		public void onKill() {
+			table.kill(slot);
+		}
+
+		@Override
+		public void pack() {
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Shuffle && ((Shuffle) o).table == table &&
+					((Shuffle) o).slot == slot;
+		}
+
+		public int hashCode() {
+			return slot;
+		}
+	}
+}
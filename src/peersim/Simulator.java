@@ -157,43 +157,9 @@ public static void main(String[] args)
 		(PrintStream)Configuration.getInstance(PAR_REDIRECT,System.out);
 	if(newout!=System.out) System.setOut(newout);
 	
-	int exps = Configuration.getInt(PAR_EXPS,1);
-
-	final int SIMID = getSimID();
-	if( SIMID == UNKNOWN )
-	{
-		System.err.println(
-		    "Simulator: unable to determine simulation engine type");
-		return;
-	}
-	
 	try {
 
-		for(int k=0; k<exps; ++k)
-		{
-			if( k>0 )
-			{
-				long seed = CommonState.r.nextLong();
-				CommonState.initializeRandom(seed);
-			}
-			System.err.print("Simulator: starting experiment "+k);
-			System.err.println(" invoking "+simName[SIMID]);
-			System.err.println("Random seed: "+
-				CommonState.r.getLastSeed());
-			System.out.println("\n\n");
-			
-			// XXX could be done through reflection, but
-			// this is easier to read.
-			switch(SIMID)
-			{
-			case CDSIM:
-				CDSimulator.nextExperiment();
-				break;
-			case EDSIM:
-				EDSimulator.nextExperiment();
-				break;
-			}
-		}
+		runExperiments();
 	
 	} catch (MissingParameterException e) {
 		System.err.println(e+"");
@@ -201,6 +167,10 @@ public static void main(String[] args)
 	} catch (IllegalParameterException e) {
 		System.err.println(e+"");
 		System.exit(1);
+	} finally {
+		// the metrics server would keep the JVM alive
+		Metrics.close();
+		Bootstrap.close();
 	}
 
 	// undocumented testing capabilities
@@ -212,4 +182,72 @@ public static void main(String[] args)
 	
 }
 
+// ----------------------------------------------------------------------
+
+/**
+* Loads the configuration and executes the experiments like
+* {@link #main}, but without terminating the JVM on configuration errors
+* (the exceptions are thrown to the caller instead) and without
+* redirecting the standard output ({@value #PAR_REDIRECT} is ignored).
+* It is used by {@link peersim.rangesim.RangeSimulator} to run
+* experiments inside its own JVM.
+* @param args passed on to
+* {@link ParsedProperties#ParsedProperties(String[])}
+*/
+public static void run(String[] args)
+{
+	System.err.println("Simulator: loading configuration");
+	Configuration.setConfig( new ParsedProperties(args) );
+	try {
+		runExperiments();
+	} finally {
+		Metrics.close();
+		Bootstrap.close();
+	}
+}
+
+// ----------------------------------------------------------------------
+
+/**
+* Executes the experiments defined by the current configuration.
+*/
+private static void runExperiments()
+{
+	int exps = Configuration.getInt(PAR_EXPS,1);
+
+	final int SIMID = getSimID();
+	if( SIMID == UNKNOWN )
+	{
+		System.err.println(
+		    "Simulator: unable to determine simulation engine type");
+		return;
+	}
+	
+	for(int k=0; k<exps; ++k)
+	{
+		if( k>0 )
+		{
+			long seed = CommonState.r.nextLong();
+			CommonState.initializeRandom(seed);
+		}
+		System.err.print("Simulator: starting experiment "+k);
+		System.err.println(" invoking "+simName[SIMID]);
+		System.err.println("Random seed: "+
+			CommonState.r.getLastSeed());
+		System.out.println("\n\n");
+		
+		// XXX could be done through reflection, but
+		// this is easier to read.
+		switch(SIMID)
+		{
+		case CDSIM:
+			CDSimulator.nextExperiment();
+			break;
+		case EDSIM:
+			EDSimulator.nextExperiment();
+			break;
+		}
+	}
+}
+
 }
@@ -188,12 +188,14 @@ public static final void nextExperiment()
 	System.err.println("CDSimulator: resetting");
 	controls = null;
 	ctrlSchedules = null;
+	Profiler.reset();
+	Metrics.init();
 	Network.reset();
 	System.err.println("CDSimulator: running initializers");
 	runInitializers();
 
 	// main cycle
-	loadControls();
+	String[] names = loadControls();
 
 	System.err.println("CDSimulator: starting simulation");
 	for (int i = 0; i < cycles; ++i) {
@@ -202,8 +204,9 @@ public static final void nextExperiment()
 		boolean stop = false;
 		for (int j = 0; j < controls.length; ++j) {
 			if (ctrlSchedules[j].active(i))
-				stop = stop || controls[j].execute();
+				stop = stop || execute(j, names);
 		}
+		if (Profiler.enabled) Profiler.interval(i, -1);
 		if (stop)
 			break;
 		System.err.println("CDSimulator: cycle " + i + " done");
@@ -214,8 +217,25 @@ public static final void nextExperiment()
 	// analysis after the simulation
 	for (int j = 0; j < controls.length; ++j) {
 		if (ctrlSchedules[j].fin)
-			controls[j].execute();
+			execute(j, names);
 	}
+	Profiler.summary();
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Executes the control at the given index, reporting it to the
+ * {@link Profiler} if profiling is enabled. The main cycle is reported
+ * with the name "cycle".
+ */
+private static boolean execute(int j, String[] names)
+{
+	if (!Profiler.enabled) return controls[j].execute();
+	long t = Profiler.beginControl();
+	boolean stop = controls[j].execute();
+	Profiler.endControl(j < names.length ? names[j] : "cycle", t);
+	return stop;
 }
 
 }
@@ -125,7 +125,13 @@ public boolean execute() {
 			Protocol protocol = node.getProtocol(k);
 			if( protocol instanceof CDProtocol )
 			{
-				((CDProtocol)protocol).nextCycle(node, k);
+				if( Profiler.enabled )
+				{
+					long t = Profiler.begin();
+					((CDProtocol)protocol).nextCycle(node, k);
+					Profiler.endProtocol(k, null, t);
+				}
+				else ((CDProtocol)protocol).nextCycle(node, k);
 				if( !node.isUp() ) break;
 			}
 		}
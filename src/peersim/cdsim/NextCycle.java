@@ -97,7 +97,13 @@ public boolean execute() {
 			Protocol protocol = node.getProtocol(pid);
 			if( protocol instanceof CDProtocol )
 			{
-				((CDProtocol)protocol).nextCycle(node, pid);
+				if( Profiler.enabled )
+				{
+					long t = Profiler.begin();
+					((CDProtocol)protocol).nextCycle(node, pid);
+					Profiler.endProtocol(pid, null, t);
+				}
+				else ((CDProtocol)protocol).nextCycle(node, pid);
 				if( !node.isUp() ) break;
 			}
 		}
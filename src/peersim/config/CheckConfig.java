@@ -125,7 +125,7 @@ public static void main(String[] args)
 	System.setErr(new NullPrintStream());
 	Properties prop = new ParsedProperties(args);
 	Configuration.setConfig( prop, true );
-	parseRanges(prop);
+	parseRanges();
 	
 	final int SIMID = getSimID();
 	if( SIMID == UNKNOWN )
@@ -143,12 +143,12 @@ public static void main(String[] args)
 		{
 		case CDSIM:
 			// Set cycles to 0, so no simulation is ever performed.
-			prop.setProperty(CDSimulator.PAR_CYCLES, "0");
+			Configuration.setProperty(CDSimulator.PAR_CYCLES, "0");
 			CDSimulator.nextExperiment();
 			break;
 		case EDSIM:
 			// Set endtime to 0, so no simulation is ever performed.
-			prop.setProperty(EDSimulator.PAR_ENDTIME, "0");
+			Configuration.setProperty(EDSimulator.PAR_ENDTIME, "0");
 			EDSimulator.nextExperiment();
 			break;
 		}
@@ -167,7 +167,7 @@ public static void main(String[] args)
  * of parameters that will change during the simulation and
  * instantiates them with the first value of their ranges.
  */
-private static void parseRanges(Properties prop)
+private static void parseRanges()
 {
 	// Get ranges
 	String[] ranges = Configuration.getNames(PAR_RANGE);
@@ -179,7 +179,7 @@ private static void parseRanges(Properties prop)
 					" should be formatted as <parameter>;<value list>");
 		}
 		String[] values = StringListParser.parseList(array[1]);
-		prop.setProperty(array[0], values[0]);
+		Configuration.setProperty(array[0], values[0]);
 	}
 }
 
@@ -20,12 +20,32 @@ package peersim.config;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.zip.*;
 
 /**
  * Provides static methods to obtain the package-qualified class name
  * of a class, given just the non-qualified name, and to obtain
  * the non-qualified name, given the package-qualified class name.
+ * <p>
+ * The associations are built on the first lookup by scanning the
+ * classpath. The result of the scan is stored in an index file, together
+ * with a fingerprint of the classpath (the path, size and modification time
+ * of the jar files) and the modification times of the directories visited,
+ * so that following JVMs using the same classpath, e.g. the ones launched
+ * by {@link peersim.rangesim.RangeSimulator}, simply load the index.
+ * Adding or removing a file changes the modification time of its
+ * directory, so checking the index takes one <code>stat</code> per
+ * directory and does not list them.
+ * The classpath is scanned again, with one thread per classpath element,
+ * only if the index is missing or stale. The index is stored in the cache
+ * directory of the user (<code>$XDG_CACHE_HOME/peersim</code>, or
+ * <code>~/.cache/peersim</code>), which is created readable only by the
+ * user, since a class index written by others could redirect class names.
+ * The location of the index can be changed with the system property
+ * {@value #PROP_INDEX}; setting it to the empty string disables the index.
+ * The index can also be built in advance by running {@link #main} with
+ * argument <code>-index</code>.
  * 
  * Inspired from some code written by David Postill (david@postill.org.uk)
  * (found in http://groups.google.com).
@@ -41,35 +61,29 @@ class ClassFinder
 //Fields and initialization
 //--------------------------------------------------------------------------
 	
-	
-/** Local map containing the associations */
-private static Map<String,String> map = new TreeMap<String,String>();	
+/**
+ * System property defining the file used to store the class index.
+ * Defaults to a file in the cache directory of the user whose name depends
+ * on the classpath.
+ */
+private static final String PROP_INDEX = "peersim.classindex";
+
+/** Identifies (the version of) the index file format */
+private static final int INDEX_MAGIC = 0x50534350;
 
 /** The number of directories that have been touched by the search.
 This does not include directories in jar files. */
 private static int visitedDirs = 0;
 
-private static final int maxDirs;
-
-static {
-
-	maxDirs = 10000;
-
-	try {
-		findClasses(map);
-	} catch (IOException e) {
-		e.printStackTrace();
-	}
+private static final int maxDirs = 10000;
 
-	if(visitedDirs >= maxDirs )
-	{
-		System.err.println("Configuration: some directories in your "+
-		"classpath probably contain filesystem\nConfiguration: "+
-		"loops because the number of visited directories "+
-		"reached "+maxDirs+".\nConfiguration: This means automatic "+
-		"class lookup might fail and you might have\nConfiguration: "+
-		"to fully qualify class names in the configuration.");
-	}
+/**
+ * Holds the map containing the associations, so that it is loaded only
+ * on the first lookup.
+ */
+private static class Holder
+{
+	static final Map<String,String> map = load(false);
 }
 	
 	
@@ -107,53 +121,267 @@ public static String getShortName(String className) {
  */
 public static String getQualifiedName(String name)
 {
-	return map.get(name);
+	return Holder.map.get(name);
 }
 
 //--------------------------------------------------------------------------
 //Private static methods
 //--------------------------------------------------------------------------
+
+/**
+ * Returns the associations for the current classpath, reading them from
+ * the index file if it is up to date, and scanning the classpath (and
+ * storing the result in the index file) otherwise.
+ * @param rebuild if true, the index file is ignored and rebuilt
+ */
+private static Map<String,String> load(boolean rebuild)
+{
+	String classPath = System.getProperty( "java.class.path" );
+	String separator = System.getProperty( "path.separator"  );
+	String[] elements = classPath.split(java.util.regex.Pattern.quote(separator));
+	String file = System.getProperty(PROP_INDEX, new File(cacheDir(),
+		"classindex-" + Integer.toHexString(classPath.hashCode()) +
+		".idx").getPath());
+	
+	long fingerprint = 0;
+	if (file.length() > 0) {
+		fingerprint = fingerprint(elements);
+		if (!rebuild) {
+			Map<String,String> map = readIndex(new File(file), fingerprint);
+			if (map != null) return map;
+		}
+	}
 	
+	Map<String,String> map = new TreeMap<String,String>();
+	Map<String,Long> dirs = new LinkedHashMap<String,Long>();
+	try {
+		findClasses(map, dirs, elements);
+	} catch (IOException e) {
+		e.printStackTrace();
+	}
+
+	if(visitedDirs >= maxDirs )
+	{
+		System.err.println("Configuration: some directories in your "+
+		"classpath probably contain filesystem\nConfiguration: "+
+		"loops because the number of visited directories "+
+		"reached "+maxDirs+".\nConfiguration: This means automatic "+
+		"class lookup might fail and you might have\nConfiguration: "+
+		"to fully qualify class names in the configuration.");
+	}
+	else if (file.length() > 0)
+	{
+		writeIndex(new File(file), fingerprint, dirs, map);
+	}
+	return map;
+}
+
+//--------------------------------------------------------------------------
+
 /**
- * Finds all the classes reachable from the current classpath;
+ * Returns the directory of the default index file: the peersim directory
+ * in <code>$XDG_CACHE_HOME</code> if it is defined, and in
+ * <code>~/.cache</code> otherwise.
+ */
+private static File cacheDir()
+{
+	String xdg = System.getenv("XDG_CACHE_HOME");
+	File base = (xdg != null && new File(xdg).isAbsolute() ? new File(xdg) :
+		new File(System.getProperty("user.home"), ".cache"));
+	return new File(base, "peersim");
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Computes the fingerprint of the classpath. Jar files are identified by
+ * path, length and modification time; directories only by path, since
+ * their contents are checked through the modification times stored in the
+ * index.
+ */
+private static long fingerprint(String[] elements)
+{
+	long h = 1125899906842597L;
+	for (int i = 0; i < elements.length; i++) {
+		File f = new File(elements[i]);
+		h = 31*h + elements[i].hashCode();
+		if (f.isDirectory()) {
+			h = 31*h + 1;
+		} else if (f.exists()) {
+			h = 31*h + f.length();
+			h = 31*h + f.lastModified();
+		}
+	}
+	return h;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Reads the index file, returning null if it does not exist, it cannot be
+ * read, it was built for a different fingerprint or one of the directories
+ * it records has been modified since.
+ */
+private static Map<String,String> readIndex(File file, long fingerprint)
+{
+	if (!file.exists()) return null;
+	DataInputStream in = null;
+	try {
+		in = new DataInputStream(new BufferedInputStream(
+			new FileInputStream(file)));
+		if (in.readInt() != INDEX_MAGIC || in.readLong() != fingerprint)
+			return null;
+		int ndirs = in.readInt();
+		for (int i = 0; i < ndirs; i++) {
+			String dir = in.readUTF();
+			if (new File(dir).lastModified() != in.readLong()) return null;
+		}
+		int size = in.readInt();
+		Map<String,String> map = new TreeMap<String,String>();
+		for (int i = 0; i < size; i++) {
+			String shortName = in.readUTF();
+			map.put(shortName, in.readUTF());
+		}
+		return map;
+	} catch (IOException e) {
+		return null;
+	} finally {
+		if (in != null) try { in.close(); } catch (IOException e) {}
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Writes the index file. The index is first written to a temporary file
+ * in the same directory which is then renamed, so that concurrent JVMs
+ * never read a partially written index. If the directory does not exist,
+ * it is created accessible only by the user. Failures are silently
+ * ignored, as the index is only a cache.
+ */
+private static void writeIndex(File file, long fingerprint,
+	Map<String,Long> dirs, Map<String,String> map)
+{
+	File tmp = null;
+	DataOutputStream out = null;
+	try {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory()) {
+			if (!dir.mkdirs()) return;
+			dir.setReadable(false, false);
+			dir.setWritable(false, false);
+			dir.setExecutable(false, false);
+			dir.setReadable(true, true);
+			dir.setWritable(true, true);
+			dir.setExecutable(true, true);
+		}
+		tmp = File.createTempFile(file.getName(), ".tmp", dir);
+		out = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(tmp)));
+		out.writeInt(INDEX_MAGIC);
+		out.writeLong(fingerprint);
+		out.writeInt(dirs.size());
+		for (Map.Entry<String,Long> e : dirs.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeLong(e.getValue());
+		}
+		out.writeInt(map.size());
+		for (Map.Entry<String,String> e : map.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeUTF(e.getValue());
+		}
+		out.close();
+		out = null;
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			tmp.renameTo(file);
+		}
+	} catch (IOException e) {
+		// the index is only a cache
+	} finally {
+		if (out != null) try { out.close(); } catch (IOException e) {}
+		if (tmp != null) tmp.delete();
+	}
+}
+
+//--------------------------------------------------------------------------
+	
+/**
+ * Finds all the classes reachable from the given classpath elements;
  * for each of them, inserts an association (name, fully-qualified 
  * name) in the specified map. Both names are String objects.
  * 
- * Only classes reachable from the classpath defined by the 
- * "java.class.path" property are considered. 
- * Jar files and directories are both parsed.
+ * Jar files and directories are both parsed, each classpath element
+ * in a separate thread. The results are merged in classpath order.
  * If multiple classes with the same name but different 
  * fully-qualified names are present, they are inserted
  * in the map as associations (name, comma-separated list of
  * fully-qualified names).
  * 
  * @param map
+ * @param dirs the map where to insert the directories visited, with
+ * their modification times
+ * @param elements the elements of the classpath
  * @throws IOException
  */
-private static void findClasses(Map<String,String> map)
+private static void findClasses(Map<String,String> map,
+	Map<String,Long> dirs, final String[] elements)
 throws IOException
 {
-	String classPath = System.getProperty( "java.class.path" );
-	String separator = System.getProperty( "path.separator"  );
-	String filesep = System.getProperty( "file.separator");
-	StringTokenizer path = new StringTokenizer( classPath, separator );
-
-	while( path.hasMoreTokens() ) {
-		
-		String pathElement = path.nextToken();
-		File pathFile = new File( pathElement );
-		
-		if( pathFile.isDirectory() ) {
-			if (!pathElement.endsWith(filesep)) {
-				pathElement = pathElement + filesep;
-				pathFile = new File( pathElement);
+	final String filesep = System.getProperty( "file.separator");
+	int threads = Math.min(elements.length,
+		Runtime.getRuntime().availableProcessors());
+	ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads,1));
+	List<Future<Map<String,String>>> results =
+		new ArrayList<Future<Map<String,String>>>();
+	List<Map<String,Long>> dirParts = new ArrayList<Map<String,Long>>();
+	
+	for (int i = 0; i < elements.length; i++) {
+		final String element = elements[i];
+		final Map<String,Long> dirPart = new LinkedHashMap<String,Long>();
+		dirParts.add(dirPart);
+		results.add(pool.submit(new Callable<Map<String,String>>() {
+			public Map<String,String> call() throws IOException {
+				Map<String,String> part =
+					new LinkedHashMap<String,String>();
+				String pathElement = element;
+				File pathFile = new File( pathElement );
+				if( pathFile.isDirectory() ) {
+					if (!pathElement.endsWith(filesep)) {
+						pathElement = pathElement + filesep;
+						pathFile = new File( pathElement);
+					}
+					findClassInPathDir( part, dirPart, pathElement,
+						pathFile );
+					// Search directories
+				} else if ( pathFile.exists() ) {
+					findClassInJar( part, pathFile);
+				}
+				return part;
+			}
+		}));
+	}
+	pool.shutdown();
+	
+	try {
+		for (Future<Map<String,String>> f : results) {
+			for (Map.Entry<String,String> e : f.get().entrySet()) {
+				String shortName = e.getKey();
+				if (map.containsKey(shortName)) {
+					map.put(shortName, map.get(shortName)+","+e.getValue());
+				} else {
+					map.put(shortName, e.getValue());
+				}
 			}
-			findClassInPathDir( map, pathElement, pathFile );
-			// Search directories
-		} else if ( pathFile.exists() ) {
-			findClassInJar( map, pathFile);
 		}
+	} catch (InterruptedException e) {
+		throw new InterruptedIOException();
+	} catch (ExecutionException e) {
+		if (e.getCause() instanceof IOException)
+			throw (IOException) e.getCause();
+		throw new RuntimeException(e.getCause());
 	}
+	for (Map<String,Long> d : dirParts) dirs.putAll(d);
 }
 
 //--------------------------------------------------------------------------
@@ -195,24 +423,29 @@ throws IOException
  * Recursively parses directories.
  * 
  * @param map the map where to insert associations
+ * @param dirs the map where to insert the directory and its modification
+ * time, read before listing it
  * @param pathElement the path string used for recursion
  * @param pathFile the file (directory) to be analyzed
  * @throws IOException
  */
 private static void findClassInPathDir( Map<String,String> map,
-	String pathElement, File pathFile )
+	Map<String,Long> dirs, String pathElement, File pathFile )
 throws IOException
 {
-	visitedDirs++;
-	if(visitedDirs>=maxDirs) return;
+	synchronized (ClassFinder.class) {
+		visitedDirs++;
+		if(visitedDirs>=maxDirs) return;
+	}
 
+	dirs.put(pathFile.getPath(), pathFile.lastModified());
 	String[] list = pathFile.list();
 	String filesep = System.getProperty( "file.separator");
 	
 	for( int i = 0; i < list.length; i++ ) {
 		File file = new File( pathFile, list[i] );
 		if( file.isDirectory() ) {
-			findClassInPathDir( map, pathElement, file );
+			findClassInPathDir( map, dirs, pathElement, file );
 		}
 		else if ( file.exists() && (file.length() != 0) && list[i].endsWith( ".class" ) ) {
 			String classFile = file.toString().substring( pathElement.length());
@@ -242,12 +475,15 @@ private static String classname(String classFile, String filesep)
 //--------------------------------------------------------------------------
 
 /** 
- * Testing.
+ * Testing. If the first argument is <code>-index</code>, the index file
+ * is rebuilt before printing the associations.
  * 
  * @param argv
  */
 public static void main( String[] argv )
 {
+	Map<String,String> map = (argv.length > 0 && argv[0].equals("-index") ?
+		load(true) : Holder.map);
 	Iterator i = map.keySet().iterator();
 	while (i.hasNext()) {
 		String key = (String) i.next();
@@ -20,6 +20,7 @@ package peersim.config;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.*;
 import org.lsmp.djep.groupJep.*;
 
 /**
@@ -71,6 +72,26 @@ private int debugLevel;
  */
 private boolean check = false;
 
+/**
+ * Memoised numeric properties, indexed by property name. See
+ * {@link #getVal}. The map is concurrent since the configuration can be
+ * read by several threads of the same experiment, e.g. during a parallel
+ * bootstrap.
+ */
+private final Map<String, Expression> expressions =
+	new ConcurrentHashMap<String, Expression>();
+
+/**
+ * The properties whose evaluation is in progress in each thread, in the
+ * order in which they were started. Used to report circular definitions.
+ */
+private final ThreadLocal<LinkedHashSet<String>> evaluating =
+	new ThreadLocal<LinkedHashSet<String>>() {
+		protected LinkedHashSet<String> initialValue() {
+			return new LinkedHashSet<String>();
+		}
+	};
+
 // =================== initialization ================================
 // ===================================================================
 
@@ -125,6 +146,19 @@ public boolean contains(String name)
 
 // -------------------------------------------------------------------
 
+/**
+ * Sets the given property, discarding all the memoised numeric values,
+ * since they may depend on it. This is the only way to modify the
+ * configuration after it has been set; it is used by {@link CheckConfig}.
+ */
+void setProperty(String name, String value)
+{
+	config.setProperty(name, value);
+	expressions.clear();
+}
+
+// -------------------------------------------------------------------
+
 /**
  * Reads given configuration property. If not found, throws a
  * {@link MissingParameterException}.
@@ -315,6 +349,14 @@ public double getDouble(String name)
 
 /**
  * Read numeric property values, parsing expression if necessary.
+ * Each property is parsed at most once: the value of the expression is
+ * memoised together with its text, and reused as long as the text is the
+ * same. The configuration is read only, except through
+ * {@link #setProperty}, which discards all the memoised values, so the
+ * properties an expression refers to need not be checked. Since
+ * dependencies are evaluated (and memoised) before the expression that
+ * refers to them, every property is evaluated once in topological order
+ * no matter how many times it is read.
  * 
  * @param initial
  *          the property name that started this expression evaluation
@@ -339,6 +381,44 @@ private Number getVal(String initial, String property, int depth)
 //						+ "\nPossibly incorrect property: " + getSimilarProperty(property));
 	}
 
+	Expression expr = expressions.get(property);
+	if (expr != null && expr.source.equals(s))
+		return expr.value;
+
+	LinkedHashSet<String> evaluating = this.evaluating.get();
+	if (!evaluating.add(property)) {
+		StringBuilder cycle = new StringBuilder();
+		boolean found = false;
+		for (String p : evaluating) {
+			found = found || p.equals(property);
+			if (found) cycle.append(p).append(" -> ");
+		}
+		cycle.append(property);
+		throw new IllegalParameterException(initial,
+				"Circular definition: " + cycle);
+	}
+	try {
+		expr = compile(initial, property, s, depth);
+	} finally {
+		evaluating.remove(property);
+	}
+	expressions.put(property, expr);
+	return expr.value;
+}
+
+// -------------------------------------------------------------------
+
+/**
+ * Parses and evaluates the given expression, evaluating first all the
+ * properties it refers to.
+ */
+private Expression compile(String initial, String property, String s,
+		int depth)
+{
+	String t = s.trim();
+	if (isInteger(t))
+		return new Expression(s, new java.math.BigInteger(t));
+
 	GroupJep jep = new GroupJep(new Operators());
 	jep.setAllowUndeclared(true);
 
@@ -351,7 +431,24 @@ private Number getVal(String initial, String property, int depth)
 	Object ret = jep.getValueAsObject();
 	if (jep.hasError())
 		System.err.println(jep.getErrorInfo());
-	return (Number) ret;
+	return new Expression(s, (Number) ret);
+}
+
+// -------------------------------------------------------------------
+
+/**
+ * Returns true if the given string is a plain decimal integer literal,
+ * which can be evaluated without invoking the expression parser.
+ */
+private static boolean isInteger(String s)
+{
+	int len = s.length();
+	if (len == 0 || len > 18) return false;
+	for (int i = (s.charAt(0) == '-' && len > 1 ? 1 : 0); i < len; i++) {
+		char c = s.charAt(i);
+		if (c < '0' || c > '9') return false;
+	}
+	return true;
 }
 
 // -------------------------------------------------------------------
@@ -1008,4 +1105,22 @@ private void manageException(String name, RuntimeException e)
 
 //-------------------------------------------------------------------
 
+/**
+ * The memoised evaluation of a numeric property, with the source text of
+ * the property.
+ */
+private static class Expression
+{
+	final String source;
+	final Number value;
+
+	Expression(String source, Number value)
+	{
+		this.source = source;
+		this.value = value;
+	}
+}
+
+//-------------------------------------------------------------------
+
 }
@@ -349,6 +349,19 @@ public static boolean contains(String name)
 
 // -------------------------------------------------------------------
 
+/**
+ * Modifies a property of the configuration set by {@link #setConfig}.
+ * It is reserved to tools like {@link CheckConfig}, that alter the
+ * configuration before running the experiments; the configuration must
+ * not be modified through the Properties object given to setConfig.
+ */
+static void setProperty(String name, String value)
+{
+	config.setProperty(name, value);
+}
+
+// -------------------------------------------------------------------
+
 /**
  * Reads given configuration property. If not found, throws a
  * {@link MissingParameterException}.
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import peersim.config.Configuration;
+import peersim.graph.GraphFactory;
+import peersim.util.CounterRandom;
+import peersim.util.ExtendedRandom;
+
+/**
+ * Supports the parallel construction and initialization of the network.
+ * Parallel bootstrap is enabled by setting {@value #PAR_THREADS}; in this
+ * case {@link Network#reset} clones the nodes in parallel (if they are
+ * {@link GeneralNode}s), and some initializers, like
+ * {@link peersim.dynamics.WireKOut}, {@link peersim.dynamics.WireWS},
+ * {@link peersim.dynamics.WireScaleFreeBA} and
+ * {@link peersim.vector.UniformDistribution}, process the nodes in
+ * parallel. The controls based on {@link peersim.vector.VectorSnapshot}
+ * also read and write protocol vectors in parallel.
+ * <p>
+ * The nodes are split in partitions of {@value #CHUNK} nodes, and each
+ * partition uses its own random stream, derived from a single value drawn
+ * from {@link CommonState#r}. Since the partitions do not depend on the
+ * number of threads, the results are reproducible with any value of
+ * {@value #PAR_THREADS}, including 1; they are different, however, from the
+ * results obtained when parallel bootstrap is disabled. The partitioned
+ * methods pay off even with one thread in some cases: the partitioned
+ * {@link peersim.dynamics.WireKOut} samples with rejection instead of
+ * shuffling an array of all the nodes, and wires 10^6 nodes with k=20
+ * about 20% faster than the sequential method.
+ * <p>
+ * Components executed in parallel must not use {@link CommonState}; in
+ * particular, protocols are cloned without setting the current node and
+ * protocol, so their clone method must not depend on them.
+ */
+public class Bootstrap
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * The number of threads used to bootstrap the network. If not defined,
+ * the network is built sequentially, as usual.
+ * @config
+ */
+public static final String PAR_THREADS = "bootstrap.threads";
+
+/**
+ * The number of nodes in a partition.
+ */
+public static final int CHUNK = GraphFactory.CHUNK;
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** The thread pool, created when first used */
+private static ExecutorService executor = null;
+
+/** The size of {@link #executor} */
+private static int poolSize = 0;
+
+// --------------------------------------------------------------------------
+
+/** Disable instance construction */
+private Bootstrap() {}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/**
+ * A task that processes a partition of the nodes.
+ */
+public interface Task
+{
+	/**
+	 * Processes the nodes with index from <code>from</code> (inclusive) to
+	 * <code>to</code> (exclusive).
+	 * @param r the random stream of this partition, or null if the task
+	 * has been run with {@link #run}
+	 */
+	public void run(int from, int to, ExtendedRandom r);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns true if parallel bootstrap is enabled.
+ */
+public static boolean isParallel()
+{
+	return Configuration.contains(PAR_THREADS);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the thread pool used for parallel bootstrap, or null if
+ * {@value #PAR_THREADS} is not larger than 1, in which case the partitions
+ * are processed in the calling thread.
+ */
+public static synchronized ExecutorService getExecutor()
+{
+	int threads = Configuration.getInt(PAR_THREADS, 1);
+	if (threads <= 1) return null;
+	if (executor == null || poolSize != threads) {
+		if (executor != null) executor.shutdown();
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "bootstrap-" + (count++));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		poolSize = threads;
+	}
+	return executor;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Shuts down the thread pool used for parallel bootstrap, if any. A new
+ * pool is created by the next call of {@link #getExecutor}. It is called at
+ * the end of each experiment by {@link peersim.Simulator}, since the idle
+ * threads of the pool would otherwise keep alive the class loader of an
+ * experiment run in process by {@link peersim.rangesim.RangeSimulator},
+ * and with it the whole network.
+ */
+public static synchronized void close()
+{
+	if (executor != null) executor.shutdown();
+	executor = null;
+	poolSize = 0;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Runs the task on all the partitions of the first <code>n</code> nodes
+ * and waits for its completion. The task does not receive a random stream.
+ */
+public static void run(int n, Task task)
+{
+	run(n, task, false);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Runs the task on all the partitions of the first <code>n</code> nodes
+ * and waits for its completion. Each partition receives its own random
+ * stream. A single value is drawn from {@link CommonState#r} to seed the
+ * streams.
+ */
+public static void runRandom(int n, Task task)
+{
+	run(n, task, true);
+}
+
+// --------------------------------------------------------------------------
+
+private static void run(int n, final Task task, boolean random)
+{
+	final long seed = (random ? CommonState.r.nextLong() : 0);
+	final int chunks = (n + CHUNK - 1) / CHUNK;
+	ExecutorService ex = getExecutor();
+	List<Future<?>> results = new ArrayList<Future<?>>(chunks);
+	for (int c = 0; c < chunks; c++) {
+		final int from = c * CHUNK;
+		final int to = Math.min(n, from + CHUNK);
+		final ExtendedRandom r = (random ? new ExtendedRandom(
+			CounterRandom.derive(seed, c + 1)) : null);
+		if (ex == null) {
+			task.run(from, to, r);
+			continue;
+		}
+		results.add(ex.submit(new Runnable() {
+			public void run() { task.run(from, to, r); }
+		}));
+	}
+	try {
+		for (Future<?> f : results) f.get();
+	} catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new RuntimeException(e);
+	} catch (ExecutionException e) {
+		if (e.getCause() instanceof RuntimeException)
+			throw (RuntimeException) e.getCause();
+		throw new RuntimeException(e.getCause());
+	}
+}
+
+}
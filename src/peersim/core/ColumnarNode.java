@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import java.util.Arrays;
+
+import peersim.config.*;
+
+/**
+ * A {@link Node} that keeps its state in a column store shared by all the
+ * nodes, instead of in its own fields. The index and fail state of the
+ * nodes are primitive arrays, and the protocols are stored per protocol
+ * rather than per node, so the node object itself is a small handle that
+ * contains only its slot in the store and its ID.
+ * <p>
+ * Protocols implementing {@link ColumnarProtocol} are not cloned at all:
+ * their state is allocated in bulk, one column per field, and
+ * {@link #getProtocol} returns a handle to the slot of the node. The other
+ * protocols are cloned as in {@link GeneralNode}, so the two layouts can be
+ * mixed in the same node. For example:
+ * <pre>
+ * network.node ColumnarNode
+ * protocol.link IdleColumn
+ * protocol.avg SingleValueColumn
+ * </pre>
+ * The slot of a node that becomes {@link Fallible#DEAD} is reused by the
+ * next node created. The old node can still be referenced safely: from
+ * then on it shares a slot reserved for dead nodes, the first slot ever
+ * released, so it stays dead with killed protocols, and keeps its ID.
+ * The initial capacity of the store is {@value #PAR_CAPACITY}, and it
+ * grows as needed.
+ * <p>
+ * Note that the store is static, so there can be only one network of
+ * columnar nodes at a time, and that checkpoints are not supported. The
+ * store is not thread safe: nodes can be created and their fail state
+ * changed only by the thread that created the prototype, otherwise an
+ * exception is thrown. Protocols can still be accessed from other threads,
+ * e.g. by the initializers run in parallel by {@link Bootstrap}, as long
+ * as each thread works on different nodes. The experiments run in process
+ * by {@link peersim.rangesim.RangeSimulator} have their own store each,
+ * since they load this class through their own class loaders.
+ * @see ColumnarProtocol
+ */
+public class ColumnarNode implements Node
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * The initial number of slots of the store. Defaults to
+ * <code>network.initialCapacity</code>, or <code>network.size</code> if
+ * it is not defined (plus one for the prototype).
+ * @config
+ */
+private static final String PAR_CAPACITY = "capacity";
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** Used to generate unique IDs */
+private static long counterID = -1;
+
+/** Number of used slots */
+private static int slots = 0;
+
+/** The node using each slot */
+private static ColumnarNode[] owners;
+
+/** The slots released by dead nodes and not reused yet */
+private static int[] free;
+
+/** The number of elements of {@link #free} */
+private static int freeCount = 0;
+
+/** The slot shared by the dead nodes whose slot was reused, or -1 */
+private static int graveyard = -1;
+
+/** The thread that can change the store */
+private static Thread thread;
+
+/** The indexes of the nodes, indexed by slot */
+private static int[] indexes;
+
+/** The fail states of the nodes, indexed by slot */
+private static byte[] failstates;
+
+/**
+ * The protocol objects, indexed by protocol and slot. The column of a
+ * columnar protocol is null.
+ */
+private static Protocol[][] protocols;
+
+/** The tables of the columnar protocols, null for the other protocols */
+private static ColumnarProtocol[] tables;
+
+/**
+ * The slot of this node. It changes only when the node is dead and its
+ * slot is reused, to {@link #graveyard}.
+ */
+private int slot;
+
+/** The ID of this node */
+private final long id;
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+/**
+ * Used to construct the prototype node. It resets the store and reads the
+ * protocol components from the configuration, as {@link GeneralNode}
+ * does.
+ */
+public ColumnarNode(String prefix)
+{
+	int capacity = Configuration.getInt(prefix + "." + PAR_CAPACITY,
+		Configuration.getInt("network.initialCapacity",
+		Configuration.getInt("network.size")) + 1);
+	if (capacity < 1)
+		throw new IllegalParameterException(prefix + "." + PAR_CAPACITY,
+		"Must be positive");
+	String[] names = Configuration.getNames(PAR_PROT);
+	slots = 1;
+	slot = 0;
+	id = counterID++;
+	owners = new ColumnarNode[capacity];
+	owners[0] = this;
+	free = new int[0];
+	freeCount = 0;
+	graveyard = -1;
+	thread = Thread.currentThread();
+	indexes = new int[capacity];
+	failstates = new byte[capacity];
+	protocols = new Protocol[names.length][];
+	tables = new ColumnarProtocol[names.length];
+	CommonState.setNode(this);
+	for (int i = 0; i < names.length; i++) {
+		CommonState.setPid(i);
+		Object p = Configuration.getInstance(names[i]);
+		if (p instanceof ColumnarProtocol) {
+			tables[i] = (ColumnarProtocol) p;
+			tables[i].setCapacity(capacity);
+		} else {
+			protocols[i] = new Protocol[capacity];
+			protocols[i][0] = (Protocol) p;
+		}
+	}
+}
+
+// --------------------------------------------------------------------------
+
+private ColumnarNode(int slot)
+{
+	this.slot = slot;
+	id = counterID++;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Allocates a slot, reusing the one of a dead node if possible, and copies
+ * the state of this node into it.
+ */
+public Object clone()
+{
+	checkThread();
+	final int s;
+	if (freeCount > 0) {
+		s = free[--freeCount];
+		owners[s].slot = graveyard;
+	} else {
+		if (slots == indexes.length) setCapacity(3 * slots / 2 + 1);
+		s = slots++;
+	}
+	ColumnarNode result = new ColumnarNode(s);
+	owners[s] = result;
+	CommonState.setNode(result);
+	indexes[s] = indexes[slot];
+	failstates[s] = failstates[slot];
+	for (int i = 0; i < tables.length; i++) {
+		CommonState.setPid(i);
+		if (tables[i] != null)
+			tables[i].copy(slot, s);
+		else
+			protocols[i][s] = (Protocol) protocols[i][slot].clone();
+	}
+	return result;
+}
+
+// --------------------------------------------------------------------------
+
+/** Resizes all the columns of the store */
+private static void setCapacity(int capacity)
+{
+	owners = Arrays.copyOf(owners, capacity);
+	indexes = Arrays.copyOf(indexes, capacity);
+	failstates = Arrays.copyOf(failstates, capacity);
+	for (int i = 0; i < tables.length; i++) {
+		if (tables[i] != null)
+			tables[i].setCapacity(capacity);
+		else
+			protocols[i] = Arrays.copyOf(protocols[i], capacity);
+	}
+}
+
+// --------------------------------------------------------------------------
+
+/** Throws an exception if the current thread cannot change the store */
+private static void checkThread()
+{
+	if (Thread.currentThread() != thread)
+		throw new IllegalStateException("Columnar nodes can be created" +
+			" and killed only by the thread that created the prototype");
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the slot of this node in the store. Columnar protocols can be
+ * accessed directly with it, without creating a handle.
+ */
+public int getSlot() { return slot; }
+
+// --------------------------------------------------------------------------
+
+public void setFailState(int failState)
+{
+	// after a node is dead, all operations on it are errors by definition
+	if (failstates[slot] == DEAD && failState != DEAD)
+		throw new IllegalStateException(
+			"Cannot change fail state: node is already DEAD");
+	checkThread();
+	final int old = failstates[slot], at = indexes[slot];
+	if (old == DEAD) return;
+	switch (failState) {
+	case OK:
+	case DOWN:
+		failstates[slot] = (byte) failState;
+		break;
+	case DEAD:
+		indexes[slot] = -1;
+		failstates[slot] = DEAD;
+		for (int i = 0; i < tables.length; i++) {
+			if (tables[i] != null)
+				tables[i].kill(slot);
+			else if (protocols[i][slot] instanceof Cleanable)
+				((Cleanable) protocols[i][slot]).onKill();
+		}
+		if (graveyard < 0) {
+			graveyard = slot;
+		} else {
+			if (freeCount == free.length)
+				free = Arrays.copyOf(free, 2 * freeCount + 16);
+			free[freeCount++] = slot;
+		}
+		break;
+	default:
+		throw new IllegalArgumentException("failState=" + failState);
+	}
+	if (old != failState)
+		Network.failStateChanged(this, at, old, failState);
+}
+
+// --------------------------------------------------------------------------
+
+public int getFailState() { return failstates[slot]; }
+
+// --------------------------------------------------------------------------
+
+public boolean isUp() { return failstates[slot] == OK; }
+
+// --------------------------------------------------------------------------
+
+public Protocol getProtocol(int i)
+{
+	final Protocol[] column = protocols[i];
+	return column != null ? column[slot] : tables[i].get(slot);
+}
+
+// --------------------------------------------------------------------------
+
+public int protocolSize() { return tables.length; }
+
+// --------------------------------------------------------------------------
+
+public int getIndex() { return indexes[slot]; }
+
+// --------------------------------------------------------------------------
+
+public void setIndex(int index) { indexes[slot] = index; }
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the ID of this node. The IDs are generated using a counter
+ * (i.e. they are not random).
+ */
+public long getID() { return id; }
+
+// --------------------------------------------------------------------------
+
+public String toString()
+{
+	StringBuffer buffer = new StringBuffer();
+	buffer.append("ID: " + getID() + " index: " + getIndex() + "\n");
+	for (int i = 0; i < tables.length; ++i)
+		buffer.append("protocol[" + i + "]=" + getProtocol(i) + "\n");
+	return buffer.toString();
+}
+
+// --------------------------------------------------------------------------
+
+/** Implemented as <code>(int)getID()</code>. */
+public int hashCode() { return (int) getID(); }
+
+}
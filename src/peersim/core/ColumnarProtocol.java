@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+/**
+ * A protocol whose state is stored in columns (typically one primitive
+ * array per field, indexed by node) instead of one object per node.
+ * It can be used only in networks of {@link ColumnarNode}s. The object
+ * created from the configuration is the table of all the instances:
+ * it is not cloned, and nodes obtain a lightweight handle to their own
+ * slot through {@link #get}.
+ * <p>
+ * A slot that has just been made available by {@link #setCapacity} must
+ * contain the initial state of the protocol, that is, the state of the
+ * prototype node. The slots of dead nodes are reused after {@link #kill},
+ * so {@link #copy} must overwrite all the state of the target slot.
+ * @see ColumnarNode
+ */
+public interface ColumnarProtocol
+{
+
+/**
+ * Sets the number of slots. The state of the existing slots is preserved.
+ * It is never decreased.
+ */
+public void setCapacity(int capacity);
+
+/**
+ * Sets the state of slot <code>to</code> to a copy of the state of slot
+ * <code>from</code>. It is the equivalent of {@link Protocol#clone}, and
+ * it is called in the same context, that is, with
+ * {@link CommonState#getNode} returning the new node.
+ */
+public void copy(int from, int to);
+
+/**
+ * Returns a handle to the state of the given slot. The handle implements
+ * the interfaces of the protocol. It can be a new object at each call,
+ * so it should not be compared by reference, and it should not be kept
+ * after the node dies, since the slot can be reused by another node.
+ */
+public Protocol get(int slot);
+
+/**
+ * Releases the state of the given slot when its node is removed. It is the
+ * equivalent of {@link Cleanable#onKill}.
+ */
+public void kill(int slot);
+
+}
@@ -110,6 +110,8 @@ public static ExtendedRandom r = null;
 * class should be used. If not specified, the default implementation
 * {@link ExtendedRandom} is used. User-specified random generators 
 * must extend class {@link ExtendedRandom}. 
+* {@link peersim.util.XoroshiroRandom} is a faster alternative to the
+* default one.
 * @config
 */
 public static final String PAR_RANDOM = "random";
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+		
+package peersim.core;
+
+import peersim.config.*;
+import peersim.util.CounterRandom;
+
+/**
+* Decides whether an expensive observer has to recompute its results, based
+* on a cheap signal of the observed state. The observer is still executed
+* by the engine at each time point of its {@link Scheduler}, but, if
+* {@value #PAR_ADAPTIVE} is defined for it, it first computes the signal
+* and calls {@link #due(long)} or {@link #due(double[])}. If this returns
+* false, the observer does not compute its results. It should report the
+* results of the last computation again, so that its output and data files
+* still have a line for each time point, but marked as stale, for example
+* with {@link #getNote} on the standard output and with a flag in the data
+* files.
+*
+* <p>When the signal changes, the results are recomputed at each time point.
+* While the signal is the same, they are recomputed only at exponentially
+* increasing intervals: after 1, 2, 4, ... time points, up to
+* {@value #PAR_MAXSKIP} skipped time points. This bounds how stale the
+* results can be if the signal misses a change, and the next change brings
+* the observer back to its full frequency.
+* Useful signals are {@link #overlaySignal} for observers of an overlay,
+* or the statistics of a set of values (like the average and the variance
+* from {@link peersim.util.IncrementalStats}), which are compared with the
+* tolerance {@value #PAR_TOLERANCE}.
+*
+* <p>Note that if the observer draws random numbers, skipping computations
+* changes the random sequence seen by the rest of the simulation, unless
+* it uses its own stream from {@link RandomStreams}.
+*/
+public class ConvergenceScheduler {
+
+
+// ========================= fields =================================
+// ==================================================================
+
+
+/**
+* If defined, the computations of the observer are skipped while its
+* signal does not change. Not defined by default.
+* @config
+*/
+private static final String PAR_ADAPTIVE = "adaptive";
+
+/**
+* The maximal number of consecutive time points skipped while the signal
+* does not change. Defaults to 64.
+* @config
+*/
+private static final String PAR_MAXSKIP = "adaptive.maxskip";
+
+/**
+* The relative tolerance when comparing signals given as doubles: a
+* signal is unchanged if it differs from the one of the last computation
+* by at most this fraction of its absolute value. Defaults to 0.
+* @config
+*/
+private static final String PAR_TOLERANCE = "adaptive.tolerance";
+
+/** True if {@value #PAR_ADAPTIVE} is defined */
+public final boolean enabled;
+
+private final long maxskip;
+
+private final double tolerance;
+
+private static final double[] EMPTY = new double[0];
+
+/** The signal at the last computation, null if there is none */
+private double[] last = null;
+
+/** The signal at the last computation, if given as a long */
+private long lastLong;
+
+/** Consecutive skips allowed before the next computation */
+private long interval = 1;
+
+/** Time points since the last computation */
+private long waited = 0;
+
+/** Total number of skipped time points */
+private long skipped = 0;
+
+/** The time of the last computation */
+private long lastTime = -1;
+
+
+// ==================== initialization ==============================
+// ==================================================================
+
+
+/** Reads configuration parameters from the component defined by
+* <code>prefix</code>.
+*/
+public ConvergenceScheduler(String prefix)
+{
+	enabled = Configuration.contains(prefix+"."+PAR_ADAPTIVE);
+	maxskip = Configuration.getLong(prefix+"."+PAR_MAXSKIP, 64);
+	tolerance = Configuration.getDouble(prefix+"."+PAR_TOLERANCE, 0);
+	if( maxskip < 0 )
+		throw new IllegalParameterException(prefix+"."+PAR_MAXSKIP,
+			"Must be non-negative");
+	if( tolerance < 0 )
+		throw new IllegalParameterException(prefix+"."+PAR_TOLERANCE,
+			"Must be non-negative");
+}
+
+
+// ===================== public methods ==============================
+// ===================================================================
+
+/**
+* Returns true if the results have to be computed at the current time
+* point, given the current value of the signal. Always true if
+* {@value #PAR_ADAPTIVE} is not defined. Must be called once for each
+* time point.
+*/
+public boolean due(long signal)
+{
+	if( !enabled ) return true;
+	if( !decide(last == null || signal != lastLong) ) return false;
+	last = EMPTY;
+	lastLong = signal;
+	return true;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns true if the results have to be computed at the current time
+* point, given the current values of the signals, which are compared with
+* the tolerance {@value #PAR_TOLERANCE}. Always true if
+* {@value #PAR_ADAPTIVE} is not defined. Must be called once for each
+* time point.
+*/
+public boolean due(double... signal)
+{
+	if( !enabled ) return true;
+	if( !decide(last == null || changed(signal)) ) return false;
+	last = signal.clone();
+	return true;
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the number of time points skipped so far. */
+public long getSkipped()
+{
+	return skipped;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns a note to be printed at a skipped time point, with the time of
+* the last computation and the number of time points skipped so far.
+*/
+public String getNote()
+{
+	return "unchanged since time "+lastTime+", skipped "+skipped;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns a cheap signature of the overlay defined by the given
+* {@link Linkable} protocol and of which nodes are up. It does not
+* depend on the order of the neighbors, and it changes, with high
+* probability, if any link is added or removed. It takes time linear in
+* the number of links, so it saves time only for observers that are much
+* more expensive than a scan of the links, like those computing path
+* lengths or clustering; it is useless for, e.g., degree distributions.
+*/
+public static long overlaySignal(int pid)
+{
+	long h = Network.size();
+	for(int i=0; i<Network.size(); ++i)
+	{
+		final Node n = Network.get(i);
+		final long id = n.getID();
+		if( !n.isUp() ) h += CounterRandom.mix(~id);
+		final Linkable l = (Linkable) n.getProtocol(pid);
+		final long base = CounterRandom.mix(id);
+		for(int j=0; j<l.degree(); ++j)
+			h += CounterRandom.mix(base ^ l.getNeighbor(j).getID());
+	}
+	return h;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Updates the backoff and returns true if the results have to be computed.
+*/
+private boolean decide(boolean changed)
+{
+	if( changed )
+	{
+		interval = 1;
+	}
+	else if( ++waited < interval )
+	{
+		skipped++;
+		return false;
+	}
+	else
+	{
+		// the signal has been stable for a whole interval
+		interval = Math.min(2*interval, maxskip+1);
+	}
+	waited = 0;
+	lastTime = CommonState.getTime();
+	return true;
+}
+
+// -------------------------------------------------------------------
+
+private boolean changed(double[] signal)
+{
+	if( signal.length != last.length ) return true;
+	for(int i=0; i<signal.length; ++i)
+	{
+		// compares bits, so that NaN and infinite signals are stable too
+		if( Double.doubleToLongBits(signal[i]) ==
+			Double.doubleToLongBits(last[i]) ) continue;
+		if( Math.abs(signal[i]-last[i]) > tolerance*Math.abs(signal[i]) )
+			return true;
+	}
+	return false;
+}
+
+}
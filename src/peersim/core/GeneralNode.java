@@ -74,9 +74,11 @@ public GeneralNode(String prefix) {
 	protocol = new Protocol[names.length];
 	for (int i=0; i < names.length; i++) {
 		CommonState.setPid(i);
-		Protocol p = (Protocol) 
-			Configuration.getInstance(names[i]);
-		protocol[i] = p; 
+		Object p = Configuration.getInstance(names[i]);
+		if( p instanceof ColumnarProtocol ) throw new
+			IllegalParameterException(names[i],
+			"Columnar protocols can be used only with ColumnarNode");
+		protocol[i] = (Protocol) p; 
 	}
 }
 
@@ -85,14 +87,26 @@ public GeneralNode(String prefix) {
 
 public Object clone() {
 	
+	return copy(nextID(), true);
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Clones this node giving it the specified ID. If <code>setState</code> is
+* false, {@link CommonState} is not updated while cloning the protocols, so
+* that nodes can be cloned in parallel by {@link Network#reset}.
+*/
+GeneralNode copy(long id, boolean setState) {
+	
 	GeneralNode result = null;
 	try { result=(GeneralNode)super.clone(); }
 	catch( CloneNotSupportedException e ) {} // never happens
 	result.protocol = new Protocol[protocol.length];
-	CommonState.setNode(result);
-	result.ID=nextID();
+	if( setState ) CommonState.setNode(result);
+	result.ID=id;
 	for(int i=0; i<protocol.length; ++i) {
-		CommonState.setPid(i);
+		if( setState ) CommonState.setPid(i);
 		result.protocol[i] = (Protocol)protocol[i].clone();
 	}
 	return result;
@@ -106,6 +120,25 @@ private long nextID() {
 	return counterID++;
 }
 
+// -----------------------------------------------------------------
+
+/**
+* Returns the value of the counter used to generate unique IDs. It is used
+* to save the state of a simulation.
+*/
+public static long getCounterID() { return counterID; }
+
+// -----------------------------------------------------------------
+
+/**
+* Sets the value of the counter used to generate unique IDs. It is used
+* to restore the state of a simulation.
+*/
+public static void setCounterID(long counterID) {
+
+	GeneralNode.counterID = counterID;
+}
+
 // =============== public methods ==================================
 // =================================================================
 
@@ -115,6 +148,7 @@ public void setFailState(int failState) {
 	// after a node is dead, all operations on it are errors by definition
 	if(failstate==DEAD && failState!=DEAD) throw new IllegalStateException(
 		"Cannot change fail state: node is already DEAD");
+	final int old = failstate, at = index;
 	switch(failState)
 	{
 		case OK:
@@ -135,6 +169,7 @@ public void setFailState(int failState) {
 			throw new IllegalArgumentException(
 				"failState="+failState);
 	}
+	if( old != failstate ) Network.failStateChanged(this,at,old,failstate);
 }
 
 // -----------------------------------------------------------------
@@ -171,6 +206,14 @@ public long getID() { return ID; }
 
 //------------------------------------------------------------------
 
+/**
+* Sets the ID of this node. It must be used only to restore the state of
+* a simulation, as IDs are assumed to be unique.
+*/
+public void setID(long ID) { this.ID = ID; }
+
+//------------------------------------------------------------------
+
 public String toString() 
 {
 	StringBuffer buffer = new StringBuffer();
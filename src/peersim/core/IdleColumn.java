@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import java.util.Arrays;
+
+import peersim.config.Configuration;
+
+/**
+ * The columnar version of {@link IdleProtocol}, to be used with
+ * {@link ColumnarNode}. It stores the links of all the nodes in two
+ * columns: the neighbor arrays and their lengths. The neighbor array of a
+ * node is allocated when its first link is added.
+ * Protocols can access the links of a node either through the
+ * {@link Linkable} handle returned by {@link ColumnarNode#getProtocol}, or
+ * directly through the methods of this class taking the slot of the node.
+ */
+public class IdleColumn implements ColumnarProtocol
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * Default init capacity
+ */
+private static final int DEFAULT_INITIAL_CAPACITY = 10;
+
+/**
+ * Initial capacity of the neighbor arrays. Defaults to
+ * {@value #DEFAULT_INITIAL_CAPACITY}.
+ * @config
+ */
+private static final String PAR_INITCAP = "capacity";
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** The initial capacity of the neighbor arrays */
+private final int initcap;
+
+/** Neighbors, indexed by slot */
+private Node[][] neighbors = new Node[0][];
+
+/** Actual number of neighbors in the arrays, indexed by slot */
+private int[] len = new int[0];
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+public IdleColumn(String s)
+{
+	initcap = Math.max(1, Configuration.getInt(s + "." + PAR_INITCAP,
+			DEFAULT_INITIAL_CAPACITY));
+}
+
+//--------------------------------------------------------------------------
+
+public void setCapacity(int capacity)
+{
+	neighbors = Arrays.copyOf(neighbors, capacity);
+	len = Arrays.copyOf(len, capacity);
+}
+
+//--------------------------------------------------------------------------
+
+public void copy(int from, int to)
+{
+	len[to] = len[from];
+	neighbors[to] = (neighbors[from] == null ? null :
+		neighbors[from].clone());
+}
+
+//--------------------------------------------------------------------------
+
+public Protocol get(int slot)
+{
+	return new Link(this, slot);
+}
+
+// --------------------------------------------------------------------------
+
+public void kill(int slot)
+{
+	neighbors[slot] = null;
+	len[slot] = 0;
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/** {@link Linkable#contains} for the given slot */
+public boolean contains(int slot, Node n)
+{
+	final Node[] nb = neighbors[slot];
+	for (int i = len[slot] - 1; i >= 0; i--) {
+		if (nb[i] == n)
+			return true;
+	}
+	return false;
+}
+
+// --------------------------------------------------------------------------
+
+/** {@link Linkable#addNeighbor} for the given slot */
+public boolean addNeighbor(int slot, Node n)
+{
+	if (contains(slot, n))
+		return false;
+	Node[] nb = neighbors[slot];
+	if (nb == null) {
+		nb = neighbors[slot] = new Node[initcap];
+	} else if (len[slot] == nb.length) {
+		nb = neighbors[slot] = Arrays.copyOf(nb, 3 * nb.length / 2 + 1);
+	}
+	nb[len[slot]++] = n;
+	return true;
+}
+
+// --------------------------------------------------------------------------
+
+/** {@link Linkable#getNeighbor} for the given slot */
+public Node getNeighbor(int slot, int i)
+{
+	if (i >= len[slot]) throw new IndexOutOfBoundsException("" + i);
+	return neighbors[slot][i];
+}
+
+// --------------------------------------------------------------------------
+
+/** {@link Linkable#degree} for the given slot */
+public int degree(int slot)
+{
+	return len[slot];
+}
+
+// --------------------------------------------------------------------------
+
+/** {@link Linkable#pack} for the given slot */
+public void pack(int slot)
+{
+	if (neighbors[slot] != null && len[slot] < neighbors[slot].length)
+		neighbors[slot] = Arrays.copyOf(neighbors[slot], len[slot]);
+}
+
+// --------------------------------------------------------------------------
+// Handle
+// --------------------------------------------------------------------------
+
+/**
+ * The {@link Linkable} view of a slot of an {@link IdleColumn}.
+ */
+public static class Link implements Protocol, Linkable
+{
+
+	private final IdleColumn table;
+
+	private final int slot;
+
+	Link(IdleColumn table, int slot)
+	{
+		this.table = table;
+		this.slot = slot;
+	}
+
+	/** Handles cannot be cloned, see {@link ColumnarProtocol}. */
+	public Object clone()
+	{
+		throw new UnsupportedOperationException(
+			"IdleColumn can be used only with ColumnarNode");
+	}
+
+	public boolean contains(Node n) { return table.contains(slot, n); }
+
+	public boolean addNeighbor(Node n) { return table.addNeighbor(slot, n); }
+
+	public Node getNeighbor(int i) { return table.getNeighbor(slot, i); }
+
+	public int degree() { return table.degree(slot); }
+
+	public void pack() { table.pack(slot); }
+
+	public void onKill() { table.kill(slot); }
+
+	public boolean equals(Object o)
+	{
+		return o instanceof Link && ((Link) o).table == table &&
+			((Link) o).slot == slot;
+	}
+
+	public int hashCode() { return slot; }
+
+	public String toString()
+	{
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("len=" + degree() + " [");
+		for (int i = 0; i < degree(); ++i) {
+			buffer.append(getNeighbor(i).getIndex() + " ");
+		}
+		return buffer.append("]").toString();
+	}
+}
+
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import java.util.Arrays;
+
+import peersim.config.Configuration;
+
+/**
+ * A variant of {@link IdleProtocol} that stores the indexes of the
+ * neighbors in an <code>int</code> array, instead of references to them.
+ * The nodes are resolved through {@link Network#get} when
+ * {@link #getNeighbor} is called. When the degree reaches
+ * {@value #PAR_HASH}, an open addressing hash set of the indexes is
+ * maintained as well, so that {@link #contains} and {@link #addNeighbor}
+ * take constant time also for dense overlays. Method {@link #pack}
+ * drops the hash set and sorts the neighbors by index, so that membership
+ * is checked with binary search, without additional storage, until the
+ * next neighbor is added. Note that this changes the order of the
+ * neighbors.
+ * <p>
+ * Since node indexes change when nodes are removed from the network (or
+ * when the network is shuffled or sorted), this protocol can be used only
+ * while the indexes of the nodes are stable, for example to model static
+ * topologies. A neighbor can be added only if it is part of the network.
+ */
+public class IndexIdleProtocol implements Protocol, Linkable
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * Default init capacity
+ */
+private static final int DEFAULT_INITIAL_CAPACITY = 10;
+
+/**
+ * Default degree from which the hash set is used
+ */
+private static final int DEFAULT_HASH_THRESHOLD = 16;
+
+/**
+ * Initial capacity. Defaults to {@value #DEFAULT_INITIAL_CAPACITY}.
+ * @config
+ */
+private static final String PAR_INITCAP = "capacity";
+
+/**
+ * The degree from which membership is checked using a hash set instead of
+ * a linear scan. Defaults to {@value #DEFAULT_HASH_THRESHOLD}.
+ * @config
+ */
+private static final String PAR_HASH = "hash";
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** Indexes of the neighbors */
+protected int[] neighbors;
+
+/** Actual number of neighbors in the array */
+protected int len;
+
+/**
+ * Hash set of the indexes of the neighbors, storing index+1 (0 is empty).
+ * It is null while the degree is below {@link #threshold}.
+ */
+private int[] table = null;
+
+/**
+ * True if {@link #neighbors} is sorted by {@link #pack}. In this case
+ * {@link #table} is null.
+ */
+private boolean sorted = false;
+
+/** {@value #PAR_HASH} */
+private final int threshold;
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+public IndexIdleProtocol(String s)
+{
+	neighbors = new int[Configuration.getInt(s + "." + PAR_INITCAP,
+			DEFAULT_INITIAL_CAPACITY)];
+	threshold = Math.max(1, Configuration.getInt(s + "." + PAR_HASH,
+			DEFAULT_HASH_THRESHOLD));
+	len = 0;
+}
+
+//--------------------------------------------------------------------------
+
+public Object clone()
+{
+	IndexIdleProtocol ip = null;
+	try { ip = (IndexIdleProtocol) super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	ip.neighbors = neighbors.clone();
+	if (table != null) ip.table = table.clone();
+	return ip;
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+public boolean contains(Node n)
+{
+	final int i = n.getIndex();
+	return i >= 0 && i < Network.size() && Network.get(i) == n &&
+		containsIndex(i);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns true if the node with the given index is a neighbor.
+ */
+public boolean containsIndex(int index)
+{
+	if (sorted)
+		return Arrays.binarySearch(neighbors, 0, len, index) >= 0;
+	if (table == null) {
+		for (int i = 0; i < len; i++) {
+			if (neighbors[i] == index)
+				return true;
+		}
+		return false;
+	}
+	final int mask = table.length - 1;
+	for (int h = hash(index) & mask; table[h] != 0; h = (h + 1) & mask) {
+		if (table[h] == index + 1)
+			return true;
+	}
+	return false;
+}
+
+// --------------------------------------------------------------------------
+
+/** Adds given node if it is not already in the network. There is no limit
+* to the number of nodes that can be added. */
+public boolean addNeighbor(Node n)
+{
+	final int i = n.getIndex();
+	if (i < 0 || i >= Network.size() || Network.get(i) != n)
+		throw new IllegalArgumentException(
+			"Only nodes in the network can be added: " + n.getID());
+	return addIndex(i);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Adds the node with the given index, if it is not already a neighbor.
+ * @return true if the neighbor has been added
+ */
+public boolean addIndex(int index)
+{
+	if (containsIndex(index))
+		return false;
+	if (len == neighbors.length)
+		neighbors = Arrays.copyOf(neighbors, 3 * neighbors.length / 2 + 1);
+	neighbors[len++] = index;
+	sorted = false;
+	if (table != null) {
+		if (2 * len > table.length) rehash(2 * len);
+		else insert(index);
+	} else if (len >= threshold) {
+		rehash(2 * len);
+	}
+	return true;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Adds the nodes with the given indexes that are not already neighbors.
+ * The storage is grown at most once, so this is the preferred way of
+ * wiring many links at once.
+ * @param indexes the array containing the indexes to add
+ * @param from the position of the first index in the array
+ * @param count the number of indexes to add
+ * @return the number of neighbors added
+ */
+public int addIndexes(int[] indexes, int from, int count)
+{
+	if (len + count > neighbors.length)
+		neighbors = Arrays.copyOf(neighbors, len + count);
+	if (table == null && len + count >= threshold)
+		rehash(2 * (len + count));
+	int added = 0;
+	for (int i = from; i < from + count; i++) {
+		if (addIndex(indexes[i])) added++;
+	}
+	return added;
+}
+
+// --------------------------------------------------------------------------
+
+public Node getNeighbor(int i)
+{
+	return Network.get(getNeighborIndex(i));
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the index of the i-th neighbor.
+ */
+public int getNeighborIndex(int i)
+{
+	if (i >= len) throw new IndexOutOfBoundsException("" + i);
+	return neighbors[i];
+}
+
+// --------------------------------------------------------------------------
+
+public int degree()
+{
+	return len;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Trims the storage to the current degree. If the degree is at least
+ * {@value #PAR_HASH}, the hash set is dropped and the neighbors are sorted
+ * by index. Does nothing after {@link #onKill}.
+ */
+public void pack()
+{
+	if (neighbors == null) return; // killed
+	if (len < neighbors.length)
+		neighbors = Arrays.copyOf(neighbors, len);
+	if (len >= threshold) {
+		table = null;
+		Arrays.sort(neighbors);
+		sorted = true;
+	}
+}
+
+// --------------------------------------------------------------------------
+
+public String toString()
+{
+	if( neighbors == null ) return "DEAD!";
+	StringBuffer buffer = new StringBuffer();
+	buffer.append("len=" + len + " maxlen=" + neighbors.length + " [");
+	for (int i = 0; i < len; ++i) {
+		buffer.append(neighbors[i] + " ");
+	}
+	return buffer.append("]").toString();
+}
+
+// --------------------------------------------------------------------------
+
+public void onKill()
+{
+	neighbors = null;
+	table = null;
+	sorted = false;
+	len = 0;
+}
+
+// --------------------------------------------------------------------------
+// Private methods
+// --------------------------------------------------------------------------
+
+/** Rebuilds the hash set with at least the given number of slots */
+private void rehash(int size)
+{
+	sorted = false;
+	table = new int[Integer.highestOneBit(Math.max(2, size) - 1) << 1];
+	for (int i = 0; i < len; i++) insert(neighbors[i]);
+}
+
+// --------------------------------------------------------------------------
+
+/** Inserts an index that is not in the hash set */
+private void insert(int index)
+{
+	final int mask = table.length - 1;
+	int h = hash(index) & mask;
+	while (table[h] != 0) h = (h + 1) & mask;
+	table[h] = index + 1;
+}
+
+// --------------------------------------------------------------------------
+
+private static int hash(int index)
+{
+	final int h = index * 0x9E3779B9;
+	return h ^ (h >>> 16);
+}
+
+}
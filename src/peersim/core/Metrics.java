@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import peersim.config.*;
+
+/**
+ * A registry of metrics that the simulation engines and the protocols
+ * publish while the simulation runs, so that long simulations can be
+ * followed from outside the JVM. It is enabled by {@value #PAR_METRICS}.
+ * The metrics can be read through JMX, as the attributes of the MBean
+ * <code>peersim:type=Metrics</code> if {@value #PAR_JMX} is defined, and
+ * in the Prometheus text format from an HTTP server bound to the loopback
+ * interface if {@value #PAR_PORT} is defined:
+ * <pre>
+ * simulation.metrics
+ * simulation.metrics.port 9404
+ * </pre>
+ * Experiments run concurrently in the same JVM (see
+ * {@link peersim.rangesim.RangeSimulator}) cannot share the port and the
+ * MBean: if they are taken, a free port is used and the MBean name gets an
+ * additional key <code>run=2</code>, <code>run=3</code> etc., as printed
+ * on the standard error.
+ * <p>
+ * The engines publish the simulated time, the number of events executed
+ * and their rate, the size of the event queue and the size of the
+ * network, and the memory and garbage collection figures of the JVM are
+ * always published.
+ * <p>
+ * There are three kinds of metrics: {@link Counter}s, {@link Gauge}s and
+ * {@link Histogram}s. Each one has a name, a description, and optionally
+ * labels given as name-value pairs; metrics with the same name and
+ * different labels form a family. Asking for a metric that already exists
+ * returns the existing one, so components can register their metrics in
+ * their constructors. Metrics are updated by the simulation thread and
+ * read by the exporter threads; the values read are consistent for each
+ * metric, but not across metrics. Components should update their metrics
+ * only if {@link #enabled} is true, so that they cost nothing otherwise.
+ */
+public class Metrics
+{
+
+// ======================= parameters ==============================
+// =================================================================
+
+/**
+ * If defined, the metrics are published. Not defined by default.
+ * @config
+ */
+public static final String PAR_METRICS = "simulation.metrics";
+
+/**
+ * The port of the HTTP server that exports the metrics in the Prometheus
+ * text format at any path. The server is bound to the loopback interface
+ * only. If 0 or already in use, a free port is chosen; the port is
+ * printed on the standard error.
+ * If not defined, there is no HTTP server.
+ * @config
+ */
+public static final String PAR_PORT = "simulation.metrics.port";
+
+/**
+ * If defined, the metrics are exported as the attributes of an MBean
+ * registered in the platform MBean server. Not defined by default.
+ * @config
+ */
+public static final String PAR_JMX = "simulation.metrics.jmx";
+
+// ======================= fields ==================================
+// =================================================================
+
+/** True if metrics are published. Read by the components on the hot path. */
+public static boolean enabled = false;
+
+/** The families of metrics, by name */
+private static final Map<String, Family> families =
+	new TreeMap<String, Family>();
+
+/** The exporters, or null if they were not started */
+private static MetricsExporter exporter = null;
+
+// ======================= initialization ==========================
+// =================================================================
+
+/** Does nothing. To avoid construction but allow extension. */
+protected Metrics() {}
+
+// ======================= methods =================================
+// =================================================================
+
+/**
+ * Reads the configuration and, the first time it is called with
+ * {@value #PAR_METRICS} defined, starts the exporters and publishes the
+ * metrics of the JVM. Called by the simulation engines before each
+ * experiment, before the protocols are created. Metrics are kept across
+ * experiments.
+ */
+public static void init()
+{
+	enabled = Configuration.contains(PAR_METRICS);
+	if (!enabled || exporter != null) return;
+	MetricsExporter.registerJvm();
+	gauge("peersim_simulated_time", "Current simulated time, or cycle",
+		new DoubleSupplier() {
+			public double getAsDouble() { return CommonState.getTime(); }
+		});
+	gauge("peersim_network_size", "Number of nodes in the network",
+		new DoubleSupplier() {
+			public double getAsDouble() { return Network.size(); }
+		});
+	exporter = new MetricsExporter(
+		Configuration.getInt(PAR_PORT, -1),
+		Configuration.contains(PAR_JMX));
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Stops the exporters, if they were started. Called when all the
+ * experiments are over, so that the JVM can terminate.
+ */
+public static void close()
+{
+	if (exporter != null) exporter.close();
+	exporter = null;
+	enabled = false;
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Returns the counter with the given name and labels, creating it if it
+ * does not exist.
+ * @param name the name of the metric
+ * @param help the description of the metric
+ * @param labels the labels of the metric, as name-value pairs
+ */
+public static Counter counter(String name, String help, String... labels)
+{
+	return (Counter) get(name, help, "counter", labels,
+		new Supplier<Metric>() {
+			public Metric get() { return new Counter(); }
+		});
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Returns the gauge with the given name and labels, creating it if it
+ * does not exist. If the supplier is not null, the value of the gauge is
+ * read from it, replacing any previous supplier; otherwise it is the
+ * value last given to {@link Gauge#set}. The supplier is called by the
+ * exporter threads, so it should only read fields that the simulation
+ * thread can update safely.
+ * @param name the name of the metric
+ * @param help the description of the metric
+ * @param supplier gives the value of the gauge, can be null
+ * @param labels the labels of the metric, as name-value pairs
+ */
+public static Gauge gauge(String name, String help, DoubleSupplier supplier,
+		String... labels)
+{
+	Gauge g = (Gauge) get(name, help, "gauge", labels,
+		new Supplier<Metric>() {
+			public Metric get() { return new Gauge(); }
+		});
+	if (supplier != null) g.supplier = supplier;
+	return g;
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Returns the histogram with the given name and labels, creating it with
+ * the given bucket bounds if it does not exist.
+ * @param name the name of the metric
+ * @param help the description of the metric
+ * @param bounds the upper bounds of the buckets, in increasing order. An
+ * additional bucket with no upper bound is always present.
+ * @param labels the labels of the metric, as name-value pairs
+ */
+public static Histogram histogram(String name, String help,
+		final double[] bounds, String... labels)
+{
+	return (Histogram) get(name, help, "histogram", labels,
+		new Supplier<Metric>() {
+			public Metric get() { return new Histogram(bounds); }
+		});
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Returns a supplier of the rate per second at which the given counter
+ * increases. The rate is measured between calls at least one second
+ * apart, and the last rate measured is returned by the calls in between.
+ */
+public static DoubleSupplier rate(final Counter counter)
+{
+	return new DoubleSupplier() {
+		private long lastNanos = System.nanoTime();
+		private long lastCount = counter.get();
+		private double rate = 0;
+		public synchronized double getAsDouble()
+		{
+			long now = System.nanoTime();
+			if (now - lastNanos >= 1000000000L) {
+				long count = counter.get();
+				rate = (count - lastCount) * 1e9 / (now - lastNanos);
+				lastNanos = now;
+				lastCount = count;
+			}
+			return rate;
+		}
+	};
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Writes all the metrics in the Prometheus text exposition format.
+ */
+public static void writeText(StringBuilder sb)
+{
+	synchronized (families) {
+		for (Family f : families.values()) {
+			sb.append("# HELP ").append(f.name).append(' ').append(
+				f.help.replace("\\", "\\\\").replace("\n", "\\n")).append(
+				'\n');
+			sb.append("# TYPE ").append(f.name).append(' ').append(
+				f.type).append('\n');
+			for (Map.Entry<String, Metric> m : f.metrics.entrySet())
+				m.getValue().write(sb, f.name, m.getKey());
+		}
+	}
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Returns the current value of all the metrics, by name followed by the
+ * labels. Histograms are given by their count and sum, with the suffixes
+ * "_count" and "_sum".
+ */
+public static Map<String, Double> values()
+{
+	Map<String, Double> map = new TreeMap<String, Double>();
+	synchronized (families) {
+		for (Family f : families.values())
+			for (Map.Entry<String, Metric> m : f.metrics.entrySet())
+				m.getValue().values(map, f.name, m.getKey());
+	}
+	return map;
+}
+
+// -----------------------------------------------------------------
+
+private static Metric get(String name, String help, String type,
+		String[] labels, Supplier<Metric> factory)
+{
+	if (labels.length % 2 != 0)
+		throw new IllegalArgumentException(
+			"Labels of metric " + name + " must be name-value pairs");
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i < labels.length; i += 2) {
+		sb.append(i == 0 ? "" : ",").append(labels[i]).append("=\"").append(
+			labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append(
+			'"');
+	}
+	String key = sb.toString();
+	synchronized (families) {
+		Family f = families.get(name);
+		if (f == null) {
+			f = new Family(name, help, type);
+			families.put(name, f);
+		} else if (!f.type.equals(type))
+			throw new IllegalArgumentException("Metric " + name +
+				" is a " + f.type + ", not a " + type);
+		Metric m = f.metrics.get(key);
+		if (m == null) {
+			m = factory.get();
+			f.metrics.put(key, m);
+		}
+		return m;
+	}
+}
+
+// -----------------------------------------------------------------
+
+/** Formats a value as required by the Prometheus text format */
+private static String format(double v)
+{
+	if (v == Double.POSITIVE_INFINITY) return "+Inf";
+	if (v == Double.NEGATIVE_INFINITY) return "-Inf";
+	if (v == (long) v) return Long.toString((long) v);
+	return Double.toString(v);
+}
+
+// -----------------------------------------------------------------
+
+private static String labels(String labels, String extra)
+{
+	if (labels.isEmpty())
+		return extra.isEmpty() ? "" : "{" + extra + "}";
+	return "{" + labels + (extra.isEmpty() ? "" : "," + extra) + "}";
+}
+
+// ======================= inner classes ===========================
+// =================================================================
+
+/** The metrics with the same name. */
+private static class Family
+{
+	final String name;
+	final String help;
+	final String type;
+	/** The metrics by their labels */
+	final Map<String, Metric> metrics = new TreeMap<String, Metric>();
+
+	Family(String name, String help, String type)
+	{
+		this.name = name;
+		this.help = help;
+		this.type = type;
+	}
+}
+
+// -----------------------------------------------------------------
+
+/** A single metric. */
+public static abstract class Metric
+{
+	abstract void write(StringBuilder sb, String name, String labels);
+
+	abstract void values(Map<String, Double> map, String name,
+		String labels);
+}
+
+// -----------------------------------------------------------------
+
+/** A value that can only increase. */
+public static class Counter extends Metric
+{
+	private final LongAdder value = new LongAdder();
+
+	/** Increments the counter by one. */
+	public void inc()
+	{
+		value.increment();
+	}
+
+	/** Increments the counter by the given non-negative amount. */
+	public void add(long n)
+	{
+		value.add(n);
+	}
+
+	/** Returns the current value. */
+	public long get()
+	{
+		return value.sum();
+	}
+
+	void write(StringBuilder sb, String name, String labels)
+	{
+		sb.append(name).append(labels(labels, "")).append(' ').append(
+			get()).append('\n');
+	}
+
+	void values(Map<String, Double> map, String name, String labels)
+	{
+		map.put(name + labels(labels, ""), (double) get());
+	}
+}
+
+// -----------------------------------------------------------------
+
+/** A value that can increase and decrease. */
+public static class Gauge extends Metric
+{
+	private volatile DoubleSupplier supplier = null;
+
+	private volatile double value = 0;
+
+	/** Sets the value, if the gauge has no supplier. */
+	public void set(double v)
+	{
+		value = v;
+	}
+
+	/** Returns the current value. */
+	public double get()
+	{
+		DoubleSupplier s = supplier;
+		return s == null ? value : s.getAsDouble();
+	}
+
+	void write(StringBuilder sb, String name, String labels)
+	{
+		sb.append(name).append(labels(labels, "")).append(' ').append(
+			format(get())).append('\n');
+	}
+
+	void values(Map<String, Double> map, String name, String labels)
+	{
+		map.put(name + labels(labels, ""), get());
+	}
+}
+
+// -----------------------------------------------------------------
+
+/** Counts the observed values in buckets, and keeps their sum. */
+public static class Histogram extends Metric
+{
+	private final double[] bounds;
+
+	/** Non cumulative counts of the buckets */
+	private final AtomicLongArray counts;
+
+	private final DoubleAdder sum = new DoubleAdder();
+
+	private Histogram(double[] bounds)
+	{
+		for (int i = 1; i < bounds.length; ++i)
+			if (bounds[i] <= bounds[i - 1])
+				throw new IllegalArgumentException(
+					"Histogram bounds must be increasing");
+		this.bounds = bounds.clone();
+		counts = new AtomicLongArray(bounds.length + 1);
+	}
+
+	/** Adds the given value to the histogram. */
+	public void observe(double v)
+	{
+		int i = Arrays.binarySearch(bounds, v);
+		if (i < 0) i = -i - 1;
+		counts.incrementAndGet(i);
+		sum.add(v);
+	}
+
+	void write(StringBuilder sb, String name, String labels)
+	{
+		long c = 0;
+		for (int i = 0; i <= bounds.length; ++i) {
+			c += counts.get(i);
+			String le = "le=\"" + (i < bounds.length ? format(bounds[i]) :
+				"+Inf") + "\"";
+			sb.append(name).append("_bucket").append(labels(labels, le))
+				.append(' ').append(c).append('\n');
+		}
+		sb.append(name).append("_sum").append(labels(labels, "")).append(
+			' ').append(format(sum.sum())).append('\n');
+		sb.append(name).append("_count").append(labels(labels, "")).append(
+			' ').append(c).append('\n');
+	}
+
+	void values(Map<String, Double> map, String name, String labels)
+	{
+		long c = 0;
+		for (int i = 0; i <= bounds.length; ++i) c += counts.get(i);
+		map.put(name + "_count" + labels(labels, ""), (double) c);
+		map.put(name + "_sum" + labels(labels, ""), sum.sum());
+	}
+}
+
+}
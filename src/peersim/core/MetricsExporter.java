@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.DoubleSupplier;
+
+import javax.management.*;
+
+import com.sun.net.httpserver.*;
+
+import peersim.config.*;
+
+/**
+ * Exports the {@link Metrics} through HTTP and JMX, and publishes the
+ * metrics of the JVM. The HTTP server and the MBean read the registry
+ * from their own threads, which are daemon threads, and are stopped by
+ * {@link #close}.
+ * <p>
+ * The port and the MBean name belong to the whole JVM, while each
+ * experiment run in process by the Range Simulator has its own registry,
+ * so neither is taken over from another experiment.
+ */
+class MetricsExporter
+{
+
+// ======================= fields ==================================
+// =================================================================
+
+private static final String MBEAN_NAME = "peersim:type=Metrics";
+
+/** The HTTP server, or null */
+private HttpServer server = null;
+
+/** The name of the registered MBean, or null */
+private ObjectName mbean = null;
+
+// ======================= initialization ==========================
+// =================================================================
+
+/**
+ * Starts the exporters.
+ * @param port the port of the HTTP server, or a negative value for none
+ * @param jmx true if the MBean is to be registered
+ */
+MetricsExporter(int port, boolean jmx)
+{
+	if (port >= 0) startHttp(port);
+	if (jmx) startJmx();
+}
+
+// -----------------------------------------------------------------
+
+private void startHttp(int port)
+{
+	try {
+		try {
+			server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), 0);
+		} catch (BindException e) {
+			// e.g. another experiment in the same JVM
+			System.err.println("Metrics: port " + port +
+				" is in use, using a free port");
+			server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), 0), 0);
+		}
+	} catch (IOException e) {
+		throw new IllegalParameterException(Metrics.PAR_PORT,
+			"Cannot start the metrics server: " + e);
+	}
+	server.createContext("/", new HttpHandler() {
+		public void handle(HttpExchange ex) throws IOException
+		{
+			StringBuilder sb = new StringBuilder();
+			Metrics.writeText(sb);
+			byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+			ex.getResponseHeaders().set("Content-Type",
+				"text/plain; version=0.0.4; charset=utf-8");
+			ex.sendResponseHeaders(200, body.length);
+			try (OutputStream out = ex.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	});
+	server.setExecutor(Executors.newSingleThreadExecutor(
+		new ThreadFactory() {
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "metrics-http");
+				t.setDaemon(true);
+				return t;
+			}
+		}));
+	server.start();
+	System.err.println("Metrics: serving on http://" +
+		server.getAddress().getHostString() + ":" +
+		server.getAddress().getPort() + "/metrics");
+}
+
+// -----------------------------------------------------------------
+
+private void startJmx()
+{
+	try {
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		for (int run = 1; mbean == null; run++) {
+			ObjectName name = new ObjectName(run == 1 ? MBEAN_NAME :
+				MBEAN_NAME + ",run=" + run);
+			try {
+				mbs.registerMBean(new Bean(), name);
+				mbean = name;
+			} catch (InstanceAlreadyExistsException e) {
+				// registered by another experiment in the same JVM
+			}
+		}
+		System.err.println("Metrics: registered MBean " + mbean);
+	} catch (JMException e) {
+		throw new IllegalParameterException(Metrics.PAR_JMX,
+			"Cannot register the metrics MBean: " + e);
+	}
+}
+
+// ======================= methods =================================
+// =================================================================
+
+/**
+ * Publishes the heap usage and the garbage collection figures of the JVM.
+ */
+static void registerJvm()
+{
+	final MemoryMXBean mem = ManagementFactory.getMemoryMXBean();
+	Metrics.gauge("jvm_memory_heap_used_bytes", "Used heap memory",
+		new DoubleSupplier() {
+			public double getAsDouble()
+			{
+				return mem.getHeapMemoryUsage().getUsed();
+			}
+		});
+	Metrics.gauge("jvm_memory_heap_committed_bytes", "Committed heap memory",
+		new DoubleSupplier() {
+			public double getAsDouble()
+			{
+				return mem.getHeapMemoryUsage().getCommitted();
+			}
+		});
+	Metrics.gauge("jvm_memory_heap_max_bytes", "Maximum heap memory",
+		new DoubleSupplier() {
+			public double getAsDouble()
+			{
+				return mem.getHeapMemoryUsage().getMax();
+			}
+		});
+	for (final GarbageCollectorMXBean gc :
+			ManagementFactory.getGarbageCollectorMXBeans()) {
+		Metrics.gauge("jvm_gc_collections", "Garbage collections",
+			new DoubleSupplier() {
+				public double getAsDouble()
+				{
+					return gc.getCollectionCount();
+				}
+			}, "gc", gc.getName());
+		Metrics.gauge("jvm_gc_collection_seconds",
+			"Time spent in garbage collections",
+			new DoubleSupplier() {
+				public double getAsDouble()
+				{
+					return gc.getCollectionTime() / 1000.0;
+				}
+			}, "gc", gc.getName());
+	}
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Stops the HTTP server and unregisters the MBean.
+ */
+void close()
+{
+	if (server != null) {
+		server.stop(0);
+		((ExecutorService) server.getExecutor()).shutdownNow();
+	}
+	server = null;
+	if (mbean != null) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbean);
+		} catch (JMException e) {} // already unregistered
+	}
+	mbean = null;
+}
+
+// ======================= inner classes ===========================
+// =================================================================
+
+/**
+ * An MBean whose read-only attributes are the current values of the
+ * metrics, as given by {@link Metrics#values}.
+ */
+private static class Bean implements DynamicMBean
+{
+	public Object getAttribute(String name)
+		throws AttributeNotFoundException
+	{
+		Double v = Metrics.values().get(name);
+		if (v == null) throw new AttributeNotFoundException(name);
+		return v;
+	}
+
+	public AttributeList getAttributes(String[] names)
+	{
+		Map<String, Double> values = Metrics.values();
+		AttributeList list = new AttributeList();
+		for (String n : names) {
+			Double v = values.get(n);
+			if (v != null) list.add(new Attribute(n, v));
+		}
+		return list;
+	}
+
+	public void setAttribute(Attribute a) throws AttributeNotFoundException
+	{
+		throw new AttributeNotFoundException(
+			"Metrics are read only: " + a.getName());
+	}
+
+	public AttributeList setAttributes(AttributeList list)
+	{
+		return new AttributeList();
+	}
+
+	public Object invoke(String action, Object[] params, String[] sig)
+		throws ReflectionException
+	{
+		throw new ReflectionException(new NoSuchMethodException(action));
+	}
+
+	public MBeanInfo getMBeanInfo()
+	{
+		Set<String> names = Metrics.values().keySet();
+		MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[names.size()];
+		int i = 0;
+		for (String n : names)
+			attrs[i++] = new MBeanAttributeInfo(n, "java.lang.Double", n,
+				true, false, false);
+		return new MBeanInfo(getClass().getName(),
+			"PeerSim simulation metrics", attrs, null, null, null);
+	}
+}
+
+}
@@ -19,6 +19,7 @@
 package peersim.core;
 
 import peersim.config.Configuration;
+import peersim.util.ExtendedRandom;
 import java.util.Comparator;
 import java.util.Arrays;
 
@@ -40,6 +41,12 @@ import java.util.Arrays;
 * defines connections between nodes. In fact, such a {@link Linkable} protocol
 * layer can be accessed through a {@link peersim.graph.Graph} view
 * using {@link OverlayGraph}.
+* <p>
+* Changes of the node list can be observed by registering a
+* {@link NetworkListener}. Several changes, for example the churn applied by
+* a control in one step, can be grouped into a single notification with
+* {@link #beginBatch()} and {@link #endBatch()}, and many nodes can be added or
+* removed at once with {@link #addAll} and {@link #removeAll}.
 */
 public class Network {
 
@@ -98,6 +105,21 @@ private static int len;
 */
 public static Node prototype = null;
 
+/**
+* The registered listeners. The array is replaced, never modified, so that
+* listeners can be added or removed during a notification.
+*/
+private static NetworkListener[] listeners = new NetworkListener[0];
+
+/** The changes not yet delivered to the listeners */
+private static NetworkChange pending = new NetworkChange();
+
+/** The changes being delivered, swapped with {@link #pending} */
+private static NetworkChange delivered = new NetworkChange();
+
+/** Nesting depth of {@link #beginBatch()} calls */
+private static int batch = 0;
+
 
 // ====================== initialization ===========================
 // =================================================================
@@ -109,6 +131,11 @@ public static Node prototype = null;
 */
 public static void reset() {
 
+	// the listeners belong to the previous experiment
+	listeners = new NetworkListener[0];
+	pending.clear();
+	batch = 0;
+
 	if( prototype != null )
 	{
 		// not first experiment
@@ -140,7 +167,24 @@ public static void reset() {
 	prototype.setIndex(-1);
 
 	// cloning the nodes
-	if(len > 0 )
+	if( len > 0 && Bootstrap.isParallel() &&
+		prototype instanceof GeneralNode )
+	{
+		// the IDs are the same as in the sequential case
+		final GeneralNode proto = (GeneralNode) prototype;
+		final long base = GeneralNode.getCounterID();
+		GeneralNode.setCounterID(base+len);
+		Bootstrap.run(len, new Bootstrap.Task() {
+			public void run(int from, int to, ExtendedRandom r) {
+				for(int i=from; i<to; ++i)
+				{
+					node[i] = proto.copy(base+i, false);
+					node[i].setIndex(i);
+				}
+			}
+		});
+	}
+	else if(len > 0 )
 	{
 		for(int i=0; i<len; ++i)
 		{
@@ -172,7 +216,9 @@ public static void setCapacity(int newSize) {
 
 	if( node == null || newSize != node.length )
 	{
+		beginBatch();
 		for(int i=newSize; i<len; ++i) remove();
+		endBatch();
 		Node[] newnodes = new Node[newSize];
 		final int l = Math.min(node.length,newSize);
 		System.arraycopy(node,0,newnodes,0,l);
@@ -201,6 +247,29 @@ public static void add( Node n ) {
 	node[len] = n;
 	n.setIndex(len);
 	len++;
+	record(NetworkChange.ADDED,n,-1,len-1);
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Appends the first <code>count</code> nodes of the given array to the end
+* of the list, in the given order. The capacity is increased at most once,
+* and the listeners receive a single notification.
+*/
+public static void addAll( Node[] nodes, int count ) {
+
+	if( len+count > node.length )
+		setCapacity(Math.max(len+count,3*node.length/2+1));
+	beginBatch();
+	for(int i=0; i<count; ++i)
+	{
+		node[len] = nodes[i];
+		nodes[i].setIndex(len);
+		len++;
+		record(NetworkChange.ADDED,nodes[i],-1,len-1);
+	}
+	endBatch();
 }
 
 // ------------------------------------------------------------------
@@ -225,10 +294,8 @@ public static Node get( int index ) {
 */
 public static Node remove() {
 	
-	Node n = node[len-1]; // if len was zero this throws and exception
-	node[len-1]=null;
-	len--;
-	n.setFailState(Fallible.DEAD);
+	Node n = detach();
+	record(NetworkChange.REMOVED,n,len,-1);
 	return n;
 }
 
@@ -245,8 +312,60 @@ public static Node remove() {
 public static Node remove(int i) {
 	
 	if( i<0 || i>=len ) throw new IndexOutOfBoundsException(""+i);
-	swap(i,len-1);
-	return remove();
+	final int last = len-1;
+	exchange(i,last);
+	Node n = detach();
+	record(NetworkChange.REMOVED,n,i,-1);
+	if( i != last ) record(NetworkChange.MOVED,node[i],last,i);
+	return n;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Removes the nodes at the first <code>count</code> indexes of the given
+* array, which must be distinct. The array is not modified.
+* The nodes are removed as in {@link #remove(int)}, in decreasing
+* order of index, so the nodes moved to fill the gaps are never among the
+* ones to be removed, and the cost is O(c log c) for c nodes
+* independently of the size of the network. The listeners receive a single
+* notification.
+*/
+public static void removeAll( int[] indexes, int count ) {
+
+	int[] idx = Arrays.copyOf(indexes,count);
+	Arrays.sort(idx);
+	for(int k=0; k<count; ++k)
+	{
+		if( idx[k]<0 || idx[k]>=len )
+			throw new IndexOutOfBoundsException(""+idx[k]);
+		if( k>0 && idx[k]==idx[k-1] ) throw new IllegalArgumentException(
+			"Index "+idx[k]+" is given more than once");
+	}
+	beginBatch();
+	for(int k=count-1; k>=0; --k) remove(idx[k]);
+	endBatch();
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Removes the nodes at the first <code>count</code> indexes of the given
+* array one after the other, exactly as successive calls of
+* {@link #remove(int)}: each index refers to the network as left by the
+* previous removals, so it must be smaller than the size of the network
+* minus its position in the array. The nodes removed and the final order of
+* the others are the same as with the successive calls, but the listeners
+* receive a single notification.
+*/
+public static void removeInOrder( int[] indexes, int count ) {
+
+	for(int k=0; k<count; ++k)
+		if( indexes[k]<0 || indexes[k]>=len-k )
+			throw new IndexOutOfBoundsException(""+indexes[k]);
+	beginBatch();
+	for(int k=0; k<count; ++k) remove(indexes[k]);
+	endBatch();
 }
 
 // ------------------------------------------------------------------
@@ -256,11 +375,14 @@ public static Node remove(int i) {
 */
 public static void swap(int i, int j) {
 	
-	Node n = node[i];
-	node[i] = node[j];
-	node[j] = n;
-	node[j].setIndex(j);
-	node[i].setIndex(i);
+	exchange(i,j);
+	if( i != j )
+	{
+		beginBatch();
+		record(NetworkChange.MOVED,node[j],i,j);
+		record(NetworkChange.MOVED,node[i],j,i);
+		endBatch();
+	}
 }
 
 // ------------------------------------------------------------------
@@ -270,7 +392,9 @@ public static void swap(int i, int j) {
 */
 public static void shuffle() {
 	
+	beginBatch();
 	for(int i=len; i>1; i--) swap(i-1, CommonState.r.nextInt(i));
+	endBatch();
 }
 
 // ------------------------------------------------------------------
@@ -283,7 +407,153 @@ public static void shuffle() {
 public static void sort(Comparator<? super Node> c) {
 	
 	Arrays.sort(node,0,len,c);
-	for(int i=0; i<len; i++) node[i].setIndex(i);
+	beginBatch();
+	for(int i=0; i<len; i++)
+	{
+		final int old = node[i].getIndex();
+		node[i].setIndex(i);
+		if( old != i ) record(NetworkChange.MOVED,node[i],old,i);
+	}
+	endBatch();
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Registers a listener that will be notified of the changes of the node
+* list from now on. The listeners are dropped when the network is
+* {@link #reset()}.
+*/
+public static void addListener(NetworkListener l) {
+
+	NetworkListener[] tmp = Arrays.copyOf(listeners,listeners.length+1);
+	tmp[listeners.length] = l;
+	listeners = tmp;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Removes the given listener if it is registered.
+*/
+public static void removeListener(NetworkListener l) {
+
+	for(int i=0; i<listeners.length; ++i)
+	{
+		if( listeners[i] != l ) continue;
+		NetworkListener[] tmp = new NetworkListener[listeners.length-1];
+		System.arraycopy(listeners,0,tmp,0,i);
+		System.arraycopy(listeners,i+1,tmp,i,tmp.length-i);
+		listeners = tmp;
+		return;
+	}
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Starts collecting the changes of the node list instead of notifying the
+* listeners after each of them. Batches can be nested; the changes are
+* delivered in a single notification when the outermost batch is closed
+* by {@link #endBatch()}.
+*/
+public static void beginBatch() { batch++; }
+
+// ------------------------------------------------------------------
+
+/**
+* Closes a batch opened by {@link #beginBatch()}. If it was the outermost
+* one, the listeners are notified of the changes collected.
+*/
+public static void endBatch() {
+
+	if( batch == 0 ) throw new IllegalStateException(
+		"endBatch() without beginBatch()");
+	if( --batch == 0 && pending.size() > 0 ) flush();
+}
+
+// =============== package methods =================================
+// =================================================================
+
+/**
+* Called by the node implementations of this package when the fail
+* state of a node changes. It is reported only if the node is in the
+* network at the given index; the removed nodes are reported by the removal.
+*/
+static void failStateChanged(Node n, int index, int from, int to) {
+
+	if( index>=0 && index<len && node[index]==n )
+		record(NetworkChange.FAILSTATE,n,from,to);
+}
+
+// =============== private methods =================================
+// =================================================================
+
+/**
+* Swaps the two nodes at the given indexes without reporting it.
+*/
+private static void exchange(int i, int j) {
+	
+	Node n = node[i];
+	node[i] = node[j];
+	node[j] = n;
+	node[j].setIndex(j);
+	node[i].setIndex(i);
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Removes the node at the end of the list and sets its fail state to
+* {@link Fallible#DEAD} without reporting it.
+*/
+private static Node detach() {
+
+	Node n = node[len-1]; // if len was zero this throws and exception
+	node[len-1]=null;
+	len--;
+	n.setFailState(Fallible.DEAD);
+	return n;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Records a change, and delivers it if no batch is open. Nothing is
+* recorded if there are no listeners.
+*/
+private static void record(int kind, Node n, int from, int to) {
+
+	if( listeners.length == 0 ) return;
+	pending.record(kind,n,from,to);
+	if( batch == 0 ) flush();
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Delivers the pending changes. The changes made by the listeners during
+* the delivery are collected and delivered after it.
+*/
+private static void flush() {
+
+	batch++;
+	try
+	{
+		while( pending.size() > 0 )
+		{
+			NetworkChange c = pending;
+			pending = delivered;
+			delivered = c;
+			final NetworkListener[] ls = listeners;
+			for(int i=0; i<ls.length; ++i) ls[i].networkChanged(c);
+			c.clear();
+		}
+	}
+	finally
+	{
+		batch--;
+	}
 }
 
 // ------------------------------------------------------------------
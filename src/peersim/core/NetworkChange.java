@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import java.util.Arrays;
+
+/**
+* An ordered list of changes of the node list of {@link Network}, as
+* passed to {@link NetworkListener}s. Each change has a kind, the node it
+* refers to and two integers whose meaning depends on the kind. Applying
+* the changes in the given order to a copy of the node list taken at the
+* previous notification results in the current node list.
+* <p>
+* The changes are stored in parallel arrays that are reused between
+* notifications, so recording them does not allocate after the arrays have
+* grown large enough.
+*/
+public class NetworkChange {
+
+
+// ========================= fields =================================
+// ==================================================================
+
+
+/**
+* The node was added to the network. The "from" value is -1, the "to"
+* value is the index of the node.
+*/
+public static final int ADDED = 0;
+
+/**
+* The node was removed from the network. The "from" value is the index
+* the node had before the removal, the "to" value is -1.
+*/
+public static final int REMOVED = 1;
+
+/**
+* The node was moved to a different index. The "from" and "to" values
+* are the old and the new index.
+*/
+public static final int MOVED = 2;
+
+/**
+* The fail state of a node in the network has changed. The "from" and
+* "to" values are the old and the new fail state. Note that the removal
+* of a node is reported only as {@link #REMOVED}, even if it sets the fail
+* state to {@link Fallible#DEAD}.
+*/
+public static final int FAILSTATE = 3;
+
+private byte[] kinds = new byte[16];
+
+private Node[] nodes = new Node[16];
+
+private int[] from = new int[16];
+
+private int[] to = new int[16];
+
+private int size = 0;
+
+
+// ====================== initialization ===========================
+// =================================================================
+
+
+/** Only {@link Network} creates instances. */
+NetworkChange() {}
+
+
+// =============== package methods =================================
+// =================================================================
+
+
+/** Appends a change to the list. */
+void record(int kind, Node n, int f, int t) {
+
+	if( size == kinds.length )
+	{
+		final int l = 2*size;
+		kinds = Arrays.copyOf(kinds,l);
+		nodes = Arrays.copyOf(nodes,l);
+		from = Arrays.copyOf(from,l);
+		to = Arrays.copyOf(to,l);
+	}
+	kinds[size] = (byte)kind;
+	nodes[size] = n;
+	from[size] = f;
+	to[size] = t;
+	size++;
+}
+
+// ------------------------------------------------------------------
+
+/** Empties the list, releasing the references to the nodes. */
+void clear() {
+
+	Arrays.fill(nodes,0,size,null);
+	size = 0;
+}
+
+
+// =============== public methods ==================================
+// =================================================================
+
+
+/** Returns the number of changes in the list. */
+public int size() { return size; }
+
+// ------------------------------------------------------------------
+
+/**
+* Returns the kind of the i-th change, one of {@link #ADDED},
+* {@link #REMOVED}, {@link #MOVED} and {@link #FAILSTATE}.
+*/
+public int getKind(int i) { return kinds[i]; }
+
+// ------------------------------------------------------------------
+
+/** Returns the node the i-th change refers to. */
+public Node getNode(int i) { return nodes[i]; }
+
+// ------------------------------------------------------------------
+
+/**
+* Returns the old index or fail state of the i-th change, depending on its
+* kind.
+*/
+public int getFrom(int i) { return from[i]; }
+
+// ------------------------------------------------------------------
+
+/**
+* Returns the new index or fail state of the i-th change, depending on its
+* kind.
+*/
+public int getTo(int i) { return to[i]; }
+
+// ------------------------------------------------------------------
+
+/** Returns the number of changes of the given kind in the list. */
+public int count(int kind) {
+
+	int c = 0;
+	for(int i=0; i<size; ++i) if( kinds[i] == kind ) c++;
+	return c;
+}
+
+// ------------------------------------------------------------------
+
+public String toString() {
+
+	StringBuilder sb = new StringBuilder("NetworkChange[");
+	final String[] names = {"ADDED","REMOVED","MOVED","FAILSTATE"};
+	for(int i=0; i<size; ++i)
+	{
+		if( i > 0 ) sb.append(", ");
+		sb.append(names[kinds[i]]).append(' ').append(nodes[i].getID())
+			.append(' ').append(from[i]).append("->").append(to[i]);
+	}
+	return sb.append(']').toString();
+}
+
+}
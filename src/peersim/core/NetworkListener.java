@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+/**
+* Receives the changes of the node list of {@link Network}. Listeners are
+* registered with {@link Network#addListener} and are notified after
+* nodes are added, removed, moved to a different index, or change their
+* fail state.
+* Changes made inside {@link Network#beginBatch()} and
+* {@link Network#endBatch()} are delivered in a single notification when
+* the outermost batch ends; other changes are delivered immediately, as a
+* batch containing a single event.
+*/
+public interface NetworkListener {
+
+/**
+* Called with the changes since the last notification. The object passed
+* is reused by the network after the call, so it must not be stored.
+* The listener may modify the network; those changes are delivered in a
+* following notification.
+*/
+public void networkChanged(NetworkChange c);
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import java.io.*;
+import java.util.*;
+
+import peersim.config.*;
+
+/**
+ * Accounts for the time spent by the protocols and the controls of a
+ * simulation. It is enabled by {@value #PAR_PROFILE}. The simulation engines
+ * report every execution of a protocol (an event delivered to it, or a
+ * cycle) and of a control, and the profiler counts the executions, the
+ * events of each class delivered to each protocol, and the time spent.
+ * At the end of each experiment it prints a summary on the standard error,
+ * and it can write the same figures for each interval of
+ * {@value peersim.edsim.EDSimulator#PAR_LOGTIME} time units (of each cycle
+ * in cycle driven simulations) to the file {@value #PAR_FILE}.
+ * <p>
+ * To keep the overhead low, only one execution of a protocol every
+ * {@value #PAR_SAMPLE} is timed, and the total time of each protocol is
+ * estimated from the executions that were timed. The counts are always
+ * exact, and controls are always timed.
+ * Note that the time of a control includes that of the protocols it runs,
+ * as in the case of {@link peersim.cdsim.FullNextCycle}.
+ */
+public class Profiler
+{
+
+// ======================= parameters ==============================
+// =================================================================
+
+/**
+ * If defined, the simulation is profiled. Not defined by default.
+ * @config
+ */
+public static final String PAR_PROFILE = "simulation.profile";
+
+/**
+ * Only one execution of a protocol every this many is timed. Defaults to 1, that is,
+ * all the executions are timed.
+ * @config
+ */
+public static final String PAR_SAMPLE = "simulation.profile.sample";
+
+/**
+ * The file where the figures of each interval are written. If the name
+ * ends with ".json", each interval is written as a line of JSON,
+ * otherwise as lines of comma separated values with the columns
+ * <code>time,name,count,ms</code>, where the name "queue" gives the size
+ * of the event queue in the count column. If not defined, only the
+ * summary is printed. With more experiments, the experiment number is
+ * appended to the name.
+ * @config
+ */
+public static final String PAR_FILE = "simulation.profile.file";
+
+// ======================= fields ==================================
+// =================================================================
+
+/** True if profiling is enabled. Read by the engines on the hot path. */
+public static boolean enabled = false;
+
+private static int sample;
+
+/** Counts the executions, to decide which ones are timed */
+private static int tick;
+
+private static Entry[] protocols;
+
+private static LinkedHashMap<String, Entry> controls;
+
+private static PrintStream series;
+
+private static boolean json;
+
+private static long startNanos;
+
+private static long lastNanos;
+
+private static int maxQueue;
+
+private static int experiment = 0;
+
+// ======================= initialization ==========================
+// =================================================================
+
+/** Does nothing. To avoid construction but allow extension. */
+protected Profiler() {}
+
+// ======================= methods =================================
+// =================================================================
+
+/**
+ * Prepares the profiler for a new experiment, reading the configuration.
+ * Called by the simulation engines before the experiment starts.
+ */
+public static void reset()
+{
+	enabled = Configuration.contains(PAR_PROFILE);
+	if (!enabled) return;
+	sample = Configuration.getInt(PAR_SAMPLE, 1);
+	if (sample < 1)
+		throw new IllegalParameterException(PAR_SAMPLE, "Must be positive");
+	String[] names = Configuration.getNames(Node.PAR_PROT);
+	protocols = new Entry[names.length];
+	for (int i = 0; i < names.length; ++i) protocols[i] = new Entry(names[i]);
+	controls = new LinkedHashMap<String, Entry>();
+	tick = 0;
+	maxQueue = 0;
+	series = null;
+	if (Configuration.contains(PAR_FILE)) {
+		String file = Configuration.getString(PAR_FILE);
+		json = file.endsWith(".json");
+		if (experiment > 0) file += "." + experiment;
+		try {
+			series = new PrintStream(new FileOutputStream(file));
+		} catch (IOException e) {
+			throw new IllegalParameterException(PAR_FILE, e.toString());
+		}
+		if (!json) series.println("time,name,count,ms");
+	}
+	experiment++;
+	startNanos = lastNanos = System.nanoTime();
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Called before the execution of a protocol. Returns the current time in
+ * nanoseconds if the execution is to be timed, -1 otherwise. The returned
+ * value must be passed to {@link #endProtocol}.
+ */
+public static long begin()
+{
+	if (++tick < sample) return -1;
+	tick = 0;
+	return System.nanoTime();
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Called before the execution of a control. Returns the current time in
+ * nanoseconds, which must be passed to {@link #endControl}.
+ */
+public static long beginControl()
+{
+	return System.nanoTime();
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Called after the execution of the given protocol.
+ * @param pid the protocol identifier
+ * @param event the event delivered to the protocol, or null for a cycle
+ * @param start the value returned by {@link #begin}
+ */
+public static void endProtocol(int pid, Object event, long start)
+{
+	final long t = (start >= 0 ? System.nanoTime() : 0);
+	Entry e = protocols[pid];
+	e.end(start, t);
+	e.type(event == null ? null : event.getClass());
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Called after the execution of the given control.
+ * @param name the name of the control
+ * @param start the value returned by {@link #beginControl}
+ */
+public static void endControl(String name, long start)
+{
+	final long t = System.nanoTime();
+	Entry e = controls.get(name);
+	if (e == null) {
+		e = new Entry(name);
+		controls.put(name, e);
+	}
+	e.end(start, t);
+}
+
+// -----------------------------------------------------------------
+
+/** Records the given size of the event queue. */
+public static void queue(int size)
+{
+	if (size > maxQueue) maxQueue = size;
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Writes the figures of the interval ending at the given time to the file
+ * {@value #PAR_FILE}, if defined, and starts a new interval.
+ * @param time the current time, or cycle
+ * @param queue the size of the event queue, or -1 if there is no queue
+ */
+public static void interval(long time, int queue)
+{
+	if (series == null) return;
+	long now = System.nanoTime();
+	if (json) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"time\":").append(time).append(",\"wallms\":").append(
+			ms(now - lastNanos));
+		if (queue >= 0) sb.append(",\"queue\":").append(queue);
+		sb.append(",\"entries\":{");
+		boolean first = true;
+		for (Entry e : entries()) {
+			if (e.count == e.lastCount) continue;
+			if (!first) sb.append(',');
+			first = false;
+			sb.append('"').append(e.name).append("\":{\"count\":").append(
+				e.count - e.lastCount).append(",\"ms\":").append(
+				ms(e.estimate() - e.lastEstimate)).append('}');
+		}
+		series.println(sb.append("}}"));
+	} else {
+		if (queue >= 0) series.println(time + ",queue," + queue + ",");
+		for (Entry e : entries()) {
+			if (e.count == e.lastCount) continue;
+			series.println(time + "," + e.name + "," +
+				(e.count - e.lastCount) + "," +
+				ms(e.estimate() - e.lastEstimate));
+		}
+	}
+	for (Entry e : entries()) {
+		e.lastCount = e.count;
+		e.lastEstimate = e.estimate();
+	}
+	lastNanos = now;
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Prints the summary of the experiment on the standard error and closes
+ * the file {@value #PAR_FILE}. Called by the simulation engines at the
+ * end of the experiment.
+ */
+public static void summary()
+{
+	if (!enabled) return;
+	if (series != null) series.close();
+	series = null;
+	long wall = System.nanoTime() - startNanos;
+	List<Entry> all = entries();
+	long total = 0;
+	for (Entry e : all) total += e.count;
+	System.err.println("Profiler: " + total + " executions in " +
+		ms(wall) + " ms" + (maxQueue > 0 ? ", largest event queue " +
+		maxQueue : ""));
+	System.err.println("Profiler: name count ms %wall ns/execution");
+	Collections.sort(all, new Comparator<Entry>() {
+		public int compare(Entry a, Entry b) {
+			return Long.compare(b.estimate(), a.estimate());
+		}
+	});
+	for (Entry e : all) {
+		if (e.count == 0) continue;
+		long est = e.estimate();
+		StringBuilder sb = new StringBuilder("Profiler: ");
+		sb.append(e.name).append(' ').append(e.count).append(' ').append(
+			ms(est)).append(' ').append(String.format(Locale.ROOT, "%.1f",
+			100.0 * est / wall)).append(' ').append(est / e.count);
+		if (e.types != null) {
+			sb.append(" [");
+			boolean first = true;
+			for (Map.Entry<Class<?>, long[]> t : e.types.entrySet()) {
+				if (!first) sb.append(' ');
+				first = false;
+				sb.append(t.getKey() == null ? "cycle" :
+					t.getKey().getSimpleName()).append(':').append(
+					t.getValue()[0]);
+			}
+			sb.append(']');
+		}
+		System.err.println(sb);
+	}
+}
+
+// -----------------------------------------------------------------
+
+private static List<Entry> entries()
+{
+	List<Entry> all = new ArrayList<Entry>(Arrays.asList(protocols));
+	all.addAll(controls.values());
+	return all;
+}
+
+// -----------------------------------------------------------------
+
+private static long ms(long nanos)
+{
+	return nanos / 1000000;
+}
+
+// ======================= inner classes ===========================
+// =================================================================
+
+/** The figures of a protocol or control. */
+private static class Entry
+{
+	final String name;
+	long count = 0;
+	/** Number of timed executions and their total time */
+	long timed = 0;
+	long nanos = 0;
+	/** Figures at the end of the last interval */
+	long lastCount = 0;
+	long lastEstimate = 0;
+	/** Executions by event class, null for controls */
+	LinkedHashMap<Class<?>, long[]> types = null;
+	/** The last class and counter, to avoid most lookups */
+	Class<?> lastType = Entry.class;
+	long[] lastCounter = null;
+
+	Entry(String name)
+	{
+		this.name = name;
+	}
+
+	void end(long start, long now)
+	{
+		count++;
+		if (start < 0) return;
+		timed++;
+		nanos += now - start;
+	}
+
+	void type(Class<?> c)
+	{
+		if (c != lastType) {
+			if (types == null) types = new LinkedHashMap<Class<?>, long[]>();
+			lastCounter = types.get(c);
+			if (lastCounter == null) {
+				lastCounter = new long[1];
+				types.put(c, lastCounter);
+			}
+			lastType = c;
+		}
+		lastCounter[0]++;
+	}
+
+	/** Returns the estimated total time in nanoseconds */
+	long estimate()
+	{
+		return timed == 0 ? 0 : (long) ((double) nanos * count / timed);
+	}
+}
+
+}
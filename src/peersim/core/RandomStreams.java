@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.core;
+
+import peersim.config.Configuration;
+import peersim.util.CounterRandom;
+import peersim.util.ExtendedRandom;
+
+/**
+ * Derives independent random streams from the seed of the experiment, one
+ * for each node, protocol and purpose, or for each named component.
+ * By default all the components draw from {@link CommonState#r}, so a
+ * component that draws one more number (for example an observer that is
+ * added to the configuration) changes all the later draws of the others.
+ * If {@value #PAR_STREAMS} is defined, the components that support it draw
+ * from their own stream instead, which depends only on the seed and on the
+ * identity of the component, and the results of the other components are
+ * unaffected. The option also makes the event queue of the event driven
+ * simulator return the events with the same time and priority in the
+ * order they were added (see {@link peersim.edsim.Heap}).
+ * <p>
+ * The streams are {@link CounterRandom} generators whose key is computed
+ * from the seed returned by {@link ExtendedRandom#getLastSeed()} of
+ * {@link CommonState#r}, that is, the seed of the current experiment, and
+ * from the identity of the stream. Creating a stream takes constant time
+ * and two streams share no state.
+ * <p>
+ * The streams are not saved by {@link peersim.edsim.Checkpoint}, which
+ * therefore refuses to write or restore checkpoints if this option is
+ * enabled. Note also that the option is off by default because it changes
+ * the results of existing configurations.
+ */
+public class RandomStreams {
+
+// ======================= parameters ==============================
+// =================================================================
+
+/**
+* If defined, the components that support it use their own random stream
+* instead of {@link CommonState#r}. Not defined by default.
+* @config
+*/
+public static final String PAR_STREAMS = "random.streams";
+
+// ======================= fields ==================================
+// =================================================================
+
+/** Separates the keys of node streams from the keys of the others */
+private static final long NODE = 0x6E6F6465L;
+
+/** Separates the keys of protocol streams from the keys of the others */
+private static final long PROTOCOL = 0x70726F74L;
+
+/** Separates the keys of named streams from the keys of the others */
+private static final long NAMED = 0x6E616D65L;
+
+// ======================= initialization ==========================
+// =================================================================
+
+/** Does nothing. To avoid construction but allow extension. */
+protected RandomStreams() {}
+
+// ======================= methods =================================
+// =================================================================
+
+/**
+* Returns true if {@value #PAR_STREAMS} is defined. The configuration is
+* read at each call, and not when the class is loaded, since the class can
+* be loaded before the configuration is set, and the configuration can
+* change between experiments run in the same JVM. Components should call
+* this method once, when they are created.
+*/
+public static boolean isEnabled() {
+
+	return Configuration.contains(PAR_STREAMS);
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Returns a new stream identified by the given three values. The same
+* values give the same stream within an experiment.
+*/
+public static CounterRandom stream(long domain, long a, long b) {
+
+	long k = CounterRandom.derive(CommonState.r.getLastSeed(), domain);
+	k = CounterRandom.derive(k, a);
+	k = CounterRandom.derive(k, b);
+	return new CounterRandom(k);
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Returns a new stream for the given node, protocol and purpose. The
+* purpose is an arbitrary value that allows a protocol to use several
+* independent streams in the same node. The node is identified by its
+* {@link Node#getID() ID} and not by its index, since the index changes
+* when other nodes are removed.
+*/
+public static CounterRandom forNode(Node node, int pid, int purpose) {
+
+	return stream(NODE ^ ((long) purpose << 32), node.getID(), pid);
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Returns a new stream for the given protocol and purpose, to be shared by
+* all the nodes. Useful for protocols that have a single instance, such as
+* most transports.
+*/
+public static CounterRandom forProtocol(int pid, int purpose) {
+
+	return stream(PROTOCOL, pid, purpose);
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Returns a new stream identified by the given name, typically the
+* configuration prefix of a component.
+*/
+public static CounterRandom forName(String name) {
+
+	long h = 0xCBF29CE484222325L; // 64 bit FNV-1a
+	for(int i=0; i<name.length(); ++i)
+	{
+		h ^= name.charAt(i);
+		h *= 0x100000001B3L;
+	}
+	return stream(NAMED, h, name.length());
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Returns the generator a control with the given name should use: its own
+* stream if {@value #PAR_STREAMS} is defined, {@link CommonState#r}
+* otherwise. Controls are created after the seed of the experiment is set,
+* so they can keep the returned generator for the whole experiment.
+*/
+public static ExtendedRandom control(String name) {
+
+	return isEnabled() ? forName(name) : CommonState.r;
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Returns the generator a protocol should use if it draws values that are
+* independent of the node: its own stream if {@value #PAR_STREAMS} is
+* defined, null otherwise, in which case {@link CommonState#r} should be
+* read at each draw, because it is replaced when a checkpoint is restored.
+*/
+public static ExtendedRandom protocol(int pid) {
+
+	return isEnabled() ? forProtocol(pid, 0) : null;
+}
+
+}
@@ -181,6 +181,22 @@ public long getNext()
 	return ret;
 }
 
-}
+// -------------------------------------------------------------------
 
+/**
+* Sets the next time point to the first one not smaller than the given
+* time, so that the next call to {@link #getNext} returns it. It is used
+* when a simulation is resumed from a checkpoint.
+*/
+public void skipTo(long time)
+{
+	if( from >= until || time - from >= until - from ) next = -1;
+	else if( time <= from ) next = from;
+	else
+	{
+		long t = from + ((time - from + step - 1)/step)*step;
+		next = ( t - from < until - from ? t : -1 );
+	}
+}
 
+}
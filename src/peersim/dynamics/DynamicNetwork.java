@@ -122,6 +122,10 @@ protected final NodeInitializer[] inits;
  */
 protected void add(int n)
 {
+	// grows the capacity at most once, and geometrically
+	final int capacity = Network.getCapacity();
+	if (capacity < Network.size() + n)
+		Network.setCapacity(Math.max(Network.size() + n, 3 * capacity / 2 + 1));
 	for (int i = 0; i < n; ++i) {
 		Node newnode = (Node) Network.prototype.clone();
 		for (int j = 0; j < inits.length; ++j) {
@@ -136,14 +140,34 @@ protected void add(int n)
 /**
  * Removes n nodes from the network. Extending classes can implement any
  * algorithm to do that. The default algorithm removes <em>random</em>
- * nodes <em>permanently</em> simply by calling {@link Network#remove(int)}.
+ * nodes <em>permanently</em> (see {@link #removeRandom}).
  * @param n the number of nodes to remove
  */
 protected void remove(int n)
 {
-	for (int i = 0; i < n; ++i) {
-		Network.remove(CommonState.r.nextInt(Network.size()));
+	removeRandom(n);
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Removes n random nodes permanently. The indexes are drawn from
+ * {@link CommonState#r} as by n calls of
+ * <code>Network.remove(CommonState.r.nextInt(Network.size()))</code>, so
+ * the same nodes are removed as in the previous versions, but they are
+ * removed with a single call of {@link Network#removeInOrder}, so the
+ * listeners receive a single notification.
+ * Used also by {@link OscillatingNetwork}.
+ * @param n the number of nodes to remove
+ */
+static void removeRandom(int n)
+{
+	final int size = Network.size();
+	int[] indexes = new int[n];
+	for (int k = 0; k < n; ++k) {
+		indexes[k] = CommonState.r.nextInt(size - k);
 	}
+	Network.removeInOrder(indexes, n);
 }
 
 
@@ -176,7 +200,8 @@ public DynamicNetwork(String prefix)
 
 /**
  * Calls {@link #add(int)} or {@link #remove} with the parameters defined by the
- * configuration.
+ * configuration. The {@link peersim.core.NetworkListener}s are notified of
+ * all the changes at once.
  * @return always false 
  */
 public final boolean execute()
@@ -203,8 +228,10 @@ public final boolean execute()
 		if (substitute)
 			toadd = toremove;
 	}
+	Network.beginBatch();
 	remove(toremove);
 	add(toadd);
+	Network.endBatch();
 	return false;
 }
 
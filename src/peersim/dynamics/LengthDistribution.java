@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.dynamics;
+
+import peersim.config.*;
+import peersim.util.ExtendedRandom;
+
+/**
+ * A distribution of time lengths, such as session lengths and downtimes,
+ * read from the configuration. The type of the distribution is the value of
+ * the prefix, and its parameters are given under the prefix. For example:
+ * <pre>
+control.churn.session weibull
+control.churn.session.shape 0.5
+control.churn.session.scale 3600000
+ * </pre>
+ * The supported types and their parameters are the following:
+ * <ul>
+ * <li><code>const</code>: always returns {@value #PAR_VALUE}</li>
+ * <li><code>uniform</code>: uniform between {@value #PAR_MIN} and
+ * {@value #PAR_MAX}</li>
+ * <li><code>exp</code>: exponential with the given {@value #PAR_MEAN}</li>
+ * <li><code>weibull</code>: Weibull with the given {@value #PAR_SHAPE} and
+ * {@value #PAR_SCALE}</li>
+ * <li><code>pareto</code>: Pareto with the given {@value #PAR_SHAPE} and
+ * {@value #PAR_SCALE}, the latter being the minimal value</li>
+ * <li><code>lognormal</code>: the exponential of a normal variable with
+ * the given {@value #PAR_MU} and {@value #PAR_SIGMA}</li>
+ * </ul>
+ * The drawn values are rounded to integers, and are at least 1, so that
+ * events scheduled using them always happen in the future.
+ */
+public class LengthDistribution
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * The value of the constant distribution.
+ * @config
+ */
+private static final String PAR_VALUE = "value";
+
+/**
+ * The minimum of the uniform distribution.
+ * @config
+ */
+private static final String PAR_MIN = "min";
+
+/**
+ * The maximum of the uniform distribution.
+ * @config
+ */
+private static final String PAR_MAX = "max";
+
+/**
+ * The mean of the exponential distribution.
+ * @config
+ */
+private static final String PAR_MEAN = "mean";
+
+/**
+ * The shape parameter of the Weibull and Pareto distributions. Values
+ * less than 1 give heavy tailed distributions.
+ * @config
+ */
+private static final String PAR_SHAPE = "shape";
+
+/**
+ * The scale parameter of the Weibull and Pareto distributions.
+ * @config
+ */
+private static final String PAR_SCALE = "scale";
+
+/**
+ * The mean of the logarithm of the lognormal distribution.
+ * @config
+ */
+private static final String PAR_MU = "mu";
+
+/**
+ * The standard deviation of the logarithm of the lognormal distribution.
+ * @config
+ */
+private static final String PAR_SIGMA = "sigma";
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+private static final int CONST = 0, UNIFORM = 1, EXP = 2, WEIBULL = 3,
+	PARETO = 4, LOGNORMAL = 5;
+
+private final int type;
+
+/** The two parameters of the distribution, depending on the type */
+private final double a, b;
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+/**
+ * Reads the type and the parameters of the distribution.
+ * @param prefix the configuration prefix of the distribution
+ */
+public LengthDistribution(String prefix)
+{
+	String name = Configuration.getString(prefix);
+	if (name.equals("const")) {
+		type = CONST;
+		a = Configuration.getDouble(prefix + "." + PAR_VALUE);
+		b = 0;
+	} else if (name.equals("uniform")) {
+		type = UNIFORM;
+		a = Configuration.getDouble(prefix + "." + PAR_MIN);
+		b = Configuration.getDouble(prefix + "." + PAR_MAX);
+		if (b < a)
+			throw new IllegalParameterException(prefix + "." + PAR_MAX,
+				"Must not be less than " + PAR_MIN);
+	} else if (name.equals("exp")) {
+		type = EXP;
+		a = positive(prefix + "." + PAR_MEAN);
+		b = 0;
+	} else if (name.equals("weibull") || name.equals("pareto")) {
+		type = name.equals("weibull") ? WEIBULL : PARETO;
+		a = positive(prefix + "." + PAR_SHAPE);
+		b = positive(prefix + "." + PAR_SCALE);
+	} else if (name.equals("lognormal")) {
+		type = LOGNORMAL;
+		a = Configuration.getDouble(prefix + "." + PAR_MU);
+		b = positive(prefix + "." + PAR_SIGMA);
+	} else {
+		throw new IllegalParameterException(prefix, "Unknown distribution "
+			+ name + "; possible values are const, uniform, exp, weibull, "
+			+ "pareto and lognormal");
+	}
+}
+
+// --------------------------------------------------------------------------
+
+private static double positive(String name)
+{
+	double v = Configuration.getDouble(name);
+	if (v <= 0)
+		throw new IllegalParameterException(name, "Must be positive");
+	return v;
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/**
+ * Draws a value from the distribution using the given random generator.
+ * The value is at least 1.
+ */
+public long next(ExtendedRandom r)
+{
+	double x;
+	switch (type) {
+	case CONST:
+		x = a;
+		break;
+	case UNIFORM:
+		x = a + (b - a) * r.nextDouble();
+		break;
+	case EXP:
+		x = -a * Math.log(1 - r.nextDouble());
+		break;
+	case WEIBULL:
+		x = b * Math.pow(-Math.log(1 - r.nextDouble()), 1 / a);
+		break;
+	case PARETO:
+		x = b / Math.pow(1 - r.nextDouble(), 1 / a);
+		break;
+	default:
+		x = Math.exp(a + b * r.nextGaussian());
+	}
+	if (x >= Long.MAX_VALUE) return Long.MAX_VALUE;
+	return Math.max(1, Math.round(x));
+}
+
+}
@@ -144,6 +144,10 @@ public OscillatingNetwork(String prefix)
  */
 protected void add(int n)
 {
+	// grows the capacity at most once, and geometrically
+	final int capacity = Network.getCapacity();
+	if (capacity < Network.size() + n)
+		Network.setCapacity(Math.max(Network.size() + n, 3 * capacity / 2 + 1));
 	for (int i = 0; i < n; ++i) {
 		Node newnode = (Node) Network.prototype.clone();
 		for (int j = 0; j < inits.length; ++j) {
@@ -158,14 +162,12 @@ protected void add(int n)
 /**
  * Removes n nodes from the network. Extending classes can implement any
  * algorithm to do that. The default algorithm removes <em>random</em>
- * nodes <em>permanently</em> simply by calling {@link Network#remove(int)}.
+ * nodes <em>permanently</em>, as {@link DynamicNetwork#remove} does.
  * @param n the number of nodes to remove
  */
 protected void remove(int n)
 {
-	for (int i = 0; i < n; ++i) {
-		Network.remove(CommonState.r.nextInt(Network.size()));
-	}
+	DynamicNetwork.removeRandom(n);
 }
 
 // ------------------------------------------------------------------
@@ -189,10 +191,12 @@ public boolean execute()
 	  (int) (Math.sin(((double) time) / period * Math.PI) *
 	  amplitude);
 	int diff = newsize - Network.size();
+	Network.beginBatch();
 	if (diff < 0)
 		remove(-diff);
 	else
 		add(diff);
+	Network.endBatch();
 	
 	return false;
 }
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.dynamics;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.EDSimulator;
+import peersim.util.IncrementalStats;
+
+/**
+ * Models churn in event driven simulations as alternating online sessions
+ * and offline periods of the nodes, whose lengths are drawn from the
+ * distributions {@value #PAR_SESSION} and {@value #PAR_DOWNTIME} (see
+ * {@link LengthDistribution}). Measured peer-to-peer churn is usually
+ * described by heavy tailed (Weibull or Pareto) session lengths.
+ * <p>
+ * The first execution of this control starts following the nodes currently
+ * in the network: the ones that are up start a session, the others start
+ * an offline period. After that, each transition of a node is an event
+ * in the queue of {@link EDSimulator}, scheduled with
+ * {@link EDSimulator#add(long,Control)} when the previous transition
+ * happens, so the cost of a transition is logarithmic in the number of
+ * pending events and independent of the step of this control.
+ * <p>
+ * By default a node going offline gets fail state {@link Fallible#DOWN},
+ * and when it comes back, the initializers {@value #PAR_INIT} are applied
+ * to it before it becomes {@link Fallible#OK} again. Note that in this case
+ * the node is in the network while the initializers run. If
+ * {@value #PAR_REMOVE} is defined, a node going offline is removed
+ * from the network instead, and it comes back as a new node cloned from the
+ * prototype and initialized by the initializers, as in
+ * {@link DynamicNetwork}. Nodes removed by other components are no longer
+ * followed.
+ * <p>
+ * The arrival of nodes can follow a daily pattern: if {@value #PAR_AMPLITUDE}
+ * is defined, each offline period is divided by
+ * <code>1+amplitude*sin(2*pi*time/period)</code>, evaluated when the period
+ * starts.
+ * <p>
+ * Each execution, including the first one, prints the availability
+ * statistics in one line: the current time, the network size, the number of
+ * followed nodes that are online, the number of joins and leaves since the
+ * previous execution, the availability (the fraction of the total followed
+ * time the nodes spent online), and the average length of the sessions and of
+ * the offline periods completed so far.
+ * Only the first execution matters for the churn itself, so the
+ * {@value Scheduler#PAR_STEP} of this control only sets how often the
+ * statistics are printed.
+ * <p>
+ * The transitions cannot be saved by {@link peersim.edsim.Checkpoint},
+ * which fails if it finds one in the event queue. A checkpoint can still be
+ * taken before the first execution of this control, for example to start
+ * the churn on an overlay that has already converged.
+ */
+public class SessionChurn implements Control
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * The distribution of the session lengths, see {@link LengthDistribution}.
+ * @config
+ */
+private static final String PAR_SESSION = "session";
+
+/**
+ * The distribution of the lengths of the offline periods, see
+ * {@link LengthDistribution}.
+ * @config
+ */
+private static final String PAR_DOWNTIME = "downtime";
+
+/**
+ * Config parameter which gives the prefix of node initializers, applied on
+ * the nodes coming back online. See {@link DynamicNetwork} for the
+ * format.
+ * @config
+ */
+private static final String PAR_INIT = "init";
+
+/**
+ * If defined, the nodes going offline are removed from the network and
+ * new nodes join at the end of the offline periods. Not set by default.
+ * @config
+ */
+private static final String PAR_REMOVE = "remove";
+
+/**
+ * The relative amplitude of the daily variation of the arrivals; must be in
+ * [0,1). Defaults to 0, that is, no variation.
+ * @config
+ */
+private static final String PAR_AMPLITUDE = "amplitude";
+
+/**
+ * The length of a day, in time units. Required if
+ * {@value #PAR_AMPLITUDE} is defined.
+ * @config
+ */
+private static final String PAR_PERIOD = "period";
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** The name of this control in the configuration */
+private final String name;
+
+/** value of {@value #PAR_SESSION} */
+private final LengthDistribution session;
+
+/** value of {@value #PAR_DOWNTIME} */
+private final LengthDistribution downtime;
+
+/** node initializers to apply on the nodes coming back online */
+private final NodeInitializer[] inits;
+
+/** value of {@value #PAR_REMOVE} */
+private final boolean remove;
+
+/** value of {@value #PAR_AMPLITUDE} */
+private final double amplitude;
+
+/** value of {@value #PAR_PERIOD} */
+private final long period;
+
+/** True after the first execution */
+private boolean started = false;
+
+/** The number of followed nodes */
+private int slots = 0;
+
+/** The sum of the times the followed nodes started to be followed */
+private long sumFollowed = 0;
+
+/** The total followed time of the nodes no longer followed */
+private long closed = 0;
+
+/** The number of followed nodes online */
+private int online = 0;
+
+/** The sum of the start times of the current sessions */
+private long sumSession = 0;
+
+/** The total length of the completed sessions */
+private long upTime = 0;
+
+/** Joins and leaves since the last execution */
+private int joins = 0, leaves = 0;
+
+/** The lengths of the completed sessions */
+private final IncrementalStats sessions = new IncrementalStats();
+
+/** The lengths of the completed offline periods */
+private final IncrementalStats downtimes = new IncrementalStats();
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public SessionChurn(String prefix)
+{
+	if (!EDSimulator.isConfigurationEventDriven())
+		throw new IllegalParameterException(prefix,
+			"Can be used only in event driven simulations");
+	name = prefix;
+	session = new LengthDistribution(prefix + "." + PAR_SESSION);
+	downtime = new LengthDistribution(prefix + "." + PAR_DOWNTIME);
+	remove = Configuration.contains(prefix + "." + PAR_REMOVE);
+	amplitude = Configuration.getDouble(prefix + "." + PAR_AMPLITUDE, 0);
+	if (amplitude < 0 || amplitude >= 1)
+		throw new IllegalParameterException(prefix + "." + PAR_AMPLITUDE,
+			"Must be in [0,1)");
+	if (amplitude > 0) {
+		period = Configuration.getLong(prefix + "." + PAR_PERIOD);
+		if (period <= 0)
+			throw new IllegalParameterException(prefix + "." + PAR_PERIOD,
+				"Must be positive");
+	} else {
+		period = 0;
+	}
+	Object[] tmp = Configuration.getInstanceArray(prefix + "." + PAR_INIT);
+	inits = new NodeInitializer[tmp.length];
+	for (int i = 0; i < tmp.length; ++i)
+		inits[i] = (NodeInitializer) tmp[i];
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/**
+ * Starts following the nodes in the network at the first execution, and
+ * prints the availability statistics.
+ * @return always false
+ */
+public boolean execute()
+{
+	final long now = CommonState.getTime();
+	if (!started) {
+		started = true;
+		for (int i = 0; i < Network.size(); ++i) {
+			Node n = Network.get(i);
+			Slot s = new Slot(n, now);
+			slots++;
+			sumFollowed += now;
+			if (n.isUp()) {
+				s.up = true;
+				online++;
+				sumSession += now;
+				EDSimulator.add(session.next(CommonState.r), s);
+			} else {
+				EDSimulator.add(nextDowntime(now), s);
+			}
+		}
+	}
+
+	final long followed = closed + slots * now - sumFollowed;
+	final long up = upTime + online * now - sumSession;
+	System.out.println(name + ": " + now + " " + Network.size() + " " +
+		online + " " + joins + " " + leaves + " " +
+		(followed > 0 ? (double) up / followed : 1.0) + " " +
+		(sessions.getN() > 0 ? sessions.getAverage() : 0) + " " +
+		(downtimes.getN() > 0 ? downtimes.getAverage() : 0));
+	joins = 0;
+	leaves = 0;
+	return false;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Draws the length of an offline period starting at the given time.
+ */
+private long nextDowntime(long now)
+{
+	long d = downtime.next(CommonState.r);
+	if (amplitude == 0) return d;
+	double f = 1 + amplitude * Math.sin(2 * Math.PI * (now % period) / period);
+	return Math.max(1, Math.round(d / f));
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Performs the next transition of the given slot.
+ */
+private void transition(Slot s)
+{
+	final long now = CommonState.getTime();
+	if (s.node != null && s.node.getFailState() == Fallible.DEAD) {
+		// removed by some other component
+		if (s.up) endSession(s, now);
+		slots--;
+		sumFollowed -= s.followed;
+		closed += now - s.followed;
+		return;
+	}
+	if (s.up) {
+		endSession(s, now);
+		leaves++;
+		sessions.add(now - s.since);
+		if (remove) {
+			Network.remove(s.node.getIndex());
+			s.node = null;
+		} else {
+			s.node.setFailState(Fallible.DOWN);
+		}
+		s.up = false;
+		s.since = now;
+		EDSimulator.add(nextDowntime(now), s);
+	} else {
+		joins++;
+		downtimes.add(now - s.since);
+		if (remove) {
+			s.node = (Node) Network.prototype.clone();
+			for (int j = 0; j < inits.length; ++j)
+				inits[j].initialize(s.node);
+			Network.add(s.node);
+		} else {
+			for (int j = 0; j < inits.length; ++j)
+				inits[j].initialize(s.node);
+			s.node.setFailState(Fallible.OK);
+		}
+		s.up = true;
+		s.since = now;
+		online++;
+		sumSession += now;
+		EDSimulator.add(session.next(CommonState.r), s);
+	}
+}
+
+// --------------------------------------------------------------------------
+
+private void endSession(Slot s, long now)
+{
+	online--;
+	sumSession -= s.since;
+	upTime += now - s.since;
+}
+
+// --------------------------------------------------------------------------
+// Inner classes
+// --------------------------------------------------------------------------
+
+/**
+ * A followed node, which is also the event of its next transition. In
+ * {@value #PAR_REMOVE} mode the successive nodes of the slot are different
+ * objects.
+ */
+private class Slot implements Control
+{
+	/** The current node, null while offline in remove mode */
+	Node node;
+	/** True if the node is online */
+	boolean up = false;
+	/** The start time of the current session or offline period */
+	long since;
+	/** The time since the slot is followed */
+	final long followed;
+
+	Slot(Node node, long now)
+	{
+		this.node = node;
+		since = now;
+		followed = now;
+	}
+
+	public boolean execute()
+	{
+		transition(this);
+		return false;
+	}
+}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.dynamics;
+
+import java.io.IOException;
+import java.io.FileReader;
+import java.io.LineNumberReader;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.*;
+import peersim.util.AliasTable;
+
+/**
+* Wires a random graph with a given degree sequence using the configuration
+* model, removing self loops and multiple edges. The degree sequence is
+* either read from a file, or drawn from a power law distribution.
+* The graph is undirected, so unless <code>undir</code> is set, only one
+* direction of each edge is added.
+* @see GraphFactory#configurationModel
+*/
+public class WireConfigurationModel extends WireGraph {
+
+
+// ================ constants ============================================
+// =======================================================================
+
+/**
+ * The file containing the degree sequence: the i-th number in the file is the
+ * degree of the node with index i. Lines starting with "#" are ignored. The
+ * nodes not listed get degree 0.
+ * Either this parameter or {@value #PAR_GAMMA} has to be defined.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/**
+ * The exponent of the power law the degrees are drawn from independently:
+ * the probability of degree d is proportional to d<sup>-gamma</sup>,
+ * between {@value #PAR_MIN} and {@value #PAR_MAX}.
+ * @config
+ */
+private static final String PAR_GAMMA = "gamma";
+
+/**
+ * The minimal degree of the power law. Defaults to 1.
+ * @config
+ */
+private static final String PAR_MIN = "min";
+
+/**
+ * The maximal degree of the power law. Defaults to the network size
+ * minus one.
+ * @config
+ */
+private static final String PAR_MAX = "max";
+
+
+// =================== fields ============================================
+// =======================================================================
+
+/** value of {@value #PAR_FILE}, or null */
+private final String file;
+
+/** value of {@value #PAR_GAMMA} */
+private final double gamma;
+
+/** value of {@value #PAR_MIN} */
+private final int min;
+
+/** value of {@value #PAR_MAX}, or -1 if not set */
+private final int max;
+
+// ===================== initialization ==================================
+// =======================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+*/
+public WireConfigurationModel(String prefix)
+{
+	super(prefix);
+	file = Configuration.getString(prefix + "." + PAR_FILE, null);
+	if( file == null )
+		gamma = Configuration.getDouble(prefix + "." + PAR_GAMMA);
+	else
+		gamma = 0;
+	min = Configuration.getInt(prefix + "." + PAR_MIN, 1);
+	max = Configuration.getInt(prefix + "." + PAR_MAX, -1);
+	if( min < 0 ) throw new IllegalParameterException(
+		prefix + "." + PAR_MIN, "Must not be negative");
+	if( max >= 0 && max < min ) throw new IllegalParameterException(
+		prefix + "." + PAR_MAX, "Must not be less than " + PAR_MIN);
+}
+
+
+// ======================== methods =======================================
+// ========================================================================
+
+
+/** Adds the edges generated by {@link GraphFactory#configurationModel}.*/
+public void wire(Graph g) {
+	
+	edges(g.size()).wire(g);
+}
+
+// -------------------------------------------------------------------
+
+/** Calls {@link GraphFactory#configurationModel}.*/
+protected EdgeList edges(int n) {
+	
+	return GraphFactory.configurationModel(
+		(file != null ? readDegrees(n) : drawDegrees(n)),
+		true, CommonState.r);
+}
+
+// -------------------------------------------------------------------
+
+/** Draws the degrees of n nodes from the power law */
+private int[] drawDegrees(int n) {
+
+	final int hi = (max >= 0 ? max : n-1);
+	if( hi < min ) return new int[n];
+	double[] w = new double[hi-min+1];
+	for(int d=min; d<=hi; ++d) w[d-min] = (d == 0 ? 0 : Math.pow(d,-gamma));
+	if( min == 0 && hi == 0 ) w[0] = 1;
+	AliasTable at = new AliasTable(w);
+	int[] degree = new int[n];
+	for(int i=0; i<n; ++i) degree[i] = min + at.next(CommonState.r);
+	return degree;
+}
+
+// -------------------------------------------------------------------
+
+/** Reads the degrees of n nodes from the file */
+private int[] readDegrees(int n) {
+
+	int[] degree = new int[n];
+	int i = 0;
+	try
+	{
+		LineNumberReader lnr = new LineNumberReader(new FileReader(file));
+		String line;
+		while( i<n && (line=lnr.readLine()) != null )
+		{
+			line = line.trim();
+			if( line.length()==0 || line.startsWith("#") ) continue;
+			degree[i++] = Integer.parseInt(line);
+		}
+		lnr.close();
+	}
+	catch( IOException e )
+	{
+		throw new RuntimeException(e);
+	}
+	if( i < n )
+		System.err.println("WireConfigurationModel warning: "+file+
+			" has "+i+" degrees, the remaining nodes get degree 0.");
+	return degree;
+}
+
+}
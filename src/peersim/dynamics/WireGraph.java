@@ -18,7 +18,9 @@
 
 package peersim.dynamics;
 
+import peersim.graph.EdgeList;
 import peersim.graph.Graph;
+import peersim.util.ExtendedRandom;
 import peersim.core.*;
 import peersim.config.Configuration;
 
@@ -120,6 +122,8 @@ protected WireGraph(String prefix) {
 * or if null, on the overlay specified by the protocol given by config
 * parameter {@value #PAR_PROT}. If neither {@link #g}, nor {@value #PAR_PROT}
 * is set, throws a RuntimException.
+* When wiring the protocol, if {@link #edges} returns a list of edges, it is
+* loaded into the protocol instead of calling {@link #wire}.
 */
 public final boolean execute() {
 
@@ -133,7 +137,12 @@ public final boolean execute() {
 	else gr=g;
 
 	if(gr.size()==0) return false;
-	wire(gr);
+	EdgeList el = ( g==null ? edges(gr.size()) : null );
+	if( el != null ) load(el);
+	// parallel wiring works on a directed view of the overlay
+	else if( g!=null || !Bootstrap.isParallel() ||
+		!wireParallel(new OverlayGraph(pid,true)) )
+		wire(gr);
 	
 	if( g==null && pack)
 	{
@@ -154,5 +163,70 @@ public final boolean execute() {
 * be implemented by extending classes */
 public abstract void wire(Graph g);
 
+//--------------------------------------------------------------------------
+
+/**
+* Wires the given graph in parallel, when parallel bootstrap is enabled
+* (see {@link Bootstrap}). The graph is a directed view of the overlay:
+* implementations have to add the reverse edges themselves if {@link #undir}
+* is set. This default implementation does nothing and returns false,
+* in which case {@link #wire} is called instead.
+* @return true if the graph has been wired
+*/
+protected boolean wireParallel(Graph g) {
+	return false;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+* Returns the edges of the topology over n nodes, if the extending class
+* can generate them without looking at the graph (see the edge list
+* generators of {@link peersim.graph.GraphFactory}). In that case
+* the edges are loaded into the protocol by {@link #load}, which is much
+* faster than adding them through {@link OverlayGraph} while generating
+* them.
+* This default implementation returns null, in which case {@link #wire} is
+* called instead.
+*/
+protected EdgeList edges(int n) {
+	return null;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+* Adds the given edges to the {@link Linkable} protocol {@link #pid}, and
+* also the reverse edges if {@link #undir} is set. The edges are grouped by
+* source, and each node gets its new neighbors in one pass, in the same
+* order as if the edges were added through {@link OverlayGraph}; the nodes
+* are processed in parallel if parallel bootstrap is enabled (see
+* {@link Bootstrap}). For {@link IndexIdleProtocol} the neighbors are added
+* with {@link IndexIdleProtocol#addIndexes}.
+*/
+protected void load(final EdgeList el) {
+
+	el.group(undir);
+	final int[] targets = el.getTargets();
+	Bootstrap.run(Network.size(), new Bootstrap.Task() {
+		public void run(int from, int to, ExtendedRandom r) {
+			for(int i=from; i<to; ++i)
+			{
+				Linkable l = (Linkable) Network.get(i).getProtocol(pid);
+				final int start = el.getStart(i);
+				final int end = el.getStart(i+1);
+				if( l instanceof IndexIdleProtocol )
+				{
+					((IndexIdleProtocol) l).addIndexes(
+						targets,start,end-start);
+					continue;
+				}
+				for(int e=start; e<end; ++e)
+					l.addNeighbor(Network.get(targets[e]));
+			}
+		}
+	});
+}
+
 }
 
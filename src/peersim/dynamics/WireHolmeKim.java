@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.dynamics;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.*;
+
+/**
+* Wires a scale free network with tunable clustering using the Holme-Kim
+* model, a variant of the Barabasi-Albert model (see {@link WireScaleFreeBA})
+* in which some of the edges of a new node close triangles.
+* @see GraphFactory#holmeKim
+*/
+public class WireHolmeKim extends WireGraph {
+
+
+// ================ constants ============================================
+// =======================================================================
+
+/**
+ * The number of edges added to each new node (apart from those forming the 
+ * initial network).
+ * @config
+ */
+private static final String PAR_DEGREE = "k";
+
+/**
+ * The probability of a triad formation step for each edge of a new node
+ * after the first one. Higher values give higher clustering.
+ * @config
+ */
+private static final String PAR_TRIAD = "triad";
+
+
+// =================== fields ============================================
+// =======================================================================
+
+/** value of {@value #PAR_DEGREE} */
+private final int k;
+
+/** value of {@value #PAR_TRIAD} */
+private final double pt;
+
+// ===================== initialization ==================================
+// =======================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+*/
+public WireHolmeKim(String prefix)
+{
+	super(prefix);
+	k = Configuration.getInt(prefix + "." + PAR_DEGREE);
+	pt = Configuration.getDouble(prefix + "." + PAR_TRIAD);
+	if( pt < 0 || pt > 1 ) throw new IllegalParameterException(
+		prefix + "." + PAR_TRIAD, "Must be between 0 and 1");
+}
+
+
+// ======================== methods =======================================
+// ========================================================================
+
+
+/** Adds the edges generated by {@link GraphFactory#holmeKim}.*/
+public void wire(Graph g) {
+	
+	GraphFactory.holmeKim(g.size(),k,pt,CommonState.r).wire(g);
+}
+
+// -------------------------------------------------------------------
+
+/** Calls {@link GraphFactory#holmeKim}.*/
+protected EdgeList edges(int n) {
+	
+	return GraphFactory.holmeKim(n,k,pt,CommonState.r);
+}
+
+}
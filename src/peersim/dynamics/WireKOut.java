@@ -79,4 +79,14 @@ public void wire(Graph g) {
 	GraphFactory.wireKOut(g,k,CommonState.r);
 }
 
+//--------------------------------------------------------------------------
+
+/** Calls the parallel version of {@link GraphFactory#wireKOut}. */
+protected boolean wireParallel(Graph g) {
+
+	GraphFactory.wireKOut(g,k,CommonState.r.nextLong(),undir,
+		Bootstrap.getExecutor());
+	return true;
+}
+
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.dynamics;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.*;
+
+/**
+* Wires a random regular graph, in which each node has exactly
+* {@value #PAR_DEGREE} neighbors. The graph is undirected, so unless
+* <code>undir</code> is set, only one direction of each edge is
+* added.
+* @see GraphFactory#randomRegular
+*/
+public class WireRandomRegular extends WireGraph {
+
+
+// ================ constants ============================================
+// =======================================================================
+
+/**
+ * The degree of the nodes. The product of the degree and the network size
+ * must be even.
+ * @config
+ */
+private static final String PAR_DEGREE = "k";
+
+
+// =================== fields ============================================
+// =======================================================================
+
+/** value of {@value #PAR_DEGREE} */
+private final int k;
+
+// ===================== initialization ==================================
+// =======================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+*/
+public WireRandomRegular(String prefix)
+{
+	super(prefix);
+	k = Configuration.getInt(prefix + "." + PAR_DEGREE);
+}
+
+
+// ======================== methods =======================================
+// ========================================================================
+
+
+/** Adds the edges generated by {@link GraphFactory#randomRegular}.*/
+public void wire(Graph g) {
+	
+	GraphFactory.randomRegular(g.size(),k,CommonState.r).wire(g);
+}
+
+// -------------------------------------------------------------------
+
+/** Calls {@link GraphFactory#randomRegular}.*/
+protected EdgeList edges(int n) {
+	
+	return GraphFactory.randomRegular(n,k,CommonState.r);
+}
+
+}
@@ -80,5 +80,16 @@ public void wire(Graph g) {
 	GraphFactory.wireScaleFreeBA(g,k,CommonState.r );
 }
 
+// -------------------------------------------------------------------
+
+/**
+* Calls {@link GraphFactory#scaleFreeBA}. The result is the same as that of
+* {@link #wire}.
+*/
+protected EdgeList edges(int n) {
+	
+	return GraphFactory.scaleFreeBA(n,k,CommonState.r);
+}
+
 }
 
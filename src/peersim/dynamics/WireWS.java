@@ -88,5 +88,15 @@ public void wire(Graph g) {
 	GraphFactory.wireWS(g,k,beta,CommonState.r);
 }
 
+// -------------------------------------------------------------------
+
+/** calls the parallel version of {@link GraphFactory#wireWS}.*/
+protected boolean wireParallel(Graph g) {
+
+	GraphFactory.wireWS(g,k,beta,CommonState.r.nextLong(),undir,
+		Bootstrap.getExecutor());
+	return true;
+}
+
 }
 
@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.io.*;
+import java.util.*;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.util.*;
+import peersim.vector.SingleValueHolder;
+
+/**
+ * Saves the complete state of an event driven simulation in a binary file,
+ * so that the simulation can be resumed later from this point. When
+ * executed as a control, it writes a checkpoint containing
+ * <ul>
+ * <li>the current time and phase and the state of the random generator
+ * {@link CommonState#r};</li>
+ * <li>the nodes of the {@link Network} (their IDs and fail states) and the
+ * state of all their protocols;</li>
+ * <li>the content of the event queue, which must be a {@link Heap}.</li>
+ * </ul>
+ * A simulation is resumed from a checkpoint by setting the configuration
+ * parameter {@value #PAR_RESTORE}. In this case {@link EDSimulator} does
+ * not run the initializers: the network, the protocols and the event queue
+ * are restored from the file instead. Controls are not saved, they are
+ * created from the configuration, and their schedules continue from the
+ * time of the checkpoint. This means that observers can be added or removed
+ * before resuming, and that several experiments (e.g. a parameter sweep)
+ * can be warm-started from the same converged overlay. If the
+ * configuration is unchanged, the resumed simulation produces the same
+ * results as the uninterrupted one, provided that no control draws random
+ * numbers in its constructor.
+ * <p>
+ * The state of protocols and events is written by {@link StateCodec}s,
+ * selected according to the class of the object. Codecs are provided for
+ * {@link IdleProtocol}, {@link SingleValueHolder} and {@link NextCycleEvent}
+ * (and its subclasses in this package); further codecs can be configured
+ * with prefix {@value #PAR_CODEC}. Protocols that are shared by all nodes
+ * (that is, whose clone method returns the prototype itself, like most
+ * transports) are not saved. Any other protocol or event without a codec
+ * causes an error. Static fields of protocols, apart from those of
+ * {@link GeneralNode}, are not saved. {@link Timer}s and the controls
+ * scheduled as events with {@link EDSimulator#add(long,Control)}, like the
+ * transitions of {@link peersim.dynamics.SessionChurn}, cannot be saved
+ * either: such a control has to start after the last checkpoint.
+ * <p>
+ * The per-component random streams enabled by
+ * {@value peersim.core.RandomStreams#PAR_STREAMS} are not saved: they are
+ * held by the protocols, and a resumed simulation would recreate them from
+ * the beginning and silently diverge. Checkpoints are therefore refused,
+ * both when writing and when restoring, if random streams are enabled.
+ * <p>
+ * Only the event driven engine is supported.
+ * @see StateCodec
+ */
+public class Checkpoint implements Control
+{
+
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * The prefix of the names of the checkpoint files. The files are named
+ * by appending an 8 digit counter and the extension ".ckpt" to this prefix.
+ * Defaults to "checkpoint".
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/**
+ * The checkpoint file from which the simulation has to be resumed. Not
+ * defined by default.
+ * @config
+ */
+public static final String PAR_RESTORE = "checkpoint.restore";
+
+/**
+ * The prefix of the {@link StateCodec}s, in addition to the default ones.
+ * For example:
+ * <pre>
+ * checkpoint.codec.shuffle gossip.ShuffleCodec
+ * </pre>
+ * @config
+ */
+public static final String PAR_CODEC = "checkpoint.codec";
+
+//--------------------------------------------------------------------------
+//Constants
+//--------------------------------------------------------------------------
+
+/** Identifies (the version of) the checkpoint file format */
+private static final int MAGIC = 0x5053434c;
+
+/** Event kinds in the event queue */
+private static final byte EV_NULL = 0, EV_CONTROL = 1, EV_OBJECT = 2;
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/** The name of this control */
+private final String name;
+
+/** Generates the names of the checkpoint files */
+private final FileNameGenerator fng;
+
+/** The codecs, indexed by the class they handle */
+private static Map<Class<?>,StateCodec> codecs = null;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public Checkpoint(String prefix)
+{
+	if (RandomStreams.isEnabled())
+		throw new IllegalParameterException(prefix,
+			"checkpoints are not supported with " + RandomStreams.PAR_STREAMS);
+	name = prefix;
+	fng = new FileNameGenerator(
+		Configuration.getString(prefix + "." + PAR_FILE, "checkpoint"),
+		".ckpt");
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Writes a checkpoint in the next file.
+ * @return always false
+ */
+public boolean execute()
+{
+	String filename = fng.nextCounterName();
+	try {
+		write(filename);
+	} catch (IOException e) {
+		throw new RuntimeException("Unable to write checkpoint " +
+			filename + ": " + e.getMessage(), e);
+	}
+	System.out.println(name + ": checkpoint at time " +
+		CommonState.getTime() + " written to " + filename);
+	return false;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns true if the simulation has to be resumed from a checkpoint.
+ */
+public static boolean isRestoring()
+{
+	return Configuration.contains(PAR_RESTORE);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Writes the state of the simulation to the given file.
+ */
+public static void write(String filename) throws IOException
+{
+	if (!(EDSimulator.getHeap() instanceof Heap))
+		throw new IllegalStateException(
+			"Checkpoints are supported only by the event driven engine" +
+			" with the default event queue");
+	if (RandomStreams.isEnabled())
+		throw new IllegalStateException(
+			"Checkpoints are not supported with " + RandomStreams.PAR_STREAMS);
+	Heap heap = (Heap) EDSimulator.getHeap();
+	String[] ctrlNames = EDSimulator.getControlNames();
+
+	// The body is buffered, since writing it completes the node table
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	CheckpointOutput body = new CheckpointOutput(buffer);
+	final int netsize = Network.size();
+	for (int i = 0; i < netsize; i++)
+		body.writeNode(Network.get(i));
+	for (int i = 0; i < netsize; i++)
+		writeNodeState(Network.get(i), body);
+	body.writeInt(heap.size());
+	for (int i = 0; i < heap.size(); i++) {
+		body.writeLong(heap.keyAt(i));
+		body.writeLong(heap.seqAt(i));
+		body.writeByte(heap.pidAt(i));
+		body.writeNode(heap.nodeAt(i));
+		Object ev = heap.eventAt(i);
+		if (ev == null) {
+			body.writeByte(EV_NULL);
+		} else if (ev instanceof ControlEvent) {
+			body.writeByte(EV_CONTROL);
+			body.writeUTF(ctrlNames[((ControlEvent) ev).getOrder()]);
+		} else {
+			body.writeByte(EV_OBJECT);
+			body.writeClass(ev.getClass());
+			getCodec(ev.getClass(), "event").write(ev, body);
+		}
+	}
+	// nodes outside the network that were referenced so far, and the
+	// ones referenced by them
+	for (int i = netsize; i < body.nodes.size(); i++)
+		writeNodeState(body.nodes.get(i), body);
+	body.flush();
+
+	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+		new FileOutputStream(filename)));
+	try {
+		out.writeInt(MAGIC);
+		out.writeLong(CommonState.getTime());
+		out.writeInt(CommonState.getPhase());
+		out.writeLong(GeneralNode.getCounterID());
+		out.writeInt(heap.getPbits());
+
+		ByteArrayOutputStream rnd = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(rnd);
+		oos.writeObject(CommonState.r);
+		oos.close();
+		out.writeInt(rnd.size());
+		rnd.writeTo(out);
+
+		out.writeInt(ctrlNames.length);
+		for (int i = 0; i < ctrlNames.length; i++)
+			out.writeUTF(ctrlNames[i]);
+		int current = ControlEvent.current;
+		out.writeUTF(current < 0 ? "" : ctrlNames[current]);
+
+		out.writeInt(netsize);
+		out.writeInt(body.nodes.size());
+		for (Node n : body.nodes) {
+			out.writeLong(n.getID());
+			out.writeInt(n.getFailState());
+		}
+		buffer.writeTo(out);
+	} finally {
+		out.close();
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Restores the state of the simulation from the file given by
+ * {@value #PAR_RESTORE}. It must be called by {@link EDSimulator} after
+ * resetting the network and loading the controls.
+ */
+static void restore()
+{
+	if (RandomStreams.isEnabled())
+		throw new IllegalParameterException(PAR_RESTORE,
+			"checkpoints are not supported with " + RandomStreams.PAR_STREAMS);
+	String filename = Configuration.getString(PAR_RESTORE);
+	System.err.println("EDSimulator: restoring checkpoint " + filename);
+	try {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+			new FileInputStream(filename)));
+		try {
+			restore(in);
+		} finally {
+			in.close();
+		}
+	} catch (IOException e) {
+		throw new IllegalParameterException(PAR_RESTORE,
+			"Unable to read checkpoint " + filename + ": " + e.getMessage());
+	}
+}
+
+//--------------------------------------------------------------------------
+
+private static void restore(DataInputStream in) throws IOException
+{
+	if (in.readInt() != MAGIC)
+		throw new IOException("not a checkpoint file");
+	if (!(EDSimulator.getHeap() instanceof Heap))
+		throw new IllegalStateException(
+			"Checkpoints are supported only with the default event queue");
+	Heap heap = (Heap) EDSimulator.getHeap();
+
+	final long time = in.readLong();
+	CommonState.setTime(time);
+	CommonState.setPhase(in.readInt());
+	long counterID = in.readLong();
+	final int pbits = in.readInt();
+	if (pbits != heap.getPbits())
+		throw new IOException("the event queue uses a different number" +
+			" of priority bits (" + pbits + ")");
+
+	byte[] rnd = new byte[in.readInt()];
+	in.readFully(rnd);
+	try {
+		CommonState.r = (ExtendedRandom) new ObjectInputStream(
+			new ByteArrayInputStream(rnd)).readObject();
+	} catch (ClassNotFoundException e) {
+		throw new IOException("random generator class not found");
+	}
+
+	// controls of the checkpointed simulation
+	Set<String> saved = new HashSet<String>();
+	int ncontrols = in.readInt();
+	for (int i = 0; i < ncontrols; i++) saved.add(in.readUTF());
+	String current = in.readUTF();
+
+	// nodes
+	final int netsize = in.readInt();
+	Node[] nodes = new Node[in.readInt()];
+	int[] failstates = new int[nodes.length];
+	for (int i = 0; i < nodes.length; i++) {
+		Object n = Network.prototype.clone();
+		if (!(n instanceof GeneralNode))
+			throw new IllegalStateException(
+				"Checkpoints are supported only for GeneralNode");
+		((GeneralNode) n).setID(in.readLong());
+		failstates[i] = in.readInt();
+		nodes[i] = (Node) n;
+	}
+	GeneralNode.setCounterID(counterID);
+	while (Network.size() > 0) Network.remove();
+	for (int i = 0; i < netsize; i++) Network.add(nodes[i]);
+
+	CheckpointInput body = new CheckpointInput(in, nodes);
+	for (int i = 0; i < netsize; i++) {
+		if (body.readNode() != nodes[i])
+			throw new IOException("corrupted node table");
+	}
+	for (int i = 0; i < netsize; i++)
+		readNodeState(nodes[i], body);
+
+	// controls are created now, since they can keep a reference to
+	// the random generator or inspect the network
+	EDSimulator.loadControls();
+
+	// event queue
+	String[] ctrlNames = EDSimulator.getControlNames();
+	Map<String,Integer> order = new HashMap<String,Integer>();
+	for (int i = 0; i < ctrlNames.length; i++) order.put(ctrlNames[i], i);
+	Set<String> pending = new HashSet<String>();
+	int size = body.readInt();
+	long[] keys = new long[size];
+	long[] seqs = new long[size];
+	Object[] events = new Object[size];
+	Node[] evnodes = new Node[size];
+	byte[] pids = new byte[size];
+	int n = 0;
+	for (int i = 0; i < size; i++) {
+		keys[n] = body.readLong();
+		seqs[n] = body.readLong();
+		pids[n] = body.readByte();
+		evnodes[n] = body.readNode();
+		byte kind = body.readByte();
+		if (kind == EV_CONTROL) {
+			String ctrl = body.readUTF();
+			Integer o = order.get(ctrl);
+			if (o == null) {
+				// this control has been removed from the configuration
+				continue;
+			}
+			Scheduler sch = EDSimulator.getSchedulers()[o];
+			sch.skipTo(keys[n] >> pbits);
+			sch.getNext();
+			events[n] = new ControlEvent(
+				EDSimulator.getControls()[o], sch, o, false);
+			pending.add(ctrl);
+		} else if (kind == EV_OBJECT) {
+			Class<?> c = body.readClass();
+			events[n] = getCodec(c, "event").read(null, body);
+		}
+		n++;
+	}
+	for (int i = netsize; i < nodes.length; i++)
+		readNodeState(nodes[i], body);
+	for (int i = 0; i < nodes.length; i++)
+		if (failstates[i] != Fallible.OK)
+			nodes[i].setFailState(failstates[i]);
+
+	heap.restore(keys, seqs, events, evnodes, pids, n);
+
+	// controls that have to be scheduled: the one that was running
+	// when the checkpoint was taken, and the ones that were not in the
+	// checkpointed simulation
+	for (int i = 0; i < ctrlNames.length; i++) {
+		if (pending.contains(ctrlNames[i])) continue;
+		Scheduler sch = EDSimulator.getSchedulers()[i];
+		if (ctrlNames[i].equals(current))
+			sch.skipTo(time + 1);
+		else if (!saved.contains(ctrlNames[i]))
+			sch.skipTo(time);
+		else
+			continue;
+		new ControlEvent(EDSimulator.getControls()[i], sch, i);
+	}
+	System.err.println("EDSimulator: restored " + netsize + " nodes and " +
+		n + " events at time " + time);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Writes the state of the protocols of the given node. Protocols shared
+ * with the prototype are skipped.
+ */
+private static void writeNodeState(Node node, CheckpointOutput out)
+throws IOException
+{
+	for (int j = 0; j < node.protocolSize(); j++) {
+		Protocol p = node.getProtocol(j);
+		if (p == Network.prototype.getProtocol(j)) {
+			out.writeBoolean(false);
+		} else {
+			out.writeBoolean(true);
+			getCodec(p.getClass(), "protocol").write(p, out);
+		}
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Reads the state of the protocols of the given node.
+ */
+private static void readNodeState(Node node, CheckpointInput in)
+throws IOException
+{
+	CommonState.setNode(node);
+	for (int j = 0; j < node.protocolSize(); j++) {
+		if (!in.readBoolean()) continue;
+		CommonState.setPid(j);
+		Protocol p = node.getProtocol(j);
+		Object o = getCodec(p.getClass(), "protocol").read(p, in);
+		if (o != p)
+			throw new IllegalStateException("Codec for " + p.getClass() +
+				" must restore the state in the given instance");
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the codec for the given class, looking for the most specific
+ * codec among its superclasses.
+ */
+private static StateCodec getCodec(Class<?> c, String what)
+{
+	// a timer is shared with its protocol, so it cannot be restored apart
+	if (Timer.class.isAssignableFrom(c))
+		throw new IllegalStateException("Cannot checkpoint " + what +
+			" class " + c.getName() + ": timers are not supported");
+	// nor can a control scheduled with EDSimulator.add(long,Control),
+	// since controls are not saved
+	if (Control.class.isAssignableFrom(c))
+		throw new IllegalStateException("Cannot checkpoint " + what +
+			" class " + c.getName() + ": events scheduled by controls" +
+			" (e.g. by SessionChurn) are not supported");
+	if (codecs == null) {
+		codecs = new HashMap<Class<?>,StateCodec>();
+		StateCodec[] defaults = {
+			new IdleProtocolCodec(null),
+			new SingleValueHolderCodec(null),
+			new NextCycleEventCodec(null)
+		};
+		for (StateCodec sc : defaults) codecs.put(sc.getType(), sc);
+		Object[] inst = Configuration.getInstanceArray(PAR_CODEC);
+		for (Object o : inst) {
+			StateCodec sc = (StateCodec) o;
+			codecs.put(sc.getType(), sc);
+		}
+	}
+	for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+		StateCodec sc = codecs.get(k);
+		if (sc != null) return sc;
+	}
+	throw new IllegalStateException("No checkpoint codec for " + what +
+		" class " + c.getName() + "; see " + PAR_CODEC);
+}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.io.*;
+import java.util.*;
+
+import peersim.core.*;
+
+/**
+ * The stream used by {@link StateCodec}s to read the state of objects
+ * from a checkpoint. It extends {@link DataInputStream} with methods to
+ * read the references written by {@link CheckpointOutput}.
+ */
+public class CheckpointInput extends DataInputStream
+{
+
+/** The restored nodes, indexed by handle */
+private final Node[] nodes;
+
+/** The classes read so far, indexed by identifier */
+private final List<Class<?>> classes = new ArrayList<Class<?>>();
+
+//--------------------------------------------------------------------------
+
+CheckpointInput(InputStream in, Node[] nodes)
+{
+	super(in);
+	this.nodes = nodes;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Reads a reference to a node written by
+ * {@link CheckpointOutput#writeNode}.
+ */
+public Node readNode() throws IOException
+{
+	int h = readInt();
+	return (h < 0 ? null : nodes[h]);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Reads a reference to a class written by
+ * {@link CheckpointOutput#writeClass}.
+ */
+public Class<?> readClass() throws IOException
+{
+	int id = readInt();
+	if (id >= 0) return classes.get(id);
+	String name = readUTF();
+	try {
+		Class<?> c = Class.forName(name);
+		classes.add(c);
+		return c;
+	} catch (ClassNotFoundException e) {
+		throw new IOException("Class " + name + " not found");
+	}
+}
+
+}
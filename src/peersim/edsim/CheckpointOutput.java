@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.io.*;
+import java.util.*;
+
+import peersim.core.*;
+
+/**
+ * The stream used by {@link StateCodec}s to write the state of objects
+ * in a checkpoint. It extends {@link DataOutputStream} with methods to
+ * write references to nodes and classes. Nodes are written as integer
+ * handles into the node table of the checkpoint; nodes that are not
+ * part of the {@link Network} (for example nodes that have been removed
+ * but are still referenced) are added to the table, and their state is
+ * saved as well.
+ */
+public class CheckpointOutput extends DataOutputStream
+{
+
+/** The nodes in the node table, in the order of their handles */
+final List<Node> nodes = new ArrayList<Node>();
+
+/** The handles of the nodes in the node table */
+private final Map<Node,Integer> handles = new IdentityHashMap<Node,Integer>();
+
+/** The identifiers of the classes written so far */
+private final Map<Class<?>,Integer> classes = new HashMap<Class<?>,Integer>();
+
+//--------------------------------------------------------------------------
+
+CheckpointOutput(OutputStream out)
+{
+	super(out);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Writes a reference to a node, which can be null.
+ */
+public void writeNode(Node n) throws IOException
+{
+	if (n == null) {
+		writeInt(-1);
+		return;
+	}
+	Integer h = handles.get(n);
+	if (h == null) {
+		h = nodes.size();
+		handles.put(n, h);
+		nodes.add(n);
+	}
+	writeInt(h);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Writes a reference to a class. The name of the class is written only
+ * the first time.
+ */
+public void writeClass(Class<?> c) throws IOException
+{
+	Integer id = classes.get(c);
+	if (id == null) {
+		writeInt(-1);
+		writeUTF(c.getName());
+		classes.put(c, classes.size());
+	} else {
+		writeInt(id);
+	}
+}
+
+}
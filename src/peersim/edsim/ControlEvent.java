@@ -44,6 +44,9 @@ private Control control;
 /** Order index used to maintain order between cycle-based events */
 private int order;
 
+/** The order index of the control being executed, or -1 */
+static int current = -1;
+
 
 //---------------------------------------------------------------------
 //Initialization
@@ -60,10 +63,22 @@ private Scheduler scheduler;
  * simulation.
  */
 public ControlEvent(Control control, Scheduler scheduler, int order)
+{
+	this(control, scheduler, order, true);
+}
+
+/**
+ * Creates a cycle event for a control object. If <code>schedule</code> is
+ * false, the event is not added to the priority queue; this is used
+ * when the queue is restored from a checkpoint.
+ */
+ControlEvent(Control control, Scheduler scheduler, int order,
+		boolean schedule)
 {
 	this.control = control;
 	this.order = order;
 	this.scheduler = scheduler;
+	if( !schedule ) return;
 	long next = scheduler.getNext();
 	if( next>=0 ) EDSimulator.addControlEvent(next, order, this);
 }
@@ -72,13 +87,23 @@ public ControlEvent(Control control, Scheduler scheduler, int order)
 //Methods
 //---------------------------------------------------------------------
 
+/** Returns the order index of the control of this event */
+int getOrder()
+{
+	return order;
+}
+
+//---------------------------------------------------------------------
+
 /**
 * Executes the control object, and schedules the object for the next execution
 * adding it to the priority queue of the event driven simulation.
 */
 public boolean execute() {
 
+	current = order;
 	boolean ret = control.execute();
+	current = -1;
 	long next = scheduler.getNext();
 	if( next>=0 ) EDSimulator.addControlEvent(next, order, this);
 	return ret;
@@ -19,6 +19,7 @@
 package peersim.edsim;
 
 import java.util.*;
+import java.util.function.DoubleSupplier;
 
 import peersim.config.*;
 import peersim.core.*;
@@ -154,11 +155,17 @@ private static Control[] controls=null;
 /** Holds the control schedulers of this simulation */
 private static Scheduler[] ctrlSchedules = null;
 
+/** Holds the names of the controls of this simulation */
+private static String[] ctrlNames = null;
+
 /** Ordered list of events (heap) */
 private static PriorityQ heap = null;
 
 private static long nextlog = 0;
 
+/** Counts the events executed, if {@link Metrics#enabled} */
+private static Metrics.Counter events = null;
+
 // =============== initialization ======================================
 // =====================================================================
 
@@ -187,12 +194,18 @@ private static void runInitializers() {
 
 // --------------------------------------------------------------------
 
-private static void scheduleControls()
+/**
+ * Creates the controls and their schedulers. When resuming from a
+ * checkpoint it is called by {@link Checkpoint} after restoring the random
+ * generator and the network.
+ */
+static void loadControls()
 {
 	// load controls
 	String[] names = Configuration.getNames(PAR_CTRL);
 	controls = new Control[names.length];
 	ctrlSchedules = new Scheduler[names.length];
+	ctrlNames = names;
 	for(int i=0; i<names.length; ++i)
 	{
 		controls[i]=(Control)Configuration.getInstance(names[i]);
@@ -201,15 +214,35 @@ private static void scheduleControls()
 	System.err.println("EDSimulator: loaded controls "+
 		Arrays.asList(names));
 
-	// Schedule controls execution
 	if (controls.length > heap.maxPriority()+1)
 		throw new IllegalArgumentException(
 		"Too many control objects");
+}
+
+// --------------------------------------------------------------------
+
+private static void scheduleControls()
+{
+	// Schedule controls execution
 	for (int i=0; i < controls.length; i++) {
 		new ControlEvent(controls[i], ctrlSchedules[i], i);
 	}
 }
 
+// --------------------------------------------------------------------
+
+/** Returns the event queue of the current experiment */
+static PriorityQ getHeap() { return heap; }
+
+/** Returns the controls of the current experiment */
+static Control[] getControls() { return controls; }
+
+/** Returns the schedulers of the controls of the current experiment */
+static Scheduler[] getSchedulers() { return ctrlSchedules; }
+
+/** Returns the names of the controls of the current experiment */
+static String[] getControlNames() { return ctrlNames; }
+
 //---------------------------------------------------------------------
 
 /**
@@ -261,10 +294,12 @@ private static boolean executeNext() {
 		return true;
 	}
 	
+	if (Metrics.enabled) events.inc();
 	long time = ev.time;
 	if (time >= nextlog)
 	{
 		System.err.println("Current time: " + time);
+		if (Profiler.enabled) Profiler.interval(time, heap.size()+1);
 		// seemingly complicated: to prevent overflow
 		while( time-nextlog >= logtime ) nextlog+=logtime;
 		if( endtime-nextlog >= logtime ) nextlog+=logtime;
@@ -278,47 +313,94 @@ private static boolean executeNext() {
 	}
 	
 	CommonState.setTime(time);
+	// entries of cancelled or re-armed timers are dropped here
+	if (ev.event instanceof Timer && !((Timer) ev.event).expire(time))
+		return false;
+	if (Profiler.enabled) Profiler.queue(heap.size()+1);
 	int pid = ev.pid;
 	if (ev.node == null)
 	{
 		// might be control event; handled through a special method
-		ControlEvent ctrl = null;
-		try {
-			ctrl = (ControlEvent) ev.event;
-		} catch (ClassCastException e) {
-			throw new RuntimeException(
-				"No destination specified (null) for event "+
-				ev);
+		if (ev.event instanceof ControlEvent)
+		{
+			ControlEvent ce = (ControlEvent) ev.event;
+			long t = Profiler.enabled ? Profiler.beginControl() : 0;
+			boolean stop = ce.execute();
+			if (Profiler.enabled)
+				Profiler.endControl(ctrlNames[ce.getOrder()], t);
+			return stop;
 		}
-		return ctrl.execute();
+		// or a control scheduled once by add(long,Control)
+		if (ev.event instanceof Control)
+		{
+			Control c = (Control) ev.event;
+			long t = Profiler.enabled ? Profiler.beginControl() : 0;
+			boolean stop = c.execute();
+			if (Profiler.enabled)
+				Profiler.endControl(c.getClass().getName(), t);
+			return stop;
+		}
+		throw new RuntimeException(
+			"No destination specified (null) for event "+ev);
 	}
 	else if (ev.node != Network.prototype && ev.node.isUp() )
 	{
 		CommonState.setPid(pid);
 		CommonState.setNode(ev.node);
-		if( ev.event instanceof NextCycleEvent )
-		{
-			NextCycleEvent nce = (NextCycleEvent) ev.event;
-			nce.execute();
-		}
-		else
-		{
-			EDProtocol prot = null;
-			try {
-				prot = (EDProtocol) ev.node.getProtocol(pid);
-			} catch (ClassCastException e) {
-				e.printStackTrace();
-				throw new IllegalArgumentException("Protocol " +
-					Configuration.lookupPid(pid) + 
-					" does not implement EDProtocol; " + ev.event.getClass()  );
-			}
-			prot.processEvent(ev.node, pid, ev.event);
-		}
+		long t = Profiler.enabled ? Profiler.begin() : 0;
+		deliver(ev);
+		if (Profiler.enabled) Profiler.endProtocol(pid, ev.event, t);
 	}
 	
 	return false;
 }
 
+//---------------------------------------------------------------------
+
+/**
+ * Delivers the given event to its protocol.
+ */
+private static void deliver(PriorityQ.Event ev) {
+
+	int pid = ev.pid;
+	if( ev.event instanceof NextCycleEvent )
+	{
+		NextCycleEvent nce = (NextCycleEvent) ev.event;
+		nce.execute();
+	}
+	else
+	{
+		EDProtocol prot = null;
+		try {
+			prot = (EDProtocol) ev.node.getProtocol(pid);
+		} catch (ClassCastException e) {
+			e.printStackTrace();
+			throw new IllegalArgumentException("Protocol " +
+				Configuration.lookupPid(pid) + 
+				" does not implement EDProtocol; " + ev.event.getClass()  );
+		}
+		prot.processEvent(ev.node, pid, ev.event);
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Publishes the number of events executed, their rate and the size of the
+ * event queue to the {@link Metrics}.
+ */
+private static void publishMetrics() {
+
+	events = Metrics.counter("peersim_events_total", "Events executed");
+	Metrics.gauge("peersim_events_per_second",
+		"Events executed per second of wall clock time",
+		Metrics.rate(events));
+	Metrics.gauge("peersim_event_queue_size", "Events in the queue",
+		new DoubleSupplier() {
+			public double getAsDouble() { return heap.size(); }
+		});
+}
+
 //---------------------------------------------------------------------
 //Public methods
 //---------------------------------------------------------------------
@@ -348,11 +430,24 @@ public static void nextExperiment()
 	CommonState.setTime(0); // needed here
 	controls = null;
 	ctrlSchedules = null;
+	ctrlNames = null;
 	nextlog = 0;
+	Profiler.reset();
+	Metrics.init();
+	if (Metrics.enabled) publishMetrics();
 	Network.reset();
-	System.err.println("EDSimulator: running initializers");
-	runInitializers();
-	scheduleControls();
+	if( Checkpoint.isRestoring() )
+	{
+		// the initializers are replaced by the checkpoint
+		Checkpoint.restore();
+	}
+	else
+	{
+		System.err.println("EDSimulator: running initializers");
+		runInitializers();
+		loadControls();
+		scheduleControls();
+	}
 
 	// Perform the actual simulation; executeNext() will tell when to
 	// stop.
@@ -365,8 +460,15 @@ public static void nextExperiment()
 	CommonState.setPhase(CommonState.POST_SIMULATION);
 	for(int j=0; j<controls.length; ++j)
 	{
-		if( ctrlSchedules[j].fin ) controls[j].execute();
+		if( ctrlSchedules[j].fin )
+		{
+			long t = Profiler.enabled ? Profiler.beginControl() : 0;
+			controls[j].execute();
+			if (Profiler.enabled) Profiler.endControl(ctrlNames[j], t);
+		}
 	}
+	if (Profiler.enabled) Profiler.interval(CommonState.getTime(), -1);
+	Profiler.summary();
 
 }
 
@@ -403,4 +505,80 @@ public static void add(long delay, Object event, Node node, int pid)
 		heap.add(time+delay, event, node, (byte) pid);
 }
 
+//---------------------------------------------------------------------
+
+/**
+ * Schedules the given control to be executed once after the given
+ * number of time units. Unlike the controls defined in the configuration,
+ * it has the same priority as the events delivered to nodes, and it is
+ * not rescheduled after its execution. This allows components to schedule
+ * global actions, like a node joining the network, at arbitrary times.
+ * If the control returns true, the simulation is stopped.
+ * 
+ * @param delay 
+ *   The number of time units before the control is executed.
+ *   Has to be non-negative.
+ * @param control 
+ *   The control to be executed
+ */
+public static void add(long delay, Control control)
+{
+	if (delay < 0)
+		throw new IllegalArgumentException("Control "+control+
+			" is scheduled with a negative delay: "+delay);
+	long time = CommonState.getTime();
+	if( endtime - time > delay ) // check like this to deal with overflow 
+		heap.add(time+delay, control, null, (byte) 0);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Arms the given timer to expire after the given number of time units,
+ * when it is delivered to the given node and protocol as an event, unless
+ * it is cancelled or armed again in the meantime. See {@link Timer} for
+ * the cost of cancelling and re-arming timers.
+ * 
+ * @param delay 
+ *   The number of time units before the timer expires.
+ *   Has to be non-negative.
+ * @param timer 
+ *   The timer to be armed
+ * @param node 
+ *   The node to which the timer is delivered.
+ * @param pid 
+ *   The identifier of the protocol to which the timer is delivered
+ */
+public static void setTimer(long delay, Timer timer, Node node, int pid)
+{
+	if (delay < 0)
+		throw new IllegalArgumentException("Protocol "+
+			node.getProtocol(pid)+" is trying to set timer "+
+			timer+" with a negative delay: "+delay);
+	if (pid > Byte.MAX_VALUE) 
+		throw new IllegalArgumentException(
+				"This version does not support more than " 
+				+ Byte.MAX_VALUE + " protocols");
+	
+	long time = CommonState.getTime();
+	if( endtime - time > delay ) // check like this to deal with overflow 
+	{
+		if (timer.arm(time+delay, node, pid))
+			addTimerEntry(time+delay, timer, node, pid);
+	}
+	else timer.cancel(); // it would expire after the end
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Adds to the queue an entry of a timer. It gets the lowest priority, so it
+ * comes after the other events with the same time, and no random number is
+ * drawn for it, so timers do not change the draws of the other components.
+ */
+static void addTimerEntry(long time, Timer timer, Node node, int pid)
+{
+	heap.add(time, timer, node, (byte) pid, heap.maxPriority());
+}
+
 }
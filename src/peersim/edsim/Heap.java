@@ -20,12 +20,22 @@ package peersim.edsim;
 
 import peersim.core.Node;
 import peersim.core.CommonState;
+import peersim.core.RandomStreams;
 import peersim.config.Configuration;
 import peersim.config.IllegalParameterException;
 
 /**
  *  The Heap data structure used to maintain events "sorted" by 
  *  scheduled time and to obtain the next event to be executed.
+ *  <p>
+ *  Events with the same time and priority are normally returned in an
+ *  order that depends on the other events in the heap. If
+ *  {@value peersim.core.RandomStreams#PAR_STREAMS} is defined, they are
+ *  returned in the order they were added instead, so that adding or
+ *  removing a component does not change the order of the other events
+ *  (provided that it does not draw the priorities of its events from
+ *  {@link CommonState#r}). Without it, the order is the same as in the
+ *  previous versions, so that old results remain reproducible.
  *  
  *  @author Alberto Montresor
  *  @version $Revision: 1.10 $
@@ -74,6 +84,13 @@ private Node[] nodes;
 /** Pid component of the heap */
 private byte[] pids;
 
+/** Insertion order component of the heap, used to break ties. Null if
+ties are not broken. */
+private long[] seqs;
+
+/** The insertion order of the next element */
+private long seq = 0;
+
 /** Number of elements */
 private int size;
 
@@ -130,6 +147,7 @@ public Heap(String prefix) {
 	times = new long[size];
 	nodes = new Node[size];
 	pids = new byte[size];
+	if (RandomStreams.isEnabled()) seqs = new long[size];
 }
 
 //--------------------------------------------------------------------------
@@ -179,11 +197,14 @@ public void add(long time, Object event, Node node, byte pid, long priority)
 	
 	size++;
 	int pos = size;
-	put(pos, time, event, node, pid);
-	while (pos > 1 && getTime(pos / 2) > time) {
-		swap(pos, pos / 2);
+	if (pos > events.length) doubleCapacity();
+	// the parents that come after the new element are moved down
+	while (pos > 1 && times[pos/2-1] > time) {
+		move(pos/2, pos);
 		pos = pos / 2;
 	}
+	put(pos, time, event, node, pid);
+	if (seqs != null) seqs[pos-1] = seq++;
 }
 
 //--------------------------------------------------------------------------
@@ -235,42 +256,116 @@ public String toString()
 }
 
 
+//--------------------------------------------------------------------------
+// Checkpointing
+//--------------------------------------------------------------------------
+
+/** Returns the number of bits reserved to order events with the same time */
+int getPbits() { return pbits; }
+
+/**
+ * Returns the key of the i-th element of the heap array (starting from 0),
+ * that is, its time shifted by {@link #getPbits} bits, or-ed with its
+ * priority.
+ */
+long keyAt(int i) { return times[i]; }
+
+/** Returns the event of the i-th element of the heap array */
+Object eventAt(int i) { return events[i]; }
+
+/** Returns the node of the i-th element of the heap array */
+Node nodeAt(int i) { return nodes[i]; }
+
+/** Returns the pid of the i-th element of the heap array */
+byte pidAt(int i) { return pids[i]; }
+
+/**
+ * Returns the insertion order of the i-th element of the heap array, which
+ * breaks the ties between elements with the same key, or 0 if ties are
+ * not broken.
+ */
+long seqAt(int i) { return (seqs == null ? 0 : seqs[i]); }
+
+/**
+ * Replaces the content of the heap with the given elements. If they are
+ * in the order returned by {@link #keyAt} and the related methods, the
+ * heap is identical to the one they were read from; otherwise (e.g. some
+ * elements were dropped) the heap is rebuilt, and the elements are still
+ * extracted in the same order.
+ */
+void restore(long[] keys, long[] seqs, Object[] events, Node[] nodes,
+		byte[] pids, int n)
+{
+	while (this.events.length < n) doubleCapacity();
+	for (int i = 0; i < n; i++) put(i+1, keys[i], events[i], nodes[i], pids[i]);
+	for (int i = n; i < size; i++) put(i+1, 0, null, null, (byte) 0);
+	size = n;
+	seq = 0;
+	if (this.seqs != null) {
+		for (int i = 0; i < n; i++) {
+			this.seqs[i] = seqs[i];
+			if (seqs[i] >= seq) seq = seqs[i] + 1;
+		}
+	}
+	// a no-op if the elements already form a heap
+	for (int i = n/2; i >= 1; i--) minHeapify(i);
+}
+
 //--------------------------------------------------------------------------
 // Private methods
 //--------------------------------------------------------------------------
 
 /**
- * 
+ * Moves the element at the given index down to its place. The children
+ * that come before it are moved up into the hole it leaves, and it is
+ * written once at its final position.
  */
 private void minHeapify(int index) 
 {
-	// The time to be placed of the current node
-	long time = getTime(index);  
-	// Left, right children of the current index
-	int l,r; 
-	// Their associated time
-	long lt, rt;
-	// The minimum time between val, lt, rt
-	long mintime;
-	// The index of the mininum time
-	int minindex = index; 
-	do {
-		index = minindex;
-		mintime = time;
-		l = index << 1;
-		r = l + 1;
-		if (l <= size && (lt = getTime(l)) < mintime) {
-			minindex = l;
-			mintime = lt;
-		}
-		if (r <= size && (rt = getTime(r)) < mintime) {
-			minindex = r;
-			mintime = rt;
-		}
-		if (minindex != index) {
-			swap(minindex, index);
-		}
-	} while (minindex != index);
+	final int i = index-1;
+	final long time = times[i], sq = (seqs == null ? 0 : seqs[i]);
+	final Object event = events[i];
+	final Node node = nodes[i];
+	final byte pid = pids[i];
+	int hole = index;
+	int c;
+	while ((c = hole << 1) <= size) {
+		if (c < size && less(c+1, c)) c++;
+		final long ct = times[c-1];
+		if (ct > time || (ct == time && (seqs == null || seqs[c-1] > sq)))
+			break;
+		move(c, hole);
+		hole = c;
+	}
+	put(hole, time, event, node, pid);
+	if (seqs != null) seqs[hole-1] = sq;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Copies the element at index from to index to.
+ */
+private void move(int from, int to) {
+
+	from--;
+	to--;
+	events[to] = events[from];
+	times[to] = times[from];
+	nodes[to] = nodes[from];
+	pids[to] = pids[from];
+	if (seqs != null) seqs[to] = seqs[from];
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns true if the element at index i1 comes before the one at i2.
+ */
+private boolean less(int i1, int i2) {
+
+	final long t1 = times[i1-1], t2 = times[i2-1];
+	return t1 < t2 || (t1 == t2 && seqs != null && seqs[i1-1] < seqs[i2-1]);
 }
 
 //--------------------------------------------------------------------------
@@ -298,6 +393,12 @@ private void swap(int i1, int i2) {
 	byte tp = pids[i1];
 	pids[i1] = pids[i2];
 	pids[i2] = tp;
+
+	if (seqs != null) {
+		long ts = seqs[i1];
+		seqs[i1] = seqs[i2];
+		seqs[i2] = ts;
+	}
 }
 
 //--------------------------------------------------------------------------
@@ -348,6 +449,11 @@ private void doubleCapacity() {
 	byte[] tp = new byte[newsize];
 	System.arraycopy(pids, 0, tp, 0, oldsize);
 	pids = tp;
+	if (seqs != null) {
+		long[] ts = new long[newsize];
+		System.arraycopy(seqs, 0, ts, 0, oldsize);
+		seqs = ts;
+	}
 }
 
 //--------------------------------------------------------------------------
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.edsim;
+
+import java.io.*;
+
+import peersim.core.*;
+
+/**
+ * Checkpoint codec for {@link IdleProtocol}. It saves the list of
+ * neighbors. Subclasses of {@link IdleProtocol} that have additional state
+ * need their own codec.
+ */
+public class IdleProtocolCodec implements StateCodec
+{
+
+/**
+ * Standard constructor, no parameters are read.
+ */
+public IdleProtocolCodec(String prefix) {}
+
+//--------------------------------------------------------------------------
+
+public Class<?> getType() { return IdleProtocol.class; }
+
+//--------------------------------------------------------------------------
+
+public void write(Object o, CheckpointOutput out) throws IOException
+{
+	Linkable l = (Linkable) o;
+	out.writeInt(l.degree());
+	for (int i = 0; i < l.degree(); i++)
+		out.writeNode(l.getNeighbor(i));
+}
+
+//--------------------------------------------------------------------------
+
+public Object read(Object o, CheckpointInput in) throws IOException
+{
+	Linkable l = (Linkable) o;
+	int degree = in.readInt();
+	for (int i = 0; i < degree; i++)
+		l.addNeighbor(in.readNode());
+	return o;
+}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.edsim;
+
+import java.io.*;
+
+/**
+ * Checkpoint codec for {@link NextCycleEvent} and its subclasses in this
+ * package. Events are re-created through their standard constructor, so
+ * subclasses defined elsewhere must not depend on configuration
+ * parameters, or need their own codec.
+ */
+public class NextCycleEventCodec implements StateCodec
+{
+
+/**
+ * Standard constructor, no parameters are read.
+ */
+public NextCycleEventCodec(String prefix) {}
+
+//--------------------------------------------------------------------------
+
+public Class<?> getType() { return NextCycleEvent.class; }
+
+//--------------------------------------------------------------------------
+
+public void write(Object o, CheckpointOutput out) throws IOException
+{
+	out.writeClass(o.getClass());
+	long start = -1;
+	if (o instanceof RegRandNextCycle)
+		start = ((RegRandNextCycle) o).nextCycleStart;
+	out.writeLong(start);
+}
+
+//--------------------------------------------------------------------------
+
+public Object read(Object o, CheckpointInput in) throws IOException
+{
+	Class<?> c = in.readClass();
+	NextCycleEvent nce;
+	try {
+		nce = (NextCycleEvent) c.getConstructor(String.class)
+			.newInstance(c.getName());
+	} catch (Exception e) {
+		throw new IOException("Cannot create event " + c.getName() +
+			": " + e);
+	}
+	long start = in.readLong();
+	if (nce instanceof RegRandNextCycle)
+		((RegRandNextCycle) nce).nextCycleStart = start;
+	return nce;
+}
+
+}
@@ -34,7 +34,7 @@ public class RegRandNextCycle extends NextCycleEvent {
 * Indicates the start of the next cycle for a particular protocol
 * instance. If negative it means it has not been initialized yet.
 */
-private long nextCycleStart = -1;
+long nextCycleStart = -1;
 
 // =============================== initialization ======================
 // =====================================================================
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.edsim;
+
+import java.io.*;
+
+import peersim.vector.SingleValueHolder;
+
+/**
+ * Checkpoint codec for {@link SingleValueHolder} and its subclasses that
+ * have no other state.
+ */
+public class SingleValueHolderCodec implements StateCodec
+{
+
+/**
+ * Standard constructor, no parameters are read.
+ */
+public SingleValueHolderCodec(String prefix) {}
+
+//--------------------------------------------------------------------------
+
+public Class<?> getType() { return SingleValueHolder.class; }
+
+//--------------------------------------------------------------------------
+
+public void write(Object o, CheckpointOutput out) throws IOException
+{
+	out.writeDouble(((SingleValueHolder) o).getValue());
+}
+
+//--------------------------------------------------------------------------
+
+public Object read(Object o, CheckpointInput in) throws IOException
+{
+	((SingleValueHolder) o).setValue(in.readDouble());
+	return o;
+}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.io.*;
+
+/**
+ * Encodes and decodes the state of objects of a given type in the binary
+ * format used by {@link Checkpoint}. Codecs are used both for the
+ * protocols of the nodes and for the events in the event queue.
+ * An implementation must also provide the standard constructor required
+ * by any peersim component, that takes a String argument, the component
+ * name in the configuration.
+ * <p>
+ * References to nodes must be written with
+ * {@link CheckpointOutput#writeNode} and read with
+ * {@link CheckpointInput#readNode}, so that they are resolved to the
+ * restored nodes.
+ * @see Checkpoint
+ */
+public interface StateCodec
+{
+
+/**
+ * Returns the class of the objects handled by this codec. The codec is
+ * also used for subclasses, unless a more specific codec is defined.
+ */
+public Class<?> getType();
+
+/**
+ * Writes the state of the given object.
+ * @param o the object, an instance of {@link #getType}
+ * @param out the stream where the state is written
+ */
+public void write(Object o, CheckpointOutput out) throws IOException;
+
+/**
+ * Reads the state written by {@link #write}.
+ * @param o for protocols, the instance that should take the state, which is
+ *   a fresh clone of the prototype; for events, null, so codecs handling
+ *   several event classes have to write the actual class themselves
+ * @param in the stream where the state is read from
+ * @return the restored object; for protocols this is typically
+ *   <code>o</code>
+ */
+public Object read(Object o, CheckpointInput in) throws IOException;
+
+}
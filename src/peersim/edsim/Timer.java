@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.edsim;
+
+import peersim.core.Node;
+
+/**
+ * A timeout that an {@link EDProtocol} can schedule with
+ * {@link EDSimulator#setTimer} and cancel with {@link #cancel}. When it
+ * expires, the timer itself is delivered as an event to
+ * {@link EDProtocol#processEvent} of the node and protocol given when it was
+ * scheduled, provided that the node is up. Protocols typically keep one
+ * timer per pending operation, and re-arm it as needed; subclasses can carry
+ * information about the operation. A timer has to be always scheduled for
+ * the same node and protocol. A timer expires after the other events of the
+ * same time, so for example an answer arriving exactly at the deadline is
+ * delivered before it. A timer that expires while its node is down is not
+ * delivered, but it is no longer armed: a protocol can check
+ * {@link #isArmed} when its node is up again, e.g. in its next cycle, to
+ * find out that the timeout has passed.
+ * <p>
+ * Cancelling or re-arming a timer does not remove its entry from the event
+ * queue, which the queue does not support. Instead, the timer remembers its
+ * deadline, and an entry that does not match it is dropped by the
+ * simulator, without being delivered, when it reaches the head of the queue.
+ * A timer re-armed to a later deadline keeps its entry, which is moved
+ * forward when it reaches the head of the queue; a new entry is added only
+ * if the new deadline is earlier than all the entries of the timer. So a
+ * timer that is re-armed with the same delay, or cancelled and re-armed,
+ * has at most one entry in the queue, whatever the number of times it is
+ * re-armed, and the queue does not grow with cancelled timeouts.
+ * <p>
+ * Timers are not saved by {@link Checkpoint}, which refuses queues
+ * containing them.
+ */
+public class Timer
+{
+
+// ========================= fields ====================================
+// =====================================================================
+
+/** The time at which the timer expires, or -1 if it is not armed */
+private long deadline = -1;
+
+/** The node and protocol to which the timer is delivered */
+private Node node;
+
+private int pid;
+
+/**
+ * The times of the entries of this timer in the event queue, latest first.
+ * Since an entry is added only if earlier than the others, the next entry
+ * to reach the head of the queue is the last one.
+ */
+private long[] entries = new long[1];
+
+/** The number of entries in the event queue */
+private int queued = 0;
+
+
+// ====================== methods ======================================
+// =====================================================================
+
+
+/**
+ * Returns true if the timer is armed, that is, it has been scheduled and
+ * it has neither expired nor been cancelled.
+ */
+public boolean isArmed() { return deadline >= 0; }
+
+// ---------------------------------------------------------------------
+
+/**
+ * Returns the time at which the timer expires, or -1 if it is not armed.
+ */
+public long getDeadline() { return deadline; }
+
+// ---------------------------------------------------------------------
+
+/**
+ * Cancels the timer, which will not be delivered unless it is armed again.
+ * Has no effect if the timer is not armed.
+ */
+public void cancel() { deadline = -1; }
+
+// ---------------------------------------------------------------------
+
+/**
+ * Arms the timer to expire at the given time. Returns true if a new entry
+ * has to be added to the event queue for it.
+ */
+boolean arm(long time, Node node, int pid)
+{
+	this.deadline = time;
+	this.node = node;
+	this.pid = pid;
+	if (queued > 0 && entries[queued-1] <= time) return false;
+	if (queued == entries.length)
+	{
+		long[] a = new long[2*queued];
+		System.arraycopy(entries, 0, a, 0, queued);
+		entries = a;
+	}
+	entries[queued++] = time;
+	return true;
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Called when an entry of this timer reaches the head of the event queue
+ * at the given time. Returns true if the timer has expired and has to be
+ * delivered; in this case it is no longer armed. If the timer has been
+ * re-armed to a later time, and no other entry precedes the deadline, the
+ * entry is added again at the deadline.
+ */
+boolean expire(long time)
+{
+	queued--;
+	if (deadline < 0) return false;
+	if (deadline == time)
+	{
+		deadline = -1;
+		return true;
+	}
+	// the deadline is later, since there was an entry before it
+	if (queued == 0 || entries[queued-1] > deadline)
+	{
+		entries[queued++] = deadline;
+		EDSimulator.addTimerEntry(deadline, this, node, pid);
+	}
+	return false;
+}
+
+}
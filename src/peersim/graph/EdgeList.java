@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.graph;
+
+import java.util.Arrays;
+
+/**
+* A list of directed edges over nodes 0,...,n-1, stored in two primitive
+* arrays. It is the output of the edge list generators of
+* {@link GraphFactory}, which are much faster than the methods that wire a
+* {@link Graph} edge by edge, since they do not have to go through the graph
+* interface and the data structures of the nodes while generating.
+* <p>
+* The list can be added to a graph with {@link #wire}, or it can be grouped
+* by source node with {@link #group}, after which the targets of each node
+* are contiguous, so that they can be loaded into the data structures of
+* the nodes in one pass per node, possibly in parallel.
+*/
+public class EdgeList {
+
+// =================== private fields ============================
+// ===============================================================
+
+/** The number of nodes */
+private final int n;
+
+/** Sources of the edges */
+private int[] src;
+
+/** Targets of the edges */
+private int[] dst;
+
+/** The number of edges */
+private int size = 0;
+
+/**
+* After {@link #group}, the targets of node i are at positions
+* start[i] (inclusive) to start[i+1] (exclusive) of {@link #targets}.
+*/
+private int[] start = null;
+
+/** The grouped targets, see {@link #start} */
+private int[] targets = null;
+
+// =================== public constructors ======================
+// ===============================================================
+
+/**
+* Creates an empty list.
+* @param n the number of nodes
+* @param capacity the initial capacity, the expected number of edges
+*/
+public EdgeList( int n, int capacity ) {
+
+	this.n = n;
+	src = new int[Math.max(capacity,1)];
+	dst = new int[src.length];
+}
+
+// ---------------------------------------------------------------
+
+/**
+* Creates a list of the given edges. The arrays are not copied.
+* @param n the number of nodes
+* @param src the sources of the edges
+* @param dst the targets of the edges
+* @param size the number of edges, the first size elements of the arrays
+*/
+public EdgeList( int n, int[] src, int[] dst, int size ) {
+
+	this.n = n;
+	this.src = src;
+	this.dst = dst;
+	this.size = size;
+}
+
+// ======================= public methods =======================
+// ===============================================================
+
+/** Appends edge (i,j) to the list. */
+public void add( int i, int j ) {
+
+	if( size == src.length )
+	{
+		src = Arrays.copyOf(src,2*size);
+		dst = Arrays.copyOf(dst,2*size);
+	}
+	src[size] = i;
+	dst[size] = j;
+	size++;
+	start = null;
+}
+
+// ---------------------------------------------------------------
+
+/** Returns the number of nodes. */
+public int nodes() { return n; }
+
+// ---------------------------------------------------------------
+
+/** Returns the number of edges. */
+public int size() { return size; }
+
+// ---------------------------------------------------------------
+
+/** Returns the source of the e-th edge. */
+public int getSource( int e ) { return src[e]; }
+
+// ---------------------------------------------------------------
+
+/** Returns the target of the e-th edge. */
+public int getTarget( int e ) { return dst[e]; }
+
+// ---------------------------------------------------------------
+
+/**
+* Adds the edges to the given graph by calling {@link Graph#setEdge} in the
+* order of the list.
+* @return returns g for convenience
+*/
+public Graph wire( Graph g ) {
+
+	for(int e=0; e<size; ++e) g.setEdge(src[e],dst[e]);
+	return g;
+}
+
+// ---------------------------------------------------------------
+
+/**
+* Groups the edges by source node with a counting sort, which
+* takes linear time. Within each node the targets are in the order in
+* which the corresponding edges appear in the list.
+* @param undir if true, the edge (j,i) is also included for each edge (i,j).
+* It is included before (i,j), which is the order in which an undirected
+* graph view like {@link peersim.core.OverlayGraph} adds the two edges,
+* so the targets of each node are in the same order as if the list was
+* added to such a view with {@link #wire}.
+*/
+public void group( boolean undir ) {
+
+	start = new int[n+1];
+	for(int e=0; e<size; ++e)
+	{
+		start[src[e]+1]++;
+		if( undir ) start[dst[e]+1]++;
+	}
+	for(int i=0; i<n; ++i) start[i+1] += start[i];
+	targets = new int[start[n]];
+	int[] pos = Arrays.copyOf(start,n);
+	for(int e=0; e<size; ++e)
+	{
+		if( undir ) targets[pos[dst[e]]++] = src[e];
+		targets[pos[src[e]]++] = dst[e];
+	}
+}
+
+// ---------------------------------------------------------------
+
+/**
+* Returns the position of the first target of the given node in
+* {@link #getTargets}. The targets of node i are at positions
+* getStart(i) (inclusive) to getStart(i+1) (exclusive).
+* Can be called only after {@link #group}.
+*/
+public int getStart( int i ) {
+
+	if( start == null ) throw new IllegalStateException(
+		"The edges are not grouped");
+	return start[i];
+}
+
+// ---------------------------------------------------------------
+
+/**
+* Returns the targets grouped by source, see {@link #getStart}.
+* The array is not copied. Can be called only after {@link #group}.
+*/
+public int[] getTargets() {
+
+	if( start == null ) throw new IllegalStateException(
+		"The edges are not grouped");
+	return targets;
+}
+
+}
@@ -19,6 +19,8 @@
 package peersim.graph;
 
 import java.util.*;
+import java.util.concurrent.*;
+import peersim.util.CounterRandom;
 
 /**
 * Contains static methods for wiring certain kinds of graphs. The general
@@ -237,45 +239,580 @@ http://arxiv.org/pdf/cond-mat/0408391</a>. In both cases, the number of the
 */
 public static Graph wireScaleFreeBA( Graph g, int k, Random r ) {
 
+	// the edges do not depend on the graph, so they can be generated first
+	return scaleFreeBA(g.size(),k,r).wire(g);
+}
+
+// ===================== parallel wiring ============================
+// ==================================================================
+
+/**
+* The number of nodes in a partition of the parallel wiring methods.
+* Partitions do not depend on the number of threads, so the result of these
+* methods depends only on the seed.
+*/
+public static final int CHUNK = 4096;
+
+// -------------------------------------------------------------------
+
+/**
+* Parallel version of {@link #wireKOut(Graph,int,Random)}.
+* The nodes are split in partitions of {@value #CHUNK} nodes, that are
+* wired in parallel using independent random streams derived from
+* <code>seed</code>. The targets of a node are sampled with rejection
+* instead of using a shared permutation, so the result is a different
+* random graph with the same distribution.
+* <p>
+* The graph must allow concurrent calls to {@link Graph#setEdge} with
+* different source nodes, and each such call must modify only the edges of
+* its source (this is the case of directed views on protocols).
+* @param g the graph to be wired
+* @param k samples to be drawn for each node
+* @param seed seed of the random streams
+* @param undir if true, for each edge (i,j) the edge (j,i) is also added
+* @param ex the executor running the partitions, or null to run them in
+* the calling thread
+* @return returns g for convenience
+*/
+public static Graph wireKOut( final Graph g, int k, final long seed,
+		boolean undir, ExecutorService ex ) {
+
+	final int n = g.size();
+	if( n < 2 ) return g;
+	final int kk = ( n <= k ? n-1 : k );
+	final int[] dst = (undir ? new int[n*kk] : null);
+	runChunks(n, ex, new Chunk() {
+		public void run(int c, int from, int to) {
+			Random r = new Random(CounterRandom.derive(seed,c+1));
+			int[] picked = new int[kk];
+			for(int i=from; i<to; ++i)
+			{
+				int j=0;
+				while(j<kk)
+				{
+					int t = r.nextInt(n-1);
+					if( t >= i ) t++; // random _other_ node
+					int m=0;
+					while( m<j && picked[m]!=t ) ++m;
+					if( m<j ) continue;
+					picked[j++]=t;
+					g.setEdge(i,t);
+				}
+				if( dst != null ) System.arraycopy(picked,0,dst,i*kk,kk);
+			}
+		}
+	});
+	if( undir ) addReverse(g, regularSources(n,kk), dst, ex);
+	return g;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Parallel version of {@link #wireWS}. The nodes are split in partitions of
+* {@value #CHUNK} nodes that are rewired in parallel using independent
+* random streams derived from <code>seed</code>. The requirements on the
+* graph are the same as those of
+* {@link #wireKOut(Graph,int,long,boolean,ExecutorService)}.
+* @param g the graph to be wired
+* @param k lattice parameter
+* @param p the probability of rewiring each 
+* @param seed seed of the random streams
+* @param undir if true, for each edge (i,j) the edge (j,i) is also added
+* @param ex the executor running the partitions, or null
+* @return returns g for convenience
+*/
+public static Graph wireWS( final Graph g, int k, final double p,
+		final long seed, boolean undir, ExecutorService ex ) {
+
+	final int n = g.size();
+	final int half = k/2;
+	final int deg = 2*half;
+	final int[] dst = (undir ? new int[n*deg] : null);
+	runChunks(n, ex, new Chunk() {
+		public void run(int c, int from, int to) {
+			Random r = new Random(CounterRandom.derive(seed,c+1));
+			for(int i=from; i<to; ++i)
+			{
+				int e = i*deg;
+				for(int j=-half; j<=half; ++j)
+				{
+					if( j==0 ) continue;
+					int newedge = (i+j+n)%n;
+					if( r.nextDouble() < p )
+					{
+						newedge = r.nextInt(n-1);
+						if( newedge >= i ) newedge++;
+					}
+					g.setEdge(i,newedge);
+					if( dst != null ) dst[e++] = newedge;
+				}
+			}
+		}
+	});
+	if( undir ) addReverse(g, regularSources(n,deg), dst, ex);
+	return g;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Parallel version of {@link #wireScaleFreeBA}. The growth process is
+* inherently sequential, so the edges are drawn in the calling thread
+* exactly as in {@link #wireScaleFreeBA}, and only their insertion in the
+* graph is done in parallel. In the directed case the result is the same as
+* that of {@link #wireScaleFreeBA} with the same random source.
+* The requirements on the graph are the same as those of
+* {@link #wireKOut(Graph,int,long,boolean,ExecutorService)}.
+* @param g the graph to be wired
+* @param k the number of edges that are generated for each new node
+* @param r the randomness to be used
+* @param undir if true, for each edge (i,j) the edge (j,i) is also added
+* @param ex the executor running the partitions, or null
+* @return returns g for convenience
+*/
+public static Graph wireScaleFreeBA( final Graph g, final int k, Random r,
+		boolean undir, ExecutorService ex ) {
+
 	final int nodes = g.size();
-	if( nodes <= k ) return g;
-	
-	// edge i has ends (ends[2*i],ends[2*i+1])
-	int[] ends = new int[2*k*(nodes-k)];
+	final EdgeList el = scaleFreeBA(nodes,k,r);
+	// the edges of a node are contiguous, starting from node k
+	runChunks(nodes, ex, new Chunk() {
+		public void run(int c, int from, int to) {
+			for(int i=Math.max(from,k); i<to; ++i)
+			{
+				final int e = (i-k)*k;
+				for(int j=e; j<e+k; ++j) g.setEdge(i,el.getTarget(j));
+			}
+		}
+	});
+	if( undir && el.size() > 0 )
+	{
+		int[] src = new int[el.size()];
+		int[] dst = new int[el.size()];
+		for(int j=0; j<src.length; ++j)
+		{
+			src[j]=el.getSource(j);
+			dst[j]=el.getTarget(j);
+		}
+		addReverse(g, src, dst, ex);
+	}
+	return g;
+}
+
+// ===================== edge list generators =======================
+// ==================================================================
+
+/**
+* Generates the edges of the Barabasi-Albert model as described in
+* {@link #wireScaleFreeBA(Graph,int,Random)}. Adding the returned edges to a
+* graph with {@link EdgeList#wire} is equivalent to calling that method
+* with the same random source. The edges of node i (i&ge;k) are
+* at positions (i-k)*k to (i-k+1)*k-1 of the list.
+* The preferential choice uses the list itself: picking a random end point
+* of the edges generated so far selects a node with probability
+* proportional to its degree.
+* @param n the number of nodes
+* @param k the number of edges that are generated for each new node, also
+* the number of initial nodes (that have no edges).
+* @param r the randomness to be used
+*/
+public static EdgeList scaleFreeBA( int n, int k, Random r ) {
+
+	if( n <= k ) return new EdgeList(n,0);
+	final int[] src = new int[k*(n-k)];
+	final int[] dst = new int[src.length];
 	
 	// Add initial edges from k to 0,1,...,k-1
 	for(int i=0; i < k; i++)
 	{
-		g.setEdge(k,i);
-		ends[2*i]=k;
-		ends[2*i+1]=i;
+		src[i]=k;
+		dst[i]=i;
 	}
 	
-	int len = 2*k; // edges drawn so far is len/2
-	for(int i=k+1; i < nodes; i++) // over the remaining nodes
+	int edges = k;
+	for(int i=k+1; i < n; i++) // over the remaining nodes
 	{
 		for (int j=0; j < k; j++) // over the new edges
 		{
 			int target;
 			do
 			{
-				target = ends[r.nextInt(len)]; 
+				// a random end point of the first "edges" edges
+				int x = r.nextInt(2*edges);
+				target = ((x&1)==0 ? src[x>>1] : dst[x>>1]);
 				int m=0;
-				while( m<j && ends[len+2*m+1]!=target) ++m;
+				while( m<j && dst[edges+m]!=target) ++m;
 				if(m==j) break;
-				// we don't check in the graph because
-				// this wire method should accept graphs
-				// that already have edges.
 			}
 			while(true);
-			g.setEdge(i,target);
-			ends[len+2*j]=i;
-			ends[len+2*j+1]=target;
+			src[edges+j]=i;
+			dst[edges+j]=target;
 		}
-		len += 2*k;
+		edges += k;
 	}
 
-	return g;
+	return new EdgeList(n,src,dst,src.length);
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates the edges of the Holme-Kim model, a variant of the
+* Barabasi-Albert model with tunable clustering, described in
+* <a href="http://arxiv.org/abs/cond-mat/0110452">
+http://arxiv.org/abs/cond-mat/0110452</a>.
+* The nodes are added one by one as in {@link #scaleFreeBA}, with
+* k edges each. The first edge of a node goes to a node chosen with
+* preferential attachment. Each further edge, with probability
+* <code>pt</code>, goes to a random neighbor of the node chosen by the last
+* preferential attachment step (triad formation); otherwise, or if no such
+* neighbor that is not linked to the new node is found, it is chosen with
+* preferential attachment as well.
+* With <code>pt=0</code> the model is the same as {@link #scaleFreeBA},
+* but the random choices are different.
+* @param n the number of nodes
+* @param k the number of edges that are generated for each new node, also
+* the number of initial nodes (that have no edges).
+* @param pt the probability of triad formation steps
+* @param r the randomness to be used
+*/
+public static EdgeList holmeKim( int n, int k, double pt, Random r ) {
+
+	if( n <= k ) return new EdgeList(n,0);
+	final int[] src = new int[k*(n-k)];
+	final int[] dst = new int[src.length];
+	// the undirected neighbors of the nodes added so far
+	final int[][] adj = new int[n][];
+	final int[] deg = new int[n];
+	for(int i=0; i<n; ++i) adj[i] = new int[( i<k ? 2 : k+1 )];
+
+	int edges = 0;
+	for(int i=k; i < n; i++)
+	{
+		int last = -1; // the node chosen by the last PA step
+		for (int j=0; j < k; j++)
+		{
+			int target = -1;
+			if( i == k ) target = j; // initial edges
+			else if( last >= 0 && r.nextDouble() < pt )
+			{
+				final int d = deg[last];
+				for(int t=0; t<d && target<0; ++t)
+				{
+					int c = adj[last][r.nextInt(d)];
+					int m=0;
+					while( m<j && dst[edges+m]!=c ) ++m;
+					if( m==j && c!=i ) target = c;
+				}
+			}
+			if( target < 0 )
+			{
+				do
+				{
+					int x = r.nextInt(2*edges);
+					target = ((x&1)==0 ? src[x>>1] : dst[x>>1]);
+					int m=0;
+					while( m<j && dst[edges+m]!=target ) ++m;
+					if( m==j ) break;
+				}
+				while(true);
+				last = target;
+			}
+			src[edges+j]=i;
+			dst[edges+j]=target;
+			append(adj,deg,i,target);
+			append(adj,deg,target,i);
+		}
+		edges += k;
+	}
+
+	return new EdgeList(n,src,dst,src.length);
+}
+
+// -------------------------------------------------------------------
+
+/** Appends j to the growable list of i */
+private static void append( int[][] adj, int[] deg, int i, int j ) {
+
+	if( deg[i] == adj[i].length )
+		adj[i] = Arrays.copyOf(adj[i],2*deg[i]);
+	adj[i][deg[i]++] = j;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates the edges of a random graph with the given degree sequence,
+* using the configuration model: each node i gets degree[i] stubs
+* (half edges), and the stubs are paired uniformly at random. If the sum
+* of the degrees is odd, the last stub is not used.
+* Each edge is listed once, as (i,j) where i is the owner of the
+* lower numbered stub, and the edges are in increasing order of i.
+* <p>
+* If <code>simple</code> is true, self loops and multiple edges are removed
+* while preserving the degrees, by switching each of them with random
+* other edges: edges (u,v) and (x,y) are replaced by (u,x) and (v,y) if
+* this creates no self loop or multiple edge. This is the usual way of
+* sampling simple graphs with a given degree sequence; the result is
+* very close to, but not exactly, uniform. If no switch is found for an
+* edge after a large number of attempts (which can happen only for very
+* dense or not graphical degree sequences), the edge is dropped.
+* @param degree the degree of each node; its length is the number of nodes
+* @param simple if true, self loops and multiple edges are removed
+* @param r the randomness to be used
+*/
+public static EdgeList configurationModel( int[] degree, boolean simple,
+		Random r ) {
+
+	final int n = degree.length;
+	long total = 0;
+	for(int i=0; i<n; ++i)
+	{
+		if( degree[i] < 0 ) throw new IllegalArgumentException(
+			"degree["+i+"]="+degree[i]+" is negative");
+		total += degree[i];
+	}
+	if( total > Integer.MAX_VALUE-1 ) throw new IllegalArgumentException(
+		"Too many stubs: "+total);
+	final int stubs = (int)(total & ~1L);
+	// the owner of each stub, stubs of the same node are contiguous
+	final int[] owner = new int[stubs];
+	// the first stub of each node
+	final int[] first = new int[n+1];
+	for(int i=0, s=0; i<n; ++i)
+	{
+		first[i] = s;
+		for(int d=0; d<degree[i] && s<stubs; ++d) owner[s++] = i;
+	}
+	first[n] = stubs;
+	
+	// random pairing: the stubs in a random order are paired consecutively
+	final int[] partner = new int[stubs];
+	for(int s=0; s<stubs; ++s) partner[s] = s;
+	for(int s=stubs; s>1; --s)
+	{
+		int j = r.nextInt(s);
+		int t = partner[s-1];
+		partner[s-1] = partner[j];
+		partner[j] = t;
+	}
+	final int[] perm = partner.clone();
+	for(int s=0; s<stubs; s+=2)
+	{
+		partner[perm[s]] = perm[s+1];
+		partner[perm[s+1]] = perm[s];
+	}
+
+	// The stubs of each node are checked in turn, marking the nodes
+	// it is linked to, so a multiple edge is found at its second stub
+	// (and a multiple edge with a node checked earlier has already been
+	// removed). A switch never makes a good edge bad, so one pass is enough.
+	final int[] mark = ( simple ? new int[n] : null );
+	for(int u=0; simple && u<n; ++u)
+	for(int s=first[u]; s<first[u+1]; ++s)
+	{
+		if( partner[s] < 0 ) continue;
+		int v = owner[partner[s]];
+		int tries = 0;
+		while( v == u || mark[v] == u+1 )
+		{
+			if( tries++ == MAX_TRIES )
+			{
+				partner[partner[s]] = -1;
+				partner[s] = -1; // dropped
+				break;
+			}
+			trySwitch(owner,first,partner,s,r);
+			v = owner[partner[s]];
+		}
+		if( partner[s] >= 0 ) mark[v] = u+1;
+	}
+
+	EdgeList el = new EdgeList(n, stubs/2);
+	for(int s=0; s<stubs; ++s)
+		if( partner[s] > s ) el.add(owner[s],owner[partner[s]]);
+	return el;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* The number of random switches tried for a bad edge by
+* {@link #configurationModel} before dropping it.
+*/
+private static final int MAX_TRIES = 10000;
+
+// -------------------------------------------------------------------
+
+/** Returns true if nodes u and v are linked */
+private static boolean linked( int[] owner, int[] first, int[] partner,
+		int u, int v ) {
+
+	for(int x=first[u]; x<first[u+1]; ++x)
+		if( partner[x] >= 0 && owner[partner[x]] == v ) return true;
+	return false;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Tries to switch the edge of stub s with the edge of a random stub,
+* as described in {@link #configurationModel}.
+*/
+private static void trySwitch( int[] owner, int[] first, int[] partner,
+		int s, Random r ) {
+
+	final int t = partner[s];
+	final int a = r.nextInt(partner.length);
+	final int b = partner[a];
+	if( a == s || a == t || b < 0 ) return;
+	final int u = owner[s], v = owner[t], x = owner[a], y = owner[b];
+	// the new edges are u-x and v-y
+	if( u == x || v == y || (u == y && v == x) ) return;
+	if( linked(owner,first,partner,u,x) ||
+		linked(owner,first,partner,v,y) ) return;
+	partner[s] = a;
+	partner[a] = s;
+	partner[t] = b;
+	partner[b] = t;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates the edges of a random k-regular graph: a simple undirected
+* graph in which every node has exactly k neighbors. It calls
+* {@link #configurationModel} with all degrees equal to k, removing self
+* loops and multiple edges. If k is larger than (n-1)/2, where removing
+* them is hard, it generates instead a random (n-1-k)-regular graph and
+* returns its complement.
+* @param n the number of nodes
+* @param k the degree, less than n. n*k must be even.
+* @param r the randomness to be used
+* @throws IllegalStateException if {@link #configurationModel} had to drop
+* an edge, so that the graph would not be regular; this is very unlikely
+* since the degree passed to it is at most (n-1)/2
+*/
+public static EdgeList randomRegular( int n, int k, Random r ) {
+
+	if( k >= n || k < 0 ) throw new IllegalArgumentException(
+		"k="+k+" must be non-negative and less than n="+n);
+	if( ((long)n*k)%2 != 0 ) throw new IllegalArgumentException(
+		"n*k must be even");
+	final boolean dense = ( k > (n-1)/2 );
+	final int d = ( dense ? n-1-k : k );
+	int[] degree = new int[n];
+	Arrays.fill(degree,d);
+	EdgeList el = configurationModel(degree,true,r);
+	if( el.size() != (long)n*d/2 ) throw new IllegalStateException(
+		"Could not remove all the multiple edges of a "+d+
+		"-regular graph with "+n+" nodes");
+	if( !dense ) return el;
+
+	// the complement, listing each edge (i,j) with i<j in increasing order
+	el.group(true);
+	final int[] targets = el.getTargets();
+	final int[] mark = new int[n];
+	EdgeList comp = new EdgeList(n, (int)((long)n*k/2));
+	for(int i=0; i<n; ++i)
+	{
+		for(int x=el.getStart(i); x<el.getStart(i+1); ++x)
+			mark[targets[x]] = i+1;
+		for(int j=i+1; j<n; ++j)
+			if( mark[j] != i+1 ) comp.add(i,j);
+	}
+	return comp;
+}
+
+// -------------------------------------------------------------------
+
+/** A partition of the nodes processed by a parallel wiring method */
+private interface Chunk {
+
+	/**
+	* Processes nodes from <code>from</code> (inclusive) to
+	* <code>to</code> (exclusive), which form partition <code>c</code>.
+	*/
+	void run(int c, int from, int to);
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Runs the given task on all the partitions of n nodes, and waits for
+* the completion of all of them.
+*/
+private static void runChunks( int n, ExecutorService ex, final Chunk task ) {
+
+	final int chunks = (n+CHUNK-1)/CHUNK;
+	if( ex == null || chunks <= 1 )
+	{
+		for(int c=0; c<chunks; ++c)
+			task.run(c, c*CHUNK, Math.min(n,(c+1)*CHUNK));
+		return;
+	}
+	List<Future<?>> results = new ArrayList<Future<?>>(chunks);
+	for(int c=0; c<chunks; ++c)
+	{
+		final int cc = c;
+		final int from = c*CHUNK;
+		final int to = Math.min(n,from+CHUNK);
+		results.add(ex.submit(new Runnable() {
+			public void run() { task.run(cc,from,to); }
+		}));
+	}
+	try
+	{
+		for(Future<?> f: results) f.get();
+	}
+	catch( InterruptedException e )
+	{
+		Thread.currentThread().interrupt();
+		throw new RuntimeException(e);
+	}
+	catch( ExecutionException e )
+	{
+		if( e.getCause() instanceof RuntimeException )
+			throw (RuntimeException)e.getCause();
+		throw new RuntimeException(e.getCause());
+	}
+}
+
+// -------------------------------------------------------------------
+
+/** Sources of the edges of a regular graph with m edges per node */
+private static int[] regularSources( int n, int m ) {
+
+	int[] src = new int[n*m];
+	for(int i=0; i<src.length; ++i) src[i]=i/m;
+	return src;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Adds edge (dst[i],src[i]) for all i, in parallel. The edges are grouped
+* by their new source with a counting sort, so that each node is modified
+* by a single partition, in the order of the original edges.
+*/
+private static void addReverse( final Graph g, final int[] src, int[] dst,
+		ExecutorService ex ) {
+
+	final int n = g.size();
+	final int[] start = new int[n+1];
+	for(int i=0; i<dst.length; ++i) start[dst[i]+1]++;
+	for(int i=0; i<n; ++i) start[i+1]+=start[i];
+	final int[] from = new int[dst.length];
+	int[] pos = Arrays.copyOf(start,n);
+	for(int i=0; i<dst.length; ++i) from[pos[dst[i]]++] = src[i];
+	runChunks(n, ex, new Chunk() {
+		public void run(int c, int lo, int hi) {
+			for(int j=lo; j<hi; ++j)
+			for(int e=start[j]; e<start[j+1]; ++e)
+				g.setEdge(j,from[e]);
+		}
+	});
 }
 
 // -------------------------------------------------------------------
@@ -19,7 +19,10 @@
 package peersim.rangesim;
 
 import java.io.*;
+import java.lang.reflect.*;
+import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import peersim.*;
 import peersim.config.*;
@@ -81,6 +84,37 @@ java peersim.rangesim.RangeSimulator config.file jvm.options=-Xmx256m
  * The new JVM inherits the same classpath as the JVM running the
  * RangeSimulator. The {@value #PAR_JVM} parameter can be used to
  * specify additional classpath specification.
+ * <p>
+ * Alternatively, if {@value #PAR_THREADS} is set, the experiments are
+ * executed inside the JVM running the Range Simulator, several of them
+ * concurrently. Each experiment loads the simulator and the protocols
+ * through its own class loader, so the static state of the simulator
+ * (configuration, network, random generator, event queue etc.) is
+ * isolated. The standard output and error of each experiment are collected
+ * line by line; the standard output is tagged with the values of the range
+ * parameters exactly as for forked JVMs, while the lines of the standard
+ * error are prefixed with the number of the experiment.
+ * <p>
+ * Experiments run in the same JVM are isolated only as far as their
+ * classes are concerned:
+ * <ul>
+ * <li>Experiments must not call <code>System.exit</code>. The simulator
+ * itself does not (configuration errors end only the experiment, and are
+ * reported on its standard error), but protocols or observers that do,
+ * e.g. on a missing input file, terminate the JVM and with it all the
+ * experiments; in this case the experiments that were running are
+ * reported on the standard error. Such configurations must be run in
+ * forked JVMs.</li>
+ * <li>Threads started by an experiment write to the streams of the
+ * experiment. Threads of shared pools, such as the common fork-join pool
+ * used by parallel streams, are attributed to an experiment by looking
+ * for its classes on the stack; what they print from JDK code alone,
+ * e.g. the stack trace of an uncaught exception, is not tagged.</li>
+ * <li>Forked JVMs are still needed for protocols whose state is not
+ * limited to their own static fields, e.g. those relying on JVM-wide
+ * system properties or on the standard streams being set by the
+ * simulator.</li>
+ * </ul>
  * 
  * @author Alberto Montresor
  * @version $Revision: 1.11 $
@@ -107,6 +141,15 @@ private static final String PAR_RANGE = "range";
  */
 public static final String PAR_JVM = "jvm.options";
 
+/**
+ * If defined and positive, the experiments are executed in the JVM of the
+ * Range Simulator instead of forked JVMs, and this parameter gives the
+ * maximum number of experiments that run concurrently. Defaults to 0,
+ * that is, forked JVMs are used.
+ * @config
+ */
+public static final String PAR_THREADS = "rangesim.threads";
+
 
 // --------------------------------------------------------------------------
 // Static variables
@@ -127,6 +170,13 @@ private String[] args;
 /** The current process that is executed */
 private Process p;
 
+/** Maximum number of concurrent experiments; 0 if JVMs are forked */
+private int threads;
+
+/** The experiments running in this JVM, with their range values */
+private final Map<Integer,String> running =
+	new ConcurrentSkipListMap<Integer,String>();
+
 
 // --------------------------------------------------------------------------
 // Main
@@ -169,6 +219,8 @@ public RangeSimulator(String[] args)
 	else
 		jvmoptions = opt.split(" ");
 
+	threads = Configuration.getInt(PAR_THREADS, 0);
+
 	// Parse range parameters
 	parseRanges();
 
@@ -187,7 +239,10 @@ public void run()
 	// Executes experiments; report short messages about exceptions that are
 	// handled by the configuration mechanism.
 	try {
-		doExperiments(args);
+		if (threads > 0)
+			doExperimentsInProcess(args);
+		else
+			doExperiments(args);
 	} catch (MissingParameterException e) {
 		Runtime.getRuntime().removeShutdownHook(t);
 		System.err.println(e + "");
@@ -342,6 +397,151 @@ private void doExperiments(String[] args)
 
 //--------------------------------------------------------------------
 
+/**
+ * Executes the experiments in this JVM, using a pool of
+ * {@value #PAR_THREADS} threads. The arguments and seeds of the
+ * experiments are the same that would be passed to forked JVMs.
+ */
+private void doExperimentsInProcess(String[] args)
+{
+	// The classpath used by the class loaders of the experiments
+	String[] elements = System.getProperty("java.class.path").split(
+			File.pathSeparator);
+	final URL[] urls = new URL[elements.length];
+	try {
+		for (int i = 0; i < elements.length; i++)
+			urls[i] = new File(elements[i]).toURI().toURL();
+	} catch (MalformedURLException e) {
+		throw new IllegalArgumentException(e);
+	}
+
+	// Observers whose output should contain the current time
+	final List<String> obstime = new ArrayList<String>();
+	String[] obs = Configuration.getString(TaggedOutputStream.PAR_TIME, "")
+			.split("[ :,]");
+	for (int i=0; i < obs.length; i++) {
+		obstime.add("control." + obs[i]);
+	}
+
+	final PrintStream stdout = System.out;
+	final PrintStream stderr = System.err;
+	final ThreadOutputStream tout = new ThreadOutputStream(stdout);
+	final ThreadOutputStream terr = new ThreadOutputStream(stderr);
+	System.setOut(tout);
+	System.setErr(terr);
+
+	ExecutorService pool = Executors.newFixedThreadPool(threads);
+	List<Future<?>> results = new ArrayList<Future<?>>();
+	
+	// Execute with different values
+	int[] idx = new int[values.length]; // Initialized to 0
+	int run = 0;
+	while (idx[0] < values[0].length) {
+
+		// Configure the argument string array
+		final String[] exp = new String[args.length + pars.length + 2];
+		System.arraycopy(args, 0, exp, 0, args.length);
+		exp[args.length] = Simulator.PAR_EXPS+"=1";
+		StringBuffer log = new StringBuffer();
+		for (int j = 0; j < pars.length; j++) {
+			exp[args.length + 1 + j] = pars[j] + "=" + values[j][idx[j]];
+			log.append(pars[j]);
+			log.append(" ");
+			log.append(values[j][idx[j]]);
+			log.append(" ");
+		}
+		long seed = CommonState.r.nextLong();
+		exp[exp.length - 1] = CommonState.PAR_SEED+"="+seed;
+		final String ranges = log.toString().trim();
+		final int id = run++;
+
+		System.err.println("Experiment " + id + ": " + ranges);
+		results.add(pool.submit(new Runnable() {
+			public void run() {
+				running.put(id, ranges);
+				try {
+					runExperiment(exp, urls, ranges, obstime,
+						new RunOutputStream(stderr, "[" + id + "] "),
+						stdout, tout, terr);
+				} finally {
+					running.remove(id);
+				}
+			}
+		}));
+		
+		// Increment values
+		nextValues(idx, values);
+	}
+	pool.shutdown();
+
+	for (int i = 0; i < results.size(); i++) {
+		try {
+			results.get(i).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			break;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+		}
+	}
+	System.setOut(stdout);
+	System.setErr(stderr);
+}
+
+//--------------------------------------------------------------------
+
+/**
+ * Runs a single experiment in the current thread, loading the simulator
+ * through a new class loader, with the given arguments. The standard
+ * output of the experiment is tagged with the given range values.
+ */
+private static void runExperiment(String[] exp, URL[] urls, String ranges,
+		List<String> obstime, RunOutputStream err, PrintStream stdout,
+		ThreadOutputStream tout, ThreadOutputStream terr)
+{
+	// The parent is the loader of the Java platform classes, so that
+	// all the classes of the simulator are loaded again
+	URLClassLoader loader = new URLClassLoader(urls,
+			ClassLoader.getSystemClassLoader().getParent());
+	ClassLoader context = Thread.currentThread().getContextClassLoader();
+	Thread.currentThread().setContextClassLoader(loader);
+	RunOutputStream out = null;
+	terr.setStream(err);
+	terr.setStream(loader, err);
+	try {
+		Method clock = loader.loadClass(CommonState.class.getName())
+				.getMethod("getTime");
+		out = new RunOutputStream(stdout, ranges, obstime, clock);
+		tout.setStream(out);
+		tout.setStream(loader, out);
+		Class<?> c = loader.loadClass(Simulator.class.getName());
+		c.getMethod("run", String[].class).invoke(null, (Object) exp);
+	} catch (InvocationTargetException e) {
+		// Configuration errors are reported briefly, like in forked JVMs
+		Throwable cause = e.getCause();
+		if (cause.getClass().getName().startsWith("peersim.config."))
+			System.err.println(cause + "");
+		else
+			cause.printStackTrace();
+	} catch (Exception e) {
+		e.printStackTrace();
+	} finally {
+		if (out != null) out.close();
+		err.close();
+		tout.setStream(null);
+		terr.setStream(null);
+		tout.setStream(loader, null);
+		terr.setStream(loader, null);
+		Thread.currentThread().setContextClassLoader(context);
+		try {
+			loader.close();
+		} catch (IOException e) {
+		}
+	}
+}
+
+//--------------------------------------------------------------------
+
 /**
  * Execute the "command line" represented by this String list.
  * The first argument is the process to be executed. We try
@@ -441,12 +641,18 @@ RangeSimulator()
 }
 
 /**
- * Stop the process executing the external java virtual machine.
+ * Stop the process executing the external java virtual machine. If the
+ * experiments run in this JVM, reports those that are still running,
+ * since they are terminated with it.
  */
 public void doStop()
 {
 	if (p != null)
 		p.destroy();
+	for (Map.Entry<Integer,String> e : running.entrySet()) {
+		System.err.println("Experiment " + e.getKey() + " (" + e.getValue() +
+			") terminated with the JVM");
+	}
 }
 
 /**
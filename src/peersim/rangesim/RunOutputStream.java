@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.rangesim;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * This PrintStream collects the output of an experiment run inside the
+ * JVM of {@link RangeSimulator} line by line, and prints each complete
+ * line on an underlying stream as a single write, so that the lines of
+ * concurrent experiments are never mixed. Lines are formatted like
+ * {@link TaggedOutputStream} does for the standard output of forked JVMs:
+ * the values of the range parameters are inserted after the name of
+ * the observer, and the current time is added for the observers listed in
+ * {@value TaggedOutputStream#PAR_TIME}. Alternatively, a fixed prefix can
+ * be printed at the beginning of every line, which is used for the
+ * standard error.
+ *
+ * @see ThreadOutputStream
+ */
+public class RunOutputStream extends PrintStream
+{
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/** The stream where complete lines are printed */
+private final PrintStream out;
+
+/** Buffer used to store a single line; it can grow */
+private byte[] buffer = new byte[1024];
+
+/** Current size of the buffer */
+private int size;
+
+/** The values of the range parameters, or null to use the prefix */
+private final String ranges;
+
+/** The prefix printed before each line, if ranges is null */
+private final String prefix;
+
+/** The observers whose lines are augmented with the time */
+private final List<String> obstime;
+
+/** Returns the current time of the experiment, may be null */
+private final Method clock;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Creates a stream that inserts the given range values in the lines
+ * printed by observers.
+ * @param out the stream where the lines are printed
+ * @param ranges the values of the range parameters of the experiment
+ * @param obstime the full names of the observers whose lines should
+ *   contain the current time
+ * @param clock a static method returning the current time of the
+ *   experiment
+ */
+public RunOutputStream(PrintStream out, String ranges, List<String> obstime,
+		Method clock)
+{
+	super(out);
+	this.out = out;
+	this.ranges = ranges;
+	this.prefix = null;
+	this.obstime = obstime;
+	this.clock = clock;
+}
+
+/**
+ * Creates a stream that prints the given prefix before each line.
+ * @param out the stream where the lines are printed
+ * @param prefix the prefix
+ */
+public RunOutputStream(PrintStream out, String prefix)
+{
+	super(out);
+	this.out = out;
+	this.ranges = null;
+	this.prefix = prefix;
+	this.obstime = Collections.emptyList();
+	this.clock = null;
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+// Comment inherited from interface
+@Override
+public synchronized void write(byte[] b, int off, int len)
+{
+	int last = off+len;
+	for (int i=off; i < last; i++) {
+		write(b[i]);
+	}
+}
+
+// Comment inherited from interface
+@Override
+public synchronized void write(int b)
+{
+	if (size == buffer.length) {
+		byte[] tmp = new byte[buffer.length*2];
+		System.arraycopy(buffer, 0, tmp, 0, size);
+		buffer = tmp;
+	}
+	buffer[size++] = (byte) b;
+	if (b == '\n') printLine();
+}
+
+// Comment inherited from interface
+@Override
+public void flush()
+{
+	out.flush();
+}
+
+/**
+ * Prints the last, incomplete line, if any. This is used when the
+ * experiment has terminated.
+ */
+@Override
+public synchronized void close()
+{
+	if (size > 0) write('\n');
+	out.flush();
+}
+
+/** 
+ * Actually prints a line, inserting ranges and time
+ * when needed.
+ */
+private void printLine()
+{
+	String line = new String(buffer, 0, size);
+	size = 0;
+	if (ranges == null) {
+		line = prefix + line;
+	} else {
+		String[] parts = line.split(":");
+		if (parts.length == 2) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(parts[0]).append(": ").append(ranges);
+			if (obstime.contains(parts[0]) && clock != null) {
+				try {
+					sb.append(" TIME ").append(clock.invoke(null)).append(" ");
+				} catch (Exception e) {
+					// the time is only informative
+				}
+			}
+			line = sb.append(parts[1]).toString();
+		}
+	}
+	synchronized (out) {
+		out.print(line);
+	}
+}
+
+}
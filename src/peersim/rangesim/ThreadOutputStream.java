@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.rangesim;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * This PrintStream forwards all the data written by a thread to the
+ * stream associated to that thread, or to a default stream if no stream
+ * is associated to it. Threads started by a thread inherit its stream.
+ * It is installed as standard output and standard error by
+ * {@link RangeSimulator} when experiments are executed concurrently in
+ * the same JVM, so that the output of each experiment can be tagged
+ * separately even though all of them write to System.out and System.err.
+ * <p>
+ * Threads of shared pools, like the common fork-join pool, run tasks of
+ * several experiments, and the stream they inherited belongs to the
+ * experiment that happened to create them. For these threads, and for the
+ * threads without a stream, the stream is that of the class loader of the
+ * innermost experiment class on the stack, if the loader was registered
+ * with {@link #setStream(ClassLoader,PrintStream)}.
+ */
+public class ThreadOutputStream extends PrintStream
+{
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/** The stream used by threads that are not associated to a stream */
+private final PrintStream def;
+
+/** The stream associated to the current thread */
+private final InheritableThreadLocal<PrintStream> current =
+	new InheritableThreadLocal<PrintStream>();
+
+/** The streams associated to the class loaders of the experiments */
+private final Map<ClassLoader,PrintStream> loaders =
+	new ConcurrentHashMap<ClassLoader,PrintStream>();
+
+/** Walks the stack to find the classes of the experiments */
+private static final StackWalker walker =
+	StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+/** Finds the stream of the innermost experiment class on the stack */
+private final Function<Stream<StackWalker.StackFrame>,PrintStream> finder =
+	new Function<Stream<StackWalker.StackFrame>,PrintStream>() {
+		public PrintStream apply(Stream<StackWalker.StackFrame> frames)
+		{
+			Iterator<StackWalker.StackFrame> it = frames.iterator();
+			while (it.hasNext()) {
+				ClassLoader l = it.next().getDeclaringClass().getClassLoader();
+				PrintStream out = (l == null ? null : loaders.get(l));
+				if (out != null) return out;
+			}
+			return null;
+		}
+	};
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Creates a stream that forwards to the specified stream by default.
+ */
+public ThreadOutputStream(PrintStream def)
+{
+	super(def);
+	this.def = def;
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Associates the given stream to the current thread; if null, the
+ * current thread will use the default stream.
+ */
+public void setStream(PrintStream out)
+{
+	if (out == null)
+		current.remove();
+	else
+		current.set(out);
+}
+
+/**
+ * Associates the given stream to the classes loaded by the given loader,
+ * for the threads that are not associated to the experiment; if null, the
+ * association is removed.
+ */
+void setStream(ClassLoader loader, PrintStream out)
+{
+	if (out == null)
+		loaders.remove(loader);
+	else
+		loaders.put(loader, out);
+}
+
+/** Returns the stream used by the current thread */
+private PrintStream stream()
+{
+	boolean shared = Thread.currentThread() instanceof ForkJoinWorkerThread;
+	PrintStream out = (shared ? null : current.get());
+	if (out == null && !loaders.isEmpty()) out = walker.walk(finder);
+	return (out == null ? def : out);
+}
+
+// Comment inherited from interface
+@Override
+public void write(byte[] b, int off, int len)
+{
+	stream().write(b, off, len);
+}
+
+// Comment inherited from interface
+@Override
+public void write(int b)
+{
+	stream().write(b);
+}
+
+// Comment inherited from interface
+@Override
+public void flush()
+{
+	stream().flush();
+}
+
+}
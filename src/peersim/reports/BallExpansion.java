@@ -74,7 +74,8 @@ private final boolean stats;
 /** working variable */
 private final int[] b;
 
-private final RandPermutation rp = new RandPermutation(CommonState.r);
+private final RandPermutation rp = new RandPermutation(
+	RandomStreams.control(name));
 
 // ===================== initialization ================================
 // =====================================================================
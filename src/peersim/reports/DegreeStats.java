@@ -82,7 +82,8 @@ private final String method;
 
 private final String type;
 
-private final RandPermutation rp = new RandPermutation(CommonState.r);
+private final RandPermutation rp = new RandPermutation(
+	RandomStreams.control(name));
 
 private int nextnode = 0;
 
@@ -28,6 +28,9 @@ import peersim.cdsim.CDState;
 * It can efficiently create an undirected version of the graph, making sure
 * it is updated only when the simulation has advanced already, and provides
 * some common parameters.
+* Extending classes can also skip their computations while the overlay does
+* not change, as configured by the parameters of
+* {@link ConvergenceScheduler}, by calling {@link #isDue}.
 */
 public abstract class GraphObserver implements Control {
 
@@ -76,6 +79,9 @@ protected final GraphAlgorithms ga = new GraphAlgorithms();
 
 protected Graph g;
 
+/** Decides when the results have to be recomputed, see {@link #isDue} */
+protected final ConvergenceScheduler adaptive;
+
 // ---------------------------------------------------------------------
 
 private static int lastpid = -1234;
@@ -114,12 +120,29 @@ protected GraphObserver(String name) {
 		Configuration.contains(name + "." + PAR_UNDIR_ALT));
 	GraphObserver.fast = Configuration.contains(PAR_FAST);
 	GraphObserver.needUndir = (GraphObserver.needUndir || undir);
+	adaptive = new ConvergenceScheduler(name);
 }
 
 
 // ====================== methods ======================================
 // =====================================================================
 
+/**
+* Returns true if the results have to be computed at the current time,
+* according to {@link #adaptive} and the signal of the observed overlay
+* ({@link ConvergenceScheduler#overlaySignal}). If it returns false, the
+* results of the last computation should be reported again, marked as
+* stale. It must be called once at each execution, and it is always true
+* if adaptive scheduling is not configured.
+*/
+protected boolean isDue() {
+	
+	return !adaptive.enabled ||
+		adaptive.due(ConvergenceScheduler.overlaySignal(pid));
+}
+
+// ---------------------------------------------------------------------
+
 /**
 * Sets {@link #g}.
 * It MUST be called by any implementation of {@link #execute()} before
@@ -67,6 +67,12 @@ private final int nc;
 
 private final int nl;
 
+/** The average clustering of the last computation */
+private double clustering = Double.NaN;
+
+/** The average path length of the last computation */
+private double pathLength = Double.NaN;
+
 
 // ===================== initialization ================================
 // =====================================================================
@@ -98,12 +104,22 @@ public GraphStats(String name) {
 * Note that the path length between a pair of nodes can be infinite, in which
 * case the statistics will reflect this (the average will be infinite, etc).
 * See also the configuration parameters.
+* If the computation is skipped (see {@link #isDue}), the results of the
+* last computation are printed and written to the report files again,
+* marked as stale. If adaptive scheduling is configured, the report files
+* have a third column that is 1 for stale values and 0 otherwise.
 * @return always false
 * @see BallExpansion
 * @see Clustering
 */
 public boolean execute() {
-    System.out.print(name+": ");
+
+	if( !isDue() )
+	{
+		// the overlay has not changed since the last results
+		report(true);
+		return false;
+	}
 
 	IncrementalStats stats = new IncrementalStats();
 	updateGraph();
@@ -116,8 +132,7 @@ public boolean execute() {
 		{
 			stats.add(GraphAlgorithms.clustering(g,i));
 		}
-		System.out.print(stats.getAverage()+" ");
-		ReportWriter.writeClusterCoefficient(stats.getAverage());
+		clustering = stats.getAverage();
 	}
 
 	if( nl != 0 )
@@ -140,13 +155,42 @@ public boolean execute() {
 					stats.add(ga.d[j]);
 			}
 		}
-		System.out.print(stats.getAverage());
-		ReportWriter.writeShortestPath(stats.getAverage());
+		pathLength = stats.getAverage();
 	}
-	System.out.println();
+	report(false);
 
 	return false;
 }
 
+// ---------------------------------------------------------------------
+
+/**
+* Prints the results of the last computation and writes them to the
+* report files. The stale flag is written only if adaptive scheduling is
+* configured, so that the files are unchanged otherwise.
+*/
+private void report(boolean stale) {
+
+	System.out.print(name+": ");
+	if( nc != 0 )
+	{
+		System.out.print(clustering+" ");
+		if( adaptive.enabled )
+			ReportWriter.writeClusterCoefficient(clustering, stale);
+		else
+			ReportWriter.writeClusterCoefficient(clustering);
+	}
+	if( nl != 0 )
+	{
+		System.out.print(pathLength);
+		if( adaptive.enabled )
+			ReportWriter.writeShortestPath(pathLength, stale);
+		else
+			ReportWriter.writeShortestPath(pathLength);
+	}
+	if( stale ) System.out.print(" (stale: "+adaptive.getNote()+")");
+	System.out.println();
+}
+
 }
 
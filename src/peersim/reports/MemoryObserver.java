@@ -23,6 +23,8 @@ import peersim.core.*;
 /**
  * This observer reports memory utilization (max, total and 
  * free, as defined by <code>java.lang.Runtime</code>).
+ * If {@link Metrics} are published, it prints nothing, since the heap
+ * usage and the garbage collection figures are among the metrics.
  *
  * @author Alberto Montresor
  * @version $Revision: 1.1 $
@@ -47,6 +49,7 @@ public MemoryObserver(String prefix)
 
 public boolean execute()
 {
+	if (Metrics.enabled) return false;
 	System.out.println(prefix + ": max=" + r.maxMemory() + ", total=" + 
 			r.totalMemory() + ", free=" + r.freeMemory()); 
 	return false;
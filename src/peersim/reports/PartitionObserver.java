@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.transport.PartitionTransport;
+
+/**
+ * Reports the number of weakly connected clusters of the overlay together
+ * with the state of the partition schedule of a {@link PartitionTransport},
+ * and measures how long the overlay takes to converge after a partition is
+ * healed.
+ * <p>
+ * Every execution prints one line containing the current time, the
+ * number of weakly connected clusters, whether the network is currently
+ * partitioned and the number of messages dropped so far. When a partition
+ * event is healed, the observer records the heal time, and when the number
+ * of clusters returns to 1 it prints the time elapsed since the heal.
+ * Note that the resolution of this measure is the step of the observer.
+ */
+public class PartitionObserver extends GraphObserver
+{
+
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * The {@link PartitionTransport} protocol whose schedule is observed.
+ * @config
+ */
+private static final String PAR_TRANSPORT = "transport";
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/** {@link #PAR_TRANSPORT} */
+private final int tid;
+
+/** The last heal time for which convergence has been reported */
+private long reported = -1;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param name the configuration prefix for this class
+ */
+public PartitionObserver(String name)
+{
+	super(name);
+	tid = Configuration.getPid(name + "." + PAR_TRANSPORT);
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Prints the number of weakly connected clusters and the partition state,
+ * and the healing time if the overlay has just become connected again.
+ * @return always false
+ */
+public boolean execute()
+{
+	if (Network.size() == 0) return false;
+	updateGraph();
+	int wcc = ga.weaklyConnectedClusters(g).size();
+	PartitionTransport pt =
+		(PartitionTransport) Network.get(0).getProtocol(tid);
+	long now = CommonState.getTime();
+
+	System.out.println(name + ": " + now + " " + wcc + " " +
+		pt.isPartitioned() + " " + pt.getDropped());
+
+	long heal = pt.getLastHealTime();
+	if (heal > reported && wcc == 1 && !pt.isPartitioned()) {
+		System.out.println(name + ": healed at " + heal +
+			", converged after " + (now - heal));
+		reported = heal;
+	}
+	return false;
+}
+
+}
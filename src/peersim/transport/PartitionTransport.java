@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import java.util.*;
+
+import peersim.config.*;
+import peersim.core.*;
+
+
+/**
+ * This transport protocol can be combined with other transports
+ * to simulate network partitions and asymmetric link failures that
+ * follow a timed schedule. Each message is either dropped, if the source
+ * cannot reach the destination at the current time, or it is sent
+ * using the underlying transport protocol.
+ * <p>
+ * The schedule is a list of partition events, each defined by the
+ * configuration prefix {@value #PAR_PARTITION}. An event is active in the
+ * time interval [{@value #PAR_FROM}, {@value #PAR_UNTIL}) and splits the
+ * nodes into groups as described by {@value #PAR_GROUPS}. Nodes that are
+ * not listed in any group form an additional implicit group.
+ * While a symmetric event is active, nodes in different groups cannot
+ * communicate. If {@value #PAR_ONEWAY} is defined for an event, then
+ * exactly two groups must be given and only messages from the first group
+ * to the second are dropped.
+ * For example:
+ * <pre>
+ * protocol.ptr PartitionTransport
+ * {
+ *   transport tr
+ *   partition.split
+ *   {
+ *     from 50000
+ *     until 100000
+ *     groups 0:4999;5000:9999
+ *   }
+ * }
+ * </pre>
+ * <p>
+ * Group membership of a node is evaluated when the set of active events
+ * changes, and is stored in the node's own instance as a single label
+ * (plus two bit masks for one way events), so reachability is checked in
+ * constant time for every message. Note that as a consequence the
+ * membership of a node does not change while the set of active events is
+ * the same, even if its index is changed by {@link Network#remove(int)}.
+ *
+ * @see peersim.reports.PartitionObserver
+ */
+public class PartitionTransport implements Transport
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The name of the underlying transport protocol. This transport is
+ * extended with dropping messages between partitions.
+ * @config
+ */
+private static final String PAR_TRANSPORT = "transport";
+
+/**
+ * This is the prefix of the partition events. Each event has parameters
+ * {@value #PAR_FROM}, {@value #PAR_UNTIL}, {@value #PAR_GROUPS} and
+ * optionally {@value #PAR_ONEWAY}.
+ * @config
+ */
+private static final String PAR_PARTITION = "partition";
+
+/**
+ * The time at which a partition event becomes active. Defaults to 0.
+ * @config
+ */
+private static final String PAR_FROM = "from";
+
+/**
+ * The time at which a partition event is healed, that is, becomes
+ * inactive. Defaults to {@link Long#MAX_VALUE}.
+ * @config
+ */
+private static final String PAR_UNTIL = "until";
+
+/**
+ * The groups of a partition event. Groups are separated by ";", and each
+ * group is a comma separated list of inclusive ranges in the form
+ * <code>min:max</code>, or single values. The values are node indexes,
+ * or router identifiers if {@value #PAR_ROUTER} is defined.
+ * @config
+ */
+private static final String PAR_GROUPS = "groups";
+
+/**
+ * If defined, the partition event is asymmetric: messages are dropped
+ * only from the first group to the second one. Not defined by default.
+ * @config
+ */
+private static final String PAR_ONEWAY = "oneway";
+
+/**
+ * The protocol implementing {@link RouterInfo} in the same node. If
+ * defined, the groups of all the events refer to router identifiers
+ * instead of node indexes.
+ * @config
+ */
+private static final String PAR_ROUTER = "router";
+
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** Protocol identifier for the support transport protocol */
+private final int transport;
+
+/** Protocol identifier of this protocol */
+private final int tid;
+
+/** The schedule, shared by all the instances */
+private final Schedule schedule;
+
+/** The epoch of the schedule the labels below belong to */
+private int epoch = -1;
+
+/** Combined group label over the active symmetric events */
+private long label;
+
+/** Active one way events in which this node is in the first group */
+private long srcMask;
+
+/** Active one way events in which this node is in the second group */
+private long dstMask;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters.
+ */
+public PartitionTransport(String prefix)
+{
+	transport = Configuration.getPid(prefix+"."+PAR_TRANSPORT);
+	tid = CommonState.getPid();
+	int router = Configuration.getPid(prefix+"."+PAR_ROUTER, -1);
+	String[] names = Configuration.getNames(prefix+"."+PAR_PARTITION);
+	Event[] events = new Event[names.length];
+	int oneway = 0;
+	for (int i = 0; i < names.length; i++) {
+		events[i] = new Event(names[i]);
+		if (events[i].oneway) oneway++;
+	}
+	if (oneway > Long.SIZE)
+		throw new IllegalParameterException(prefix+"."+PAR_PARTITION,
+		"At most "+Long.SIZE+" one way partition events are supported");
+	schedule = new Schedule(events, router);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Clones the object. The schedule is shared by all clones.
+ */
+public Object clone()
+{
+	PartitionTransport pt = null;
+	try { pt = (PartitionTransport) super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	pt.epoch = -1;
+	return pt;
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Sends the message according to the underlying transport protocol,
+ * unless the source cannot reach the destination at the current time,
+ * in which case the message is dropped.
+ */
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	if (!canReach(src, dest)) {
+		schedule.dropped++;
+		return;
+	}
+	try
+	{
+		Transport t = (Transport) src.getProtocol(transport);
+		t.send(src, dest, msg, pid);
+	}
+	catch(ClassCastException e)
+	{
+		throw new IllegalArgumentException("Protocol " +
+				Configuration.lookupPid(transport) +
+				" does not implement Transport");
+	}
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the latency of the underlying protocol.*/
+public long getLatency(Node src, Node dest)
+{
+	Transport t = (Transport) src.getProtocol(transport);
+	return t.getLatency(src, dest);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns true if a message sent from <code>src</code> to
+ * <code>dest</code> at the current time is not dropped by the
+ * partition schedule.
+ */
+public boolean canReach(Node src, Node dest)
+{
+	schedule.update(CommonState.getTime());
+	if (schedule.active == 0) return true;
+	PartitionTransport s = (PartitionTransport) src.getProtocol(tid);
+	PartitionTransport d = (PartitionTransport) dest.getProtocol(tid);
+	s.refresh(src);
+	d.refresh(dest);
+	return s.label == d.label && (s.srcMask & d.dstMask) == 0;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the number of messages dropped so far because of partitions.
+ */
+public long getDropped()
+{
+	return schedule.dropped;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the latest time not after the current time at which a
+ * partition event was healed, or -1 if no event has been healed yet.
+ */
+public long getLastHealTime()
+{
+	schedule.update(CommonState.getTime());
+	return schedule.lastHeal;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns true if at least one partition event is active at the
+ * current time.
+ */
+public boolean isPartitioned()
+{
+	schedule.update(CommonState.getTime());
+	return schedule.active > 0;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Recomputes the labels of this instance if the set of active events
+ * has changed since they were last computed.
+ */
+private void refresh(Node node)
+{
+	if (epoch == schedule.epoch) return;
+	epoch = schedule.epoch;
+	int key = node.getIndex();
+	if (schedule.router >= 0)
+		key = ((RouterInfo) node.getProtocol(schedule.router)).getRouter();
+	label = 0;
+	srcMask = 0;
+	dstMask = 0;
+	long radix = 1;
+	int bit = 0;
+	for (Event e : schedule.events) {
+		if (e.oneway) {
+			if (e.isActive) {
+				int g = e.groupOf(key);
+				if (g == 1) srcMask |= 1L << bit;
+				else if (g == 2) dstMask |= 1L << bit;
+			}
+			bit++;
+		} else if (e.isActive) {
+			label += radix * e.groupOf(key);
+			radix *= e.ranges.length + 1;
+		}
+	}
+}
+
+//---------------------------------------------------------------------
+//Inner classes
+//---------------------------------------------------------------------
+
+/**
+ * A single partition event read from the configuration.
+ */
+private static class Event
+{
+	final long from;
+	final long until;
+	final boolean oneway;
+	/** For each group, a flat array of inclusive min/max pairs */
+	final int[][] ranges;
+	boolean isActive = false;
+
+	Event(String prefix)
+	{
+		from = Configuration.getLong(prefix+"."+PAR_FROM, 0);
+		until = Configuration.getLong(prefix+"."+PAR_UNTIL, Long.MAX_VALUE);
+		oneway = Configuration.contains(prefix+"."+PAR_ONEWAY);
+		if (until <= from)
+			throw new IllegalParameterException(prefix+"."+PAR_UNTIL,
+			"Must be larger than "+PAR_FROM);
+		String[] groups = Configuration.getString(prefix+"."+PAR_GROUPS)
+			.trim().split("\\s*;\\s*");
+		if (oneway && groups.length != 2)
+			throw new IllegalParameterException(prefix+"."+PAR_GROUPS,
+			"One way partitions need exactly two groups");
+		ranges = new int[groups.length][];
+		try {
+			for (int i = 0; i < groups.length; i++) {
+				String[] items = groups[i].split("\\s*,\\s*");
+				ranges[i] = new int[items.length*2];
+				for (int j = 0; j < items.length; j++) {
+					String[] mm = items[j].split(":");
+					ranges[i][2*j] = Integer.parseInt(mm[0].trim());
+					ranges[i][2*j+1] = Integer.parseInt(
+						mm[mm.length-1].trim());
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalParameterException(prefix+"."+PAR_GROUPS,
+			"Groups must be lists of ranges min:max separated by ';'");
+		}
+	}
+
+	/**
+	 * Returns the group (starting from 1) the given key belongs to, or
+	 * 0 if it is not listed in any group.
+	 */
+	int groupOf(int key)
+	{
+		for (int i = 0; i < ranges.length; i++)
+			for (int j = 0; j < ranges[i].length; j += 2)
+				if (key >= ranges[i][j] && key <= ranges[i][j+1])
+					return i+1;
+		return 0;
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * The list of events and the bookkeeping of which of them are active.
+ */
+private static class Schedule
+{
+	final Event[] events;
+	final int router;
+	/** Incremented each time the set of active events changes */
+	int epoch = 0;
+	int active = 0;
+	long nextChange = Long.MIN_VALUE;
+	long lastHeal = -1;
+	long dropped = 0;
+
+	Schedule(Event[] events, int router)
+	{
+		this.events = events;
+		this.router = router;
+	}
+
+	void update(long time)
+	{
+		if (time < nextChange) return;
+		nextChange = Long.MAX_VALUE;
+		active = 0;
+		for (Event e : events) {
+			boolean a = (time >= e.from && time < e.until);
+			if (a != e.isActive) epoch++;
+			e.isActive = a;
+			if (a) active++;
+			if (time >= e.until) lastHeal = Math.max(lastHeal, e.until);
+			if (time < e.from) nextChange = Math.min(nextChange, e.from);
+			else if (time < e.until)
+				nextChange = Math.min(nextChange, e.until);
+		}
+	}
+}
+
+}
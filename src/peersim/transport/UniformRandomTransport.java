@@ -21,6 +21,7 @@ package peersim.transport;
 import peersim.config.*;
 import peersim.core.*;
 import peersim.edsim.*;
+import peersim.util.ExtendedRandom;
 
 
 /**
@@ -63,6 +64,10 @@ private final long min;
 */
 private final long range;
 
+/** The stream of this protocol, or null to use {@link CommonState#r}.
+* See {@link RandomStreams#protocol}. */
+private final ExtendedRandom r;
+
 	
 //---------------------------------------------------------------------
 //Initialization
@@ -79,6 +84,7 @@ public UniformRandomTransport(String prefix)
 	   throw new IllegalParameterException(prefix+"."+PAR_MAXDELAY, 
 	   "The maximum latency cannot be smaller than the minimum latency");
 	range = max-min+1;
+	r = RandomStreams.protocol(CommonState.getPid());
 }
 
 //---------------------------------------------------------------------
@@ -105,7 +111,7 @@ public Object clone()
 public void send(Node src, Node dest, Object msg, int pid)
 {
 	// avoid calling nextLong if possible
-	long delay = (range==1?min:min + CommonState.r.nextLong(range));
+	long delay = (range==1?min:min + random().nextLong(range));
 	EDSimulator.add(delay, msg, dest, pid);
 }
 
@@ -116,7 +122,15 @@ public void send(Node src, Node dest, Object msg, int pid)
 */
 public long getLatency(Node src, Node dest)
 {
-	return (range==1?min:min + CommonState.r.nextLong(range));
+	return (range==1?min:min + random().nextLong(range));
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the generator used to draw the delays. */
+private ExtendedRandom random()
+{
+	return r == null ? CommonState.r : r;
 }
 
 
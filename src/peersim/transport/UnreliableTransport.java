@@ -20,6 +20,7 @@ package peersim.transport;
 
 import peersim.config.*;
 import peersim.core.*;
+import peersim.util.ExtendedRandom;
 
 
 /**
@@ -67,6 +68,10 @@ private final int transport;
 /** Probability of dropping messages */
 private final float loss;
 
+/** The stream of this protocol, or null to use {@link CommonState#r}.
+* See {@link RandomStreams#protocol}. */
+private final ExtendedRandom r;
+
 //---------------------------------------------------------------------
 //Initialization
 //---------------------------------------------------------------------
@@ -78,6 +83,7 @@ public UnreliableTransport(String prefix)
 {
 	transport = Configuration.getPid(prefix+"."+PAR_TRANSPORT);
 	loss = (float) Configuration.getDouble(prefix+"."+PAR_DROP);
+	r = RandomStreams.protocol(CommonState.getPid());
 }
 
 //---------------------------------------------------------------------
@@ -104,7 +110,7 @@ public void send(Node src, Node dest, Object msg, int pid)
 {
 	try
 	{
-		if (CommonState.r.nextFloat() >= loss)
+		if ((r == null ? CommonState.r : r).nextFloat() >= loss)
 		{
 			// Message is not lost
 			Transport t = (Transport) src.getProtocol(transport);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+import java.util.Random;
+
+/**
+* Draws indexes with replacement according to a fixed set of weights,
+* in constant time per sample, using Walker's alias method in the numerically
+* stable construction of Vose. Building the table takes linear time.
+* For sampling without replacement, see {@link WeightedRandPerm}, which
+* needs linear time per sample.
+*/
+public class AliasTable {
+
+
+// ======================= private fields ============================
+// ===================================================================
+
+/**
+* The probability of keeping the index of the column, scaled so that
+* a column is selected uniformly.
+*/
+private final double[] prob;
+
+/** The index returned when the column's own index is not kept */
+private final int[] alias;
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/**
+* Builds the table for the given weights. The probability of drawing
+* index i is proportional to <code>weights[i]</code>.
+* @param weights non-negative weights with a positive sum. The array is not
+* stored, so later changes do not affect the table.
+*/
+public AliasTable( double[] weights ) {
+
+	final int n = weights.length;
+	double sum = 0.0;
+	for(int i=0; i<n; ++i)
+	{
+		if( !(weights[i] >= 0.0) ) throw new IllegalArgumentException(
+			"weights should be non-negative: w["+i+"]="+weights[i]);
+		sum += weights[i];
+	}
+	if( !(sum > 0.0) || Double.isInfinite(sum) )
+		throw new IllegalArgumentException(
+			"the sum of the weights should be positive and finite");
+
+	prob = new double[n];
+	alias = new int[n];
+	// small and large columns are kept in the two ends of the same array
+	int[] work = new int[n];
+	int small = 0, large = n;
+	for(int i=0; i<n; ++i)
+	{
+		prob[i] = weights[i]*n/sum;
+		if( prob[i] < 1.0 ) work[small++] = i;
+		else work[--large] = i;
+	}
+	while( small > 0 && large < n )
+	{
+		int s = work[--small];
+		int l = work[large++];
+		alias[s] = l;
+		prob[l] -= 1.0-prob[s];
+		if( prob[l] < 1.0 ) work[small++] = l;
+		else work[--large] = l;
+	}
+	// what remains is 1 up to rounding errors
+	while( small > 0 ) prob[work[--small]] = 1.0;
+	while( large < n ) prob[work[large++]] = 1.0;
+}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/** Returns the number of indexes, that is, the number of weights. */
+public int size() { return prob.length; }
+
+// -------------------------------------------------------------------
+
+/**
+* Draws an index according to the weights, using a single random double.
+* @param r source of randomness
+*/
+public int next( Random r ) {
+
+	final double u = r.nextDouble()*prob.length;
+	final int i = (int)u;
+	return (u-i < prob[i] ? i : alias[i]);
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Fills the given range of the array with independent samples, as by
+* {@link #next}.
+*/
+public void next( Random r, int[] a, int from, int to ) {
+
+	for(int i=from; i<to; ++i) a[i] = next(r);
+}
+
+}
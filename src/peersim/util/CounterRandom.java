@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+/**
+ * A counter based random generator. The i-th value of the stream is a
+ * fixed function of the key and of i: it is the SplitMix64 finalizer
+ * applied to <code>key + i*0x9E3779B97F4A7C15</code>. The state is just
+ * the key and the counter, so a generator can be created in constant time
+ * for any key, any position of the stream can be reached in constant time
+ * with {@link #setCounter}, and generators with different keys share
+ * nothing. This makes it suitable for deriving many independent streams
+ * from a single seed, as done by {@link peersim.core.RandomStreams}.
+ * <p>
+ * Like {@link XoroshiroRandom}, it overrides the methods of
+ * <code>java.util.Random</code> so that no synchronization is involved.
+ * The generator is not thread safe.
+ */
+public class CounterRandom extends ExtendedRandom {
+
+private static final long serialVersionUID = 1L;
+
+private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+private long key;
+
+private long counter;
+
+// -------------------------------------------------------------------------
+
+/** Creates a generator with the given key, positioned at the beginning
+* of the stream. */
+public CounterRandom(long key) {
+
+	super(key);
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Constructor used when the generator is defined in the configuration.
+* The key is set later through {@link #setSeed}.
+*/
+public CounterRandom(String prefix) {
+
+	this(0);
+}
+
+// -------------------------------------------------------------------------
+
+/** The SplitMix64 finalizer, a bijection of the 64 bit integers that
+* spreads each input bit over the whole output. Can also be used to derive
+* keys. */
+public static long mix(long z) {
+
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+}
+
+// -------------------------------------------------------------------------
+
+/** Returns the i-th value of the stream with the given key, that is, the
+* value returned by the i-th call of {@link #nextLong()} after
+* <code>setSeed(key)</code>. This is the only derivation of the keys of
+* independent streams from a parent key (see {@link
+* peersim.core.RandomStreams} and the parallel methods of {@link
+* peersim.graph.GraphFactory}). */
+public static long derive(long key, long i) {
+
+	return mix(key + i * GOLDEN);
+}
+
+// -------------------------------------------------------------------------
+
+/** Sets the key to the given seed and resets the counter. */
+public void setSeed(long seed) {
+
+	super.setSeed(seed);
+	key = seed;
+	counter = 0;
+}
+
+// -------------------------------------------------------------------------
+
+/** Returns the key of the stream. */
+public long getKey() { return key; }
+
+// -------------------------------------------------------------------------
+
+/** Returns the number of 64 bit values drawn so far, that is, the position
+* in the stream. */
+public long getCounter() { return counter; }
+
+// -------------------------------------------------------------------------
+
+/** Moves to the given position of the stream. The next value returned by
+* {@link #nextLong()} is the same that followed the given number of draws
+* from the beginning of the stream. */
+public void setCounter(long counter) { this.counter = counter; }
+
+// -------------------------------------------------------------------------
+
+public long nextLong() {
+
+	return derive(key, ++counter);
+}
+
+// -------------------------------------------------------------------------
+
+/** Returns the given number of high bits of {@link #nextLong()}. All the
+* methods of <code>java.util.Random</code> are based on this one. */
+protected int next(int bits) {
+
+	return (int)(nextLong() >>> (64 - bits));
+}
+
+// -------------------------------------------------------------------------
+
+public int nextInt() {
+
+	return (int)(nextLong() >>> 32);
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Returns a uniformly distributed integer between 0 (inclusive) and n
+* (exclusive), using Lemire's multiply and reject method.
+*/
+public int nextInt(int n) {
+
+	if (n<=0)
+		throw new IllegalArgumentException("n must be positive");
+	long m = (nextLong() >>> 32) * n;
+	if( (m & 0xFFFFFFFFL) < n )
+	{
+		final long t = (0x100000000L - n) % n;
+		while( (m & 0xFFFFFFFFL) < t ) m = (nextLong() >>> 32) * n;
+	}
+	return (int)(m >>> 32);
+}
+
+// -------------------------------------------------------------------------
+
+public double nextDouble() {
+
+	return (nextLong() >>> 11) * 0x1.0p-53;
+}
+
+// -------------------------------------------------------------------------
+
+public boolean nextBoolean() {
+
+	return nextLong() < 0;
+}
+
+}
@@ -28,6 +28,9 @@ public class ExtendedRandom extends Random {
 
 private long lastSeed;
 
+/** The largest sample drawn with Floyd's algorithm by {@link #sample} */
+private static final int FLOYD_MAX = 256;
+
 // -------------------------------------------------------------------------
 
 /** Calls super constructor. Also stores the seed to be returned by
@@ -92,6 +95,106 @@ public long nextLong(long n) {
 
 // -------------------------------------------------------------------------
 
+/**
+* Fills the given range of the array with uniformly distributed integers
+* between 0 (inclusive) and <code>bound</code> (exclusive), drawn as by
+* {@link #nextInt(int)}.
+* @param a the array to fill
+* @param from the first index to fill, inclusive
+* @param to the last index to fill, exclusive
+* @param bound the bound on the values. Must be positive.
+*/
+public void nextInts(int[] a, int from, int to, int bound) {
+
+	for(int i=from; i<to; ++i) a[i] = nextInt(bound);
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Fills the given range of the array with uniformly distributed doubles
+* between 0 (inclusive) and 1 (exclusive), drawn as by {@link #nextDouble()}.
+* @param a the array to fill
+* @param from the first index to fill, inclusive
+* @param to the last index to fill, exclusive
+*/
+public void nextDoubles(double[] a, int from, int to) {
+
+	for(int i=from; i<to; ++i) a[i] = nextDouble();
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Moves a uniform random sample of k elements of the first
+* <code>len</code> elements of the array to its first k positions, in random
+* order, by performing the first k steps of a Fisher-Yates shuffle.
+* The remaining elements of the first <code>len</code> ones are the ones not
+* selected, in some order. The cost is O(k).
+* @param a the array holding the population
+* @param len the size of the population, the first len elements of a
+* @param k the size of the sample, at most len
+*/
+public void partialShuffle(int[] a, int len, int k) {
+
+	if( k<0 || k>len ) throw new IllegalArgumentException(
+		"k="+k+" must be between 0 and "+len);
+	for(int i=0; i<k; ++i)
+	{
+		int j = i+nextInt(len-i);
+		int t = a[i];
+		a[i] = a[j];
+		a[j] = t;
+	}
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Writes a uniform random sample of k distinct integers between 0 (inclusive)
+* and n (exclusive) in random order to the first k positions of the given
+* array. No memory is allocated, unlike in {@link RandPermutation}, which
+* needs an array of size n. Small samples are drawn with Floyd's algorithm
+* in O(k<sup>2</sup>) time and k random values; larger ones with
+* reservoir sampling with geometric jumps (Li's algorithm L), which draws
+* O(k(1+log(n/k))) random values.
+* @param n the size of the population
+* @param k the size of the sample, at most n
+* @param out the array receiving the sample, of length at least k
+*/
+public void sample(int n, int k, int[] out) {
+
+	if( k<0 || k>n ) throw new IllegalArgumentException(
+		"k="+k+" must be between 0 and "+n);
+	if( k <= FLOYD_MAX )
+	{
+		for(int j=n-k, m=0; j<n; ++j, ++m)
+		{
+			int t = nextInt(j+1);
+			for(int i=0; i<m; ++i)
+				if( out[i] == t ) { t = j; break; }
+			out[m] = t;
+		}
+		partialShuffle(out,k,k);
+		return;
+	}
+	for(int i=0; i<k; ++i) out[i] = i;
+	double w = Math.exp(Math.log(1-nextDouble())/k);
+	int i = k-1;
+	while(true)
+	{
+		// the number of items skipped before the next one is selected
+		double skip = Math.floor(Math.log(1-nextDouble())/Math.log(1-w));
+		if( !(skip < n-1-i) ) break; // also if skip is infinite or NaN
+		i += (int)skip+1;
+		out[nextInt(k)] = i;
+		w *= Math.exp(Math.log(1-nextDouble())/k);
+	}
+	partialShuffle(out,k,k-1);
+}
+
+// -------------------------------------------------------------------------
+
 /** Sets random seed. Calls super method but also stores the seed to be
 returned by {@link #getLastSeed}. */
 public void setSeed( long seed ) {
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.util;
+
+/**
+ * A fast random generator implementing the xoroshiro128++ algorithm of
+ * Blackman and Vigna, seeded through SplitMix64. Unlike
+ * <code>java.util.Random</code>, it keeps its state in two plain fields
+ * instead of an atomic variable, so drawing a value involves no
+ * synchronization, and its period is 2<sup>128</sup>-1 instead of
+ * 2<sup>48</sup>. The methods of {@link ExtendedRandom} work as usual, but
+ * the streams are of course different from the default generator.
+ * <p>
+ * It can be selected for {@link peersim.core.CommonState#r} with the
+ * configuration parameter {@value peersim.core.CommonState#PAR_RANDOM}:
+ * <pre>
+random XoroshiroRandom
+random.seed 1234567890
+ * </pre>
+ * If the parameter is not given, {@link ExtendedRandom} is used, which
+ * reproduces the results of earlier versions.
+ * <p>
+ * The generator is not thread safe. Independent generators for parallel
+ * tasks can be obtained with {@link #split()}.
+ */
+public class XoroshiroRandom extends ExtendedRandom {
+
+private static final long serialVersionUID = 1L;
+
+private long s0;
+
+private long s1;
+
+// -------------------------------------------------------------------------
+
+/** Creates a generator with the given seed. */
+public XoroshiroRandom(long seed) {
+
+	super(seed);
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Constructor used when the generator is defined in the configuration.
+* The seed is set later through {@link #setSeed}.
+*/
+public XoroshiroRandom(String prefix) {
+
+	this(0);
+}
+
+// -------------------------------------------------------------------------
+
+/** The SplitMix64 generator, used to seed the state */
+private static long splitMix(long z) {
+
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Sets the seed. The two words of the state are the first two outputs of
+* SplitMix64 started from the given seed, so similar seeds give
+* unrelated streams.
+*/
+public void setSeed(long seed) {
+
+	super.setSeed(seed);
+	s0 = splitMix(seed + 0x9E3779B97F4A7C15L);
+	s1 = splitMix(seed + 2*0x9E3779B97F4A7C15L);
+}
+
+// -------------------------------------------------------------------------
+
+public long nextLong() {
+
+	final long a = s0;
+	long b = s1;
+	final long result = Long.rotateLeft(a + b, 17) + a;
+	b ^= a;
+	s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+	s1 = Long.rotateLeft(b, 28);
+	return result;
+}
+
+// -------------------------------------------------------------------------
+
+/** Returns the given number of high bits of {@link #nextLong()}. All the
+* methods of <code>java.util.Random</code> are based on this one. */
+protected int next(int bits) {
+
+	return (int)(nextLong() >>> (64 - bits));
+}
+
+// -------------------------------------------------------------------------
+
+public int nextInt() {
+
+	return (int)(nextLong() >>> 32);
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Returns a uniformly distributed integer between 0 (inclusive) and n
+* (exclusive), using Lemire's multiply and reject method, which
+* needs a division only in the rare case of a rejection.
+*/
+public int nextInt(int n) {
+
+	if (n<=0)
+		throw new IllegalArgumentException("n must be positive");
+	long m = (nextLong() >>> 32) * n;
+	if( (m & 0xFFFFFFFFL) < n )
+	{
+		final long t = (0x100000000L - n) % n;
+		while( (m & 0xFFFFFFFFL) < t ) m = (nextLong() >>> 32) * n;
+	}
+	return (int)(m >>> 32);
+}
+
+// -------------------------------------------------------------------------
+
+public double nextDouble() {
+
+	return (nextLong() >>> 11) * 0x1.0p-53;
+}
+
+// -------------------------------------------------------------------------
+
+public boolean nextBoolean() {
+
+	return nextLong() < 0;
+}
+
+// -------------------------------------------------------------------------
+
+/**
+* Returns a new generator whose stream is statistically independent of
+* this one. The state of this generator advances by one step.
+*/
+public XoroshiroRandom split() {
+
+	return new XoroshiroRandom(nextLong());
+}
+
+}
@@ -19,6 +19,7 @@
 package peersim.vector;
 
 import java.lang.reflect.*;
+import java.util.function.*;
 import peersim.config.*;
 import peersim.core.*;
 
@@ -32,6 +33,15 @@ import peersim.core.*;
  * implementing the {@link SingleValue} interface can be manipulated using the
  * old configuration syntax (i.e., without specifying the method).
  * <p>
+ * The method is not called through reflection but through a function
+ * generated at initialization, so {@link #getLong} and {@link #getDouble}
+ * cost about as much as a direct call.
+ * <p>
+ * {@link #getDouble} accepts getters of any of the allowed types, not only
+ * float and double: integer values are converted and a boolean true is
+ * returned as 1, as {@link #get} does. {@link #getLong} still requires an
+ * int or long getter.
+ * <p>
  * Please refer to package {@link peersim.vector} for a detailed description of 
  * the concept of protocol vector and the role of getters and setters. 
  */
@@ -56,6 +66,12 @@ private Method method = null;
 /** Parameter type of getter method */
 private Class type;
 
+/** The getter as a function, null if the type is not an integer type */
+private ToLongFunction<Protocol> longGetter;
+
+/** The getter as a function */
+private ToDoubleFunction<Protocol> doubleGetter;
+
 
 // ========================== initialization =============================
 // =======================================================================
@@ -102,6 +118,9 @@ private void init() {
 	}
 	// Obtain the type of the field
 	type = GetterSetterFinder.getGetterType(method);
+	if (type != double.class && type != float.class)
+		longGetter = GetterSetterFinder.getLongGetter(method);
+	doubleGetter = GetterSetterFinder.getDoubleGetter(method);
 }
 
 
@@ -129,18 +148,12 @@ public Number get(Node n) {
 	
 	init();
 
-	try 
-	{
-		Object ret =method.invoke(n.getProtocol(pid));
-		if (ret instanceof Boolean)
-			return ((Boolean) ret) ? 1 : 0;
-		else
-			return (Number) ret;
-	}
-	catch (Exception e)
-	{
-		throw new RuntimeException("While using getter "+methodName,e);
-	}
+	final Protocol p = n.getProtocol(pid);
+	if (type == int.class || type == boolean.class)
+		return (int) longGetter.applyAsLong(p);
+	if (type == long.class) return longGetter.applyAsLong(p);
+	if (type == float.class) return (float) doubleGetter.applyAsDouble(p);
+	return doubleGetter.applyAsDouble(p);
 }
 
 // --------------------------------------------------------------------------
@@ -156,25 +169,15 @@ public long getLong(Node n) {
 	init();
 
 	if(type==long.class || type==int.class)
-	{
-		try 
-		{
-			return ((Number)
-			method.invoke(n.getProtocol(pid))).longValue();
-		}
-		catch (Exception e)
-		{
-			throw new RuntimeException(
-			"While using getter "+methodName,e);
-		}
-	}	
+		return longGetter.applyAsLong(n.getProtocol(pid));
 	else throw new RuntimeException("type has to be int or long");
 }
 
 // --------------------------------------------------------------------------
 
 /**
-* Gets the given real value.
+* Gets the given value as a real value. Values of integer types are
+* converted, and a boolean true is returned as 1.
 * @param n The node to get the value on. The protocol is defined
 * by {@link #pid}.
 * @return the read value.
@@ -183,21 +186,7 @@ public double getDouble(Node n) {
 	
 	init();
 
-	if(type==double.class || type==float.class)
-	{
-		try
-		{
-			return ((Number)
-			method.invoke(n.getProtocol(pid))).doubleValue();
-		}
-		catch (Exception e)
-		{
-			throw new RuntimeException(
-			"While using getter "+methodName,e);
-		}
-	}
-	else throw new RuntimeException(
-			"type has to be double or float");
+	return doubleGetter.applyAsDouble(n.getProtocol(pid));
 }
 
 // --------------------------------------------------------------------------
@@ -225,7 +214,7 @@ public long getLong(int i) { return getLong(Network.get(i)); }
 // --------------------------------------------------------------------------
 
 /**
-* Gets the given real value.
+* Gets the given value as a real value.
 * @param i The index of the node to get the value on in the network.
 * The protocol is defined
 * by {@link #pid}.
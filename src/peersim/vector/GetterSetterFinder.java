@@ -18,8 +18,11 @@
 
 package peersim.vector;
 
+import java.lang.invoke.*;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.function.*;
+import peersim.core.Protocol;
 
 /**
  * This utility class can be used to obtain get/set methods from classes. In
@@ -27,6 +30,13 @@ import java.util.*;
  * observing and modifying protocol fields.
  * Please refer to package {@link peersim.vector} for a definition of
  * getter and setter methods. 
+ * <p>
+ * The methods found can also be bound to functional interfaces that take
+ * primitive values, which are generated through {@link LambdaMetafactory}.
+ * Calling them costs about as much as calling the method directly and
+ * involves no boxing, unlike {@link Method#invoke}. If the method cannot
+ * be bound this way (for example because its class is not accessible), a
+ * reflective implementation of the same interface is returned.
  */
 class GetterSetterFinder
 {
@@ -171,4 +181,213 @@ public static Class getSetterType(Method m)
 
 //--------------------------------------------------------------------------
 
+/**
+ * Binds the given getter to a function that returns its value as a long.
+ * The getter must return int, long or boolean; true is returned as 1.
+ */
+public static ToLongFunction<Protocol> getLongGetter(final Method m)
+{
+	final Class<?> type = m.getReturnType();
+	if (type == boolean.class) {
+		final Predicate<Protocol> p = getBooleanGetter(m);
+		return new ToLongFunction<Protocol>() {
+			public long applyAsLong(Protocol o) {
+				return p.test(o) ? 1 : 0;
+			}
+		};
+	}
+	if (type != int.class && type != long.class)
+		throw new IllegalArgumentException(m+" does not return an integer");
+	ToLongFunction<Protocol> f = bind(m,
+		ToLongFunction.class, "applyAsLong", long.class, null);
+	return f != null ? f : new Reflective(m);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Binds the given getter to a function that returns its value as a double.
+ * The getter can return any of the allowed types; true is returned as 1.
+ */
+public static ToDoubleFunction<Protocol> getDoubleGetter(final Method m)
+{
+	if (m.getReturnType() == boolean.class) {
+		final Predicate<Protocol> p = getBooleanGetter(m);
+		return new ToDoubleFunction<Protocol>() {
+			public double applyAsDouble(Protocol o) {
+				return p.test(o) ? 1 : 0;
+			}
+		};
+	}
+	ToDoubleFunction<Protocol> f = bind(m,
+		ToDoubleFunction.class, "applyAsDouble", double.class, null);
+	return f != null ? f : new Reflective(m);
+}
+
+//--------------------------------------------------------------------------
+
+/** Binds the given boolean getter to a predicate. */
+private static Predicate<Protocol> getBooleanGetter(final Method m)
+{
+	Predicate<Protocol> f = bind(m,
+		Predicate.class, "test", boolean.class, null);
+	return f != null ? f : new Reflective(m);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Binds the given setter to a consumer of long values. The setter must
+ * take an int or a long; in the first case the value is cast to int.
+ */
+public static ObjLongConsumer<Protocol> getLongSetter(final Method m)
+{
+	final Class<?> type = getSetterType(m);
+	if (type == long.class) {
+		ObjLongConsumer<Protocol> f = bind(m,
+			ObjLongConsumer.class, "accept", void.class, long.class);
+		return f != null ? f : new Reflective(m);
+	}
+	if (type != int.class)
+		throw new IllegalArgumentException(m+" does not take an integer");
+	final ObjIntConsumer<Protocol> f = bind(m,
+		ObjIntConsumer.class, "accept", void.class, int.class);
+	if (f == null) return new Reflective(m);
+	return new ObjLongConsumer<Protocol>() {
+		public void accept(Protocol o, long v) { f.accept(o, (int) v); }
+	};
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Binds the given setter to a consumer of double values. The setter must
+ * take a float or a double; in the first case the value is cast to float.
+ */
+public static ObjDoubleConsumer<Protocol> getDoubleSetter(final Method m)
+{
+	final Class<?> type = getSetterType(m);
+	if (type == double.class) {
+		ObjDoubleConsumer<Protocol> f = bind(m, ObjDoubleConsumer.class,
+			"accept", void.class, double.class);
+		return f != null ? f : new Reflective(m);
+	}
+	if (type != float.class)
+		throw new IllegalArgumentException(m+" does not take a real");
+	final FloatSetter f = bind(m,
+		FloatSetter.class, "accept", void.class, float.class);
+	if (f == null) return new Reflective(m);
+	return new ObjDoubleConsumer<Protocol>() {
+		public void accept(Protocol o, double v) { f.accept(o, (float) v); }
+	};
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Generates an implementation of the given functional interface that
+ * calls the given method on its first argument, passing the second one
+ * if <code>arg</code> is not null. Returns null if the method cannot be
+ * bound.
+ * @param fi the functional interface, whose method takes an Object
+ * and optionally a primitive
+ * @param name the name of the method of the interface
+ * @param ret the return type of the method of the interface
+ * @param arg the type of the second argument, or null
+ */
+@SuppressWarnings("unchecked")
+private static <T> T bind(Method m, Class<?> fi, String name, Class<?> ret,
+		Class<?> arg)
+{
+	try {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle impl = lookup.unreflect(m);
+		Class<?> recv = m.getDeclaringClass();
+		MethodType erased = (arg == null ?
+			MethodType.methodType(ret, Object.class) :
+			MethodType.methodType(ret, Object.class, arg));
+		MethodType actual = erased.changeParameterType(0, recv);
+		CallSite site = LambdaMetafactory.metafactory(lookup, name,
+			MethodType.methodType(fi), erased, impl, actual);
+		return (T) site.getTarget().invoke();
+	} catch (Throwable e) {
+		return null;
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/** Setter of float values, since java.util.function has none. */
+interface FloatSetter
+{
+	void accept(Object o, float v);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Implements the bindings through {@link Method#invoke}, for the methods
+ * that cannot be bound otherwise.
+ */
+private static class Reflective implements ToLongFunction<Protocol>,
+ToDoubleFunction<Protocol>, Predicate<Protocol>, ObjLongConsumer<Protocol>,
+ObjDoubleConsumer<Protocol>
+{
+	private final Method m;
+	private final Class<?> type;
+
+	Reflective(Method m)
+	{
+		this.m = m;
+		type = (m.getParameterTypes().length == 0 ? m.getReturnType() :
+			m.getParameterTypes()[0]);
+	}
+
+	private Object get(Protocol o)
+	{
+		try { return m.invoke(o); }
+		catch (Exception e) {
+			throw new RuntimeException("While using getter "+m.getName(),e);
+		}
+	}
+
+	private void set(Protocol o, Object v)
+	{
+		try { m.invoke(o, v); }
+		catch (Exception e) {
+			throw new RuntimeException("While using setter "+m.getName(),e);
+		}
+	}
+
+	public boolean test(Protocol o) { return (Boolean) get(o); }
+
+	public long applyAsLong(Protocol o)
+	{
+		Object v = get(o);
+		if (v instanceof Boolean) return ((Boolean) v) ? 1 : 0;
+		return ((Number) v).longValue();
+	}
+
+	public double applyAsDouble(Protocol o)
+	{
+		Object v = get(o);
+		if (v instanceof Boolean) return ((Boolean) v) ? 1 : 0;
+		return ((Number) v).doubleValue();
+	}
+
+	public void accept(Protocol o, long v)
+	{
+		if (type == int.class) set(o, (int) v);
+		else set(o, v);
+	}
+
+	public void accept(Protocol o, double v)
+	{
+		if (type == float.class) set(o, (float) v);
+		else set(o, v);
+	}
+}
+
+//--------------------------------------------------------------------------
+
 }
@@ -51,6 +51,8 @@ private static final String PAR_L1 = "l1";
 /** L1 norm */
 private final double l1;
 
+private final VectorSnapshot values = new VectorSnapshot();
+
 
 // --------------------------------------------------------------------------
 // Initialization
@@ -90,22 +92,15 @@ public Normalizer(String prefix)
  */
 public boolean execute() {
 	
-	double sum = 0.0;
-	for (int i = 0; i < Network.size(); ++i)
-	{
-		sum += getter.getDouble(i);
-	}
+	values.read(getter);
+	double sum = values.sum();
 	if (sum == 0.0)
 	{
 		throw new
 		RuntimeException("Attempted to normalize all zero vector.");
 	}
-	double factor = l1 / sum;
-	for (int i = 0; i < Network.size(); ++i)
-	{
-		double val = getter.getDouble(i)*factor;
-		setter.set(i,val);
-	}
+	values.scale(l1 / sum);
+	values.write(setter);
 	return false;
 }
 
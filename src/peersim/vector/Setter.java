@@ -19,6 +19,7 @@
 package peersim.vector;
 
 import java.lang.reflect.*;
+import java.util.function.*;
 import peersim.config.*;
 import peersim.core.*;
 
@@ -32,6 +33,9 @@ import peersim.core.*;
  * implementing the {@link SingleValue} interface can be manipulated using the
  * old configuration syntax (i.e., without specifying the method).
  * <p>
+ * As in {@link Getter}, the method is called through a function generated
+ * at initialization instead of reflection.
+ * <p>
  * Please refer to package {@link peersim.vector} for a detailed description of 
  * the concept of protocol vector and the role of getters and setters. 
  */
@@ -56,6 +60,12 @@ private Method method=null;
 /** Parameter type of setter method */
 private Class type;
 
+/** The setter as a function, null if the type is not an integer type */
+private ObjLongConsumer<Protocol> longSetter;
+
+/** The setter as a function, null if the type is not a real type */
+private ObjDoubleConsumer<Protocol> doubleSetter;
+
 
 // ========================== initialization =============================
 // =======================================================================
@@ -102,6 +112,10 @@ private void init() {
 	}
 	// Obtain the type of the field
 	type = GetterSetterFinder.getSetterType(method);
+	if (type == long.class || type == int.class)
+		longSetter = GetterSetterFinder.getLongSetter(method);
+	else
+		doubleSetter = GetterSetterFinder.getDoubleSetter(method);
 }
 
 
@@ -141,26 +155,9 @@ public void set(Node n, long val) {
 	
 	init();
 	
-	try 
-	{
-		if(type==long.class)
-		{
-			method.invoke(n.getProtocol(pid),val);
-			return;
-		}
-		if(type==int.class)
-		{
-			method.invoke(n.getProtocol(pid),(int)val);
-			return;
-		}
-	}
-	catch (Exception e)
-	{
-		throw new RuntimeException("While using setter "+methodName,e);
-		
-	}
-	
-	throw new RuntimeException("type has to be int or long");
+	if (longSetter == null)
+		throw new RuntimeException("type has to be int or long");
+	longSetter.accept(n.getProtocol(pid), val);
 }
 
 // --------------------------------------------------------------------------
@@ -175,25 +172,9 @@ public void set(Node n, double val) {
 	
 	init();
 	
-	try
-	{
-		if(type==double.class)
-		{
-			method.invoke(n.getProtocol(pid),val);
-			return;
-		}
-		if(type==float.class)
-		{
-			method.invoke(n.getProtocol(pid),(float)val);
-			return;
-		}
-	}
-	catch (Exception e)
-	{
-		throw new RuntimeException("While using setter "+methodName,e);
-	}
-	
-	throw new RuntimeException("type has to be double or float");
+	if (doubleSetter == null)
+		throw new RuntimeException("type has to be double or float");
+	doubleSetter.accept(n.getProtocol(pid), val);
 }
 
 // --------------------------------------------------------------------------
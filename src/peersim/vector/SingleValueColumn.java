@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.vector;
+
+import java.util.Arrays;
+
+import peersim.core.*;
+
+/**
+ * The columnar version of {@link SingleValueHolder}, to be used with
+ * {@link ColumnarNode}. The values of all the nodes are stored in a single
+ * array. The handles returned by {@link ColumnarNode#getProtocol}
+ * implement {@link SingleValue}, so the classes of this package work with
+ * this protocol as well.
+ */
+public class SingleValueColumn implements ColumnarProtocol
+{
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/** Values held by this protocol, indexed by slot */
+private double[] values = new double[0];
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Does nothing.
+ */
+public SingleValueColumn(String prefix)
+{
+}
+
+//--------------------------------------------------------------------------
+
+public void setCapacity(int capacity)
+{
+	values = Arrays.copyOf(values, capacity);
+}
+
+//--------------------------------------------------------------------------
+
+public void copy(int from, int to)
+{
+	values[to] = values[from];
+}
+
+//--------------------------------------------------------------------------
+
+public Protocol get(int slot)
+{
+	return new Value(this, slot);
+}
+
+//--------------------------------------------------------------------------
+
+public void kill(int slot) {}
+
+//--------------------------------------------------------------------------
+//methods
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the value of the given slot.
+ */
+public double getValue(int slot)
+{
+	return values[slot];
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Sets the value of the given slot.
+ */
+public void setValue(int slot, double value)
+{
+	values[slot] = value;
+}
+
+//--------------------------------------------------------------------------
+//Handle
+//--------------------------------------------------------------------------
+
+/**
+ * The {@link SingleValue} view of a slot of a {@link SingleValueColumn}.
+ */
+public static class Value implements SingleValue, Protocol
+{
+
+	private final SingleValueColumn table;
+
+	private final int slot;
+
+	Value(SingleValueColumn table, int slot)
+	{
+		this.table = table;
+		this.slot = slot;
+	}
+
+	/** Handles cannot be cloned, see {@link ColumnarProtocol}. */
+	public Object clone()
+	{
+		throw new UnsupportedOperationException(
+			"SingleValueColumn can be used only with ColumnarNode");
+	}
+
+	public double getValue() { return table.values[slot]; }
+
+	public void setValue(double value) { table.values[slot] = value; }
+
+	public boolean equals(Object o)
+	{
+		return o instanceof Value && ((Value) o).table == table &&
+			((Value) o).slot == slot;
+	}
+
+	public int hashCode() { return slot; }
+
+	public String toString() { return "" + getValue(); }
+}
+
+}
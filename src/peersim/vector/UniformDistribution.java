@@ -21,6 +21,7 @@ package peersim.vector;
 import peersim.config.*;
 import peersim.core.*;
 import peersim.dynamics.*;
+import peersim.util.ExtendedRandom;
 
 /**
  * Initializes the values drawing uniform random samples from the range
@@ -94,6 +95,15 @@ public UniformDistribution(String prefix)
  */
 public boolean execute() {
 
+	if( Bootstrap.isParallel() )
+	{
+		Bootstrap.runRandom(Network.size(), new Bootstrap.Task() {
+			public void run(int from, int to, ExtendedRandom r) {
+				for (int i = from; i < to; ++i) set(i, r);
+			}
+		});
+		return false;
+	}
 	if(setter.isInteger())
 	{
 		long d = max.longValue() - min.longValue();
@@ -117,6 +127,25 @@ public boolean execute() {
 
 // --------------------------------------------------------------------------
 
+/**
+ * Sets the value of the node with the given index drawing from the given
+ * random stream.
+ */
+private void set(int i, ExtendedRandom r) {
+	if( setter.isInteger() )
+	{
+		long d = max.longValue() - min.longValue();
+		setter.set(i, r.nextLong(d) + min.longValue());
+	}
+	else
+	{
+		double d = max.doubleValue() - min.doubleValue();
+		setter.set(i, r.nextDouble()*d + min.doubleValue());
+	}
+}
+
+// --------------------------------------------------------------------------
+
 /**
  * Initializes the value drawing a uniform random sample from the range
  * [{@value #PAR_MIN}, {@value #PAR_MAX}[.
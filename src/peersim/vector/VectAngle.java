@@ -86,6 +86,10 @@ private final Getter getter1;
 
 private final Getter getter2;
 
+private final VectorSnapshot v1 = new VectorSnapshot();
+
+private final VectorSnapshot v2 = new VectorSnapshot();
+
 // --------------------------------------------------------------------------
 // Initialization
 // --------------------------------------------------------------------------
@@ -114,15 +118,11 @@ public VectAngle(String prefix)
 */
 public boolean execute() {
 
-	double sqrsum1 = 0, sqrsum2 = 0, prod = 0;
-	for (int i = 0; i < Network.size(); ++i)
-	{
-		double v1= getter1.get(i).doubleValue();
-		double v2= getter2.get(i).doubleValue();
-		sqrsum1 += v1 * v1;
-		sqrsum2 += v2 * v2;
-		prod += v2 * v1;
-	}
+	v1.read(getter1);
+	v2.read(getter2);
+	double sqrsum1 = v1.sqrSum();
+	double sqrsum2 = v2.sqrSum();
+	double prod = v1.dot(v2);
 	
 	double cos = prod / Math.sqrt(sqrsum1) / Math.sqrt(sqrsum2);
 	
@@ -56,6 +56,8 @@ private static final String PAR_SOURCE = "source";
 /** Source getter */
 private final Getter source;
 
+private final VectorSnapshot values = new VectorSnapshot();
+
 //--------------------------------------------------------------------------
 //Initialization
 //--------------------------------------------------------------------------
@@ -83,12 +85,8 @@ public VectCopy(String prefix)
  */
 public boolean execute() {
 
-	int size = Network.size();
-	for (int i = 0; i < size; i++) {
-		Number ret = source.get(i);
-		if(setter.isInteger()) setter.set(i,ret.longValue());
-		else setter.set(i,ret.doubleValue());
-	}
+	values.read(source);
+	values.write(setter);
 
 	return false;
 }
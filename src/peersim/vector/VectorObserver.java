@@ -18,6 +18,7 @@
 		
 package peersim.vector;
 
+import peersim.config.*;
 import peersim.core.*;
 import peersim.util.*;
 
@@ -25,16 +26,37 @@ import peersim.util.*;
  * This class computes and reports statistics information about a vector.
  * Provided statistics include average, max, min, variance,
  * etc. Values are printed according to the string format of {@link 
- * IncrementalStats#toString}.
+ * IncrementalStats#toString}, followed by the quantiles listed in
+ * {@value #PAR_QUANTILES}, if any.
  * @see VectControl
  * @see peersim.vector
  */
 public class VectorObserver extends VectControl {
 
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * A comma separated list of quantiles, each between 0 and 1, to be printed
+ * after the statistics. For example, "0.5" prints the median. Not defined
+ * by default.
+ * @config
+ */
+private static final String PAR_QUANTILES = "quantiles";
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
 
 /** The name of this observer in the configuration */
 private final String prefix;
 
+/** {@value #PAR_QUANTILES} */
+private final double[] quantiles;
+
+private final VectorSnapshot values = new VectorSnapshot();
+
 
 //--------------------------------------------------------------------------
 //Initialization
@@ -49,6 +71,16 @@ public VectorObserver(String prefix) {
 
 	super(prefix);
 	this.prefix = prefix;
+	String[] qs = Configuration.getString(prefix + "." + PAR_QUANTILES,
+		"").trim().split("\\s*,\\s*");
+	quantiles = new double[qs[0].length() == 0 ? 0 : qs.length];
+	for (int i = 0; i < quantiles.length; ++i) {
+		try { quantiles[i] = Double.parseDouble(qs[i]); }
+		catch (NumberFormatException e) { quantiles[i] = -1; }
+		if (!(quantiles[i] >= 0 && quantiles[i] <= 1))
+			throw new IllegalParameterException(prefix + "." +
+			PAR_QUANTILES, "Quantiles must be numbers in [0,1]");
+	}
 }
 
 //--------------------------------------------------------------------------
@@ -65,14 +97,16 @@ public VectorObserver(String prefix) {
 public boolean execute() {
 
 	IncrementalStats stats = new IncrementalStats();
-
-	for (int j = 0; j < Network.size(); j++)
-	{
-		Number v = getter.get(j);
-		stats.add( v.doubleValue() );
-	}
+	values.read(getter);
+	values.addTo(stats);
 	
-	System.out.println(prefix+": "+stats);	
+	if (quantiles.length == 0) {
+		System.out.println(prefix+": "+stats);
+		return false;
+	}
+	StringBuilder sb = new StringBuilder(prefix+": "+stats);
+	for (double q : quantiles) sb.append(' ').append(values.quantile(q));
+	System.out.println(sb);
 
 	return false;
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+
+package peersim.vector;
+
+import java.util.Arrays;
+
+import peersim.core.*;
+import peersim.util.*;
+
+/**
+ * A copy of a protocol vector, that is, of the values returned by a
+ * {@link Getter} for all the nodes of the network, stored in an array.
+ * The controls of this package read the vector once with {@link #read},
+ * compute on the array, and write the results back with {@link #write},
+ * instead of going through the getter and setter for each operation.
+ * A snapshot can be reused; its arrays only grow.
+ * <p>
+ * If {@value peersim.core.Bootstrap#PAR_THREADS} is defined, the vector is
+ * read and written in parallel, in partitions of
+ * {@value peersim.core.Bootstrap#CHUNK} nodes, so the getters and setters
+ * must not depend on {@link CommonState}. The reductions are computed
+ * sequentially in the order of the nodes, so they give exactly the same
+ * results as the loops they replace; on an array they are much faster
+ * than the reading of the vector anyway.
+ */
+public class VectorSnapshot {
+
+// ============================ fields ===================================
+// =======================================================================
+
+/** The values as reals */
+private double[] values = new double[0];
+
+/** The values as integers, valid only if {@link #integer} is true */
+private long[] longs = new long[0];
+
+/** Number of valid values */
+private int size = 0;
+
+/** True if the values have been read from an integer getter and have not
+been changed since */
+private boolean integer = false;
+
+/** The sorted values, null if not computed yet */
+private double[] sorted = null;
+
+// =============================== methods =============================
+// =====================================================================
+
+/**
+ * Reads the values of all the nodes through the given getter. Values of
+ * integer types are also stored as long values, so that they can be
+ * written back exactly.
+ */
+public void read(final Getter getter) {
+
+	final Class<?> type = getter.getType();
+	size = Network.size();
+	integer = (type == int.class || type == long.class);
+	sorted = null;
+	if (values.length < size) values = new double[size];
+	if (integer && longs.length < size) longs = new long[size];
+	if (Bootstrap.isParallel()) {
+		Bootstrap.run(size, new Bootstrap.Task() {
+			public void run(int from, int to, ExtendedRandom r) {
+				read(getter, from, to);
+			}
+		});
+	}
+	else read(getter, 0, size);
+}
+
+// --------------------------------------------------------------------------
+
+private void read(Getter getter, int from, int to) {
+
+	if (integer) {
+		for (int i = from; i < to; ++i) {
+			longs[i] = getter.getLong(i);
+			values[i] = longs[i];
+		}
+	}
+	else for (int i = from; i < to; ++i) values[i] = getter.getDouble(i);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Writes the values to all the nodes through the given setter. The first
+ * {@link #size()} nodes are written, so the network must not have
+ * changed since the vector was read. Real values are truncated if the
+ * setter is of an integer type.
+ */
+public void write(final Setter setter) {
+
+	if (Network.size() != size)
+		throw new IllegalStateException("The network size changed");
+	final boolean toInteger = setter.isInteger();
+	if (Bootstrap.isParallel()) {
+		Bootstrap.run(size, new Bootstrap.Task() {
+			public void run(int from, int to, ExtendedRandom r) {
+				write(setter, toInteger, from, to);
+			}
+		});
+	}
+	else write(setter, toInteger, 0, size);
+}
+
+// --------------------------------------------------------------------------
+
+private void write(Setter setter, boolean toInteger, int from, int to) {
+
+	if (toInteger && integer)
+		for (int i = from; i < to; ++i) setter.set(i, longs[i]);
+	else if (toInteger)
+		for (int i = from; i < to; ++i) setter.set(i, (long) values[i]);
+	else
+		for (int i = from; i < to; ++i) setter.set(i, values[i]);
+}
+
+// --------------------------------------------------------------------------
+
+/** Returns the number of values, that is, the network size when the
+vector was read. */
+public int size() { return size; }
+
+// --------------------------------------------------------------------------
+
+/** Returns the value of the node with the given index. */
+public double get(int i) { return values[i]; }
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the array holding the values. Only the first {@link #size()}
+ * elements are valid. The array must not be modified.
+ */
+public double[] getValues() { return values; }
+
+// --------------------------------------------------------------------------
+
+/** Multiplies all the values by the given factor. */
+public void scale(double factor) {
+
+	for (int i = 0; i < size; ++i) values[i] *= factor;
+	integer = false;
+	sorted = null;
+}
+
+// --------------------------------------------------------------------------
+
+/** Returns the sum of the values. */
+public double sum() {
+
+	double sum = 0.0;
+	for (int i = 0; i < size; ++i) sum += values[i];
+	return sum;
+}
+
+// --------------------------------------------------------------------------
+
+/** Returns the sum of the squares of the values. */
+public double sqrSum() {
+
+	return dot(this);
+}
+
+// --------------------------------------------------------------------------
+
+/** Returns the dot product of this vector and the given one, which must
+have the same size. */
+public double dot(VectorSnapshot other) {
+
+	if (other.size != size)
+		throw new IllegalArgumentException("Sizes differ");
+	final double[] v = other.values;
+	double prod = 0.0;
+	for (int i = 0; i < size; ++i) prod += values[i] * v[i];
+	return prod;
+}
+
+// --------------------------------------------------------------------------
+
+/** Adds all the values to the given statistics. */
+public void addTo(IncrementalStats stats) {
+
+	for (int i = 0; i < size; ++i) stats.add(values[i]);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Returns the given quantile of the values, that is, the smallest value
+ * such that at least a fraction q of the values are not larger. The values
+ * are sorted the first time a quantile is requested, so requesting
+ * several quantiles of the same vector is cheap.
+ * @param q the quantile, between 0 and 1
+ */
+public double quantile(double q) {
+
+	if (q < 0 || q > 1)
+		throw new IllegalArgumentException("Quantile not in [0,1]: "+q);
+	if (size == 0) return Double.NaN;
+	if (sorted == null) {
+		sorted = Arrays.copyOf(values, size);
+		Arrays.sort(sorted);
+	}
+	int k = (int) Math.ceil(q * size) - 1;
+	return sorted[Math.max(k, 0)];
+}
+
+}
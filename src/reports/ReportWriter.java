@@ -15,29 +15,37 @@ public class ReportWriter {
 
 
     public static void writeInDegree(String s) {
-        try {
-            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(fileInDeg), true));
-            bw.write(s);
-            bw.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        write(fileInDeg, s);
     }
 
     public static void writeClusterCoefficient(double coeff) {
-        try {
-            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(fileCluster), true));
-            bw.write(++clusterCoeffCounter + " " + coeff + "\n");
-            bw.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        write(fileCluster, ++clusterCoeffCounter + " " + coeff + "\n");
+    }
+
+    /**
+     * Writes the clustering coefficient with a third column that is 1 if
+     * the value is stale, that is, repeated from an earlier step.
+     */
+    public static void writeClusterCoefficient(double coeff, boolean stale) {
+        write(fileCluster, ++clusterCoeffCounter + " " + coeff + " " + (stale ? 1 : 0) + "\n");
     }
 
     public static void writeShortestPath(double length) {
+        write(fileShortestPath, ++shortestPathCounter + " " + length + "\n");
+    }
+
+    /**
+     * Writes the shortest path length with a third column that is 1 if the
+     * value is stale, that is, repeated from an earlier step.
+     */
+    public static void writeShortestPath(double length, boolean stale) {
+        write(fileShortestPath, ++shortestPathCounter + " " + length + " " + (stale ? 1 : 0) + "\n");
+    }
+
+    private static void write(String file, String s) {
         try {
-            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(fileShortestPath), true));
-            bw.write(++shortestPathCounter + " " + length + "\n");
+            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(file), true));
+            bw.write(s);
             bw.close();
         } catch (IOException e) {
             e.printStackTrace();